@@ -1,10 +1,14 @@
 #version 100
 precision mediump float;
-uniform mat4 uModelViewMatrix;
-uniform mat4 uProjectionMatrix;
-attribute vec3 aVertexPosition;
+uniform highp mat4 uModelViewMatrix;
+uniform highp mat4 uProjectionMatrix;
+// dequantization of the compressed positions, the position path is in highp as mediump would lose most of the 16 bits of the quantization
+uniform highp vec3 uPositionScale;
+uniform highp vec3 uPositionOffset;
+attribute highp vec3 aVertexPosition;
 
 void main(void) {
-  vec4 pos=uModelViewMatrix*vec4(aVertexPosition, 1.0);
+  highp vec3 position = aVertexPosition * uPositionScale + uPositionOffset;
+  highp vec4 pos=uModelViewMatrix*vec4(position, 1.0);
   gl_Position= uProjectionMatrix*pos;
 }
@@ -1,12 +1,19 @@
 #version 100
 precision mediump float;
-uniform mat4 uModelViewMatrix;
-uniform mat4 uProjectionMatrix;
+uniform highp mat4 uModelViewMatrix;
+uniform highp mat4 uProjectionMatrix;
+// dequantization of the compressed positions, the position path is in highp as mediump would lose most of the 16 bits of the quantization
+uniform highp vec3 uPositionScale;
+uniform highp vec3 uPositionOffset;
 uniform mat3 uNormalMatrix;
 // Material definition
 uniform bool uNormalizing;
+// normals given with the octahedral mapping
+uniform bool uOctahedralNormals;
+// dequantization of the compressed texture coordinates
+uniform vec4 uTextureDequantization;
 // vertex attributes
-attribute vec3 aVertexPosition;
+attribute highp vec3 aVertexPosition;
 attribute vec3 aVertexNormal;
 attribute vec2 aVertexTexture;
 // Interpolated data
@@ -15,10 +22,19 @@ varying vec4 posf;
 varying vec3 normalf;
 varying vec2 texturef;
 
+// decode a normal from the octahedral mapping
+vec3 octahedralDecode(vec2 e) {
+  vec3 n = vec3(e, 1.0 - abs(e.x) - abs(e.y));
+  if (n.z < 0.0) n.xy = (1.0 - abs(n.yx)) * vec2(n.x >= 0.0 ? 1.0 : -1.0, n.y >= 0.0 ? 1.0 : -1.0);
+  return normalize(n);
+}
+
 void main(void) {
-  posf=uModelViewMatrix*vec4(aVertexPosition, 1.0);
-  normalf=uNormalMatrix * aVertexNormal;
+  highp vec3 position = aVertexPosition * uPositionScale + uPositionOffset;
+  highp vec4 pos=uModelViewMatrix*vec4(position, 1.0);
+  posf=pos;
+  normalf=uNormalMatrix * (uOctahedralNormals ? octahedralDecode(aVertexNormal.xy) : aVertexNormal);
   if (uNormalizing) normalf=normalize(normalf);
-  texturef = aVertexTexture;
-  gl_Position= uProjectionMatrix*posf;
+  texturef = aVertexTexture * uTextureDequantization.xy + uTextureDequantization.zw;
+  gl_Position= uProjectionMatrix*pos;
 }
@@ -0,0 +1,240 @@
+package fr.univ_poitiers.dptinfo.algo3d;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import fr.univ_poitiers.dptinfo.algo3d.gl.GL;
+
+/**
+ * Class singleton to keep track of the OpenGL objects created by the application, with their size in bytes and their owner.
+ * The objects must be deleted with {@link #delete(Category, int)} so the memory used on the GPU by each category is known at any time.
+ * The objects still alive when the scene finishes are reported with their owner, to find the leaks, then deleted by {@link #deleteAll()}.
+ * When the OpenGL context is lost, the objects are gone with it and are only forgotten by {@link #forgetAll()}.
+ */
+public class GpuResourceTracker {
+
+    /**
+     * Categories of OpenGL objects.
+     */
+    public enum Category {
+        /**
+         * Vertex and index buffers.
+         */
+        BUFFER,
+        /**
+         * Textures, including the depth textures.
+         */
+        TEXTURE,
+        /**
+         * Frame buffer objects.
+         */
+        FRAMEBUFFER
+    }
+
+    /**
+     * Class to describe a tracked OpenGL object.
+     */
+    private static class Resource {
+        /**
+         * Name of the object given by OpenGL.
+         */
+        final int id;
+        /**
+         * Description of the object that created it.
+         */
+        final String owner;
+        /**
+         * Size of the data of the object on the GPU.
+         */
+        long bytes;
+
+        /**
+         * Constructor.
+         * @param id - the name of the object
+         * @param owner - the owner of the object
+         */
+        Resource(int id, String owner) {
+            this.id = id;
+            this.owner = owner;
+        }
+    }
+
+    /**
+     * For each category, the tracked objects by name.
+     */
+    private final Map<Category, Map<Integer, Resource>> resources = new EnumMap<>(Category.class);
+    /**
+     * For each category, the total size of its tracked objects.
+     */
+    private final long[] bytes = new long[Category.values().length];
+
+    /**
+     * Singleton instance.
+     */
+    private static GpuResourceTracker INSTANCE;
+
+    /**
+     * Constructor.
+     */
+    private GpuResourceTracker() {
+        for (Category category : Category.values())
+            resources.put(category, new HashMap<Integer, Resource>());
+    }
+
+    /**
+     * Returns the singleton instance.
+     * Thread proof with double check to not put the synchronized over all the method.
+     * @return the tracker
+     */
+    public static GpuResourceTracker getInstance() {
+        if (INSTANCE != null)
+            return INSTANCE;
+        synchronized (GpuResourceTracker.class) {
+            if (INSTANCE == null)
+                INSTANCE = new GpuResourceTracker();
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * Start to track an object just created.
+     * @param category - category of the object
+     * @param id - name of the object given by OpenGL
+     * @param owner - description of the object that created it, used in the reports
+     */
+    public synchronized void track(Category category, int id, String owner) {
+        if (id == 0)
+            return;
+        Resource previous = resources.get(category).put(id, new Resource(id, owner));
+        if (previous != null) {
+            bytes[category.ordinal()] -= previous.bytes;
+            MainActivity.log("GL " + category + " " + id + " of " + previous.owner + " was deleted without the tracker.");
+        }
+    }
+
+    /**
+     * Set the size of the data of a tracked object, once it is sent to the GPU.
+     * @param category - category of the object
+     * @param id - name of the object
+     * @param size - size of the data in bytes
+     */
+    public synchronized void setSize(Category category, int id, long size) {
+        Resource resource = resources.get(category).get(id);
+        if (resource == null)
+            throw new IllegalArgumentException("GL " + category + " " + id + " is not tracked.");
+        bytes[category.ordinal()] += size - resource.bytes;
+        resource.bytes = size;
+    }
+
+    /**
+     * Delete a tracked object on the GPU and stop to track it.
+     * Does nothing if the object is not tracked, for instance if it was created in a previous OpenGL context.
+     * @param category - category of the object
+     * @param id - name of the object
+     */
+    public synchronized void delete(Category category, int id) {
+        Resource resource = resources.get(category).remove(id);
+        if (resource == null)
+            return;
+        bytes[category.ordinal()] -= resource.bytes;
+        int[] ids = {id};
+        switch (category) {
+            case BUFFER:
+                GL.glDeleteBuffers(1, ids, 0);
+                break;
+            case TEXTURE:
+                GL.glDeleteTextures(1, ids, 0);
+                break;
+            case FRAMEBUFFER:
+                GL.glDeleteFramebuffers(1, ids, 0);
+        }
+    }
+
+    /**
+     * Log the objects still alive with their owner, then delete them.
+     * To be called when the scene finishes, once the objects had the opportunity to release their resources.
+     */
+    public synchronized void deleteAll() {
+        if (getTotalCount() > 0)
+            MainActivity.log("GL objects still alive at the end :\n" + getReport(true));
+        for (Category category : Category.values()) {
+            List<Integer> ids = new ArrayList<>(resources.get(category).keySet());
+            for (int id : ids)
+                delete(category, id);
+        }
+    }
+
+    /**
+     * Stop to track all the objects without deleting them.
+     * To be called when the OpenGL context is created, the objects of the previous context being already lost.
+     */
+    public synchronized void forgetAll() {
+        for (Category category : Category.values()) {
+            resources.get(category).clear();
+            bytes[category.ordinal()] = 0;
+        }
+    }
+
+    /**
+     * Returns the number of tracked objects of a category.
+     * @param category - the category
+     * @return the number of objects
+     */
+    public synchronized int getCount(Category category) {
+        return resources.get(category).size();
+    }
+
+    /**
+     * Returns the size of the tracked objects of a category.
+     * @param category - the category
+     * @return the size in bytes
+     */
+    public synchronized long getBytes(Category category) {
+        return bytes[category.ordinal()];
+    }
+
+    /**
+     * Returns the number of tracked objects.
+     * @return the number of objects
+     */
+    public synchronized int getTotalCount() {
+        int count = 0;
+        for (Map<Integer, Resource> map : resources.values())
+            count += map.size();
+        return count;
+    }
+
+    /**
+     * Returns the size of the tracked objects.
+     * @return the size in bytes
+     */
+    public synchronized long getTotalBytes() {
+        long total = 0;
+        for (long b : bytes)
+            total += b;
+        return total;
+    }
+
+    /**
+     * Returns a report of the memory used on the GPU by category.
+     * @param details - true to also list each object with its owner
+     * @return the report, one line per category and per object
+     */
+    public synchronized String getReport(boolean details) {
+        StringBuilder report = new StringBuilder();
+        for (Category category : Category.values()) {
+            report.append(String.format(Locale.US, "%s : %d objects, %.2f MB%n", category,
+                    getCount(category), getBytes(category) / (1024.0 * 1024.0)));
+            if (details) {
+                for (Resource resource : resources.get(category).values())
+                    report.append(String.format(Locale.US, "    %d (%s) : %d bytes%n", resource.id, resource.owner, resource.bytes));
+            }
+        }
+        report.append(String.format(Locale.US, "Total : %d objects, %.2f MB", getTotalCount(), getTotalBytes() / (1024.0 * 1024.0)));
+        return report.toString();
+    }
+}
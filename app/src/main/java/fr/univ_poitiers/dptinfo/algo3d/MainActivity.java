@@ -5,8 +5,6 @@ import android.content.pm.ActivityInfo;
 import android.os.Bundle;
 import android.util.Log;
 
-import fr.univ_poitiers.dptinfo.algo3d.gameobject.Ball;
-
 /**
  * Class to described the only activity of the application
  *
@@ -26,6 +24,10 @@ public class MainActivity extends Activity {
      * Reference to the Scene environment
      */
     private Scene scene;
+    /**
+     * True once the end of the scene is queued on the rendering thread
+     */
+    private boolean sceneFinished;
 
     /**
      * Creation of the surface view and the scene
@@ -53,8 +55,10 @@ public class MainActivity extends Activity {
     protected void onPause() {
         super.onPause();
         log("Pausing " + getString(R.string.app_name) + ".");
-        Ball.onPause();
         //this.glview.setPreserveEGLContextOnPause(true); //autre solution, conserver le contexte opengl quand on quitte l'appli
+        // The events queued before the pause are run while the OpenGL context is still current, so the scene can delete its objects
+        if (isFinishing())
+            finishScene();
         this.glview.onPause();
     }
 
@@ -74,7 +78,25 @@ public class MainActivity extends Activity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        scene.finish();
+        finishScene();
+    }
+
+    /**
+     * Queue the end of the scene on the rendering thread, once, as the OpenGL objects can only be deleted there.
+     * When the activity is destroyed without finishing, for instance on a configuration change, the OpenGL context is already lost with its objects
+     * and the scene only releases its side.
+     */
+    private void finishScene() {
+        if (sceneFinished)
+            return;
+        sceneFinished = true;
+        final Scene scene = this.scene;
+        glview.queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                scene.finish();
+            }
+        });
     }
 
     /**
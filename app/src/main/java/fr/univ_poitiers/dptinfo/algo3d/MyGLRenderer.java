@@ -8,9 +8,16 @@ import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.opengl.GLES20;
 import android.opengl.GLSurfaceView;
-import android.opengl.GLUtils;
 import android.opengl.Matrix;
 
+import java.util.List;
+
+import fr.univ_poitiers.dptinfo.algo3d.gl.FrameStats;
+import fr.univ_poitiers.dptinfo.algo3d.gl.GL;
+import fr.univ_poitiers.dptinfo.algo3d.gl.StatsBackend;
+import fr.univ_poitiers.dptinfo.algo3d.math.Mat4f;
+import fr.univ_poitiers.dptinfo.algo3d.mesh.LODGroup;
+import fr.univ_poitiers.dptinfo.algo3d.mesh.MeshBufferRegistry;
 import fr.univ_poitiers.dptinfo.algo3d.shaders.Light;
 import fr.univ_poitiers.dptinfo.algo3d.shaders.MultipleLightingShaders;
 import fr.univ_poitiers.dptinfo.algo3d.shaders.ShaderManager;
@@ -58,7 +65,31 @@ public class MyGLRenderer implements GLSurfaceView.Renderer {
     /**
      * Light space matrix to provide to the shaders
      */
-    private float[] lightSpaceMatrix = new float[16];
+    private final float[] lightSpaceMatrix = new float[16];
+
+    /**
+     * View matrix of the main camera, given each frame to the {@link LODGroup}.
+     */
+    private final float[] viewMatrix = new float[16];
+
+    /**
+     * Projection and view matrices of the light, position and direction of the light, allocated once to be reused at each frame.
+     */
+    private final float[] lightProjection = new float[16], lightView = new float[16], lightpos = new float[3], lightdir = new float[3];
+
+    /**
+     * True to count the work of the render passes in the debug builds, and log the report of the {@link FrameStats} once per window of frames.
+     */
+    private static final boolean LOG_FRAME_STATS = BuildConfig.DEBUG;
+
+    /**
+     * Statistics of the render passes of the last frames, null when they are disabled.
+     */
+    private FrameStats frameStats;
+    /**
+     * Number of frames ended since the last report of the statistics.
+     */
+    private int framesSinceReport;
 
 
     /**
@@ -76,6 +107,32 @@ public class MyGLRenderer implements GLSurfaceView.Renderer {
     }
 
 
+    /**
+     * Enable or disable the statistics of the render passes.
+     * When enabled, the OpenGL calls go through a {@link StatsBackend} counting them, which is removed when disabled.
+     * To be called on the rendering thread, for instance with {@link GLSurfaceView#queueEvent(Runnable)}.
+     * @param enabled - true to count the work of each pass of the next frames
+     */
+    public void setFrameStatsEnabled(boolean enabled) {
+        if (enabled && frameStats == null) {
+            frameStats = new FrameStats();
+            framesSinceReport = 0;
+            GL.setBackend(new StatsBackend(GL.getBackend(), frameStats));
+        } else if (!enabled && frameStats != null) {
+            if (GL.getBackend() instanceof StatsBackend)
+                GL.setBackend(((StatsBackend) GL.getBackend()).getBackend());
+            frameStats = null;
+        }
+    }
+
+    /**
+     * Returns the statistics of the render passes of the last frames.
+     * @return the statistics, null if they are disabled
+     */
+    public FrameStats getFrameStats() {
+        return frameStats;
+    }
+
     /**
      * Constructor
      *
@@ -97,11 +154,17 @@ public class MyGLRenderer implements GLSurfaceView.Renderer {
     @Override
     public void onSurfaceCreated(GL10 unused, EGLConfig config) {
         // Create shader
-        ShaderManager.getInstance().getShaders().clear();
+        ShaderManager.getInstance().clearShaders();
         ShaderManager.getInstance().addShaders(new ShadowShaders(this.view.getContext()));
         ShaderManager.getInstance().setDepthShader( new DepthShader(this.view.getContext()));
         checkGlError("Shader Creation");
 
+        // The objects of the previous context are lost, the meshes are sent again when the objects are started
+        GpuResourceTracker.getInstance().forgetAll();
+        MeshBufferRegistry.getInstance().clear();
+        fboId = null;
+        depthTextureId = null;
+        setFrameStatsEnabled(LOG_FRAME_STATS);
         scene.initGraphics(this);
     }
 
@@ -117,12 +180,27 @@ public class MyGLRenderer implements GLSurfaceView.Renderer {
 
         // Display the scene:
         // Drawing the scene is mandatory, since display buffers are swapped in any case.
+        if (frameStats != null)
+            frameStats.beginPass(FrameStats.Pass.SHADOW);
         renderShadowMap(scene.directionalLight.getCompotent(Light.class));
         renderScene(scene);
+        if (frameStats != null)
+            endFrameStats();
         // Dirty mode, so post a new display request to loop
         this.view.requestRender();
     }
 
+    /**
+     * End the frame in the statistics, and log their report each time the rolling window is made of new frames.
+     */
+    private void endFrameStats() {
+        frameStats.endFrame();
+        if (++framesSinceReport == frameStats.getWindow()) {
+            framesSinceReport = 0;
+            MainActivity.log(frameStats.getReport());
+        }
+    }
+
     /**
      * Called when the surface has changed (screen rotation, for instance)
      * always called at the beginning, before first display.
@@ -134,7 +212,7 @@ public class MyGLRenderer implements GLSurfaceView.Renderer {
     @Override
     public void onSurfaceChanged(GL10 unused, final int width, final int height) {
         // Adjust the viewport based on geometry changes,
-        GLES20.glViewport(0, 0, width, height);
+        GL.glViewport(0, 0, width, height);
         generateShadowFBO();
         // Compute projection matrix
         float ratio = (float) width / height;
@@ -149,6 +227,8 @@ public class MyGLRenderer implements GLSurfaceView.Renderer {
             s.use();
             s.setProjectionMatrix(this.projectionmatrix);
         }
+        LODGroup.setProjectionMatrix(this.projectionmatrix);
+        MainActivity.log("GPU memory :\n" + GpuResourceTracker.getInstance().getReport(false));
     }
 
     /**
@@ -161,14 +241,14 @@ public class MyGLRenderer implements GLSurfaceView.Renderer {
         int firsterror, error;
 
         // Check if there is an error
-        error = GLES20.glGetError();
+        error = GL.glGetError();
         if (error == GLES20.GL_NO_ERROR) return;
 
         // In case of error, display the error list and throw an exception...
         firsterror = error;
         do {
             MainActivity.log("Gl Error " + error + " after " + gloperation);
-            error = GLES20.glGetError();
+            error = GL.glGetError();
         } while (error != GLES20.GL_NO_ERROR);
         throw new RuntimeException("GL Error " + firsterror + " after " + gloperation);
 
@@ -186,9 +266,12 @@ public class MyGLRenderer implements GLSurfaceView.Renderer {
     public static int loadTexture(final Context context, final int resourceId) {
         // Create a new texture handle to store the loaded texture
         final int[] textureHandle = new int[1];
-        GLES20.glGenTextures(1, textureHandle, 0);
+        GL.glGenTextures(1, textureHandle, 0);
 
         if (textureHandle[0] != 0) {
+            GpuResourceTracker.getInstance().track(GpuResourceTracker.Category.TEXTURE, textureHandle[0],
+                    "Texture " + context.getResources().getResourceEntryName(resourceId));
+
             // Load the given ressource as a bitmap
             final BitmapFactory.Options options = new BitmapFactory.Options();
             options.inScaled = false;   // No pre-scaling
@@ -198,17 +281,18 @@ public class MyGLRenderer implements GLSurfaceView.Renderer {
 
             // Bind to the allocated texture handle so that the following instructions are done
             // within this texture handle
-            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textureHandle[0]);
+            GL.glBindTexture(GLES20.GL_TEXTURE_2D, textureHandle[0]);
 
             // Set filtering parameters (can be changed to allow a better visualization)
-            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_NEAREST);
-            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_NEAREST);
+            GL.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_NEAREST);
+            GL.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_NEAREST);
 
             // Load the bitmap into the bound texture
-            GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, bitmap, 0);
+            GL.texImage2D(GLES20.GL_TEXTURE_2D, 0, bitmap, 0);
 
             // Unbind texture
-            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
+            GL.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
+            GpuResourceTracker.getInstance().setSize(GpuResourceTracker.Category.TEXTURE, textureHandle[0], bitmap.getByteCount());
 
             // Recycle the bitmap, it has been loaded into the graphics card memory and is no longer
             // used in the main memory
@@ -229,40 +313,48 @@ public class MyGLRenderer implements GLSurfaceView.Renderer {
 
     /**
      * Generate the Frame buffer and the depth texture.
+     * The previous ones, if any, are deleted first, as this is called each time the surface changes.
      * It should be placed in the {@link Light#start()} method, ideally but this was just a test with one light.
      * This would allow me to generate one shadow map per light.
      */
     public void generateShadowFBO() {
         final int SHADOW_WIDTH = 2048, SHADOW_HEIGHT = 2048;
 
+        if (fboId != null) {
+            GpuResourceTracker.getInstance().delete(GpuResourceTracker.Category.FRAMEBUFFER, fboId[0]);
+            GpuResourceTracker.getInstance().delete(GpuResourceTracker.Category.TEXTURE, depthTextureId[0]);
+        }
         fboId = new int[1];
         depthTextureId = new int[1];
 
         //Create the framebuffer object
-        GLES20.glGenFramebuffers(1, fboId, 0);
+        GL.glGenFramebuffers(1, fboId, 0);
+        GpuResourceTracker.getInstance().track(GpuResourceTracker.Category.FRAMEBUFFER, fboId[0], "Shadow map");
 
         //Create the depth texture
-        GLES20.glGenTextures(1, depthTextureId, 0);
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, depthTextureId[0]);
+        GL.glGenTextures(1, depthTextureId, 0);
+        GpuResourceTracker.getInstance().track(GpuResourceTracker.Category.TEXTURE, depthTextureId[0], "Shadow map depth");
+        GpuResourceTracker.getInstance().setSize(GpuResourceTracker.Category.TEXTURE, depthTextureId[0], SHADOW_WIDTH * SHADOW_HEIGHT * Integer.BYTES);
+        GL.glBindTexture(GLES20.GL_TEXTURE_2D, depthTextureId[0]);
 
         //Modify paramters of the depth texture
-        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_NEAREST);
-        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_NEAREST);
-        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
-        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+        GL.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_NEAREST);
+        GL.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_NEAREST);
+        GL.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+        GL.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
 
-        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, fboId[0]);
+        GL.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, fboId[0]);
 
         //Use the depth texture
-        GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_DEPTH_COMPONENT, SHADOW_WIDTH, SHADOW_HEIGHT, 0, GLES20.GL_DEPTH_COMPONENT, GLES20.GL_UNSIGNED_INT, null);
+        GL.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_DEPTH_COMPONENT, SHADOW_WIDTH, SHADOW_HEIGHT, 0, GLES20.GL_DEPTH_COMPONENT, GLES20.GL_UNSIGNED_INT, null);
 
         // Attach the depth texture as the framebuffer's depth buffer
-        GLES20.glFramebufferTexture2D(GLES20.GL_FRAMEBUFFER, GLES20.GL_DEPTH_ATTACHMENT, GLES20.GL_TEXTURE_2D, depthTextureId[0], 0);
+        GL.glFramebufferTexture2D(GLES20.GL_FRAMEBUFFER, GLES20.GL_DEPTH_ATTACHMENT, GLES20.GL_TEXTURE_2D, depthTextureId[0], 0);
 
 /*
         To debug the framebuffer :
         //Check FBO status
-        int FBOstatus = GLES20.glCheckFramebufferStatus(GLES20.GL_FRAMEBUFFER);
+        int FBOstatus = GL.glCheckFramebufferStatus(GLES20.GL_FRAMEBUFFER);
         if (FBOstatus != GLES20.GL_FRAMEBUFFER_COMPLETE) {
             MainActivity.log("GL_FRAMEBUFFER_COMPLETE failed, CANNOT use FBO");
             throw new RuntimeException("GL_FRAMEBUFFER_COMPLETE failed, CANNOT use FBO");
@@ -280,21 +372,18 @@ public class MyGLRenderer implements GLSurfaceView.Renderer {
      * @param light
      */
     private void renderShadowMap(Light light) {
-        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, fboId[0]);
+        GL.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, fboId[0]);
 
-        GLES20.glViewport(0, 0, 2048, 2048);
+        GL.glViewport(0, 0, 2048, 2048);
 
-        GLES20.glClear(GLES20.GL_DEPTH_BUFFER_BIT | GLES20.GL_COLOR_BUFFER_BIT);
+        GL.glClear(GLES20.GL_DEPTH_BUFFER_BIT | GLES20.GL_COLOR_BUFFER_BIT);
 
         //Calculate the light projection matrix, the light view matrix and the light space matrix.
-        float[] lightProjection = new float[16];
         Matrix.orthoM(lightProjection, 0, -10.f, 10.f, -10.f, 10.f, 0.1f, 50.f);
-        float[] lightView = new float[16];
-        float[] lightpos = light.getPos(light.getTransform().getParentModelViewMatrix());
-        float[] lightdir = light.getDir(light.getTransform().getParentModelViewMatrix());
+        light.getPos(light.getTransform().getParentModelViewMatrix(), lightpos);
+        light.getDir(light.getTransform().getParentModelViewMatrix(), lightdir);
         Matrix.setLookAtM(lightView, 0, lightpos[0], lightpos[1], lightpos[2], lightpos[0] + lightdir[0], lightpos[1] + lightdir[1], lightpos[2] + lightdir[2], 0.f, 1.f, 0.f);
-        lightSpaceMatrix = new float[16];
-        Matrix.multiplyMM(lightSpaceMatrix, 0, lightProjection, 0, lightView, 0);
+        Mat4f.multiply(lightSpaceMatrix, 0, lightProjection, 0, lightView, 0);
 
         ShaderManager.getInstance().getDepthShader().use();
         ShaderManager.getInstance().getDepthShader().setProjectionMatrix(lightProjection);
@@ -302,9 +391,9 @@ public class MyGLRenderer implements GLSurfaceView.Renderer {
         ShaderManager.getInstance().getDepthShader().setViewMatrix(lightView);
 
         //Prerender the scene with front face culling (except for Planes, but it is done in the draw method of the Plane)
-        GLES20.glCullFace(GLES20.GL_FRONT);
+        GL.glCullFace(GLES20.GL_FRONT);
         scene.update();
-        GLES20.glCullFace(GLES20.GL_BACK);
+        GL.glCullFace(GLES20.GL_BACK);
     }
 
     /**
@@ -314,24 +403,33 @@ public class MyGLRenderer implements GLSurfaceView.Renderer {
     private void renderScene(Scene scene) {
         //Make the scene evoluate
         this.scene.step();
-
-        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
-        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);
-        GLES20.glViewport(0, 0, view.getWidth(), view.getHeight());
-        GLES20.glActiveTexture(GLES20.GL_TEXTURE1);
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, depthTextureId[0]);
-        for (MultipleLightingShaders s : ShaderManager.getInstance().getShaders().values()) {
+        //Choose the levels of detail once per frame, from the main camera
+        scene.getViewMatrix(viewMatrix);
+        LODGroup.beginFrame(viewMatrix);
+
+        if (frameStats != null)
+            frameStats.beginPass(FrameStats.Pass.REFLECTION);
+        GL.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+        GL.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);
+        GL.glViewport(0, 0, view.getWidth(), view.getHeight());
+        GL.glActiveTexture(GLES20.GL_TEXTURE1);
+        GL.glBindTexture(GLES20.GL_TEXTURE_2D, depthTextureId[0]);
+        List<MultipleLightingShaders> shaders = ShaderManager.getInstance().getShaderList();
+        for (int i = 0; i < shaders.size(); i++) {
+            MultipleLightingShaders s = shaders.get(i);
             s.use();
             s.setLightSpaceMatrix(lightSpaceMatrix);
             s.setDepthMap(1);
         }
         //Render the reflexion
-        GLES20.glFrontFace(GLES20.GL_CW);
+        GL.glFrontFace(GLES20.GL_CW);
         scene.setUpReflexionMatrix();
         scene.earlyUpdate();
         scene.lateUpdate();
         //Render the real scene
-        GLES20.glFrontFace(GLES20.GL_CCW);
+        if (frameStats != null)
+            frameStats.beginPass(FrameStats.Pass.MAIN);
+        GL.glFrontFace(GLES20.GL_CCW);
         scene.setUpMatrix();
         scene.earlyUpdate();
         scene.lateUpdate();
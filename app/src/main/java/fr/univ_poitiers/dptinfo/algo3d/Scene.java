@@ -1,25 +1,29 @@
 package fr.univ_poitiers.dptinfo.algo3d;
 
-
 import android.content.Context;
 import android.opengl.GLES20;
 import android.opengl.Matrix;
 
+import java.io.File;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 
 import fr.univ_poitiers.dptinfo.algo3d.gameobject.Ball;
 import fr.univ_poitiers.dptinfo.algo3d.gameobject.GameObject;
+import fr.univ_poitiers.dptinfo.algo3d.gameobject.TransformStore;
 import fr.univ_poitiers.dptinfo.algo3d.gameobject.Room;
+import fr.univ_poitiers.dptinfo.algo3d.gl.GL;
 import fr.univ_poitiers.dptinfo.algo3d.mesh.Cube;
 import fr.univ_poitiers.dptinfo.algo3d.mesh.Cylinder;
 import fr.univ_poitiers.dptinfo.algo3d.mesh.Donut;
 import fr.univ_poitiers.dptinfo.algo3d.mesh.Frustum;
+import fr.univ_poitiers.dptinfo.algo3d.mesh.LODGroup;
 import fr.univ_poitiers.dptinfo.algo3d.mesh.Material;
 import fr.univ_poitiers.dptinfo.algo3d.mesh.Pipe;
 import fr.univ_poitiers.dptinfo.algo3d.mesh.Pyramid;
 import fr.univ_poitiers.dptinfo.algo3d.mesh.Tictac;
+import fr.univ_poitiers.dptinfo.algo3d.objimporter.OBJCache;
 import fr.univ_poitiers.dptinfo.algo3d.objimporter.OBJImporter;
 import fr.univ_poitiers.dptinfo.algo3d.shaders.Light;
 import fr.univ_poitiers.dptinfo.algo3d.shaders.LightType;
@@ -82,6 +86,16 @@ public class Scene {
      */
     private final Material earthMaterial;
 
+    /**
+     * Ratios of the triangles kept by the levels of detail of the imported meshes.
+     */
+    private static final float[] LOD_RATIOS = {0.5F, 0.2F, 0.05F};
+
+    /**
+     * Smallest size on the screen of each level of detail of the imported meshes, as a ratio of the height of the screen.
+     */
+    private static final float[] LOD_SCREEN_SIZES = {0.6F, 0.3F, 0.12F, 0.F};
+
     /**
      * Model view matrix
      */
@@ -93,6 +107,8 @@ public class Scene {
      * Creates all the objects in the scene and their materials.
      */
     public Scene(Context current) {
+        // The transforms of a previous scene, when the activity is created again, are not kept in the new one
+        TransformStore.reset();
         // Init observer's view angles
         angley = 0.F;
         ceilingMaterial = new Material(MyGLRenderer.darkgray);
@@ -122,31 +138,40 @@ public class Scene {
         gameObjects.add(ball2);
 
 
+        OBJImporter.setCache(new OBJCache(new File(current.getCacheDir(), "meshes"), 256L * 1024 * 1024));
+        OBJImporter.setOptimizeVertexCache(true);
+        OBJImporter.setOverdrawThreshold(OBJImporter.DEFAULT_OVERDRAW_THRESHOLD);
         InputStream stream = current.getResources().openRawResource(R.raw.armadillo);
         Material armadilloMaterial = new Material(MyGLRenderer.lightgray);
         GameObject armadillo = new GameObject();
-        armadillo.setMesh(OBJImporter.importOBJ(stream, ShadingMode.SMOOTH_SHADING));
+        armadillo.addComponent(LODGroup.class);
+        armadillo.getCompotent(LODGroup.class).setLevels(OBJImporter.importLODChainParallel(stream, ShadingMode.SMOOTH_SHADING, LOD_RATIOS), LOD_SCREEN_SIZES);
         armadillo.getTransform().posy(1.F).scalex(0.01F).scaley(0.01F).scalez(0.01F).posx(7.5f);
         armadillo.addMeshRenderer(armadilloMaterial);
         gameObjects.add(armadillo);
 
         GameObject armadillo2 = new GameObject();
         stream = current.getResources().openRawResource(R.raw.armadillo_with_normals);
-        armadillo2.setMesh(OBJImporter.importOBJ(stream, ShadingMode.SMOOTH_SHADING));
+        armadillo2.addComponent(LODGroup.class);
+        armadillo2.getCompotent(LODGroup.class).setLevels(OBJImporter.importLODChainParallel(stream, ShadingMode.SMOOTH_SHADING, LOD_RATIOS), LOD_SCREEN_SIZES);
         armadillo2.getTransform().posy(1.F).scalex(0.01F).scaley(0.01F).scalez(0.01F).posx(7.5f).posz(1.f);
         armadillo2.addMeshRenderer(armadilloMaterial);
         gameObjects.add(armadillo2);
 
         stream = current.getResources().openRawResource(R.raw.xyzrgb_dragon);
         GameObject dragon = new GameObject();
-        dragon.setMesh(OBJImporter.importOBJ(stream, ShadingMode.FLAT_SHADING));
+        dragon.addComponent(LODGroup.class);
+        OBJImporter.setCompressVertices(true);
+        dragon.getCompotent(LODGroup.class).setLevels(OBJImporter.importLODChainParallel(stream, ShadingMode.FLAT_SHADING, LOD_RATIOS), LOD_SCREEN_SIZES);
+        OBJImporter.setCompressVertices(false);
         dragon.getTransform().posy(1.f).scalex(0.02f).scaley(0.02f).scalez(0.02f).posx(5);
         dragon.addMeshRenderer(new Material());
         gameObjects.add(dragon);
+        MainActivity.log(OBJImporter.getCache().toString());
 
 
         GameObject donut = new GameObject();
-        donut.setMesh(new Donut(1.0f, 0.3f, 50, 20));
+        donut.setMesh(new Donut(1.0f, 0.3f, 50, 20).optimizeVertexCache());
         donut.getTransform().posz(6).posy(0.6f);
         donut.addMeshRenderer(new Material(MyGLRenderer.cyan));
         gameObjects.add(donut);
@@ -176,13 +201,13 @@ public class Scene {
         gameObjects.add(pipe);
 
         GameObject cylinder = new GameObject();
-        cylinder.setMesh(new Cylinder(50));
+        cylinder.setMesh(new Cylinder(50).optimizeVertexCache());
         cylinder.getTransform().posz(6).scalez(0.2f).scalex(0.2f);
         cylinder.addMeshRenderer(new Material(MyGLRenderer.blue));
         gameObjects.add(cylinder);
 
         GameObject tictac = new GameObject();
-        tictac.setMesh(new Tictac(50, 50));
+        tictac.setMesh(new Tictac(50, 50).optimizeVertexCache());
         tictac.getTransform().posz(6).posx(6).posy(1.7f).scalex(0.7f).scalez(0.7f).scaley(0.8f);
         tictac.addMeshRenderer(new Material(MyGLRenderer.green));
         gameObjects.add(tictac);
@@ -211,6 +236,24 @@ public class Scene {
     }
 
 
+    /**
+     * Constructor of a scene made of the given objects only, without the rooms, the imported meshes and the textures.
+     * Used to render frames in the JVM tests, the objects being started by the caller instead of {@link #initGraphics(MyGLRenderer)}.
+     * @param gameObjects - the objects of the scene
+     * @param directionalLight - the object of the list whose light casts the shadows
+     */
+    Scene(List<GameObject> gameObjects, GameObject directionalLight) {
+        this.gameObjects = gameObjects;
+        this.directionalLight = directionalLight;
+        ceilingMaterial = new Material();
+        wallMaterial = new Material();
+        floorMaterial = new Material();
+        floorMaterial2 = new Material();
+        sunMaterial = new Material();
+        earthMaterial = new Material();
+    }
+
+
     /**
      * Init some OpenGL and shaders uniform data to render the simulation scene
      *
@@ -219,11 +262,11 @@ public class Scene {
     public void initGraphics(MyGLRenderer renderer) {
         MainActivity.log("Initializing graphics");
         // Set the background frame color
-        GLES20.glClearColor(0.0f, 0.0f, 0.0f, 1.0f);
+        GL.glClearColor(0.0f, 0.0f, 0.0f, 1.0f);
         // Allow back face culling !!
-        GLES20.glEnable(GLES20.GL_CULL_FACE);
-        GLES20.glDepthFunc(GLES20.GL_LESS);
-        GLES20.glEnable(GLES20.GL_DEPTH_TEST);
+        GL.glEnable(GLES20.GL_CULL_FACE);
+        GL.glDepthFunc(GLES20.GL_LESS);
+        GL.glEnable(GLES20.GL_DEPTH_TEST);
         for (MultipleLightingShaders s : ShaderManager.getInstance().getShaders().values()) {
             s.use();
             s.setNormalizing(true);
@@ -259,17 +302,27 @@ public class Scene {
         this.posz += speedx * Math.sin(yRot) + speedy * Math.cos(yRot);
     }
 
+    /**
+     * Compute the view matrix of the main camera, as used for final rendering.
+     * @param result - float array with a size of 16, receiving the 4*4 view matrix
+     */
+    public void getViewMatrix(float[] result) {
+        Matrix.setIdentityM(result, 0);
+        Matrix.rotateM(result, 0, anglex, 1.0F, 0.0F, 0.0F);
+        Matrix.rotateM(result, 0, angley, 0.0F, 1.0F, 0.0F);
+        Matrix.translateM(result, 0, -posx, 0.F, -posz);
+        Matrix.translateM(result, 0, 0.F, -1.6F, 0.F);
+    }
+
     /**
      * Creates the view matrix for final rendering.
      */
     public void setUpMatrix() {
-        Matrix.setIdentityM(modelviewmatrix, 0);
-        Matrix.rotateM(modelviewmatrix, 0, anglex, 1.0F, 0.0F, 0.0F);
-        Matrix.rotateM(modelviewmatrix, 0, angley, 0.0F, 1.0F, 0.0F);
-        Matrix.translateM(modelviewmatrix, 0, -posx, 0.F, -posz);
-        Matrix.translateM(modelviewmatrix, 0, 0.F, -1.6F, 0.F);
+        getViewMatrix(modelviewmatrix);
 
-        for (MultipleLightingShaders s : ShaderManager.getInstance().getShaders().values()) {
+        List<MultipleLightingShaders> shaders = ShaderManager.getInstance().getShaderList();
+        for (int i = 0; i < shaders.size(); i++) {
+            MultipleLightingShaders s = shaders.get(i);
             s.use();
             s.resetLights();
             s.setViewMatrix(modelviewmatrix);
@@ -281,14 +334,11 @@ public class Scene {
      * Creates the view matrix for the reflection rendering.
      */
     public void setUpReflexionMatrix() {
-
-        Matrix.setIdentityM(modelviewmatrix, 0);
-        Matrix.rotateM(modelviewmatrix, 0, anglex, 1.0F, 0.0F, 0.0F);
-        Matrix.rotateM(modelviewmatrix, 0, angley, 0.0F, 1.0F, 0.0F);
-        Matrix.translateM(modelviewmatrix, 0, -posx, 0.F, -posz);
-        Matrix.translateM(modelviewmatrix, 0, 0.F, -1.6F, 0.F);
+        getViewMatrix(modelviewmatrix);
         Matrix.scaleM(modelviewmatrix, 0, 1.f, -1.f, 1.f);
-        for (MultipleLightingShaders s : ShaderManager.getInstance().getShaders().values()) {
+        List<MultipleLightingShaders> shaders = ShaderManager.getInstance().getShaderList();
+        for (int i = 0; i < shaders.size(); i++) {
+            MultipleLightingShaders s = shaders.get(i);
             s.resetLights();
             s.setViewMatrix(modelviewmatrix);
             s.setModelViewMatrix(modelviewmatrix);
@@ -300,8 +350,8 @@ public class Scene {
      * Calls the {@link GameObject#earlyUpdate()}  method for each object in the scene.
      */
     public void earlyUpdate() {
-        for (GameObject go : gameObjects) {
-            go.earlyUpdate();
+        for (int i = 0; i < gameObjects.size(); i++) {
+            gameObjects.get(i).earlyUpdate();
         }
     }
 
@@ -310,8 +360,8 @@ public class Scene {
      * Calls the {@link GameObject#update()} method for each object in the scene.
      */
     public void update() {
-        for (GameObject go : gameObjects) {
-            go.update();
+        for (int i = 0; i < gameObjects.size(); i++) {
+            gameObjects.get(i).update();
         }
     }
 
@@ -320,18 +370,21 @@ public class Scene {
      * Calls the {@link GameObject#lateUpdate()} ()} method for each object in the scene.
      */
     public void lateUpdate() {
-        for (GameObject go : gameObjects) {
-            go.lateUpdate();
+        for (int i = 0; i < gameObjects.size(); i++) {
+            gameObjects.get(i).lateUpdate();
         }
     }
 
 
     /**
      * Method to be called when the application finishes to make sure that each GameObject are correctly destroyed by the JVM Garbage Collector.
+     * The OpenGL objects still alive once the GameObjects are destroyed are then reported and deleted by the {@link GpuResourceTracker}.
+     * Must be called on the rendering thread, see {@link MainActivity#onDestroy()}.
      */
     public void finish(){
         for (GameObject g : gameObjects){
             GameObject.destroy(g);
         }
+        GpuResourceTracker.getInstance().deleteAll();
     }
 }
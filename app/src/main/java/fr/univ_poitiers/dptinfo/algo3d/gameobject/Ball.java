@@ -13,11 +13,7 @@ public class Ball extends GameObject {
     /**
      * Static Instance of the Sphere used to represent the balls.
      */
-    static private Mesh sphere = new Sphere(50, 50);
-    /**
-     * Static boolean to know if the Sphere Mesh is already initialized or not.
-     */
-    static boolean isInitialized = false;
+    static private Mesh sphere = new Sphere(50, 50).optimizeVertexCache();
 
     /**
      * Constructor.
@@ -32,23 +28,4 @@ public class Ball extends GameObject {
         this.addMeshRenderer(material);
         this.getTransform().posx(posx).posz(posz).posy(radius).scalex(radius).scaley(radius).scalez(radius);
     }
-
-
-    /**
-     * Override of the start method to act as a sort of Singleton Pattern.
-     */
-    @Override
-    public void start() {
-        if (!isInitialized) {
-            super.start();
-            isInitialized = true;
-        }
-    }
-
-    /**
-     * The OGL context reset when application goes on pause, so we have to reset the boolean so the Sphere will be correctly initialized after resuming.
-     */
-    static public void onPause() {
-        isInitialized = false;
-    }
 }
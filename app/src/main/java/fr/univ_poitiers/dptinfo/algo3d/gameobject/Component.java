@@ -51,4 +51,9 @@ public abstract class Component {
      * Method to be called at the end of the render pass.
      */
     public void lateUpdate(){}
+
+    /**
+     * Method to be called when the GameObject is destroyed, to free the resources of the component.
+     */
+    public void onDestroy(){}
 }
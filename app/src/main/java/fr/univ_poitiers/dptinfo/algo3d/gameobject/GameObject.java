@@ -34,9 +34,14 @@ public class GameObject {
 
     /**
      * Method to unreferenced the components, children and parent, especially to cut the cross referenced between the Transform and the GameObject.
+     * Calls the {@link Component#onDestroy()} method of each component and destroys the children first.
      * @param gameObject
      */
     public static void destroy(GameObject gameObject){
+        for (GameObject child : gameObject.children)
+            destroy(child);
+        for (Component c : gameObject.components)
+            c.onDestroy();
         for (Component c : gameObject.components) {
             c.gameObject = null;
             c.transform = null;
@@ -94,7 +99,8 @@ public class GameObject {
      * @return the component found, null if none was found.
      */
     public <T extends Component> T getCompotent(Class<T> type) {
-        for (Component c : components) {
+        for (int i = 0; i < components.size(); i++) {
+            Component c = components.get(i);
             if (type.isInstance(c))
                 return type.cast(c);
         }
@@ -111,11 +117,13 @@ public class GameObject {
 
     /**
      * Add a child to the list of children and set the child parent to this instance.
+     * The transform of the child is attached to the transform of this instance in the store.
      * @param child
      */
     public void addChildren(GameObject child) {
         this.children.add(child);
         child.parent = this;
+        child.transform.setParent(transform);
     }
 
     /**
@@ -145,13 +153,11 @@ public class GameObject {
      * Calls all {@link Component#earlyUpdate()}  method for each component and calls this method for each child.
      */
     public void earlyUpdate() {
-        for (Component c : components) {
-            c.earlyUpdate();
+        for (int i = 0; i < components.size(); i++) {
+            components.get(i).earlyUpdate();
         }
-        if (this.children.size() > 0) {
-            for (GameObject go : this.children) {
-                go.earlyUpdate();
-            }
+        for (int i = 0; i < children.size(); i++) {
+            children.get(i).earlyUpdate();
         }
     }
 
@@ -160,13 +166,11 @@ public class GameObject {
      * Calls all {@link Component#update()} method for each component and calls this method for each child.
      */
     public void update() {
-        for (Component c : components) {
-            c.update();
+        for (int i = 0; i < components.size(); i++) {
+            components.get(i).update();
         }
-        if (this.children.size() > 0) {
-            for (GameObject go : this.children) {
-                go.update();
-            }
+        for (int i = 0; i < children.size(); i++) {
+            children.get(i).update();
         }
     }
 
@@ -175,13 +179,11 @@ public class GameObject {
      * Calls all {@link Component#lateUpdate()} method for each component and calls this method for each child.
      */
     public void lateUpdate() {
-        for (Component c : components) {
-            c.lateUpdate();
+        for (int i = 0; i < components.size(); i++) {
+            components.get(i).lateUpdate();
         }
-        if (this.children.size() > 0) {
-            for (GameObject go : this.children) {
-                go.lateUpdate();
-            }
+        for (int i = 0; i < children.size(); i++) {
+            children.get(i).lateUpdate();
         }
     }
 }
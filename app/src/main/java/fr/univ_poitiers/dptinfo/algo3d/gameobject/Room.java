@@ -1,8 +1,8 @@
 package fr.univ_poitiers.dptinfo.algo3d.gameobject;
 
-
 import android.opengl.GLES20;
 
+import fr.univ_poitiers.dptinfo.algo3d.gl.GL;
 import fr.univ_poitiers.dptinfo.algo3d.mesh.Material;
 import fr.univ_poitiers.dptinfo.algo3d.mesh.Plane;
 
@@ -53,17 +53,18 @@ public class Room extends GameObject {
      */
     @Override
     public void lateUpdate() {
-        for (Component c : components) {
-            c.lateUpdate();
+        for (int i = 0; i < components.size(); i++) {
+            components.get(i).lateUpdate();
         }
         if (this.children.size() > 0) {
-            for (GameObject go : this.children) {
+            for (int i = 0; i < children.size(); i++) {
+                GameObject go = children.get(i);
                 //si go est le sol
                 if (go.getTransform().getPosx() == 0 && go.getTransform().getPosy() == 0 && go.getTransform().getPosz() == 0) {
-                    GLES20.glEnable(GLES20.GL_BLEND);
-                    GLES20.glBlendFunc(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE_MINUS_SRC_ALPHA);
+                    GL.glEnable(GLES20.GL_BLEND);
+                    GL.glBlendFunc(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE_MINUS_SRC_ALPHA);
                     go.lateUpdate();
-                    GLES20.glDisable(GLES20.GL_BLEND);
+                    GL.glDisable(GLES20.GL_BLEND);
                 } else {
                     go.lateUpdate();
                 }
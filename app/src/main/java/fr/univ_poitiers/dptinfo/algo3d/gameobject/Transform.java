@@ -1,27 +1,45 @@
 package fr.univ_poitiers.dptinfo.algo3d.gameobject;
 
-import android.opengl.Matrix;
-import fr.univ_poitiers.dptinfo.algo3d.Vec3f;
-
 /**
  * Class to represent the Transform of a GameObject, to manipule its position, rotation and scale.
+ * The values and the matrices are stored in the {@link TransformStore}, this class is a handle to an object of the store.
  */
 public class Transform extends Component{
 
     /**
-     * Vec3f storing the position.
+     * Store containing the values and matrices of the transform.
+     */
+    private final TransformStore store;
+
+    /**
+     * Id of the transform in the store, -1 once destroyed.
      */
-    private Vec3f pos;
+    private int id;
 
     /**
-     * Vec3f storing the rotation, with euler angles.
+     * Copy of the global matrix.
      */
-    private Vec3f rot;
+    private final float[] globalMatrix = new float[16];
 
     /**
-     * Vec3f storing the scale.
+     * Version of the global matrix of the store when it was copied, -1 if never copied.
      */
-    private Vec3f scale;
+    private int globalVersion = -1;
+
+    /**
+     * Copy of the local matrix.
+     */
+    private final float[] localMatrix = new float[16];
+
+    /**
+     * Quaternion given to the store by {@link #rotation(float, float, float, float)}.
+     */
+    private final float[] quaternion = new float[4];
+
+    /**
+     * Identity matrix returned as the parent matrix of the objects without parent.
+     */
+    private static final float[] IDENTITY = {1.F, 0.F, 0.F, 0.F, 0.F, 1.F, 0.F, 0.F, 0.F, 0.F, 1.F, 0.F, 0.F, 0.F, 0.F, 1.F};
 
     /**
      * Constructor.
@@ -30,58 +48,71 @@ public class Transform extends Component{
     public Transform(GameObject gameObject) {
         super(gameObject);
         transform = this;
-        pos = new Vec3f();
-        rot = new Vec3f();
-        scale = new Vec3f(1.0f,1.0f,1.0f);
+        store = TransformStore.getInstance();
+        id = store.add();
+    }
+
+    /**
+     * Set the parent of the transform in the store.
+     * @param parent - the transform of the parent
+     */
+    void setParent(Transform parent) {
+        store.setParent(id, parent.id);
     }
 
+    /**
+     * Remove the transform from the store.
+     */
+    @Override
+    public void onDestroy() {
+        store.release(id);
+        id = -1;
+    }
 
     /**
-     * Returns an array corresponding to the local Model Matrix of the GameObject.
+     * Returns the local Model Matrix of the GameObject, the store being updated first if needed.
+     * The array is a copy kept by the transform and must not be modified.
      * @return float array with a size of 16, representing a 4*4 local model matrix
      */
     public float[] getLocalModelMatrix(){
-        float[] modelMatrix = new float[16];
-        Matrix.setIdentityM(modelMatrix,0);
-        Matrix.translateM(modelMatrix,0,pos.x,pos.y,pos.z);
-        Matrix.rotateM(modelMatrix, 0, rot.z, 0.0F, 0.0F, 1.0F);
-        Matrix.rotateM(modelMatrix, 0, rot.x, 1.0F, 0.0F, 0.0F);
-        Matrix.rotateM(modelMatrix, 0, rot.y, 0.0F, 1.0F, 0.0F);
-        Matrix.scaleM(modelMatrix,0,scale.x,scale.y,scale.z);
-        return modelMatrix;
+        store.update();
+        System.arraycopy(store.localMatrices, store.slot(id) * 16, localMatrix, 0, 16);
+        return localMatrix;
     }
 
     /**
-     * Returns an array corresponding to the global Model Matrix, by getting its parent global Model Matrix recursively.
-     * Not a good solution, because every child call the method for its parent so each matrix are calculated as many times as they have children.
-     * I did it because i found it easier to do without breaking my design and also because it was easier for me to debug, each object do its own calculation.
-     * Should go the other way, the parent should give its matrix to its children.
+     * Returns the global Model Matrix, the local one multiplied by the global Model Matrix of the parent.
+     * The store is updated first if needed, and the matrix is copied from the store only if it changed.
+     * The array is a copy kept by the transform and must not be modified.
      * @return float array with a size of 16, representing a 4*4 global model matrix
      */
     public float[] getGlobalModelMatrix(){
-        if (gameObject.getParent() == null) {
-            return getLocalModelMatrix();
-        } else {
-            float[] modelviewmatrix = new float[16];
-            Matrix.multiplyMM(modelviewmatrix,0,gameObject.getParent().getTransform().getGlobalModelMatrix(),0, getLocalModelMatrix(),0);
-            return modelviewmatrix;
+        store.update();
+        int slot = store.slot(id);
+        if (globalVersion != store.versions[slot]) {
+            System.arraycopy(store.globalMatrices, slot * 16, globalMatrix, 0, 16);
+            globalVersion = store.versions[slot];
         }
+        return globalMatrix;
+    }
+
+    /**
+     * Copy the global Model Matrix into the given array, without allocating anything.
+     * @param result - float array with a size of 16, receiving the 4*4 global model matrix
+     */
+    public void getGlobalModelMatrix(float[] result) {
+        store.getGlobalMatrix(id, result, 0);
     }
 
     /**
      * Returns the global Model Matrix of the parent GameObject or the Identity Matrix if there is none.
+     * The array must not be modified.
      * @return float array with a size of 16, representing a 4*4 parent global model matrix
      */
     public float[] getParentModelViewMatrix() {
-        float[] modelviewmatrix = new float[16];
-        if (gameObject.getParent() == null) {
-
-            Matrix.setIdentityM(modelviewmatrix,0);
-            return modelviewmatrix;
-        } else {
-            this.gameObject.getParent().getTransform().getGlobalModelMatrix();
-        }
-        return new float[0];
+        if (gameObject.getParent() == null)
+            return IDENTITY;
+        return gameObject.getParent().getTransform().getGlobalModelMatrix();
     }
 
     /**
@@ -89,7 +120,7 @@ public class Transform extends Component{
      * @return
      */
     public float getPosx() {
-        return pos.x;
+        return store.positions[store.slot(id) * 3];
     }
 
     /**
@@ -97,7 +128,7 @@ public class Transform extends Component{
      * @return the modified instance
      */
     public Transform posx(float posx) {
-        this.pos.x = posx;
+        store.set(store.positions, id, 0, posx);
         return this;
     }
 
@@ -106,7 +137,7 @@ public class Transform extends Component{
      * @return
      */
     public float getPosy() {
-        return pos.y;
+        return store.positions[store.slot(id) * 3 + 1];
     }
 
     /**
@@ -114,7 +145,7 @@ public class Transform extends Component{
      * @return the modified instance
      */
     public Transform posy(float posy) {
-        this.pos.y = posy;
+        store.set(store.positions, id, 1, posy);
         return this;
     }
 
@@ -123,7 +154,7 @@ public class Transform extends Component{
      * @return
      */
     public float getPosz() {
-        return pos.z;
+        return store.positions[store.slot(id) * 3 + 2];
     }
 
     /**
@@ -131,7 +162,7 @@ public class Transform extends Component{
      * @return the modified instance
      */
     public Transform posz(float posz) {
-        this.pos.z = posz;
+        store.set(store.positions, id, 2, posz);
         return this;
     }
 
@@ -140,7 +171,7 @@ public class Transform extends Component{
      * @return
      */
     public float getRotx() {
-        return rot.x;
+        return store.rotations[store.slot(id) * 3];
     }
 
     /**
@@ -148,7 +179,7 @@ public class Transform extends Component{
      * @return the modified instance
      */
     public Transform rotx(float rotx) {
-        this.rot.x = rotx;
+        store.set(store.rotations, id, 0, rotx);
         return this;
     }
 
@@ -157,7 +188,7 @@ public class Transform extends Component{
      * @return
      */
     public float getRoty() {
-        return rot.y;
+        return store.rotations[store.slot(id) * 3 + 1];
     }
 
     /**
@@ -165,7 +196,7 @@ public class Transform extends Component{
      * @return the modified instance
      */
     public Transform roty(float roty) {
-        this.rot.y = roty;
+        store.set(store.rotations, id, 1, roty);
         return this;
     }
 
@@ -174,7 +205,7 @@ public class Transform extends Component{
      * @return
      */
     public float getRotz() {
-        return rot.z;
+        return store.rotations[store.slot(id) * 3 + 2];
     }
 
     /**
@@ -182,7 +213,40 @@ public class Transform extends Component{
      * @return the modified instance
      */
     public Transform rotz(float rotz) {
-        this.rot.z = rotz;
+        store.set(store.rotations, id, 2, rotz);
+        return this;
+    }
+
+    /**
+     * Copy the rotation as a unit quaternion x, y, z, w.
+     * @param result - float array with a size of 4 receiving the quaternion
+     */
+    public void getRotation(float[] result) {
+        store.getQuaternion(id, result, 0);
+    }
+
+    /**
+     * Set the rotation with a quaternion, normalized, the euler angles being computed from it.
+     * @return the modified instance
+     */
+    public Transform rotation(float x, float y, float z, float w) {
+        quaternion[0] = x;
+        quaternion[1] = y;
+        quaternion[2] = z;
+        quaternion[3] = w;
+        store.setQuaternion(id, quaternion, 0);
+        return this;
+    }
+
+    /**
+     * Set the rotation to the spherical interpolation of two quaternions, along the shortest path.
+     * @param from - float array with a size of 4, the unit quaternion at t = 0
+     * @param to - float array with a size of 4, the unit quaternion at t = 1
+     * @param t - interpolation parameter, between 0 and 1
+     * @return the modified instance
+     */
+    public Transform slerp(float[] from, float[] to, float t) {
+        store.slerpRotation(id, from, 0, to, 0, t);
         return this;
     }
 
@@ -191,7 +255,7 @@ public class Transform extends Component{
      * @return
      */
     public float getScalex() {
-        return scale.x;
+        return store.scales[store.slot(id) * 3];
     }
 
     /**
@@ -199,7 +263,7 @@ public class Transform extends Component{
      * @return the modified instance
      */
     public Transform scalex(float scalex) {
-        this.scale.x = scalex;
+        store.set(store.scales, id, 0, scalex);
         return this;
     }
 
@@ -208,7 +272,7 @@ public class Transform extends Component{
      * @return
      */
     public float getScaley() {
-        return scale.y;
+        return store.scales[store.slot(id) * 3 + 1];
     }
 
     /**
@@ -216,7 +280,7 @@ public class Transform extends Component{
      * @return the modified instance
      */
     public Transform scaley(float scaley) {
-        this.scale.y = scaley;
+        store.set(store.scales, id, 1, scaley);
         return this;
     }
 
@@ -225,7 +289,7 @@ public class Transform extends Component{
      * @return
      */
     public float getScalez() {
-        return scale.z;
+        return store.scales[store.slot(id) * 3 + 2];
     }
 
     /**
@@ -233,7 +297,7 @@ public class Transform extends Component{
      * @return the modified instance
      */
     public Transform scalez(float scalez) {
-        this.scale.z = scalez;
+        store.set(store.scales, id, 2, scalez);
         return this;
     }
 }
@@ -0,0 +1,590 @@
+package fr.univ_poitiers.dptinfo.algo3d.gameobject;
+
+import fr.univ_poitiers.dptinfo.algo3d.math.Mat4f;
+import fr.univ_poitiers.dptinfo.algo3d.math.Quatf;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Class to store the transforms of many objects in contiguous arrays of primitives.
+ * The position, rotation and scale are 3 floats per object, the rotation as a quaternion 4 floats,
+ * the local and global matrices 16 floats per object.
+ * The objects are kept sorted by level in the hierarchy, so a parent is always before its children,
+ * and all the global matrices are updated by {@link #update()} in one linear pass.
+ * Only the objects whose transform or parent changed since the last update are computed again.
+ * The objects of a level only depend on the previous levels, so the large levels are split into ranges computed in parallel,
+ * each object being computed with the same operations as serially, so the result is identical.
+ * Each object is known by an id which does not change, while its slot in the arrays changes when the objects are sorted.
+ */
+public class TransformStore {
+
+    /**
+     * Initial capacity of the arrays, in objects.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Minimal number of objects of a level for it to be computed in parallel, smaller levels are faster to compute serially.
+     */
+    static final int MIN_PARALLEL_OBJECTS = 4096;
+
+    /**
+     * Minimal number of objects of a range computed in parallel.
+     */
+    private static final int MIN_RANGE_OBJECTS = 1024;
+
+    /**
+     * Number of slots used in the arrays, by alive or released objects.
+     */
+    private int count;
+    /**
+     * Position, rotation in euler angles and scale of the objects, 3 floats per object.
+     */
+    float[] positions, rotations, scales;
+    /**
+     * Rotation of the objects as unit quaternions x, y, z, w, 4 floats per object, from which the local matrices are composed.
+     * Kept equal to the rotation in euler angles.
+     */
+    float[] quaternions;
+    /**
+     * Local and global matrices of the objects, 16 floats per object.
+     */
+    float[] localMatrices, globalMatrices;
+    /**
+     * Index of the parent of each object, -1 for the roots.
+     */
+    int[] parents;
+    /**
+     * True for the objects whose position, rotation or scale changed since the last update.
+     */
+    boolean[] localDirty;
+    /**
+     * True for the objects whose global matrix was computed by the last update.
+     */
+    boolean[] globalChanged;
+    /**
+     * For each object, incremented each time its global matrix is computed.
+     */
+    int[] versions;
+    /**
+     * For each object, false once it is released.
+     */
+    private boolean[] alive;
+    /**
+     * Id of the object in each slot.
+     */
+    private int[] ids;
+    /**
+     * Slot of each id, -1 for the free ids.
+     */
+    private int[] slots = new int[0];
+    /**
+     * Ids released, to be given again to the new objects.
+     */
+    private int[] freeIds = new int[0];
+    /**
+     * Number of free ids.
+     */
+    private int freeCount;
+
+    /**
+     * For each level of the hierarchy, the index of its first object, the roots being the level 0.
+     * The last element is the number of objects.
+     */
+    int[] levelStart = new int[]{0};
+    /**
+     * Number of levels of the hierarchy.
+     */
+    int levelsCount;
+
+    /**
+     * Pool computing the large levels in parallel, null to compute everything serially.
+     */
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    /**
+     * True if an object was added, released or changed of parent since the objects were sorted.
+     */
+    private boolean hierarchyDirty;
+    /**
+     * True if an object changed since the last update.
+     */
+    private boolean anyDirty;
+
+    /**
+     * Store used by the transforms of the GameObjects.
+     */
+    private static TransformStore INSTANCE;
+
+    /**
+     * Constructor of an empty store.
+     */
+    public TransformStore() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Returns the store used by the transforms of the GameObjects.
+     * Thread proof with double check to not put the synchronized over all the method.
+     * @return the store
+     */
+    public static TransformStore getInstance() {
+        if (INSTANCE != null)
+            return INSTANCE;
+        synchronized (TransformStore.class) {
+            if (INSTANCE == null)
+                INSTANCE = new TransformStore();
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * Replace the store used by the new transforms with an empty one.
+     * To be called when a scene is built : the transforms of the previous scene keep their own store,
+     * which is then collected with them instead of keeping their values in the arrays of the new scene.
+     */
+    public static void reset() {
+        synchronized (TransformStore.class) {
+            INSTANCE = new TransformStore();
+        }
+    }
+
+    /**
+     * Resize the arrays.
+     * @param capacity - the new number of objects the arrays can contain
+     */
+    private void allocate(int capacity) {
+        positions = positions == null ? new float[capacity * 3] : Arrays.copyOf(positions, capacity * 3);
+        rotations = rotations == null ? new float[capacity * 3] : Arrays.copyOf(rotations, capacity * 3);
+        scales = scales == null ? new float[capacity * 3] : Arrays.copyOf(scales, capacity * 3);
+        quaternions = quaternions == null ? new float[capacity * 4] : Arrays.copyOf(quaternions, capacity * 4);
+        localMatrices = localMatrices == null ? new float[capacity * 16] : Arrays.copyOf(localMatrices, capacity * 16);
+        globalMatrices = globalMatrices == null ? new float[capacity * 16] : Arrays.copyOf(globalMatrices, capacity * 16);
+        parents = parents == null ? new int[capacity] : Arrays.copyOf(parents, capacity);
+        localDirty = localDirty == null ? new boolean[capacity] : Arrays.copyOf(localDirty, capacity);
+        globalChanged = globalChanged == null ? new boolean[capacity] : Arrays.copyOf(globalChanged, capacity);
+        versions = versions == null ? new int[capacity] : Arrays.copyOf(versions, capacity);
+        alive = alive == null ? new boolean[capacity] : Arrays.copyOf(alive, capacity);
+        ids = ids == null ? new int[capacity] : Arrays.copyOf(ids, capacity);
+    }
+
+    /**
+     * Set the pool computing the large levels of the hierarchy in parallel, the common pool by default.
+     * @param pool - the pool, null to compute everything serially
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Returns the slot of an object in the arrays, valid until the objects are sorted by {@link #update()}.
+     * @param id - the id of the object
+     * @return the slot of the object
+     */
+    int slot(int id) {
+        return slots[id];
+    }
+
+    /**
+     * Add an object with the identity transform and no parent.
+     * @return the id of the object
+     */
+    public int add() {
+        if (count == parents.length)
+            allocate(count * 2);
+        int id;
+        if (freeCount > 0) {
+            id = freeIds[--freeCount];
+        } else {
+            id = slots.length;
+            slots = Arrays.copyOf(slots, Math.max(INITIAL_CAPACITY, slots.length * 2));
+            Arrays.fill(slots, id, slots.length, -1);
+            freeIds = Arrays.copyOf(freeIds, slots.length);
+            for (int i = slots.length - 1; i > id; i--)
+                freeIds[freeCount++] = i;
+        }
+        int index = count++;
+        slots[id] = index;
+        ids[index] = id;
+        positions[index * 3] = positions[index * 3 + 1] = positions[index * 3 + 2] = 0.F;
+        rotations[index * 3] = rotations[index * 3 + 1] = rotations[index * 3 + 2] = 0.F;
+        scales[index * 3] = scales[index * 3 + 1] = scales[index * 3 + 2] = 1.F;
+        Quatf.setIdentity(quaternions, index * 4);
+        parents[index] = -1;
+        localDirty[index] = true;
+        versions[index] = 0;
+        alive[index] = true;
+        hierarchyDirty = true;
+        anyDirty = true;
+        return id;
+    }
+
+    /**
+     * Release an object, removed from the arrays when the objects are sorted.
+     * Its children become roots and its id can be given to a new object.
+     * @param id - the id of the object
+     */
+    public void release(int id) {
+        int index = slots[id];
+        alive[index] = false;
+        slots[id] = -1;
+        freeIds[freeCount++] = id;
+        for (int i = 0; i < count; i++) {
+            if (parents[i] == index) {
+                parents[i] = -1;
+                localDirty[i] = true;
+            }
+        }
+        hierarchyDirty = true;
+        anyDirty = true;
+    }
+
+    /**
+     * Set the parent of an object.
+     * @param id - the id of the object
+     * @param parentId - the id of its parent, -1 for no parent
+     */
+    public void setParent(int id, int parentId) {
+        int index = slots[id];
+        int parent = parentId < 0 ? -1 : slots[parentId];
+        for (int p = parent; p >= 0; p = parents[p])
+            if (p == index)
+                throw new IllegalArgumentException("An object can not be its own ancestor.");
+        parents[index] = parent;
+        localDirty[index] = true;
+        hierarchyDirty = true;
+        anyDirty = true;
+    }
+
+    /**
+     * Set a component of the position, the rotation or the scale of an object.
+     * @param array - {@link #positions}, {@link #rotations} or {@link #scales}
+     * @param id - the id of the object
+     * @param component - 0, 1 or 2 for x, y or z
+     * @param value - the new value
+     */
+    void set(float[] array, int id, int component, float value) {
+        int index = slots[id];
+        array[index * 3 + component] = value;
+        if (array == rotations)
+            Quatf.fromEuler(quaternions, index * 4, rotations[index * 3], rotations[index * 3 + 1], rotations[index * 3 + 2]);
+        localDirty[index] = true;
+        anyDirty = true;
+    }
+
+    /**
+     * Set the position of an object.
+     * @param id - the id of the object
+     * @param x - x coordinate
+     * @param y - y coordinate
+     * @param z - z coordinate
+     */
+    public void setPosition(int id, float x, float y, float z) {
+        int index = slots[id];
+        positions[index * 3] = x;
+        positions[index * 3 + 1] = y;
+        positions[index * 3 + 2] = z;
+        localDirty[index] = true;
+        anyDirty = true;
+    }
+
+    /**
+     * Set the rotation of an object with euler angles.
+     * @param id - the id of the object
+     * @param x - angle around the x axis, in degrees
+     * @param y - angle around the y axis, in degrees
+     * @param z - angle around the z axis, in degrees
+     */
+    public void setRotation(int id, float x, float y, float z) {
+        int index = slots[id];
+        rotations[index * 3] = x;
+        rotations[index * 3 + 1] = y;
+        rotations[index * 3 + 2] = z;
+        Quatf.fromEuler(quaternions, index * 4, x, y, z);
+        localDirty[index] = true;
+        anyDirty = true;
+    }
+
+    /**
+     * Set the rotation of an object with a quaternion, normalized, the euler angles being computed from it.
+     * @param id - the id of the object
+     * @param q - array of the quaternion x, y, z, w
+     * @param o - offset of the quaternion in the array
+     */
+    public void setQuaternion(int id, float[] q, int o) {
+        int index = slots[id];
+        System.arraycopy(q, o, quaternions, index * 4, 4);
+        rotationChanged(index);
+    }
+
+    /**
+     * Set the rotation of an object to the spherical interpolation of two quaternions.
+     * @param id - the id of the object
+     * @param from - array of the quaternion at t = 0
+     * @param fromOffset - offset of the first quaternion
+     * @param to - array of the quaternion at t = 1
+     * @param toOffset - offset of the second quaternion
+     * @param t - interpolation parameter, between 0 and 1
+     */
+    public void slerpRotation(int id, float[] from, int fromOffset, float[] to, int toOffset, float t) {
+        int index = slots[id];
+        Quatf.slerp(quaternions, index * 4, from, fromOffset, to, toOffset, t);
+        rotationChanged(index);
+    }
+
+    /**
+     * Normalize the quaternion of an object just changed and compute its euler angles.
+     * @param index - the slot of the object
+     */
+    private void rotationChanged(int index) {
+        Quatf.normalize(quaternions, index * 4);
+        Quatf.toEuler(quaternions, index * 4, rotations, index * 3);
+        localDirty[index] = true;
+        anyDirty = true;
+    }
+
+    /**
+     * Copy the rotation of an object as a quaternion.
+     * @param id - the id of the object
+     * @param result - array receiving the quaternion x, y, z, w
+     * @param offset - offset of the quaternion in the array
+     */
+    public void getQuaternion(int id, float[] result, int offset) {
+        System.arraycopy(quaternions, slots[id] * 4, result, offset, 4);
+    }
+
+    /**
+     * Set the scale of an object.
+     * @param id - the id of the object
+     * @param x - scale along the x axis
+     * @param y - scale along the y axis
+     * @param z - scale along the z axis
+     */
+    public void setScale(int id, float x, float y, float z) {
+        int index = slots[id];
+        scales[index * 3] = x;
+        scales[index * 3 + 1] = y;
+        scales[index * 3 + 2] = z;
+        localDirty[index] = true;
+        anyDirty = true;
+    }
+
+    /**
+     * Returns the number of objects, including the released ones not removed yet.
+     * @return the number of objects
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Copy the global matrix of an object, the store being updated first if needed.
+     * @param id - the id of the object
+     * @param result - float array receiving the 4*4 matrix
+     * @param offset - index of the first element of the matrix in the array
+     */
+    public void getGlobalMatrix(int id, float[] result, int offset) {
+        update();
+        System.arraycopy(globalMatrices, slots[id] * 16, result, offset, 16);
+    }
+
+    /**
+     * Update the global matrices of the objects that changed, or whose parent changed, since the last update.
+     * The objects are sorted first if the hierarchy changed.
+     * The levels with at least {@link #MIN_PARALLEL_OBJECTS} objects are computed in parallel if a pool is set.
+     */
+    public void update() {
+        if (hierarchyDirty)
+            sort();
+        if (!anyDirty)
+            return;
+        if (pool == null || count < MIN_PARALLEL_OBJECTS) {
+            updateRange(0, count);
+        } else {
+            for (int level = 0; level < levelsCount; level++) {
+                int start = levelStart[level], end = levelStart[level + 1];
+                if (end - start < MIN_PARALLEL_OBJECTS)
+                    updateRange(start, end);
+                else
+                    updateParallel(start, end);
+            }
+        }
+        anyDirty = false;
+    }
+
+    /**
+     * Split a range of objects, whose parents are already updated, into ranges computed in the pool.
+     * @param start - index of the first object
+     * @param end - index after the last object
+     */
+    private void updateParallel(int start, int end) {
+        int size = end - start;
+        int nbRanges = Math.max(1, Math.min(pool.getParallelism() * 4, size / MIN_RANGE_OBJECTS));
+        List<Callable<Void>> tasks = new ArrayList<>(nbRanges);
+        for (int i = 0; i < nbRanges; i++)
+            tasks.add(new RangeUpdate(start + (int) ((long) size * i / nbRanges), start + (int) ((long) size * (i + 1) / nbRanges)));
+        List<Future<Void>> results = pool.invokeAll(tasks);
+        try {
+            for (Future<Void> result : results)
+                result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Transforms update interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error while updating the transforms", e.getCause());
+        }
+    }
+
+    /**
+     * Update the matrices of a range of objects, their parents being already updated.
+     * Only the values of the objects of the range are written.
+     * @param start - index of the first object
+     * @param end - index after the last object
+     */
+    void updateRange(int start, int end) {
+        for (int i = start; i < end; i++) {
+            int parent = parents[i];
+            boolean changed = localDirty[i] || (parent >= 0 && globalChanged[parent]);
+            globalChanged[i] = changed;
+            if (!changed)
+                continue;
+            if (localDirty[i]) {
+                computeLocal(i);
+                localDirty[i] = false;
+            }
+            if (parent < 0)
+                System.arraycopy(localMatrices, i * 16, globalMatrices, i * 16, 16);
+            else
+                Mat4f.multiply(globalMatrices, i * 16, globalMatrices, parent * 16, localMatrices, i * 16);
+            versions[i]++;
+        }
+    }
+
+    /**
+     * Compute the local matrix of an object : translation, rotation and scale, composed directly from the quaternion.
+     * @param i - the index of the object
+     */
+    private void computeLocal(int i) {
+        Quatf.toTRSMatrix(localMatrices, i * 16, positions, i * 3, quaternions, i * 4, scales, i * 3);
+    }
+
+    /**
+     * Task updating a range of objects in the pool.
+     */
+    private class RangeUpdate implements Callable<Void> {
+        /**
+         * First object of the range.
+         */
+        private final int start;
+        /**
+         * Object after the last one of the range.
+         */
+        private final int end;
+
+        /**
+         * Constructor.
+         * @param start - first object
+         * @param end - object after the last one
+         */
+        RangeUpdate(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public Void call() {
+            updateRange(start, end);
+            return null;
+        }
+    }
+
+    /**
+     * Sort the alive objects by level in the hierarchy, keeping their order inside a level, and remove the released ones.
+     * The arrays are permuted and the slots of the ids updated.
+     */
+    private void sort() {
+        //children of each object, in compressed rows
+        int[] childStart = new int[count + 1];
+        for (int i = 0; i < count; i++)
+            if (alive[i] && parents[i] >= 0)
+                childStart[parents[i] + 1]++;
+        for (int i = 0; i < count; i++)
+            childStart[i + 1] += childStart[i];
+        int[] children = new int[childStart[count]];
+        int[] fill = Arrays.copyOf(childStart, count);
+        for (int i = 0; i < count; i++)
+            if (alive[i] && parents[i] >= 0)
+                children[fill[parents[i]]++] = i;
+
+        //breadth first order from the roots, level by level
+        int[] order = new int[count];
+        int ordered = 0;
+        for (int i = 0; i < count; i++)
+            if (alive[i] && parents[i] < 0)
+                order[ordered++] = i;
+        int[] levels = new int[count + 2];
+        int nbLevels = 0;
+        int levelBegin = 0;
+        while (levelBegin < ordered) {
+            levels[nbLevels++] = levelBegin;
+            int levelEnd = ordered;
+            for (int k = levelBegin; k < levelEnd; k++) {
+                int o = order[k];
+                for (int c = childStart[o]; c < childStart[o + 1]; c++)
+                    order[ordered++] = children[c];
+            }
+            levelBegin = levelEnd;
+        }
+        levels[nbLevels] = ordered;
+        levelStart = Arrays.copyOf(levels, nbLevels + 1);
+        levelsCount = nbLevels;
+
+        int[] newIndex = new int[count];
+        for (int k = 0; k < ordered; k++)
+            newIndex[order[k]] = k;
+        int capacity = parents.length;
+        float[] newPositions = new float[capacity * 3], newRotations = new float[capacity * 3], newScales = new float[capacity * 3];
+        float[] newQuaternions = new float[capacity * 4];
+        float[] newLocal = new float[capacity * 16], newGlobal = new float[capacity * 16];
+        int[] newParents = new int[capacity], newVersions = new int[capacity];
+        boolean[] newLocalDirty = new boolean[capacity], newAlive = new boolean[capacity];
+        int[] newIds = new int[capacity];
+        for (int k = 0; k < ordered; k++) {
+            int i = order[k];
+            System.arraycopy(positions, i * 3, newPositions, k * 3, 3);
+            System.arraycopy(rotations, i * 3, newRotations, k * 3, 3);
+            System.arraycopy(scales, i * 3, newScales, k * 3, 3);
+            System.arraycopy(quaternions, i * 4, newQuaternions, k * 4, 4);
+            System.arraycopy(localMatrices, i * 16, newLocal, k * 16, 16);
+            System.arraycopy(globalMatrices, i * 16, newGlobal, k * 16, 16);
+            newParents[k] = parents[i] < 0 ? -1 : newIndex[parents[i]];
+            newVersions[k] = versions[i];
+            //the global matrix of a moved object is computed again, its parent may have changed
+            newLocalDirty[k] = true;
+            newAlive[k] = true;
+            newIds[k] = ids[i];
+            slots[ids[i]] = k;
+        }
+        positions = newPositions;
+        rotations = newRotations;
+        scales = newScales;
+        quaternions = newQuaternions;
+        localMatrices = newLocal;
+        globalMatrices = newGlobal;
+        parents = newParents;
+        versions = newVersions;
+        localDirty = newLocalDirty;
+        alive = newAlive;
+        ids = newIds;
+        globalChanged = new boolean[capacity];
+        count = ordered;
+        hierarchyDirty = false;
+        anyDirty = true;
+    }
+}
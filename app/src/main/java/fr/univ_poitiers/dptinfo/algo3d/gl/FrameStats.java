@@ -0,0 +1,255 @@
+package fr.univ_poitiers.dptinfo.algo3d.gl;
+
+import java.util.Locale;
+
+/**
+ * Class to count the OpenGL work of each render pass of each frame, and keep the counts of the last frames in a rolling window.
+ * The counts are given by a {@link StatsBackend}, the passes are marked by the renderer with {@link #beginPass(Pass)} and {@link #endFrame()}.
+ * Nothing is allocated while counting and ending the frames, only {@link #getReport()} creates a string.
+ */
+public class FrameStats {
+
+    /**
+     * Render passes of a frame.
+     */
+    public enum Pass {
+        /**
+         * Rendering of the shadow map.
+         */
+        SHADOW,
+        /**
+         * Rendering of the reflection on the floor, with the setup of the frame.
+         */
+        REFLECTION,
+        /**
+         * Rendering of the scene.
+         */
+        MAIN
+    }
+
+    /**
+     * Counted values.
+     */
+    public enum Counter {
+        /**
+         * Number of glDrawArrays and glDrawElements.
+         */
+        DRAW_CALLS,
+        /**
+         * Number of triangles drawn.
+         */
+        TRIANGLES,
+        /**
+         * Number of glUseProgram changing the program in use.
+         */
+        PROGRAM_SWITCHES,
+        /**
+         * Number of glBindBuffer.
+         */
+        BUFFER_BINDS,
+        /**
+         * Number of glBindTexture.
+         */
+        TEXTURE_BINDS,
+        /**
+         * Number of glUniform.
+         */
+        UNIFORM_UPLOADS,
+        /**
+         * Number of bytes sent to the buffers and textures.
+         */
+        UPLOADED_BYTES
+    }
+
+    /**
+     * Default number of frames in the rolling window.
+     */
+    public static final int DEFAULT_WINDOW = 120;
+
+    /**
+     * Number of passes.
+     */
+    private static final int PASSES = Pass.values().length;
+    /**
+     * Number of counters.
+     */
+    private static final int COUNTERS = Counter.values().length;
+
+    /**
+     * Counts of the current frame, by pass then counter.
+     */
+    private final long[] current = new long[PASSES * COUNTERS];
+    /**
+     * Counts of the last frames, by pass then counter, in a ring of {@link #window} frames.
+     */
+    private final long[][] history = new long[PASSES * COUNTERS][];
+    /**
+     * Array used to sort the counts of the window to compute the percentiles.
+     */
+    private final long[] sorted;
+    /**
+     * Number of frames in the rolling window.
+     */
+    private final int window;
+    /**
+     * Index of the next frame in the ring.
+     */
+    private int next;
+    /**
+     * Number of frames ended, up to {@link #window}.
+     */
+    private int frames;
+    /**
+     * Offset of the counters of the current pass in {@link #current}, -1 outside of the passes.
+     */
+    private int passOffset = -1;
+
+    /**
+     * Constructor.
+     * @param window - number of frames in the rolling window
+     */
+    public FrameStats(int window) {
+        if (window <= 0)
+            throw new IllegalArgumentException("The window must contain at least one frame.");
+        this.window = window;
+        for (int i = 0; i < history.length; i++)
+            history[i] = new long[window];
+        sorted = new long[window];
+    }
+
+    /**
+     * Constructor with a window of {@link #DEFAULT_WINDOW} frames.
+     */
+    public FrameStats() {
+        this(DEFAULT_WINDOW);
+    }
+
+    /**
+     * Start to count for a pass of the current frame.
+     * @param pass - the pass
+     */
+    public void beginPass(Pass pass) {
+        passOffset = pass.ordinal() * COUNTERS;
+    }
+
+    /**
+     * Add a value to a counter of the current pass, if a pass is started.
+     * @param counter - the counter
+     * @param value - the value to add
+     */
+    void add(Counter counter, long value) {
+        if (passOffset >= 0)
+            current[passOffset + counter.ordinal()] += value;
+    }
+
+    /**
+     * End the current frame : its counts go in the rolling window and the counters are reset.
+     */
+    public void endFrame() {
+        for (int i = 0; i < current.length; i++) {
+            history[i][next] = current[i];
+            current[i] = 0;
+        }
+        next = (next + 1) % window;
+        if (frames < window)
+            frames++;
+        passOffset = -1;
+    }
+
+    /**
+     * Returns the size of the rolling window.
+     * @return the maximum number of frames in the window
+     */
+    public int getWindow() {
+        return window;
+    }
+
+    /**
+     * Returns the number of frames in the rolling window.
+     * @return the number of frames ended, up to the size of the window
+     */
+    public int getFramesCount() {
+        return frames;
+    }
+
+    /**
+     * Returns the value of a counter for a pass of the last ended frame.
+     * @param pass - the pass
+     * @param counter - the counter
+     * @return the value, 0 if no frame is ended
+     */
+    public long getLast(Pass pass, Counter counter) {
+        if (frames == 0)
+            return 0;
+        return history[pass.ordinal() * COUNTERS + counter.ordinal()][(next + window - 1) % window];
+    }
+
+    /**
+     * Returns the minimum of a counter for a pass over the rolling window.
+     * @param pass - the pass
+     * @param counter - the counter
+     * @return the minimum, 0 if no frame is ended
+     */
+    public long getMin(Pass pass, Counter counter) {
+        long[] values = history[pass.ordinal() * COUNTERS + counter.ordinal()];
+        long min = frames == 0 ? 0 : Long.MAX_VALUE;
+        for (int f = 0; f < frames; f++)
+            min = Math.min(min, values[f]);
+        return min;
+    }
+
+    /**
+     * Returns the average of a counter for a pass over the rolling window.
+     * @param pass - the pass
+     * @param counter - the counter
+     * @return the average, 0 if no frame is ended
+     */
+    public double getAverage(Pass pass, Counter counter) {
+        if (frames == 0)
+            return 0;
+        long[] values = history[pass.ordinal() * COUNTERS + counter.ordinal()];
+        long sum = 0;
+        for (int f = 0; f < frames; f++)
+            sum += values[f];
+        return sum / (double) frames;
+    }
+
+    /**
+     * Returns the 99th percentile of a counter for a pass over the rolling window, the value 99% of the frames do not exceed.
+     * @param pass - the pass
+     * @param counter - the counter
+     * @return the percentile, 0 if no frame is ended
+     */
+    public long getPercentile99(Pass pass, Counter counter) {
+        if (frames == 0)
+            return 0;
+        //insertion sort, the window is small and it is done in place
+        long[] values = history[pass.ordinal() * COUNTERS + counter.ordinal()];
+        for (int f = 0; f < frames; f++) {
+            long value = values[f];
+            int i = f;
+            while (i > 0 && sorted[i - 1] > value) {
+                sorted[i] = sorted[i - 1];
+                i--;
+            }
+            sorted[i] = value;
+        }
+        return sorted[(int) Math.ceil(frames * 0.99) - 1];
+    }
+
+    /**
+     * Returns a report of the counters of each pass over the rolling window, one line per pass and counter.
+     * @return the report
+     */
+    public String getReport() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.US, "Last %d frames (min / avg / p99) :", frames));
+        for (Pass pass : Pass.values()) {
+            report.append('\n').append(pass);
+            for (Counter counter : Counter.values())
+                report.append(String.format(Locale.US, "%n    %s : %d / %.1f / %d", counter,
+                        getMin(pass, counter), getAverage(pass, counter), getPercentile99(pass, counter)));
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,397 @@
+package fr.univ_poitiers.dptinfo.algo3d.gl;
+
+import android.graphics.Bitmap;
+
+import java.nio.Buffer;
+
+/**
+ * Class to give the OpenGL calls of the application to the backend in use, a {@link GLES20Backend} by default.
+ * The calls are the static methods of {@link android.opengl.GLES20}, so {@code GLES20.glDrawElements(...)} becomes {@code GL.glDrawElements(...)}.
+ * Another backend, like the {@link RecordingBackend}, allows to run and measure the rendering without a GPU.
+ */
+public final class GL {
+
+    /**
+     * The backend receiving the calls.
+     */
+    private static GLBackend backend = new GLES20Backend();
+
+    /**
+     * Constructor. Not to be used, all methods are static.
+     */
+    private GL() {
+    }
+
+    /**
+     * Returns the backend receiving the calls.
+     * @return the backend
+     */
+    public static GLBackend getBackend() {
+        return backend;
+    }
+
+    /**
+     * Set the backend receiving the calls, before the graphics are initialized.
+     * @param backend - the new backend
+     */
+    public static void setBackend(GLBackend backend) {
+        GL.backend = backend;
+    }
+
+    /**
+     * Select the active texture unit.
+     */
+    public static void glActiveTexture(int texture) {
+        backend.glActiveTexture(texture);
+    }
+
+    /**
+     * Attach a shader to a program.
+     */
+    public static void glAttachShader(int program, int shader) {
+        backend.glAttachShader(program, shader);
+    }
+
+    /**
+     * Bind a buffer to a target.
+     */
+    public static void glBindBuffer(int target, int buffer) {
+        backend.glBindBuffer(target, buffer);
+    }
+
+    /**
+     * Bind a frame buffer.
+     */
+    public static void glBindFramebuffer(int target, int framebuffer) {
+        backend.glBindFramebuffer(target, framebuffer);
+    }
+
+    /**
+     * Bind a texture to a target.
+     */
+    public static void glBindTexture(int target, int texture) {
+        backend.glBindTexture(target, texture);
+    }
+
+    /**
+     * Set the blending factors.
+     */
+    public static void glBlendFunc(int sfactor, int dfactor) {
+        backend.glBlendFunc(sfactor, dfactor);
+    }
+
+    /**
+     * Send the data of the buffer bound to the target.
+     */
+    public static void glBufferData(int target, int size, Buffer data, int usage) {
+        backend.glBufferData(target, size, data, usage);
+    }
+
+    /**
+     * Returns the completeness of the bound frame buffer.
+     */
+    public static int glCheckFramebufferStatus(int target) {
+        return backend.glCheckFramebufferStatus(target);
+    }
+
+    /**
+     * Clear the buffers of the mask.
+     */
+    public static void glClear(int mask) {
+        backend.glClear(mask);
+    }
+
+    /**
+     * Set the clear color.
+     */
+    public static void glClearColor(float red, float green, float blue, float alpha) {
+        backend.glClearColor(red, green, blue, alpha);
+    }
+
+    /**
+     * Compile a shader.
+     */
+    public static void glCompileShader(int shader) {
+        backend.glCompileShader(shader);
+    }
+
+    /**
+     * Create a program.
+     */
+    public static int glCreateProgram() {
+        return backend.glCreateProgram();
+    }
+
+    /**
+     * Create a shader.
+     */
+    public static int glCreateShader(int type) {
+        return backend.glCreateShader(type);
+    }
+
+    /**
+     * Set the culled faces.
+     */
+    public static void glCullFace(int mode) {
+        backend.glCullFace(mode);
+    }
+
+    /**
+     * Delete buffers.
+     */
+    public static void glDeleteBuffers(int n, int[] buffers, int offset) {
+        backend.glDeleteBuffers(n, buffers, offset);
+    }
+
+    /**
+     * Delete frame buffers.
+     */
+    public static void glDeleteFramebuffers(int n, int[] framebuffers, int offset) {
+        backend.glDeleteFramebuffers(n, framebuffers, offset);
+    }
+
+    /**
+     * Delete textures.
+     */
+    public static void glDeleteTextures(int n, int[] textures, int offset) {
+        backend.glDeleteTextures(n, textures, offset);
+    }
+
+    /**
+     * Set the depth comparison function.
+     */
+    public static void glDepthFunc(int func) {
+        backend.glDepthFunc(func);
+    }
+
+    /**
+     * Disable a capability.
+     */
+    public static void glDisable(int cap) {
+        backend.glDisable(cap);
+    }
+
+    /**
+     * Draw primitives from the vertex arrays.
+     */
+    public static void glDrawArrays(int mode, int first, int count) {
+        backend.glDrawArrays(mode, first, count);
+    }
+
+    /**
+     * Draw primitives from the bound index buffer.
+     */
+    public static void glDrawElements(int mode, int count, int type, int offset) {
+        backend.glDrawElements(mode, count, type, offset);
+    }
+
+    /**
+     * Enable a capability.
+     */
+    public static void glEnable(int cap) {
+        backend.glEnable(cap);
+    }
+
+    /**
+     * Enable a vertex attribute array.
+     */
+    public static void glEnableVertexAttribArray(int index) {
+        backend.glEnableVertexAttribArray(index);
+    }
+
+    /**
+     * Attach a texture to the bound frame buffer.
+     */
+    public static void glFramebufferTexture2D(int target, int attachment, int textarget, int texture, int level) {
+        backend.glFramebufferTexture2D(target, attachment, textarget, texture, level);
+    }
+
+    /**
+     * Set the orientation of the front faces.
+     */
+    public static void glFrontFace(int mode) {
+        backend.glFrontFace(mode);
+    }
+
+    /**
+     * Create buffers.
+     */
+    public static void glGenBuffers(int n, int[] buffers, int offset) {
+        backend.glGenBuffers(n, buffers, offset);
+    }
+
+    /**
+     * Create frame buffers.
+     */
+    public static void glGenFramebuffers(int n, int[] framebuffers, int offset) {
+        backend.glGenFramebuffers(n, framebuffers, offset);
+    }
+
+    /**
+     * Create textures.
+     */
+    public static void glGenTextures(int n, int[] textures, int offset) {
+        backend.glGenTextures(n, textures, offset);
+    }
+
+    /**
+     * Returns the location of an attribute of a program.
+     */
+    public static int glGetAttribLocation(int program, String name) {
+        return backend.glGetAttribLocation(program, name);
+    }
+
+    /**
+     * Returns the last error.
+     */
+    public static int glGetError() {
+        return backend.glGetError();
+    }
+
+    /**
+     * Returns the information log of a program.
+     */
+    public static String glGetProgramInfoLog(int program) {
+        return backend.glGetProgramInfoLog(program);
+    }
+
+    /**
+     * Get a parameter of a program.
+     */
+    public static void glGetProgramiv(int program, int pname, int[] params, int offset) {
+        backend.glGetProgramiv(program, pname, params, offset);
+    }
+
+    /**
+     * Returns the information log of a shader.
+     */
+    public static String glGetShaderInfoLog(int shader) {
+        return backend.glGetShaderInfoLog(shader);
+    }
+
+    /**
+     * Get a parameter of a shader.
+     */
+    public static void glGetShaderiv(int shader, int pname, int[] params, int offset) {
+        backend.glGetShaderiv(shader, pname, params, offset);
+    }
+
+    /**
+     * Returns the location of a uniform variable of a program.
+     */
+    public static int glGetUniformLocation(int program, String name) {
+        return backend.glGetUniformLocation(program, name);
+    }
+
+    /**
+     * Link a program.
+     */
+    public static void glLinkProgram(int program) {
+        backend.glLinkProgram(program);
+    }
+
+    /**
+     * Set the polygon offset.
+     */
+    public static void glPolygonOffset(float factor, float units) {
+        backend.glPolygonOffset(factor, units);
+    }
+
+    /**
+     * Set the source code of a shader.
+     */
+    public static void glShaderSource(int shader, String string) {
+        backend.glShaderSource(shader, string);
+    }
+
+    /**
+     * Send the image of the texture bound to the target.
+     */
+    public static void glTexImage2D(int target, int level, int internalformat, int width, int height, int border, int format, int type, Buffer pixels) {
+        backend.glTexImage2D(target, level, internalformat, width, height, border, format, type, pixels);
+    }
+
+    /**
+     * Set a parameter of the texture bound to the target.
+     */
+    public static void glTexParameteri(int target, int pname, int param) {
+        backend.glTexParameteri(target, pname, param);
+    }
+
+    /**
+     * Set a float uniform variable.
+     */
+    public static void glUniform1f(int location, float x) {
+        backend.glUniform1f(location, x);
+    }
+
+    /**
+     * Set an int uniform variable.
+     */
+    public static void glUniform1i(int location, int x) {
+        backend.glUniform1i(location, x);
+    }
+
+    /**
+     * Set vec3 uniform variables.
+     */
+    public static void glUniform3fv(int location, int count, float[] v, int offset) {
+        backend.glUniform3fv(location, count, v, offset);
+    }
+
+    /**
+     * Set vec4 uniform variables.
+     */
+    public static void glUniform4fv(int location, int count, float[] v, int offset) {
+        backend.glUniform4fv(location, count, v, offset);
+    }
+
+    /**
+     * Set mat3 uniform variables.
+     */
+    public static void glUniformMatrix3fv(int location, int count, boolean transpose, float[] value, int offset) {
+        backend.glUniformMatrix3fv(location, count, transpose, value, offset);
+    }
+
+    /**
+     * Set mat4 uniform variables.
+     */
+    public static void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset) {
+        backend.glUniformMatrix4fv(location, count, transpose, value, offset);
+    }
+
+    /**
+     * Use a program.
+     */
+    public static void glUseProgram(int program) {
+        backend.glUseProgram(program);
+    }
+
+    /**
+     * Set the format of a vertex attribute in the bound array buffer.
+     */
+    public static void glVertexAttribPointer(int indx, int size, int type, boolean normalized, int stride, int offset) {
+        backend.glVertexAttribPointer(indx, size, type, normalized, stride, offset);
+    }
+
+    /**
+     * Set the format of a vertex attribute in a client side array.
+     */
+    public static void glVertexAttribPointer(int indx, int size, int type, boolean normalized, int stride, Buffer ptr) {
+        backend.glVertexAttribPointer(indx, size, type, normalized, stride, ptr);
+    }
+
+    /**
+     * Set the viewport.
+     */
+    public static void glViewport(int x, int y, int width, int height) {
+        backend.glViewport(x, y, width, height);
+    }
+
+    /**
+     * Send a bitmap as the image of the texture bound to the target, like GLUtils.texImage2D.
+     */
+    public static void texImage2D(int target, int level, Bitmap bitmap, int border) {
+        backend.texImage2D(target, level, bitmap, border);
+    }
+}
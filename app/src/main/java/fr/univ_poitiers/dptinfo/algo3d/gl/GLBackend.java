@@ -0,0 +1,409 @@
+package fr.univ_poitiers.dptinfo.algo3d.gl;
+
+import android.graphics.Bitmap;
+
+import java.nio.Buffer;
+
+/**
+ * Interface of the OpenGL ES 2.0 calls used by the application, so the rendering can be done by another backend than the GPU.
+ * The methods have the names and the parameters of the {@link android.opengl.GLES20} methods, the constants of GLES20 are still used.
+ * The backend in use is set in {@link GL}.
+ */
+public interface GLBackend {
+
+    /**
+     * Select the active texture unit.
+     * @param texture
+     */
+    void glActiveTexture(int texture);
+
+    /**
+     * Attach a shader to a program.
+     * @param program
+     * @param shader
+     */
+    void glAttachShader(int program, int shader);
+
+    /**
+     * Bind a buffer to a target.
+     * @param target
+     * @param buffer
+     */
+    void glBindBuffer(int target, int buffer);
+
+    /**
+     * Bind a frame buffer.
+     * @param target
+     * @param framebuffer
+     */
+    void glBindFramebuffer(int target, int framebuffer);
+
+    /**
+     * Bind a texture to a target.
+     * @param target
+     * @param texture
+     */
+    void glBindTexture(int target, int texture);
+
+    /**
+     * Set the blending factors.
+     * @param sfactor
+     * @param dfactor
+     */
+    void glBlendFunc(int sfactor, int dfactor);
+
+    /**
+     * Send the data of the buffer bound to the target.
+     * @param target
+     * @param size
+     * @param data
+     * @param usage
+     */
+    void glBufferData(int target, int size, Buffer data, int usage);
+
+    /**
+     * Returns the completeness of the bound frame buffer.
+     * @param target
+     * @return
+     */
+    int glCheckFramebufferStatus(int target);
+
+    /**
+     * Clear the buffers of the mask.
+     * @param mask
+     */
+    void glClear(int mask);
+
+    /**
+     * Set the clear color.
+     * @param red
+     * @param green
+     * @param blue
+     * @param alpha
+     */
+    void glClearColor(float red, float green, float blue, float alpha);
+
+    /**
+     * Compile a shader.
+     * @param shader
+     */
+    void glCompileShader(int shader);
+
+    /**
+     * Create a program.
+     * @return
+     */
+    int glCreateProgram();
+
+    /**
+     * Create a shader.
+     * @param type
+     * @return
+     */
+    int glCreateShader(int type);
+
+    /**
+     * Set the culled faces.
+     * @param mode
+     */
+    void glCullFace(int mode);
+
+    /**
+     * Delete buffers.
+     * @param n
+     * @param buffers
+     * @param offset
+     */
+    void glDeleteBuffers(int n, int[] buffers, int offset);
+
+    /**
+     * Delete frame buffers.
+     * @param n
+     * @param framebuffers
+     * @param offset
+     */
+    void glDeleteFramebuffers(int n, int[] framebuffers, int offset);
+
+    /**
+     * Delete textures.
+     * @param n
+     * @param textures
+     * @param offset
+     */
+    void glDeleteTextures(int n, int[] textures, int offset);
+
+    /**
+     * Set the depth comparison function.
+     * @param func
+     */
+    void glDepthFunc(int func);
+
+    /**
+     * Disable a capability.
+     * @param cap
+     */
+    void glDisable(int cap);
+
+    /**
+     * Draw primitives from the vertex arrays.
+     * @param mode
+     * @param first
+     * @param count
+     */
+    void glDrawArrays(int mode, int first, int count);
+
+    /**
+     * Draw primitives from the bound index buffer.
+     * @param mode
+     * @param count
+     * @param type
+     * @param offset
+     */
+    void glDrawElements(int mode, int count, int type, int offset);
+
+    /**
+     * Enable a capability.
+     * @param cap
+     */
+    void glEnable(int cap);
+
+    /**
+     * Enable a vertex attribute array.
+     * @param index
+     */
+    void glEnableVertexAttribArray(int index);
+
+    /**
+     * Attach a texture to the bound frame buffer.
+     * @param target
+     * @param attachment
+     * @param textarget
+     * @param texture
+     * @param level
+     */
+    void glFramebufferTexture2D(int target, int attachment, int textarget, int texture, int level);
+
+    /**
+     * Set the orientation of the front faces.
+     * @param mode
+     */
+    void glFrontFace(int mode);
+
+    /**
+     * Create buffers.
+     * @param n
+     * @param buffers
+     * @param offset
+     */
+    void glGenBuffers(int n, int[] buffers, int offset);
+
+    /**
+     * Create frame buffers.
+     * @param n
+     * @param framebuffers
+     * @param offset
+     */
+    void glGenFramebuffers(int n, int[] framebuffers, int offset);
+
+    /**
+     * Create textures.
+     * @param n
+     * @param textures
+     * @param offset
+     */
+    void glGenTextures(int n, int[] textures, int offset);
+
+    /**
+     * Returns the location of an attribute of a program.
+     * @param program
+     * @param name
+     * @return
+     */
+    int glGetAttribLocation(int program, String name);
+
+    /**
+     * Returns the last error.
+     * @return
+     */
+    int glGetError();
+
+    /**
+     * Returns the information log of a program.
+     * @param program
+     * @return
+     */
+    String glGetProgramInfoLog(int program);
+
+    /**
+     * Get a parameter of a program.
+     * @param program
+     * @param pname
+     * @param params
+     * @param offset
+     */
+    void glGetProgramiv(int program, int pname, int[] params, int offset);
+
+    /**
+     * Returns the information log of a shader.
+     * @param shader
+     * @return
+     */
+    String glGetShaderInfoLog(int shader);
+
+    /**
+     * Get a parameter of a shader.
+     * @param shader
+     * @param pname
+     * @param params
+     * @param offset
+     */
+    void glGetShaderiv(int shader, int pname, int[] params, int offset);
+
+    /**
+     * Returns the location of a uniform variable of a program.
+     * @param program
+     * @param name
+     * @return
+     */
+    int glGetUniformLocation(int program, String name);
+
+    /**
+     * Link a program.
+     * @param program
+     */
+    void glLinkProgram(int program);
+
+    /**
+     * Set the polygon offset.
+     * @param factor
+     * @param units
+     */
+    void glPolygonOffset(float factor, float units);
+
+    /**
+     * Set the source code of a shader.
+     * @param shader
+     * @param string
+     */
+    void glShaderSource(int shader, String string);
+
+    /**
+     * Send the image of the texture bound to the target.
+     * @param target
+     * @param level
+     * @param internalformat
+     * @param width
+     * @param height
+     * @param border
+     * @param format
+     * @param type
+     * @param pixels
+     */
+    void glTexImage2D(int target, int level, int internalformat, int width, int height, int border, int format, int type, Buffer pixels);
+
+    /**
+     * Set a parameter of the texture bound to the target.
+     * @param target
+     * @param pname
+     * @param param
+     */
+    void glTexParameteri(int target, int pname, int param);
+
+    /**
+     * Set a float uniform variable.
+     * @param location
+     * @param x
+     */
+    void glUniform1f(int location, float x);
+
+    /**
+     * Set an int uniform variable.
+     * @param location
+     * @param x
+     */
+    void glUniform1i(int location, int x);
+
+    /**
+     * Set vec3 uniform variables.
+     * @param location
+     * @param count
+     * @param v
+     * @param offset
+     */
+    void glUniform3fv(int location, int count, float[] v, int offset);
+
+    /**
+     * Set vec4 uniform variables.
+     * @param location
+     * @param count
+     * @param v
+     * @param offset
+     */
+    void glUniform4fv(int location, int count, float[] v, int offset);
+
+    /**
+     * Set mat3 uniform variables.
+     * @param location
+     * @param count
+     * @param transpose
+     * @param value
+     * @param offset
+     */
+    void glUniformMatrix3fv(int location, int count, boolean transpose, float[] value, int offset);
+
+    /**
+     * Set mat4 uniform variables.
+     * @param location
+     * @param count
+     * @param transpose
+     * @param value
+     * @param offset
+     */
+    void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset);
+
+    /**
+     * Use a program.
+     * @param program
+     */
+    void glUseProgram(int program);
+
+    /**
+     * Set the format of a vertex attribute in the bound array buffer.
+     * @param indx
+     * @param size
+     * @param type
+     * @param normalized
+     * @param stride
+     * @param offset
+     */
+    void glVertexAttribPointer(int indx, int size, int type, boolean normalized, int stride, int offset);
+
+    /**
+     * Set the format of a vertex attribute in a client side array.
+     * @param indx
+     * @param size
+     * @param type
+     * @param normalized
+     * @param stride
+     * @param ptr
+     */
+    void glVertexAttribPointer(int indx, int size, int type, boolean normalized, int stride, Buffer ptr);
+
+    /**
+     * Set the viewport.
+     * @param x
+     * @param y
+     * @param width
+     * @param height
+     */
+    void glViewport(int x, int y, int width, int height);
+
+    /**
+     * Send a bitmap as the image of the texture bound to the target, like GLUtils.texImage2D.
+     * @param target
+     * @param level
+     * @param bitmap
+     * @param border
+     */
+    void texImage2D(int target, int level, Bitmap bitmap, int border);
+}
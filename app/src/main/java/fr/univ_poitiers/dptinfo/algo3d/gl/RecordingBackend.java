@@ -0,0 +1,595 @@
+package fr.univ_poitiers.dptinfo.algo3d.gl;
+
+import android.graphics.Bitmap;
+import android.opengl.GLES20;
+
+import java.nio.Buffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Headless backend recording the OpenGL calls instead of giving them to a GPU, to test and measure the rendering on the JVM.
+ * Each call is logged with its arguments, and counted in the draw calls, the state changes, the uniform updates or the uploaded bytes.
+ * The counters are reset by {@link #resetFrame()}, usually at the beginning of each frame.
+ * The created objects get increasing names, the locations are stable for each program and name, and the status queries always succeed.
+ */
+public class RecordingBackend implements GLBackend {
+
+    /**
+     * True to log each call with its arguments in {@link #getCalls()}, false to only count them.
+     */
+    private boolean logging = true;
+    /**
+     * Calls since the last reset, with their arguments.
+     */
+    private final List<String> calls = new ArrayList<>();
+    /**
+     * Number of calls of each method since the last reset, in an array of one element to be incremented without boxing.
+     */
+    private final Map<String, int[]> callCounts = new HashMap<>();
+    /**
+     * The counters of {@link #callCounts}, to reset them without iterator.
+     */
+    private final List<int[]> counters = new ArrayList<>();
+    /**
+     * Locations given to the attributes and uniform variables, by program and name.
+     */
+    private final Map<String, Integer> locations = new HashMap<>();
+    /**
+     * Last name given to a created object.
+     */
+    private int lastName;
+
+    /**
+     * Number of draw calls since the last reset.
+     */
+    private int drawCalls;
+    /**
+     * Number of vertices or indices drawn since the last reset.
+     */
+    private long drawnVertices;
+    /**
+     * Number of calls changing the state since the last reset : binds, capabilities, attribute pointers...
+     */
+    private int stateChanges;
+    /**
+     * Number of uniform variables updates since the last reset.
+     */
+    private int uniformUpdates;
+    /**
+     * Number of bytes sent to the buffers and textures since the last reset.
+     */
+    private long uploadedBytes;
+
+    /**
+     * Set if the calls are logged with their arguments or only counted.
+     * @param logging - false to not keep the calls, for long benchmarks
+     */
+    public void setLogging(boolean logging) {
+        this.logging = logging;
+    }
+
+    /**
+     * Reset the calls and the counters.
+     */
+    public void resetFrame() {
+        calls.clear();
+        //the counters are kept to not be allocated again at each frame
+        for (int i = 0; i < counters.size(); i++)
+            counters.get(i)[0] = 0;
+        drawCalls = 0;
+        drawnVertices = 0;
+        stateChanges = 0;
+        uniformUpdates = 0;
+        uploadedBytes = 0;
+    }
+
+    /**
+     * Returns the calls since the last reset, like "glBindBuffer(34962, 1)".
+     * @return the logged calls
+     */
+    public List<String> getCalls() {
+        return calls;
+    }
+
+    /**
+     * Returns the number of calls of a method since the last reset.
+     * @param name - the name of the method, like "glDrawElements"
+     * @return the number of calls
+     */
+    public int getCallCount(String name) {
+        int[] count = callCounts.get(name);
+        return count == null ? 0 : count[0];
+    }
+
+    /**
+     * Returns the number of draw calls since the last reset.
+     * @return the number of glDrawArrays and glDrawElements
+     */
+    public int getDrawCalls() {
+        return drawCalls;
+    }
+
+    /**
+     * Returns the number of vertices or indices drawn since the last reset.
+     * @return the sum of the counts of the draw calls
+     */
+    public long getDrawnVertices() {
+        return drawnVertices;
+    }
+
+    /**
+     * Returns the number of state changes since the last reset.
+     * @return the number of calls changing the state
+     */
+    public int getStateChanges() {
+        return stateChanges;
+    }
+
+    /**
+     * Returns the number of uniform variables updates since the last reset.
+     * @return the number of glUniform calls
+     */
+    public int getUniformUpdates() {
+        return uniformUpdates;
+    }
+
+    /**
+     * Returns the number of bytes sent to the GPU since the last reset.
+     * @return the size of the data of the buffers and textures
+     */
+    public long getUploadedBytes() {
+        return uploadedBytes;
+    }
+
+    /**
+     * Count a call.
+     * Called before {@link #log(String, Object...)} so the array of the arguments is only built, and the arguments boxed, when the calls are logged.
+     * @param name - the name of the method
+     * @return true if the call must be logged
+     */
+    private boolean count(String name) {
+        int[] count = callCounts.get(name);
+        if (count == null) {
+            count = new int[1];
+            callCounts.put(name, count);
+            counters.add(count);
+        }
+        count[0]++;
+        return logging;
+    }
+
+    /**
+     * Log a call with its arguments.
+     * @param name - the name of the method
+     * @param args - the arguments
+     */
+    private void log(String name, Object... args) {
+        StringBuilder call = new StringBuilder(name).append('(');
+        for (int i = 0; i < args.length; i++) {
+            if (i > 0)
+                call.append(", ");
+            Object arg = args[i];
+            if (arg instanceof float[])
+                call.append(Arrays.toString((float[]) arg));
+            else if (arg instanceof int[])
+                call.append(Arrays.toString((int[]) arg));
+            else if (arg instanceof Buffer)
+                call.append("Buffer[").append(((Buffer) arg).capacity()).append(']');
+            else if (arg instanceof Bitmap)
+                call.append("Bitmap[").append(((Bitmap) arg).getWidth()).append('x').append(((Bitmap) arg).getHeight()).append(']');
+            else
+                call.append(arg);
+        }
+        calls.add(call.append(')').toString());
+    }
+
+    /**
+     * Give new names to created objects.
+     * @param n - number of objects
+     * @param names - array receiving the names
+     * @param offset - index of the first name in the array
+     */
+    private void generate(int n, int[] names, int offset) {
+        for (int i = 0; i < n; i++)
+            names[offset + i] = ++lastName;
+    }
+
+    /**
+     * Returns the location of an attribute or a uniform variable, the same for each call with the same program and name.
+     * @param program - the program
+     * @param name - the name of the variable
+     * @return the location
+     */
+    private int location(int program, String name) {
+        String key = program + "/" + name;
+        Integer location = locations.get(key);
+        if (location == null) {
+            location = locations.size();
+            locations.put(key, location);
+        }
+        return location;
+    }
+
+    /**
+     * Returns the size of a texel of a texture.
+     * @param format - the format of the texture
+     * @param type - the type of the components
+     * @return the size in bytes
+     */
+    private static int texelSize(int format, int type) {
+        switch (type) {
+            case GLES20.GL_UNSIGNED_SHORT_5_6_5:
+            case GLES20.GL_UNSIGNED_SHORT_4_4_4_4:
+            case GLES20.GL_UNSIGNED_SHORT_5_5_5_1:
+            case GLES20.GL_UNSIGNED_SHORT:
+                return 2;
+            case GLES20.GL_UNSIGNED_INT:
+            case GLES20.GL_FLOAT:
+                return 4;
+        }
+        switch (format) {
+            case GLES20.GL_RGBA:
+                return 4;
+            case GLES20.GL_RGB:
+                return 3;
+            case GLES20.GL_LUMINANCE_ALPHA:
+                return 2;
+            default:
+                return 1;
+        }
+    }
+
+    @Override
+    public void glActiveTexture(int texture) {
+        if (count("glActiveTexture"))
+            log("glActiveTexture", texture);
+        stateChanges++;
+    }
+
+    @Override
+    public void glAttachShader(int program, int shader) {
+        if (count("glAttachShader"))
+            log("glAttachShader", program, shader);
+    }
+
+    @Override
+    public void glBindBuffer(int target, int buffer) {
+        if (count("glBindBuffer"))
+            log("glBindBuffer", target, buffer);
+        stateChanges++;
+    }
+
+    @Override
+    public void glBindFramebuffer(int target, int framebuffer) {
+        if (count("glBindFramebuffer"))
+            log("glBindFramebuffer", target, framebuffer);
+        stateChanges++;
+    }
+
+    @Override
+    public void glBindTexture(int target, int texture) {
+        if (count("glBindTexture"))
+            log("glBindTexture", target, texture);
+        stateChanges++;
+    }
+
+    @Override
+    public void glBlendFunc(int sfactor, int dfactor) {
+        if (count("glBlendFunc"))
+            log("glBlendFunc", sfactor, dfactor);
+        stateChanges++;
+    }
+
+    @Override
+    public void glBufferData(int target, int size, Buffer data, int usage) {
+        if (count("glBufferData"))
+            log("glBufferData", target, size, data, usage);
+        uploadedBytes += size;
+    }
+
+    @Override
+    public int glCheckFramebufferStatus(int target) {
+        if (count("glCheckFramebufferStatus"))
+            log("glCheckFramebufferStatus", target);
+        return GLES20.GL_FRAMEBUFFER_COMPLETE;
+    }
+
+    @Override
+    public void glClear(int mask) {
+        if (count("glClear"))
+            log("glClear", mask);
+    }
+
+    @Override
+    public void glClearColor(float red, float green, float blue, float alpha) {
+        if (count("glClearColor"))
+            log("glClearColor", red, green, blue, alpha);
+        stateChanges++;
+    }
+
+    @Override
+    public void glCompileShader(int shader) {
+        if (count("glCompileShader"))
+            log("glCompileShader", shader);
+    }
+
+    @Override
+    public int glCreateProgram() {
+        if (count("glCreateProgram"))
+            log("glCreateProgram");
+        return ++lastName;
+    }
+
+    @Override
+    public int glCreateShader(int type) {
+        if (count("glCreateShader"))
+            log("glCreateShader", type);
+        return ++lastName;
+    }
+
+    @Override
+    public void glCullFace(int mode) {
+        if (count("glCullFace"))
+            log("glCullFace", mode);
+        stateChanges++;
+    }
+
+    @Override
+    public void glDeleteBuffers(int n, int[] buffers, int offset) {
+        if (count("glDeleteBuffers"))
+            log("glDeleteBuffers", n, buffers, offset);
+    }
+
+    @Override
+    public void glDeleteFramebuffers(int n, int[] framebuffers, int offset) {
+        if (count("glDeleteFramebuffers"))
+            log("glDeleteFramebuffers", n, framebuffers, offset);
+    }
+
+    @Override
+    public void glDeleteTextures(int n, int[] textures, int offset) {
+        if (count("glDeleteTextures"))
+            log("glDeleteTextures", n, textures, offset);
+    }
+
+    @Override
+    public void glDepthFunc(int func) {
+        if (count("glDepthFunc"))
+            log("glDepthFunc", func);
+        stateChanges++;
+    }
+
+    @Override
+    public void glDisable(int cap) {
+        if (count("glDisable"))
+            log("glDisable", cap);
+        stateChanges++;
+    }
+
+    @Override
+    public void glDrawArrays(int mode, int first, int count) {
+        if (count("glDrawArrays"))
+            log("glDrawArrays", mode, first, count);
+        drawCalls++;
+        drawnVertices += count;
+    }
+
+    @Override
+    public void glDrawElements(int mode, int count, int type, int offset) {
+        if (count("glDrawElements"))
+            log("glDrawElements", mode, count, type, offset);
+        drawCalls++;
+        drawnVertices += count;
+    }
+
+    @Override
+    public void glEnable(int cap) {
+        if (count("glEnable"))
+            log("glEnable", cap);
+        stateChanges++;
+    }
+
+    @Override
+    public void glEnableVertexAttribArray(int index) {
+        if (count("glEnableVertexAttribArray"))
+            log("glEnableVertexAttribArray", index);
+        stateChanges++;
+    }
+
+    @Override
+    public void glFramebufferTexture2D(int target, int attachment, int textarget, int texture, int level) {
+        if (count("glFramebufferTexture2D"))
+            log("glFramebufferTexture2D", target, attachment, textarget, texture, level);
+    }
+
+    @Override
+    public void glFrontFace(int mode) {
+        if (count("glFrontFace"))
+            log("glFrontFace", mode);
+        stateChanges++;
+    }
+
+    @Override
+    public void glGenBuffers(int n, int[] buffers, int offset) {
+        generate(n, buffers, offset);
+        if (count("glGenBuffers"))
+            log("glGenBuffers", n, buffers, offset);
+    }
+
+    @Override
+    public void glGenFramebuffers(int n, int[] framebuffers, int offset) {
+        generate(n, framebuffers, offset);
+        if (count("glGenFramebuffers"))
+            log("glGenFramebuffers", n, framebuffers, offset);
+    }
+
+    @Override
+    public void glGenTextures(int n, int[] textures, int offset) {
+        generate(n, textures, offset);
+        if (count("glGenTextures"))
+            log("glGenTextures", n, textures, offset);
+    }
+
+    @Override
+    public int glGetAttribLocation(int program, String name) {
+        if (count("glGetAttribLocation"))
+            log("glGetAttribLocation", program, name);
+        return location(program, name);
+    }
+
+    @Override
+    public int glGetError() {
+        if (count("glGetError"))
+            log("glGetError");
+        return GLES20.GL_NO_ERROR;
+    }
+
+    @Override
+    public String glGetProgramInfoLog(int program) {
+        if (count("glGetProgramInfoLog"))
+            log("glGetProgramInfoLog", program);
+        return "";
+    }
+
+    @Override
+    public void glGetProgramiv(int program, int pname, int[] params, int offset) {
+        if (count("glGetProgramiv"))
+            log("glGetProgramiv", program, pname, params, offset);
+        params[offset] = GLES20.GL_TRUE;
+    }
+
+    @Override
+    public String glGetShaderInfoLog(int shader) {
+        if (count("glGetShaderInfoLog"))
+            log("glGetShaderInfoLog", shader);
+        return "";
+    }
+
+    @Override
+    public void glGetShaderiv(int shader, int pname, int[] params, int offset) {
+        if (count("glGetShaderiv"))
+            log("glGetShaderiv", shader, pname, params, offset);
+        params[offset] = GLES20.GL_TRUE;
+    }
+
+    @Override
+    public int glGetUniformLocation(int program, String name) {
+        if (count("glGetUniformLocation"))
+            log("glGetUniformLocation", program, name);
+        return location(program, name);
+    }
+
+    @Override
+    public void glLinkProgram(int program) {
+        if (count("glLinkProgram"))
+            log("glLinkProgram", program);
+    }
+
+    @Override
+    public void glPolygonOffset(float factor, float units) {
+        if (count("glPolygonOffset"))
+            log("glPolygonOffset", factor, units);
+        stateChanges++;
+    }
+
+    @Override
+    public void glShaderSource(int shader, String string) {
+        if (count("glShaderSource"))
+            log("glShaderSource", shader, string);
+    }
+
+    @Override
+    public void glTexImage2D(int target, int level, int internalformat, int width, int height, int border, int format, int type, Buffer pixels) {
+        if (count("glTexImage2D"))
+            log("glTexImage2D", target, level, internalformat, width, height, border, format, type, pixels);
+        uploadedBytes += (long) width * height * texelSize(format, type);
+    }
+
+    @Override
+    public void glTexParameteri(int target, int pname, int param) {
+        if (count("glTexParameteri"))
+            log("glTexParameteri", target, pname, param);
+        stateChanges++;
+    }
+
+    @Override
+    public void glUniform1f(int location, float x) {
+        if (count("glUniform1f"))
+            log("glUniform1f", location, x);
+        uniformUpdates++;
+    }
+
+    @Override
+    public void glUniform1i(int location, int x) {
+        if (count("glUniform1i"))
+            log("glUniform1i", location, x);
+        uniformUpdates++;
+    }
+
+    @Override
+    public void glUniform3fv(int location, int count, float[] v, int offset) {
+        if (count("glUniform3fv"))
+            log("glUniform3fv", location, count, v, offset);
+        uniformUpdates++;
+    }
+
+    @Override
+    public void glUniform4fv(int location, int count, float[] v, int offset) {
+        if (count("glUniform4fv"))
+            log("glUniform4fv", location, count, v, offset);
+        uniformUpdates++;
+    }
+
+    @Override
+    public void glUniformMatrix3fv(int location, int count, boolean transpose, float[] value, int offset) {
+        if (count("glUniformMatrix3fv"))
+            log("glUniformMatrix3fv", location, count, transpose, value, offset);
+        uniformUpdates++;
+    }
+
+    @Override
+    public void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset) {
+        if (count("glUniformMatrix4fv"))
+            log("glUniformMatrix4fv", location, count, transpose, value, offset);
+        uniformUpdates++;
+    }
+
+    @Override
+    public void glUseProgram(int program) {
+        if (count("glUseProgram"))
+            log("glUseProgram", program);
+        stateChanges++;
+    }
+
+    @Override
+    public void glVertexAttribPointer(int indx, int size, int type, boolean normalized, int stride, int offset) {
+        if (count("glVertexAttribPointer"))
+            log("glVertexAttribPointer", indx, size, type, normalized, stride, offset);
+        stateChanges++;
+    }
+
+    @Override
+    public void glVertexAttribPointer(int indx, int size, int type, boolean normalized, int stride, Buffer ptr) {
+        if (count("glVertexAttribPointer"))
+            log("glVertexAttribPointer", indx, size, type, normalized, stride, ptr);
+        stateChanges++;
+    }
+
+    @Override
+    public void glViewport(int x, int y, int width, int height) {
+        if (count("glViewport"))
+            log("glViewport", x, y, width, height);
+        stateChanges++;
+    }
+
+    @Override
+    public void texImage2D(int target, int level, Bitmap bitmap, int border) {
+        if (count("texImage2D"))
+            log("texImage2D", target, level, bitmap, border);
+        uploadedBytes += bitmap.getByteCount();
+    }
+}
@@ -0,0 +1,337 @@
+package fr.univ_poitiers.dptinfo.algo3d.gl;
+
+import android.graphics.Bitmap;
+import android.opengl.GLES20;
+
+import java.nio.Buffer;
+
+/**
+ * Backend counting the OpenGL work in a {@link FrameStats} before giving the calls to another backend.
+ * Only installed while the statistics are enabled, so the rendering does not pay for them otherwise.
+ * The textures are counted with 4 bytes per texel.
+ */
+public class StatsBackend implements GLBackend {
+
+    /**
+     * The backend receiving the calls.
+     */
+    private final GLBackend backend;
+    /**
+     * The statistics receiving the counts.
+     */
+    private final FrameStats stats;
+    /**
+     * The program in use, to only count the program switches.
+     */
+    private int currentProgram;
+
+    /**
+     * Constructor.
+     * @param backend - the backend receiving the calls
+     * @param stats - the statistics receiving the counts
+     */
+    public StatsBackend(GLBackend backend, FrameStats stats) {
+        this.backend = backend;
+        this.stats = stats;
+    }
+
+    /**
+     * Returns the backend receiving the calls.
+     * @return the wrapped backend
+     */
+    public GLBackend getBackend() {
+        return backend;
+    }
+
+    /**
+     * Returns the number of triangles drawn by a draw call.
+     * @param mode - the primitive of the draw call
+     * @param count - the number of vertices or indices
+     * @return the number of triangles
+     */
+    private static long triangles(int mode, int count) {
+        switch (mode) {
+            case GLES20.GL_TRIANGLES:
+                return count / 3;
+            case GLES20.GL_TRIANGLE_STRIP:
+            case GLES20.GL_TRIANGLE_FAN:
+                return Math.max(count - 2, 0);
+            default:
+                return 0;
+        }
+    }
+
+    @Override
+    public void glActiveTexture(int texture) {
+        backend.glActiveTexture(texture);
+    }
+
+    @Override
+    public void glAttachShader(int program, int shader) {
+        backend.glAttachShader(program, shader);
+    }
+
+    @Override
+    public void glBindBuffer(int target, int buffer) {
+        stats.add(FrameStats.Counter.BUFFER_BINDS, 1);
+        backend.glBindBuffer(target, buffer);
+    }
+
+    @Override
+    public void glBindFramebuffer(int target, int framebuffer) {
+        backend.glBindFramebuffer(target, framebuffer);
+    }
+
+    @Override
+    public void glBindTexture(int target, int texture) {
+        stats.add(FrameStats.Counter.TEXTURE_BINDS, 1);
+        backend.glBindTexture(target, texture);
+    }
+
+    @Override
+    public void glBlendFunc(int sfactor, int dfactor) {
+        backend.glBlendFunc(sfactor, dfactor);
+    }
+
+    @Override
+    public void glBufferData(int target, int size, Buffer data, int usage) {
+        stats.add(FrameStats.Counter.UPLOADED_BYTES, size);
+        backend.glBufferData(target, size, data, usage);
+    }
+
+    @Override
+    public int glCheckFramebufferStatus(int target) {
+        return backend.glCheckFramebufferStatus(target);
+    }
+
+    @Override
+    public void glClear(int mask) {
+        backend.glClear(mask);
+    }
+
+    @Override
+    public void glClearColor(float red, float green, float blue, float alpha) {
+        backend.glClearColor(red, green, blue, alpha);
+    }
+
+    @Override
+    public void glCompileShader(int shader) {
+        backend.glCompileShader(shader);
+    }
+
+    @Override
+    public int glCreateProgram() {
+        return backend.glCreateProgram();
+    }
+
+    @Override
+    public int glCreateShader(int type) {
+        return backend.glCreateShader(type);
+    }
+
+    @Override
+    public void glCullFace(int mode) {
+        backend.glCullFace(mode);
+    }
+
+    @Override
+    public void glDeleteBuffers(int n, int[] buffers, int offset) {
+        backend.glDeleteBuffers(n, buffers, offset);
+    }
+
+    @Override
+    public void glDeleteFramebuffers(int n, int[] framebuffers, int offset) {
+        backend.glDeleteFramebuffers(n, framebuffers, offset);
+    }
+
+    @Override
+    public void glDeleteTextures(int n, int[] textures, int offset) {
+        backend.glDeleteTextures(n, textures, offset);
+    }
+
+    @Override
+    public void glDepthFunc(int func) {
+        backend.glDepthFunc(func);
+    }
+
+    @Override
+    public void glDisable(int cap) {
+        backend.glDisable(cap);
+    }
+
+    @Override
+    public void glDrawArrays(int mode, int first, int count) {
+        stats.add(FrameStats.Counter.DRAW_CALLS, 1);
+        stats.add(FrameStats.Counter.TRIANGLES, triangles(mode, count));
+        backend.glDrawArrays(mode, first, count);
+    }
+
+    @Override
+    public void glDrawElements(int mode, int count, int type, int offset) {
+        stats.add(FrameStats.Counter.DRAW_CALLS, 1);
+        stats.add(FrameStats.Counter.TRIANGLES, triangles(mode, count));
+        backend.glDrawElements(mode, count, type, offset);
+    }
+
+    @Override
+    public void glEnable(int cap) {
+        backend.glEnable(cap);
+    }
+
+    @Override
+    public void glEnableVertexAttribArray(int index) {
+        backend.glEnableVertexAttribArray(index);
+    }
+
+    @Override
+    public void glFramebufferTexture2D(int target, int attachment, int textarget, int texture, int level) {
+        backend.glFramebufferTexture2D(target, attachment, textarget, texture, level);
+    }
+
+    @Override
+    public void glFrontFace(int mode) {
+        backend.glFrontFace(mode);
+    }
+
+    @Override
+    public void glGenBuffers(int n, int[] buffers, int offset) {
+        backend.glGenBuffers(n, buffers, offset);
+    }
+
+    @Override
+    public void glGenFramebuffers(int n, int[] framebuffers, int offset) {
+        backend.glGenFramebuffers(n, framebuffers, offset);
+    }
+
+    @Override
+    public void glGenTextures(int n, int[] textures, int offset) {
+        backend.glGenTextures(n, textures, offset);
+    }
+
+    @Override
+    public int glGetAttribLocation(int program, String name) {
+        return backend.glGetAttribLocation(program, name);
+    }
+
+    @Override
+    public int glGetError() {
+        return backend.glGetError();
+    }
+
+    @Override
+    public String glGetProgramInfoLog(int program) {
+        return backend.glGetProgramInfoLog(program);
+    }
+
+    @Override
+    public void glGetProgramiv(int program, int pname, int[] params, int offset) {
+        backend.glGetProgramiv(program, pname, params, offset);
+    }
+
+    @Override
+    public String glGetShaderInfoLog(int shader) {
+        return backend.glGetShaderInfoLog(shader);
+    }
+
+    @Override
+    public void glGetShaderiv(int shader, int pname, int[] params, int offset) {
+        backend.glGetShaderiv(shader, pname, params, offset);
+    }
+
+    @Override
+    public int glGetUniformLocation(int program, String name) {
+        return backend.glGetUniformLocation(program, name);
+    }
+
+    @Override
+    public void glLinkProgram(int program) {
+        backend.glLinkProgram(program);
+    }
+
+    @Override
+    public void glPolygonOffset(float factor, float units) {
+        backend.glPolygonOffset(factor, units);
+    }
+
+    @Override
+    public void glShaderSource(int shader, String string) {
+        backend.glShaderSource(shader, string);
+    }
+
+    @Override
+    public void glTexImage2D(int target, int level, int internalformat, int width, int height, int border, int format, int type, Buffer pixels) {
+        stats.add(FrameStats.Counter.UPLOADED_BYTES, (long) width * height * 4);
+        backend.glTexImage2D(target, level, internalformat, width, height, border, format, type, pixels);
+    }
+
+    @Override
+    public void glTexParameteri(int target, int pname, int param) {
+        backend.glTexParameteri(target, pname, param);
+    }
+
+    @Override
+    public void glUniform1f(int location, float x) {
+        stats.add(FrameStats.Counter.UNIFORM_UPLOADS, 1);
+        backend.glUniform1f(location, x);
+    }
+
+    @Override
+    public void glUniform1i(int location, int x) {
+        stats.add(FrameStats.Counter.UNIFORM_UPLOADS, 1);
+        backend.glUniform1i(location, x);
+    }
+
+    @Override
+    public void glUniform3fv(int location, int count, float[] v, int offset) {
+        stats.add(FrameStats.Counter.UNIFORM_UPLOADS, 1);
+        backend.glUniform3fv(location, count, v, offset);
+    }
+
+    @Override
+    public void glUniform4fv(int location, int count, float[] v, int offset) {
+        stats.add(FrameStats.Counter.UNIFORM_UPLOADS, 1);
+        backend.glUniform4fv(location, count, v, offset);
+    }
+
+    @Override
+    public void glUniformMatrix3fv(int location, int count, boolean transpose, float[] value, int offset) {
+        stats.add(FrameStats.Counter.UNIFORM_UPLOADS, 1);
+        backend.glUniformMatrix3fv(location, count, transpose, value, offset);
+    }
+
+    @Override
+    public void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset) {
+        stats.add(FrameStats.Counter.UNIFORM_UPLOADS, 1);
+        backend.glUniformMatrix4fv(location, count, transpose, value, offset);
+    }
+
+    @Override
+    public void glUseProgram(int program) {
+        if (program != currentProgram) {
+            currentProgram = program;
+            stats.add(FrameStats.Counter.PROGRAM_SWITCHES, 1);
+        }
+        backend.glUseProgram(program);
+    }
+
+    @Override
+    public void glVertexAttribPointer(int indx, int size, int type, boolean normalized, int stride, int offset) {
+        backend.glVertexAttribPointer(indx, size, type, normalized, stride, offset);
+    }
+
+    @Override
+    public void glVertexAttribPointer(int indx, int size, int type, boolean normalized, int stride, Buffer ptr) {
+        backend.glVertexAttribPointer(indx, size, type, normalized, stride, ptr);
+    }
+
+    @Override
+    public void glViewport(int x, int y, int width, int height) {
+        backend.glViewport(x, y, width, height);
+    }
+
+    @Override
+    public void texImage2D(int target, int level, Bitmap bitmap, int border) {
+        stats.add(FrameStats.Counter.UPLOADED_BYTES, bitmap.getByteCount());
+        backend.texImage2D(target, level, bitmap, border);
+    }
+}
@@ -0,0 +1,42 @@
+package fr.univ_poitiers.dptinfo.algo3d.math;
+
+/**
+ * Class of methods on 3*3 matrices stored in column major order as OpenGL, in arrays with an offset.
+ * As for {@link Mat4f}, nothing is allocated and the results are written in arrays given by the caller.
+ */
+public final class Mat3f {
+
+    /**
+     * Constructor. Not to be used, all methods are static.
+     */
+    private Mat3f() {
+    }
+
+    /**
+     * Compute the normal matrix of a model view matrix : the transposition of the inverse of its upper left 3*3 part.
+     * The translation is ignored, and a non uniform scale is corrected so the normals stay orthogonal to the surfaces.
+     * If the matrix is not invertible, the result is left unchanged.
+     * @param r - array receiving the 3*3 normal matrix
+     * @param ro - offset of the result in the array
+     * @param m - array of the 4*4 model view matrix
+     * @param mo - offset of the model view matrix
+     */
+    public static void normalMatrix(float[] r, int ro, float[] m, int mo) {
+        float c = m[mo], d = m[mo + 1], e = m[mo + 2],
+                g = m[mo + 4], f = m[mo + 5], h = m[mo + 6],
+                i = m[mo + 8], j = m[mo + 9], k = m[mo + 10],
+                l = k * f - h * j, o = -k * g + h * i, n = j * g - f * i, det = c * l + d * o + e * n;
+        if (det == 0.F)
+            return;
+        float inv = 1.F / det;
+        r[ro] = l * inv;
+        r[ro + 3] = (-k * d + e * j) * inv;
+        r[ro + 6] = (h * d - e * f) * inv;
+        r[ro + 1] = o * inv;
+        r[ro + 4] = (k * c - e * i) * inv;
+        r[ro + 7] = (-h * c + e * g) * inv;
+        r[ro + 2] = n * inv;
+        r[ro + 5] = (-j * c + d * i) * inv;
+        r[ro + 8] = (f * c - d * g) * inv;
+    }
+}
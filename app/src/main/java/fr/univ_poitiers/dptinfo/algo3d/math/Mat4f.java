@@ -0,0 +1,73 @@
+package fr.univ_poitiers.dptinfo.algo3d.math;
+
+/**
+ * Class of methods on 4*4 matrices stored in column major order as OpenGL, in arrays with an offset.
+ * Nothing is allocated : the results are written in arrays given by the caller.
+ * The objects using them at each frame keep their matrices and vectors as arrays allocated once in their fields,
+ * and the methods accept a result array equal to an operand, so no temporary array is needed.
+ */
+public final class Mat4f {
+
+    /**
+     * Constructor. Not to be used, all methods are static.
+     */
+    private Mat4f() {
+    }
+
+    /**
+     * Multiply two matrices, r = a * b.
+     * Unlike {@link android.opengl.Matrix#multiplyMM(float[], int, float[], int, float[], int)}, the result can be one of the operands.
+     * @param r - array receiving the result
+     * @param ro - offset of the result in the array
+     * @param a - array of the left matrix
+     * @param ao - offset of the left matrix
+     * @param b - array of the right matrix
+     * @param bo - offset of the right matrix
+     */
+    public static void multiply(float[] r, int ro, float[] a, int ao, float[] b, int bo) {
+        float a00 = a[ao], a10 = a[ao + 1], a20 = a[ao + 2], a30 = a[ao + 3];
+        float a01 = a[ao + 4], a11 = a[ao + 5], a21 = a[ao + 6], a31 = a[ao + 7];
+        float a02 = a[ao + 8], a12 = a[ao + 9], a22 = a[ao + 10], a32 = a[ao + 11];
+        float a03 = a[ao + 12], a13 = a[ao + 13], a23 = a[ao + 14], a33 = a[ao + 15];
+        for (int c = 0; c < 16; c += 4) {
+            //the column c of the result only depends on the column c of b
+            float b0 = b[bo + c], b1 = b[bo + c + 1], b2 = b[bo + c + 2], b3 = b[bo + c + 3];
+            r[ro + c] = a00 * b0 + a01 * b1 + a02 * b2 + a03 * b3;
+            r[ro + c + 1] = a10 * b0 + a11 * b1 + a12 * b2 + a13 * b3;
+            r[ro + c + 2] = a20 * b0 + a21 * b1 + a22 * b2 + a23 * b3;
+            r[ro + c + 3] = a30 * b0 + a31 * b1 + a32 * b2 + a33 * b3;
+        }
+    }
+
+    /**
+     * Transform a point, of homogeneous coordinate w = 1, by a matrix without projection.
+     * @param r - array receiving the x, y and z coordinates of the transformed point
+     * @param ro - offset of the result in the array
+     * @param m - array of the matrix
+     * @param mo - offset of the matrix
+     * @param x - x coordinate of the point
+     * @param y - y coordinate of the point
+     * @param z - z coordinate of the point
+     */
+    public static void transformPoint(float[] r, int ro, float[] m, int mo, float x, float y, float z) {
+        r[ro] = m[mo] * x + m[mo + 4] * y + m[mo + 8] * z + m[mo + 12];
+        r[ro + 1] = m[mo + 1] * x + m[mo + 5] * y + m[mo + 9] * z + m[mo + 13];
+        r[ro + 2] = m[mo + 2] * x + m[mo + 6] * y + m[mo + 10] * z + m[mo + 14];
+    }
+
+    /**
+     * Transform a direction, of homogeneous coordinate w = 0, by a matrix : the translation is not applied.
+     * @param r - array receiving the x, y and z coordinates of the transformed direction
+     * @param ro - offset of the result in the array
+     * @param m - array of the matrix
+     * @param mo - offset of the matrix
+     * @param x - x coordinate of the direction
+     * @param y - y coordinate of the direction
+     * @param z - z coordinate of the direction
+     */
+    public static void transformDirection(float[] r, int ro, float[] m, int mo, float x, float y, float z) {
+        r[ro] = m[mo] * x + m[mo + 4] * y + m[mo + 8] * z;
+        r[ro + 1] = m[mo + 1] * x + m[mo + 5] * y + m[mo + 9] * z;
+        r[ro + 2] = m[mo + 2] * x + m[mo + 6] * y + m[mo + 10] * z;
+    }
+}
@@ -0,0 +1,177 @@
+package fr.univ_poitiers.dptinfo.algo3d.math;
+
+/**
+ * Class of methods on unit quaternions representing rotations, stored as 4 floats x, y, z, w in arrays with an offset,
+ * so they can be used on the contiguous arrays of the transforms.
+ * The euler angles are in degrees and applied in the order of the transforms : rotation around z, then x, then y.
+ */
+public final class Quatf {
+
+    /**
+     * Dot product of two quaternions over which the slerp is replaced by a normalized linear interpolation,
+     * as the angle is too small for the sine to be precise.
+     */
+    private static final float SLERP_THRESHOLD = 0.9995F;
+
+    /**
+     * Cosine of the angle around x under which the angles around y and z can not be separated.
+     */
+    private static final double GIMBAL_LOCK_COSINE = 1e-6;
+
+    /**
+     * Constructor. Not to be used, all methods are static.
+     */
+    private Quatf() {
+    }
+
+    /**
+     * Set a quaternion to the identity.
+     * @param q - array receiving the quaternion
+     * @param o - offset of the quaternion in the array
+     */
+    public static void setIdentity(float[] q, int o) {
+        q[o] = q[o + 1] = q[o + 2] = 0.F;
+        q[o + 3] = 1.F;
+    }
+
+    /**
+     * Set a quaternion to the rotation of euler angles, the product of the rotations around z, x then y.
+     * @param q - array receiving the quaternion
+     * @param o - offset of the quaternion in the array
+     * @param x - angle around the x axis, in degrees
+     * @param y - angle around the y axis, in degrees
+     * @param z - angle around the z axis, in degrees
+     */
+    public static void fromEuler(float[] q, int o, float x, float y, float z) {
+        double hx = Math.toRadians(x) * 0.5, hy = Math.toRadians(y) * 0.5, hz = Math.toRadians(z) * 0.5;
+        double sx = Math.sin(hx), cx = Math.cos(hx);
+        double sy = Math.sin(hy), cy = Math.cos(hy);
+        double sz = Math.sin(hz), cz = Math.cos(hz);
+        //qz * qx * qy
+        q[o] = (float) (cz * sx * cy - sz * cx * sy);
+        q[o + 1] = (float) (cz * cx * sy + sz * sx * cy);
+        q[o + 2] = (float) (sz * cx * cy + cz * sx * sy);
+        q[o + 3] = (float) (cz * cx * cy - sz * sx * sy);
+    }
+
+    /**
+     * Compute the euler angles of a quaternion, the inverse of {@link #fromEuler(float[], int, float, float, float)}.
+     * The angle around x is in [-90, 90], the others in [-180, 180].
+     * When the angle around x is -90 or 90, the rotation around y is merged into the one around z and the angle around y is 0.
+     * @param q - array of the quaternion
+     * @param o - offset of the quaternion in the array
+     * @param euler - array receiving the angles around x, y and z, in degrees
+     * @param eo - offset of the angles in the array
+     */
+    public static void toEuler(float[] q, int o, float[] euler, int eo) {
+        double x = q[o], y = q[o + 1], z = q[o + 2], w = q[o + 3];
+        //terms of the rotation matrix, rij at row i and column j
+        double r21 = 2 * (y * z + w * x);
+        double r20 = 2 * (x * z - w * y), r22 = 1 - 2 * (x * x + y * y);
+        double cosX = Math.sqrt(r20 * r20 + r22 * r22);
+        euler[eo] = (float) Math.toDegrees(Math.atan2(r21, cosX));
+        double angleY = cosX < GIMBAL_LOCK_COSINE ? 0. : Math.atan2(-r20, r22);
+        euler[eo + 1] = (float) Math.toDegrees(angleY);
+        //angle around z from the first column of the rotation without the one around y, precise even near the gimbal lock
+        double cy = Math.cos(angleY), sy = Math.sin(angleY);
+        double r00 = 1 - 2 * (y * y + z * z), r02 = 2 * (x * z + w * y);
+        double r10 = 2 * (x * y + w * z), r12 = 2 * (y * z - w * x);
+        euler[eo + 2] = (float) Math.toDegrees(Math.atan2(r10 * cy + r12 * sy, r00 * cy + r02 * sy));
+    }
+
+    /**
+     * Normalize a quaternion, the identity being set if its length is 0.
+     * @param q - array of the quaternion
+     * @param o - offset of the quaternion in the array
+     */
+    public static void normalize(float[] q, int o) {
+        float length = (float) Math.sqrt(q[o] * q[o] + q[o + 1] * q[o + 1] + q[o + 2] * q[o + 2] + q[o + 3] * q[o + 3]);
+        if (length == 0.F) {
+            setIdentity(q, o);
+            return;
+        }
+        float inv = 1.F / length;
+        q[o] *= inv;
+        q[o + 1] *= inv;
+        q[o + 2] *= inv;
+        q[o + 3] *= inv;
+    }
+
+    /**
+     * Spherical linear interpolation between two unit quaternions, along the shortest path, at a constant angular speed.
+     * The result can be one of the operands.
+     * @param r - array receiving the result
+     * @param ro - offset of the result in the array
+     * @param a - array of the quaternion at t = 0
+     * @param ao - offset of the first quaternion
+     * @param b - array of the quaternion at t = 1
+     * @param bo - offset of the second quaternion
+     * @param t - interpolation parameter, between 0 and 1
+     */
+    public static void slerp(float[] r, int ro, float[] a, int ao, float[] b, int bo, float t) {
+        float ax = a[ao], ay = a[ao + 1], az = a[ao + 2], aw = a[ao + 3];
+        float bx = b[bo], by = b[bo + 1], bz = b[bo + 2], bw = b[bo + 3];
+        float dot = ax * bx + ay * by + az * bz + aw * bw;
+        //q and -q are the same rotation, the one closer to a gives the shortest path
+        if (dot < 0.F) {
+            dot = -dot;
+            bx = -bx;
+            by = -by;
+            bz = -bz;
+            bw = -bw;
+        }
+        float ka, kb;
+        if (dot > SLERP_THRESHOLD) {
+            ka = 1.F - t;
+            kb = t;
+        } else {
+            double angle = Math.acos(dot);
+            double sin = Math.sin(angle);
+            ka = (float) (Math.sin((1 - t) * angle) / sin);
+            kb = (float) (Math.sin(t * angle) / sin);
+        }
+        r[ro] = ka * ax + kb * bx;
+        r[ro + 1] = ka * ay + kb * by;
+        r[ro + 2] = ka * az + kb * bz;
+        r[ro + 3] = ka * aw + kb * bw;
+        if (dot > SLERP_THRESHOLD)
+            normalize(r, ro);
+    }
+
+    /**
+     * Compose the 4*4 matrix of a scale, followed by the rotation of a unit quaternion, followed by a translation.
+     * The matrix is written directly, without multiplying matrices.
+     * @param m - array receiving the matrix, in column major order as OpenGL
+     * @param mo - offset of the matrix in the array
+     * @param t - array of the translation x, y and z
+     * @param to - offset of the translation
+     * @param q - array of the quaternion
+     * @param qo - offset of the quaternion
+     * @param s - array of the scale along x, y and z
+     * @param so - offset of the scale
+     */
+    public static void toTRSMatrix(float[] m, int mo, float[] t, int to, float[] q, int qo, float[] s, int so) {
+        float x = q[qo], y = q[qo + 1], z = q[qo + 2], w = q[qo + 3];
+        float x2 = x + x, y2 = y + y, z2 = z + z;
+        float xx = x * x2, yy = y * y2, zz = z * z2;
+        float xy = x * y2, xz = x * z2, yz = y * z2;
+        float wx = w * x2, wy = w * y2, wz = w * z2;
+        float sx = s[so], sy = s[so + 1], sz = s[so + 2];
+        m[mo] = (1.F - yy - zz) * sx;
+        m[mo + 1] = (xy + wz) * sx;
+        m[mo + 2] = (xz - wy) * sx;
+        m[mo + 3] = 0.F;
+        m[mo + 4] = (xy - wz) * sy;
+        m[mo + 5] = (1.F - xx - zz) * sy;
+        m[mo + 6] = (yz + wx) * sy;
+        m[mo + 7] = 0.F;
+        m[mo + 8] = (xz + wy) * sz;
+        m[mo + 9] = (yz - wx) * sz;
+        m[mo + 10] = (1.F - xx - yy) * sz;
+        m[mo + 11] = 0.F;
+        m[mo + 12] = t[to];
+        m[mo + 13] = t[to + 1];
+        m[mo + 14] = t[to + 2];
+        m[mo + 15] = 1.F;
+    }
+}
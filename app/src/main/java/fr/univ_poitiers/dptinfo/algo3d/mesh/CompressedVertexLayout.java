@@ -0,0 +1,217 @@
+package fr.univ_poitiers.dptinfo.algo3d.mesh;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Compressed interleaved layout of the vertices sent to the GPU, 16 bytes per vertex instead of the 32 of {@link VertexLayout} :
+ * <ul>
+ *     <li>the position is quantized on 3 normalized unsigned shorts inside the bounding box of the mesh, followed by 1 unused short,</li>
+ *     <li>the normal is encoded with the octahedral mapping on 2 normalized shorts,</li>
+ *     <li>the texture coordinates are quantized on 2 normalized unsigned shorts inside their bounding box.</li>
+ * </ul>
+ * The shaders get the attributes in [0, 1] or [-1, 1] and rebuild the values with the dequantization uniforms given by
+ * {@link #getPositionScale()}, {@link #getPositionOffset()} and {@link #getTextureDequantization()}, and with the octahedral decoding.
+ * Does not depend on OpenGL, the encoding can be done without a GPU context.
+ */
+public class CompressedVertexLayout {
+
+    /**
+     * Size in bytes between two vertices, to give as stride to the attribute pointers.
+     */
+    public static final int STRIDE = 16;
+    /**
+     * Offset in bytes of the position in a vertex.
+     */
+    public static final int POSITION_OFFSET = 0;
+    /**
+     * Offset in bytes of the normal in a vertex.
+     */
+    public static final int NORMAL_OFFSET = 8;
+    /**
+     * Offset in bytes of the texture coordinates in a vertex.
+     */
+    public static final int TEXTURE_OFFSET = 12;
+    /**
+     * Largest value of a normalized unsigned short.
+     */
+    private static final int USHORT_MAX = 0xFFFF;
+    /**
+     * Largest value of a normalized short.
+     */
+    private static final int SHORT_MAX = Short.MAX_VALUE;
+
+    /**
+     * The encoded vertices.
+     */
+    private final ByteBuffer buffer;
+    /**
+     * Size of the bounding box of the positions, to multiply the quantized positions by.
+     */
+    private final float[] positionScale = new float[3];
+    /**
+     * Minimum corner of the bounding box of the positions, to add to the scaled positions.
+     */
+    private final float[] positionOffset = new float[3];
+    /**
+     * Size then minimum corner of the bounding box of the texture coordinates.
+     */
+    private final float[] textureDequantization = new float[4];
+
+    /**
+     * Encode the attributes of the vertices.
+     * The buffers are read from their position 0 and are not modified.
+     * @param vertexpos - vertices position, 3 floats per vertex
+     * @param normals - normals, 3 floats per vertex
+     * @param texturesCoord - texture coordinates, 2 floats per vertex, or null to fill them with 0
+     */
+    public CompressedVertexLayout(FloatBuffer vertexpos, FloatBuffer normals, FloatBuffer texturesCoord) {
+        int nbVertices = vertexpos.capacity() / 3;
+        bounds(vertexpos, 3, positionOffset, positionScale);
+        float[] textureMin = new float[2];
+        float[] textureSize = new float[2];
+        if (texturesCoord != null)
+            bounds(texturesCoord, 2, textureMin, textureSize);
+        textureDequantization[0] = textureSize[0];
+        textureDequantization[1] = textureSize[1];
+        textureDequantization[2] = textureMin[0];
+        textureDequantization[3] = textureMin[1];
+
+        buffer = ByteBuffer.allocateDirect(nbVertices * STRIDE).order(ByteOrder.nativeOrder());
+        short[] octahedral = new short[2];
+        for (int i = 0; i < nbVertices; i++) {
+            for (int k = 0; k < 3; k++)
+                buffer.putShort(quantize(vertexpos.get(i * 3 + k), positionOffset[k], positionScale[k]));
+            buffer.putShort((short) 0);
+            encodeOctahedral(normals.get(i * 3), normals.get(i * 3 + 1), normals.get(i * 3 + 2), octahedral);
+            buffer.putShort(octahedral[0]).putShort(octahedral[1]);
+            for (int k = 0; k < 2; k++)
+                buffer.putShort(texturesCoord == null ? 0 : quantize(texturesCoord.get(i * 2 + k), textureMin[k], textureSize[k]));
+        }
+        buffer.position(0);
+    }
+
+    /**
+     * Compute the bounding box of an array of vectors.
+     * @param values - the vectors
+     * @param size - number of coordinates of a vector
+     * @param min - array receiving the minimum of each coordinate
+     * @param extent - array receiving the difference between the maximum and the minimum of each coordinate
+     */
+    private static void bounds(FloatBuffer values, int size, float[] min, float[] extent) {
+        int count = values.capacity() / size;
+        for (int k = 0; k < size; k++) {
+            float lo = Float.POSITIVE_INFINITY, hi = Float.NEGATIVE_INFINITY;
+            for (int i = 0; i < count; i++) {
+                float v = values.get(i * size + k);
+                lo = Math.min(lo, v);
+                hi = Math.max(hi, v);
+            }
+            min[k] = count == 0 ? 0.F : lo;
+            extent[k] = count == 0 ? 0.F : hi - lo;
+        }
+    }
+
+    /**
+     * Quantize a value on a normalized unsigned short.
+     * @param value - the value
+     * @param min - minimum of the range of the value
+     * @param extent - size of the range of the value
+     * @return the unsigned short, stored in a short
+     */
+    static short quantize(float value, float min, float extent) {
+        if (extent == 0.F)
+            return 0;
+        float t = (value - min) / extent;
+        return (short) Math.round(Math.max(0.F, Math.min(1.F, t)) * USHORT_MAX);
+    }
+
+    /**
+     * Rebuild a value quantized by {@link #quantize(float, float, float)}, as the shaders do.
+     * @param quantized - the unsigned short, stored in a short
+     * @param min - minimum of the range of the value
+     * @param extent - size of the range of the value
+     * @return the value
+     */
+    static float dequantize(short quantized, float min, float extent) {
+        return (quantized & USHORT_MAX) / (float) USHORT_MAX * extent + min;
+    }
+
+    /**
+     * Encode a unit vector with the octahedral mapping on 2 normalized shorts.
+     * The vector is projected on the octahedron |x| + |y| + |z| = 1, whose lower half is folded over the upper one.
+     * @param x - x coordinate of the vector
+     * @param y - y coordinate of the vector
+     * @param z - z coordinate of the vector
+     * @param out - array receiving the 2 shorts
+     */
+    static void encodeOctahedral(float x, float y, float z, short[] out) {
+        float l = Math.abs(x) + Math.abs(y) + Math.abs(z);
+        float u = 0.F, v = 0.F;
+        if (l != 0.F) {
+            u = x / l;
+            v = y / l;
+            if (z < 0.F) {
+                float fu = (1.F - Math.abs(v)) * (u >= 0.F ? 1.F : -1.F);
+                v = (1.F - Math.abs(u)) * (v >= 0.F ? 1.F : -1.F);
+                u = fu;
+            }
+        }
+        out[0] = (short) Math.round(Math.max(-1.F, Math.min(1.F, u)) * SHORT_MAX);
+        out[1] = (short) Math.round(Math.max(-1.F, Math.min(1.F, v)) * SHORT_MAX);
+    }
+
+    /**
+     * Decode a vector encoded by {@link #encodeOctahedral(float, float, float, short[])}, as the shaders do.
+     * @param u - first short
+     * @param v - second short
+     * @param out - array receiving the unit vector
+     */
+    static void decodeOctahedral(short u, short v, float[] out) {
+        float x = Math.max(u / (float) SHORT_MAX, -1.F);
+        float y = Math.max(v / (float) SHORT_MAX, -1.F);
+        float z = 1.F - Math.abs(x) - Math.abs(y);
+        if (z < 0.F) {
+            float fx = (1.F - Math.abs(y)) * (x >= 0.F ? 1.F : -1.F);
+            y = (1.F - Math.abs(x)) * (y >= 0.F ? 1.F : -1.F);
+            x = fx;
+        }
+        float l = (float) Math.sqrt(x * x + y * y + z * z);
+        out[0] = x / l;
+        out[1] = y / l;
+        out[2] = z / l;
+    }
+
+    /**
+     * Returns the encoded vertices.
+     * @return a direct buffer in the native order, with {@link #STRIDE} bytes per vertex
+     */
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Returns the size of the bounding box of the positions, to give to the shaders.
+     * @return the scale of the quantized positions
+     */
+    public float[] getPositionScale() {
+        return positionScale;
+    }
+
+    /**
+     * Returns the minimum corner of the bounding box of the positions, to give to the shaders.
+     * @return the offset of the scaled positions
+     */
+    public float[] getPositionOffset() {
+        return positionOffset;
+    }
+
+    /**
+     * Returns the size (x, y) and the minimum corner (z, w) of the bounding box of the texture coordinates, to give to the shaders.
+     * @return the dequantization of the texture coordinates
+     */
+    public float[] getTextureDequantization() {
+        return textureDequantization;
+    }
+}
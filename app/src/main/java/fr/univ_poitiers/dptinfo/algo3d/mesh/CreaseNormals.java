@@ -0,0 +1,160 @@
+package fr.univ_poitiers.dptinfo.algo3d.mesh;
+
+import java.util.Arrays;
+
+/**
+ * Class to calculate smooth shading normals that keep the hard edges of a mesh.
+ * Each triangle corner gets the weighted normals of the triangles around its vertex that make an angle under the crease angle with its own triangle.
+ * The corners of a vertex ending with the same normal share a single vertex, the other ones get a copy of the vertex,
+ * so the vertices are only split along the edges sharper than the crease angle.
+ */
+class CreaseNormals {
+
+    /**
+     * Vertices position array after the split.
+     */
+    float[] vertexpos;
+    /**
+     * Normals array after the split.
+     */
+    float[] normals;
+    /**
+     * Texture coordinates array after the split, null if the mesh has none.
+     */
+    float[] texturesCoord;
+    /**
+     * Triangles array using the split vertices.
+     */
+    int[] triangles;
+    /**
+     * Number of vertices after the split.
+     */
+    int verticesCount;
+
+    /**
+     * Split the vertices along the sharp edges and calculate the normals.
+     * @param vertexpos - vertices position array
+     * @param triangles - triangles array
+     * @param texturesCoord - texture coordinates array, may be null
+     * @param creaseAngle - angle in degrees between two triangles above which their common edge is kept hard
+     */
+    void calculate(float[] vertexpos, int[] triangles, float[] texturesCoord, float creaseAngle) {
+        final int nbVertices = vertexpos.length / 3;
+        final int nbTriangles = triangles.length / 3;
+        //from 180 degrees every triangle is taken, whatever the rounding of the dot products
+        final float cosCrease = creaseAngle >= 180.F ? Float.NEGATIVE_INFINITY : (float) Math.cos(Math.toRadians(creaseAngle));
+
+        //unit normal of each triangle to compare them, and weighted normal to sum them as the smooth shading does
+        float[] units = new float[triangles.length];
+        float[] weighted = new float[triangles.length];
+        for (int t = 0; t < nbTriangles; t++) {
+            int i = t * 3;
+            int i1 = triangles[i] * 3;
+            int i2 = triangles[i + 1] * 3;
+            int i3 = triangles[i + 2] * 3;
+            float v1x = vertexpos[i2] - vertexpos[i1], v1y = vertexpos[i2 + 1] - vertexpos[i1 + 1], v1z = vertexpos[i2 + 2] - vertexpos[i1 + 2];
+            float v2x = vertexpos[i3] - vertexpos[i1], v2y = vertexpos[i3 + 1] - vertexpos[i1 + 1], v2z = vertexpos[i3 + 2] - vertexpos[i1 + 2];
+            units[i] = v1y * v2z - v1z * v2y;
+            units[i + 1] = v1z * v2x - v1x * v2z;
+            units[i + 2] = v1x * v2y - v1y * v2x;
+            Mesh.weightedFaceNormal(vertexpos, triangles, i, weighted, i);
+        }
+        Mesh.normalizeAll(units);
+
+        //adjacency : the corners of the vertex v are adjacency[offsets[v]] to adjacency[offsets[v + 1] - 1]
+        int[] offsets = new int[nbVertices + 1];
+        for (int i = 0; i < triangles.length; i++)
+            offsets[triangles[i] + 1]++;
+        for (int v = 0; v < nbVertices; v++)
+            offsets[v + 1] += offsets[v];
+        int[] adjacency = new int[triangles.length];
+        int[] next = offsets.clone();
+        for (int i = 0; i < triangles.length; i++)
+            adjacency[next[triangles[i]]++] = i;
+
+        int capacity = nbVertices + nbVertices / 2 + 1;
+        this.vertexpos = new float[capacity * 3];
+        this.normals = new float[capacity * 3];
+        this.texturesCoord = texturesCoord == null ? null : new float[capacity * 2];
+        this.triangles = new int[triangles.length];
+        verticesCount = 0;
+        for (int v = 0; v < nbVertices; v++) {
+            int first = verticesCount;
+            for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+                int corner = adjacency[k];
+                int face = corner / 3 * 3;
+                float x = 0.F, y = 0.F, z = 0.F;
+                for (int l = offsets[v]; l < offsets[v + 1]; l++) {
+                    int other = adjacency[l] / 3 * 3;
+                    if (other == face || units[face] * units[other] + units[face + 1] * units[other + 1] + units[face + 2] * units[other + 2] >= cosCrease) {
+                        x += weighted[other];
+                        y += weighted[other + 1];
+                        z += weighted[other + 2];
+                    }
+                }
+                float l = x * x + y * y + z * z;
+                if (l != 0.F) {
+                    float inv = 1.F / (float) Math.sqrt(l);
+                    x *= inv;
+                    y *= inv;
+                    z *= inv;
+                }
+                int vertex = first;
+                while (vertex < verticesCount && !sameNormal(vertex, x, y, z))
+                    vertex++;
+                if (vertex == verticesCount)
+                    addVertex(vertexpos, texturesCoord, v, x, y, z);
+                this.triangles[corner] = vertex;
+            }
+        }
+        this.vertexpos = Arrays.copyOf(this.vertexpos, verticesCount * 3);
+        this.normals = Arrays.copyOf(this.normals, verticesCount * 3);
+        if (texturesCoord != null)
+            this.texturesCoord = Arrays.copyOf(this.texturesCoord, verticesCount * 2);
+    }
+
+    /**
+     * Returns true if the split vertex has exactly the given normal.
+     * @param vertex - index of the split vertex
+     * @param x - x coordinate of the normal
+     * @param y - y coordinate of the normal
+     * @param z - z coordinate of the normal
+     * @return true if the normals have the same bits
+     */
+    private boolean sameNormal(int vertex, float x, float y, float z) {
+        return Float.floatToIntBits(normals[vertex * 3]) == Float.floatToIntBits(x)
+                && Float.floatToIntBits(normals[vertex * 3 + 1]) == Float.floatToIntBits(y)
+                && Float.floatToIntBits(normals[vertex * 3 + 2]) == Float.floatToIntBits(z);
+    }
+
+    /**
+     * Add a copy of a vertex of the original mesh with the given normal.
+     * @param vertexpos - vertices position array of the original mesh
+     * @param texturesCoord - texture coordinates array of the original mesh, may be null
+     * @param v - index of the original vertex
+     * @param x - x coordinate of the normal
+     * @param y - y coordinate of the normal
+     * @param z - z coordinate of the normal
+     */
+    private void addVertex(float[] vertexpos, float[] texturesCoord, int v, float x, float y, float z) {
+        if (verticesCount * 3 == this.vertexpos.length) {
+            int capacity = verticesCount + verticesCount / 2 + 1;
+            this.vertexpos = Arrays.copyOf(this.vertexpos, capacity * 3);
+            this.normals = Arrays.copyOf(this.normals, capacity * 3);
+            if (texturesCoord != null)
+                this.texturesCoord = Arrays.copyOf(this.texturesCoord, capacity * 2);
+        }
+        int i = verticesCount * 3;
+        this.vertexpos[i] = vertexpos[v * 3];
+        this.vertexpos[i + 1] = vertexpos[v * 3 + 1];
+        this.vertexpos[i + 2] = vertexpos[v * 3 + 2];
+        normals[i] = x;
+        normals[i + 1] = y;
+        normals[i + 2] = z;
+        if (texturesCoord != null) {
+            this.texturesCoord[verticesCount * 2] = texturesCoord[v * 2];
+            this.texturesCoord[verticesCount * 2 + 1] = texturesCoord[v * 2 + 1];
+        }
+        verticesCount++;
+    }
+}
@@ -0,0 +1,111 @@
+package fr.univ_poitiers.dptinfo.algo3d.mesh;
+
+import java.util.Arrays;
+
+/**
+ * Class to extract the unique edges of the triangles of a mesh, to draw its wireframe with GL_LINES in one draw call per batch.
+ * An edge shared by two triangles is given once, whatever the orientation of the triangles.
+ * The edges are found with an open addressing hash table of primitive long keys, so no object is created per edge.
+ * Works on the batches of 16 bits indices of {@link IndexSplitter}, the edges of a batch using the same vertices as its triangles.
+ * Does not depend on OpenGL.
+ */
+class EdgeExtractor {
+
+    /**
+     * Value of an empty slot of the hash table, the keys of the edges being positive.
+     */
+    private static final long EMPTY = -1L;
+
+    /**
+     * The 16 bits indices of the edges of all the batches, 2 per edge, relative to the first vertex of their batch.
+     */
+    short[] indices;
+    /**
+     * For each batch, the index of its first edge index.
+     */
+    int[] firstIndex;
+    /**
+     * For each batch, its number of edge indices.
+     */
+    int[] indicesCount;
+
+    /**
+     * Hash table of the edges of the current batch.
+     */
+    private long[] table = new long[0];
+
+    /**
+     * Extract the edges of each batch of triangles.
+     * @param triangles - 16 bits indices of the triangles of all the batches
+     * @param trianglesFirstIndex - for each batch, the index of its first triangle index
+     * @param trianglesIndicesCount - for each batch, its number of triangle indices
+     * @param batchesCount - number of batches
+     */
+    void extract(short[] triangles, int[] trianglesFirstIndex, int[] trianglesIndicesCount, int batchesCount) {
+        //a triangle has at most 3 new edges, so a batch has at most as many edges as triangle indices
+        short[] edges = new short[triangles.length * 2];
+        firstIndex = new int[batchesCount];
+        indicesCount = new int[batchesCount];
+        int count = 0;
+        for (int b = 0; b < batchesCount; b++) {
+            firstIndex[b] = count;
+            int end = trianglesFirstIndex[b] + trianglesIndicesCount[b];
+            clearTable(trianglesIndicesCount[b]);
+            for (int i = trianglesFirstIndex[b]; i + 2 < end; i += 3) {
+                int v0 = triangles[i] & 0xFFFF, v1 = triangles[i + 1] & 0xFFFF, v2 = triangles[i + 2] & 0xFFFF;
+                count = addEdge(v0, v1, edges, count);
+                count = addEdge(v1, v2, edges, count);
+                count = addEdge(v2, v0, edges, count);
+            }
+            indicesCount[b] = count - firstIndex[b];
+        }
+        indices = Arrays.copyOf(edges, count);
+    }
+
+    /**
+     * Empty the hash table, making it large enough for a batch.
+     * @param maxEdges - maximum number of edges of the batch
+     */
+    private void clearTable(int maxEdges) {
+        int size = Integer.highestOneBit(Math.max(maxEdges, 1)) * 4;
+        if (table.length < size)
+            table = new long[size];
+        Arrays.fill(table, EMPTY);
+    }
+
+    /**
+     * Add an edge to the edges array if it is not in the hash table yet.
+     * The degenerate edges, with the same vertex twice, are ignored.
+     * @param a - first vertex of the edge
+     * @param b - second vertex of the edge
+     * @param edges - edges array
+     * @param count - number of indices in the edges array
+     * @return the new number of indices in the edges array
+     */
+    private int addEdge(int a, int b, short[] edges, int count) {
+        if (a == b)
+            return count;
+        long key = a < b ? ((long) a << 32) | b : ((long) b << 32) | a;
+        int mask = table.length - 1;
+        int slot = hash(key) & mask;
+        while (table[slot] != EMPTY) {
+            if (table[slot] == key)
+                return count;
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = key;
+        edges[count] = (short) a;
+        edges[count + 1] = (short) b;
+        return count + 2;
+    }
+
+    /**
+     * Mix the bits of a key.
+     * @param key - the key of an edge
+     * @return the hash of the key
+     */
+    private static int hash(long key) {
+        key *= 0x9E3779B97F4A7C15L;
+        return (int) (key ^ (key >>> 32));
+    }
+}
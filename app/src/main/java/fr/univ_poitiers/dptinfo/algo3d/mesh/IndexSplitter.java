@@ -0,0 +1,138 @@
+package fr.univ_poitiers.dptinfo.algo3d.mesh;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Class to convert the triangles of a mesh into 16 bits indices, that do not need the OES_element_index_uint extension and use half of the bandwidth.
+ * A mesh with more than {@link #MAX_VERTICES} vertices is split into batches of consecutive triangles, each one using at most {@link #MAX_VERTICES} vertices.
+ * The vertices used by several batches are duplicated, each batch having its own range of vertices.
+ * Does not depend on OpenGL, the split can be done without a GPU context.
+ */
+class IndexSplitter {
+
+    /**
+     * Maximum number of vertices of a batch, addressed by the 16 bits indices 0 to 65534.
+     * The index 0xFFFF is never used, as it is the primitive restart index of OpenGL ES 3.
+     */
+    static final int MAX_VERTICES = 0xFFFF;
+
+    /**
+     * For each vertex of the batches, the index of the original vertex, or null if the mesh was not split and the vertices are unchanged.
+     */
+    int[] vertices;
+    /**
+     * Number of vertices of the batches.
+     */
+    int verticesCount;
+    /**
+     * The 16 bits indices of all the batches, relative to the first vertex of their batch.
+     */
+    short[] indices;
+    /**
+     * For each batch, the index of its first index.
+     */
+    int[] firstIndex;
+    /**
+     * For each batch, its number of indices.
+     */
+    int[] indicesCount;
+    /**
+     * For each batch, the index of its first vertex.
+     */
+    int[] firstVertex;
+    /**
+     * Number of batches.
+     */
+    int batchesCount;
+
+    /**
+     * Split the triangles.
+     * @param triangles - triangles of the mesh, 3 vertex indices per triangle
+     * @param nbVertices - number of vertices of the mesh
+     */
+    void split(IntBuffer triangles, int nbVertices) {
+        int nbIndices = triangles.capacity();
+        indices = new short[nbIndices];
+        if (nbVertices <= MAX_VERTICES) {
+            for (int i = 0; i < nbIndices; i++)
+                indices[i] = (short) triangles.get(i);
+            vertices = null;
+            verticesCount = nbVertices;
+            firstIndex = new int[]{0};
+            indicesCount = new int[]{nbIndices};
+            firstVertex = new int[]{0};
+            batchesCount = 1;
+            return;
+        }
+        vertices = new int[nbVertices + nbVertices / 8];
+        verticesCount = 0;
+        firstIndex = new int[8];
+        indicesCount = new int[8];
+        firstVertex = new int[8];
+        batchesCount = 0;
+        //local index of each original vertex in the current batch, valid only if the stamp of the vertex is the current batch
+        int[] local = new int[nbVertices];
+        int[] stamp = new int[nbVertices];
+        Arrays.fill(stamp, -1);
+        int batchStart = 0;
+        for (int i = 0; i < nbIndices; i += 3) {
+            int added = 0;
+            for (int k = 0; k < 3; k++) {
+                int v = triangles.get(i + k);
+                if (stamp[v] != batchesCount && (k < 1 || v != triangles.get(i)) && (k < 2 || v != triangles.get(i + 1)))
+                    added++;
+            }
+            if (verticesCount - batchStart + added > MAX_VERTICES) {
+                endBatch(i, batchStart);
+                batchStart = verticesCount;
+            }
+            for (int k = 0; k < 3; k++) {
+                int v = triangles.get(i + k);
+                if (stamp[v] != batchesCount) {
+                    stamp[v] = batchesCount;
+                    local[v] = verticesCount - batchStart;
+                    if (verticesCount == vertices.length)
+                        vertices = Arrays.copyOf(vertices, verticesCount + verticesCount / 2);
+                    vertices[verticesCount++] = v;
+                }
+                indices[i + k] = (short) local[v];
+            }
+        }
+        endBatch(nbIndices, batchStart);
+        vertices = Arrays.copyOf(vertices, verticesCount);
+    }
+
+    /**
+     * Close the current batch.
+     * @param end - index of the first index after the batch
+     * @param batchStart - index of the first vertex of the batch
+     */
+    private void endBatch(int end, int batchStart) {
+        if (batchesCount == firstIndex.length) {
+            firstIndex = Arrays.copyOf(firstIndex, batchesCount * 2);
+            indicesCount = Arrays.copyOf(indicesCount, batchesCount * 2);
+            firstVertex = Arrays.copyOf(firstVertex, batchesCount * 2);
+        }
+        int start = batchesCount == 0 ? 0 : firstIndex[batchesCount - 1] + indicesCount[batchesCount - 1];
+        firstIndex[batchesCount] = start;
+        indicesCount[batchesCount] = end - start;
+        firstVertex[batchesCount] = batchStart;
+        batchesCount++;
+    }
+
+    /**
+     * Gather the attributes of the vertices of the batches from the attributes of the original vertices.
+     * @param attributes - attributes of the original vertices
+     * @param size - number of floats per vertex
+     * @return the attributes of the vertices of the batches
+     */
+    float[] gather(FloatBuffer attributes, int size) {
+        float[] result = new float[verticesCount * size];
+        for (int i = 0; i < verticesCount; i++)
+            for (int k = 0; k < size; k++)
+                result[i * size + k] = attributes.get(vertices[i] * size + k);
+        return result;
+    }
+}
@@ -0,0 +1,243 @@
+package fr.univ_poitiers.dptinfo.algo3d.mesh;
+
+import fr.univ_poitiers.dptinfo.algo3d.gameobject.Component;
+import fr.univ_poitiers.dptinfo.algo3d.gameobject.GameObject;
+import fr.univ_poitiers.dptinfo.algo3d.math.Mat4f;
+
+/**
+ * Component to choose the level of detail of the mesh of the GameObject each frame, from the size of the object on the screen.
+ * The size is the height of the bounding sphere once projected with the projection matrix of the renderer, as a ratio of the height of the screen.
+ * A level only changes when the size goes past its threshold by more than the hysteresis, so an object near a threshold does not pop between two levels.
+ * The level is chosen once per frame from the main camera given to {@link #beginFrame(float[])}, and kept by all the render passes of the frame,
+ * so the reflection draws the same level and the hysteresis and the counters see a single selection per frame.
+ * The chosen level is put in the {@link MeshFilter}, so the {@link MeshRenderer} draws it like any other mesh.
+ * The levels are usually built by {@link Mesh#generateLODChain(float...)}.
+ * The selection does not allocate anything.
+ */
+public class LODGroup extends Component {
+
+    /**
+     * Default hysteresis, the ratio of a threshold the size must go past to change the level.
+     */
+    public static final float DEFAULT_HYSTERESIS = 0.1F;
+
+    /**
+     * Vertical scale of the projection matrix, the cotangent of half of the vertical field of view, shared by all the groups.
+     */
+    private static float projectionScale = 1.F / (float) Math.tan(Math.toRadians(30.0));
+    /**
+     * View matrix of the main camera of the current frame, shared by all the groups.
+     */
+    private static final float[] viewMatrix = {1.F, 0.F, 0.F, 0.F, 0.F, 1.F, 0.F, 0.F, 0.F, 0.F, 1.F, 0.F, 0.F, 0.F, 0.F, 1.F};
+    /**
+     * Number of the current frame, incremented by {@link #beginFrame(float[])}.
+     */
+    private static int frame;
+
+    /**
+     * The levels of detail, from the most detailed.
+     */
+    private Mesh[] levels;
+    /**
+     * For each level, the smallest size on the screen to use it, as a ratio of the height of the screen.
+     */
+    private float[] screenSizes;
+    /**
+     * Bounding sphere of the most detailed level, center and radius.
+     */
+    private float[] boundingSphere;
+    /**
+     * Ratio of a threshold the size must go past to change the level.
+     */
+    private float hysteresis = DEFAULT_HYSTERESIS;
+    /**
+     * Index of the level in the MeshFilter.
+     */
+    private int currentLevel;
+    /**
+     * Number of the frame of the last selection, so the level is chosen once per frame.
+     */
+    private int selectedFrame = -1;
+    /**
+     * True if the levels were acquired from the {@link MeshBufferRegistry} in {@link #start()}.
+     */
+    private boolean acquired;
+
+    /**
+     * MeshFilter of the GameObject, found in {@link #start()}.
+     */
+    private MeshFilter meshFilter;
+    /**
+     * Matrices and vectors used by the selection.
+     */
+    private final float[] modelMatrix = new float[16], modelViewMatrix = new float[16], viewCenter = new float[3];
+
+    /**
+     * Number of triangles of the selected levels since the last reset of the counters.
+     */
+    private long submittedTriangles;
+    /**
+     * Number of triangles the most detailed level would have given since the last reset of the counters.
+     */
+    private long fullDetailTriangles;
+    /**
+     * Number of level changes since the last reset of the counters.
+     */
+    private int levelChanges;
+
+    /**
+     * Constructor.
+     * @param gameObject - the gameobject linked to the component
+     */
+    public LODGroup(GameObject gameObject) {
+        super(gameObject);
+    }
+
+    /**
+     * Set the projection matrix used to compute the size of the objects on the screen, for all the groups.
+     * To be called each time the projection changes, in {@link fr.univ_poitiers.dptinfo.algo3d.MyGLRenderer#onSurfaceChanged}.
+     * @param projectionMatrix - the 4*4 perspective projection matrix
+     */
+    public static void setProjectionMatrix(float[] projectionMatrix) {
+        projectionScale = projectionMatrix[5];
+    }
+
+    /**
+     * Start a new frame : the level of each group is chosen again, from the given view matrix, by the first render pass of the frame.
+     * To be called once per frame before the render passes, in {@link fr.univ_poitiers.dptinfo.algo3d.MyGLRenderer#onDrawFrame}.
+     * @param viewMatrix - the 4*4 view matrix of the main camera
+     */
+    public static void beginFrame(float[] viewMatrix) {
+        System.arraycopy(viewMatrix, 0, LODGroup.viewMatrix, 0, 16);
+        frame++;
+    }
+
+    /**
+     * Set the levels of detail and put the most detailed one in the MeshFilter.
+     * @param levels - the meshes, from the most detailed
+     * @param screenSizes - for each level, the smallest size of the object on the screen to use it, as a ratio of the height of the screen, decreasing
+     */
+    public void setLevels(Mesh[] levels, float[] screenSizes) {
+        if (levels.length == 0 || levels.length != screenSizes.length)
+            throw new IllegalArgumentException("One screen size is needed for each level.");
+        this.levels = levels;
+        this.screenSizes = screenSizes;
+        this.boundingSphere = levels[0].getBoundingSphere();
+        currentLevel = 0;
+        selectedFrame = -1;
+        MeshFilter mf = gameObject.getCompotent(MeshFilter.class);
+        if (mf == null)
+            gameObject.setMesh(levels[0]);
+        else
+            mf.setMesh(levels[0]);
+    }
+
+    /**
+     * Set the hysteresis : to change the level, the size must be above the threshold of the finer level times 1 + hysteresis,
+     * or under the threshold of the current level times 1 - hysteresis.
+     * @param hysteresis - ratio of the thresholds, 0 to change the level as soon as a threshold is crossed
+     */
+    public void setHysteresis(float hysteresis) {
+        this.hysteresis = hysteresis;
+    }
+
+    /**
+     * Returns the index of the level in the MeshFilter.
+     * @return the current level, 0 being the most detailed
+     */
+    public int getCurrentLevel() {
+        return currentLevel;
+    }
+
+    /**
+     * Returns the number of triangles of the levels selected since the last reset of the counters, one selection per frame.
+     * @return the number of submitted triangles
+     */
+    public long getSubmittedTriangles() {
+        return submittedTriangles;
+    }
+
+    /**
+     * Returns the number of triangles the most detailed level would have given since the last reset of the counters.
+     * @return the number of triangles without level of detail
+     */
+    public long getFullDetailTriangles() {
+        return fullDetailTriangles;
+    }
+
+    /**
+     * Returns the number of level changes since the last reset of the counters.
+     * @return the number of level changes
+     */
+    public int getLevelChanges() {
+        return levelChanges;
+    }
+
+    /**
+     * Reset the triangles and level changes counters.
+     */
+    public void resetCounters() {
+        submittedTriangles = 0;
+        fullDetailTriangles = 0;
+        levelChanges = 0;
+    }
+
+    /**
+     * Find the MeshFilter, and acquire all the levels from the {@link MeshBufferRegistry} to send them to the GPU.
+     */
+    @Override
+    public void start() {
+        meshFilter = gameObject.getCompotent(MeshFilter.class);
+        if (levels == null)
+            return;
+        for (Mesh level : levels)
+            MeshBufferRegistry.getInstance().acquire(level);
+        acquired = true;
+    }
+
+    /**
+     * Release the levels acquired in {@link #start()}.
+     */
+    @Override
+    public void onDestroy() {
+        if (!acquired)
+            return;
+        for (Mesh level : levels)
+            MeshBufferRegistry.getInstance().release(level);
+        acquired = false;
+    }
+
+    /**
+     * Choose the level from the size of the bounding sphere on the screen of the main camera, and put it in the MeshFilter.
+     * Does nothing if the level was already chosen during this frame.
+     */
+    @Override
+    public void earlyUpdate() {
+        if (levels == null || meshFilter == null || selectedFrame == frame)
+            return;
+        selectedFrame = frame;
+        transform.getGlobalModelMatrix(modelMatrix);
+        Mat4f.multiply(modelViewMatrix, 0, viewMatrix, 0, modelMatrix, 0);
+        Mat4f.transformPoint(viewCenter, 0, modelViewMatrix, 0, boundingSphere[0], boundingSphere[1], boundingSphere[2]);
+        float scale = 0.F;
+        for (int c = 0; c < 3; c++) {
+            float x = modelViewMatrix[c * 4], y = modelViewMatrix[c * 4 + 1], z = modelViewMatrix[c * 4 + 2];
+            scale = Math.max(scale, (float) Math.sqrt(x * x + y * y + z * z));
+        }
+        float distance = Math.max(-viewCenter[2], 1e-3F);
+        float size = boundingSphere[3] * scale * projectionScale / distance;
+
+        int level = currentLevel;
+        while (level > 0 && size >= screenSizes[level - 1] * (1.F + hysteresis))
+            level--;
+        while (level < levels.length - 1 && size < screenSizes[level] * (1.F - hysteresis))
+            level++;
+        if (level != currentLevel) {
+            currentLevel = level;
+            levelChanges++;
+            meshFilter.setMesh(levels[level]);
+        }
+        submittedTriangles += levels[level].getIndicesCount() / 3;
+        fullDetailTriangles += levels[0].getIndicesCount() / 3;
+    }
+}
@@ -4,6 +4,7 @@ import android.content.Context;
 import android.opengl.GLES20;
 
 import fr.univ_poitiers.dptinfo.algo3d.MyGLRenderer;
+import fr.univ_poitiers.dptinfo.algo3d.gl.GL;
 import fr.univ_poitiers.dptinfo.algo3d.shaders.MultipleLightingShaders;
 import fr.univ_poitiers.dptinfo.algo3d.shaders.ShaderManager;
 import fr.univ_poitiers.dptinfo.algo3d.shaders.ShadowShaders;
@@ -149,8 +150,8 @@ public class Material {
         ShaderManager.getInstance().getShader(shader).setMaterialShininess(shininess);
         ShaderManager.getInstance().getShader(shader).setTexturing(textureId != -1);
         if (textureId != -1) {
-            GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
-            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textureId);
+            GL.glActiveTexture(GLES20.GL_TEXTURE0);
+            GL.glBindTexture(GLES20.GL_TEXTURE_2D, textureId);
             ShaderManager.getInstance().getShader(shader).setTextureUnit(0);
         }
     }
@@ -4,11 +4,14 @@ import android.opengl.GLES20;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.nio.FloatBuffer;
-import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
 
+import fr.univ_poitiers.dptinfo.algo3d.GpuResourceTracker;
+import fr.univ_poitiers.dptinfo.algo3d.MainActivity;
 import fr.univ_poitiers.dptinfo.algo3d.MyGLRenderer;
 import fr.univ_poitiers.dptinfo.algo3d.Vec3f;
+import fr.univ_poitiers.dptinfo.algo3d.gl.GL;
 import fr.univ_poitiers.dptinfo.algo3d.shaders.DepthShader;
 import fr.univ_poitiers.dptinfo.algo3d.shaders.MultipleLightingShaders;
 
@@ -17,21 +20,55 @@ import fr.univ_poitiers.dptinfo.algo3d.shaders.MultipleLightingShaders;
  */
 public class Mesh {
     /**
-     * Handle for the positions buffer.
+     * Handle for the interleaved vertices buffer, see {@link VertexLayout}.
      */
-    private int glposbuffer;
+    private int glvertexbuffer;
     /**
      * Handle for the triangles buffer.
      */
     private int gltrianglesbuffer;
     /**
-     * Handle for the normals buffer
+     * Handle for the buffer of the unique edges, drawn as GL_LINES, see {@link EdgeExtractor}.
      */
-    private int glnormalbuffer;
+    private int gledgesbuffer;
+
+    /**
+     * True to send the vertices to the GPU with the {@link CompressedVertexLayout}.
+     */
+    private boolean compressed;
     /**
-     * Handle for the textures coordinates buffer
+     * Dequantization of the positions given to the shaders.
      */
-    private int gltexturebuffer;
+    private float[] positionScale = MeshBuffers.NO_SCALE, positionOffset = MeshBuffers.NO_OFFSET;
+    /**
+     * Dequantization of the texture coordinates given to the shaders.
+     */
+    private float[] textureDequantization = MeshBuffers.NO_TEXTURE_DEQUANTIZATION;
+
+    /**
+     * For each batch of triangles drawn with 16 bits indices, the index of its first index, see {@link IndexSplitter}.
+     */
+    private int[] batchFirstIndex;
+    /**
+     * For each batch of triangles, its number of indices.
+     */
+    private int[] batchIndicesCount;
+    /**
+     * For each batch of triangles, the index of its first vertex in the vertices buffer.
+     */
+    private int[] batchFirstVertex;
+    /**
+     * Number of batches of triangles.
+     */
+    private int batchesCount;
+    /**
+     * For each batch, the index of its first edge index in the edges buffer.
+     */
+    private int[] batchFirstEdgeIndex;
+    /**
+     * For each batch, its number of edge indices.
+     */
+    private int[] batchEdgeIndicesCount;
 
     /**
      * Array to store the vertex positions.
@@ -50,6 +87,16 @@ public class Mesh {
      */
     protected float[] texturesCoord;
 
+    /**
+     * Views of the mapped file sent directly to the GPU instead of the arrays, when the mesh was loaded from a {@link MeshFile}.
+     * Null otherwise, or once the arrays were rebuilt from it.
+     */
+    private MeshBuffers mapped;
+
+    /**
+     * True to calculate the smooth shading normals of large meshes with all the cores of the device.
+     */
+    private boolean parallelNormals;
 
     /**
      * Default Constructor to be used by subclasses.
@@ -94,82 +141,436 @@ public class Mesh {
         this.texturesCoord = textures;
     }
 
+    /**
+     * Constructor to be used by the {@link MeshFile} loader.
+     * The buffers are given as is to the GPU in {@link #initGraphics()}, the arrays are only rebuilt from them if they are accessed.
+     * @param mapped - the buffers of the mesh, views of the mapped file
+     */
+    Mesh(MeshBuffers mapped) {
+        this.mapped = mapped;
+        this.compressed = mapped.compressed;
+    }
+
+    /**
+     * Rebuild the arrays from the mapped buffers, if the mesh was loaded from a {@link MeshFile} and the arrays were not created yet.
+     * The arrays of a compressed mesh are dequantized, so they have the precision of the vertices drawn.
+     */
+    private void loadArrays() {
+        if (mapped == null)
+            return;
+        vertexpos = mapped.unpackPositions();
+        normals = mapped.unpackNormals();
+        texturesCoord = mapped.unpackTexturesCoord();
+        triangles = mapped.unpackTriangles();
+        mapped = null;
+    }
+
+    /**
+     * Returns the number of indices of the triangles, that is to say 3 times the number of triangles.
+     * @return the number of indices
+     */
+    public int getIndicesCount() {
+        return mapped != null ? mapped.indices.capacity() : triangles.length;
+    }
+
+    /**
+     * Returns the number of vertices.
+     * @return the number of vertices
+     */
+    public int getVerticesCount() {
+        return mapped != null ? mapped.nbVertices : vertexpos.length / 3;
+    }
+
+    /**
+     * Returns the vertices position array, 3 floats per vertex.
+     * @return the vertices position array
+     */
+    public float[] getVertexpos() {
+        loadArrays();
+        return vertexpos;
+    }
+
+    /**
+     * Returns the triangles array, 3 vertex indices per triangle.
+     * @return the triangles array
+     */
+    public int[] getTriangles() {
+        loadArrays();
+        return triangles;
+    }
+
+    /**
+     * Returns the normals array, 3 floats per vertex.
+     * @return the normals array
+     */
+    public float[] getNormals() {
+        loadArrays();
+        return normals;
+    }
+
+    /**
+     * Returns the texture coordinates array, 2 floats per vertex.
+     * @return the texture coordinates array, null if the mesh has none
+     */
+    public float[] getTexturesCoord() {
+        loadArrays();
+        return texturesCoord;
+    }
+
+    /**
+     * Enable or disable the parallel calculation of the smooth shading normals.
+     * It is only used for meshes of at least {@link ParallelNormals#MIN_TRIANGLES} triangles, smaller ones are always processed serially.
+     * The flat shading normals are always calculated serially, as each vertex is written by a single triangle and the work is too small to be split.
+     * @param parallelNormals - true to enable the parallel calculation
+     * @return the current mesh
+     */
+    public Mesh setParallelNormals(boolean parallelNormals) {
+        this.parallelNormals = parallelNormals;
+        return this;
+    }
+
+    /**
+     * Returns true if the smooth shading normals of large meshes are calculated with all the cores of the device.
+     * @return true if the parallel calculation is enabled
+     */
+    public boolean isParallelNormals() {
+        return parallelNormals;
+    }
+
     /**
      * Calculate and set the normals of the Mesh for a flat shading appearance.
+     * Works directly on the arrays, no object is created per triangle.
      */
     public void calculateFlatShadingNormals() {
-        normals = new float[vertexpos.length];
+        loadArrays();
+        final float[] vertexpos = this.vertexpos;
+        final int[] triangles = this.triangles;
+        final float[] normals = new float[vertexpos.length];
         for (int i = 0; i < triangles.length; i += 3) {
-            Vec3f p1 = new Vec3f(vertexpos[triangles[i] * 3], vertexpos[triangles[i] * 3 + 1], vertexpos[triangles[i] * 3 + 2]);
-            Vec3f p2 = new Vec3f(vertexpos[triangles[i + 1] * 3], vertexpos[triangles[i + 1] * 3 + 1], vertexpos[triangles[i + 1] * 3 + 2]);
-            Vec3f p3 = new Vec3f(vertexpos[triangles[i + 2] * 3], vertexpos[triangles[i + 2] * 3 + 1], vertexpos[triangles[i + 2] * 3 + 2]);
-            Vec3f n = getNormal(p1, p2, p3);
-            normals[triangles[i] * 3] = n.x;
-            normals[triangles[i] * 3 + 1] = n.y;
-            normals[triangles[i] * 3 + 2] = n.z;
-            normals[triangles[i + 1] * 3] = n.x;
-            normals[triangles[i + 1] * 3 + 1] = n.y;
-            normals[triangles[i + 1] * 3 + 2] = n.z;
-            normals[triangles[i + 2] * 3] = n.x;
-            normals[triangles[i + 2] * 3 + 1] = n.y;
-            normals[triangles[i + 2] * 3 + 2] = n.z;
+            final int i1 = triangles[i] * 3;
+            final int i2 = triangles[i + 1] * 3;
+            final int i3 = triangles[i + 2] * 3;
+            final float p1x = vertexpos[i1], p1y = vertexpos[i1 + 1], p1z = vertexpos[i1 + 2];
+            final float v1x = vertexpos[i2] - p1x, v1y = vertexpos[i2 + 1] - p1y, v1z = vertexpos[i2 + 2] - p1z;
+            final float v2x = vertexpos[i3] - p1x, v2y = vertexpos[i3 + 1] - p1y, v2z = vertexpos[i3 + 2] - p1z;
+            float nx = v1y * v2z - v1z * v2y;
+            float ny = v1z * v2x - v1x * v2z;
+            float nz = v1x * v2y - v1y * v2x;
+            final float l = nx * nx + ny * ny + nz * nz;
+            if (l != 0.F) {
+                final float inv = 1.F / (float) Math.sqrt(l);
+                nx *= inv;
+                ny *= inv;
+                nz *= inv;
+            }
+            normals[i1] = nx;
+            normals[i1 + 1] = ny;
+            normals[i1 + 2] = nz;
+            normals[i2] = nx;
+            normals[i2 + 1] = ny;
+            normals[i2 + 2] = nz;
+            normals[i3] = nx;
+            normals[i3 + 1] = ny;
+            normals[i3 + 2] = nz;
         }
+        this.normals = normals;
     }
 
     /**
      * Calculate and set the normals of the Mesh for a smooth shading appearance.
-     * Hard edges are lost.
+     * Each triangle adds its normal, weighted by its area and the product of its angles, to its three vertices.
+     * Works directly on the arrays, no object is created per triangle.
+     * If the parallel normals are enabled and the mesh is large enough, the calculation is done by {@link ParallelNormals}, with the same result.
+     * Hard edges are lost, see {@link #calculateCreaseShadingNormals(float)} to keep them.
      */
     public void calculateSmoothShadingNormals() {
-        normals = new float[vertexpos.length];
+        loadArrays();
+        if (parallelNormals && triangles.length / 3 >= ParallelNormals.MIN_TRIANGLES) {
+            normals = ParallelNormals.smooth(vertexpos, triangles);
+            return;
+        }
+        final float[] vertexpos = this.vertexpos;
+        final int[] triangles = this.triangles;
+        final float[] normals = new float[vertexpos.length];
+        final float[] n = new float[3];
         for (int i = 0; i < triangles.length; i += 3) {
-            Vec3f p1 = new Vec3f(vertexpos[triangles[i] * 3], vertexpos[triangles[i] * 3 + 1], vertexpos[triangles[i] * 3 + 2]);
-            Vec3f p2 = new Vec3f(vertexpos[triangles[i + 1] * 3], vertexpos[triangles[i + 1] * 3 + 1], vertexpos[triangles[i + 1] * 3 + 2]);
-            Vec3f p3 = new Vec3f(vertexpos[triangles[i + 2] * 3], vertexpos[triangles[i + 2] * 3 + 1], vertexpos[triangles[i + 2] * 3 + 2]);
-            Vec3f v1 = new Vec3f();
-            v1.setSub(p3, p1);
-            Vec3f v2 = new Vec3f();
-            v2.setSub(p3, p2);
-            Vec3f n = new Vec3f();
-            n.setCrossProduct(v1, v2);
-            float a1 = calcAngle(p1, p2, p3);
-            float a2 = calcAngle(p2, p3, p1);
-            float a3 = calcAngle(p3, p1, p2);
-            Vec3f n1 = n.scale(a1);
-            Vec3f n2 = n.scale(a2);
-            Vec3f n3 = n.scale(a3);
-            normals[triangles[i] * 3] += n1.x;
-            normals[triangles[i] * 3 + 1] += n1.y;
-            normals[triangles[i] * 3 + 2] += n1.z;
-            normals[triangles[i + 1] * 3] += n2.x;
-            normals[triangles[i + 1] * 3 + 1] += n2.y;
-            normals[triangles[i + 1] * 3 + 2] += n2.z;
-            normals[triangles[i + 2] * 3] += n3.x;
-            normals[triangles[i + 2] * 3 + 1] += n3.y;
-            normals[triangles[i + 2] * 3 + 2] += n3.z;
+            weightedFaceNormal(vertexpos, triangles, i, n, 0);
+            final int i1 = triangles[i] * 3;
+            final int i2 = triangles[i + 1] * 3;
+            final int i3 = triangles[i + 2] * 3;
+            normals[i1] += n[0];
+            normals[i1 + 1] += n[1];
+            normals[i1 + 2] += n[2];
+            normals[i2] += n[0];
+            normals[i2 + 1] += n[1];
+            normals[i2 + 2] += n[2];
+            normals[i3] += n[0];
+            normals[i3 + 1] += n[1];
+            normals[i3 + 2] += n[2];
         }
+        normalizeAll(normals);
+        this.normals = normals;
+    }
+
+    /**
+     * Calculate and set the normals of the Mesh for a smooth shading appearance keeping the hard edges.
+     * The vertices are split along the edges where the angle between the two triangles is above the crease angle,
+     * so the vertices, triangles and texture coordinates arrays are replaced.
+     * With a crease angle of 180 degrees, no vertex is split and the normals are the same as with {@link #calculateSmoothShadingNormals()}.
+     * Only the triangles sharing a vertex index are smoothed together, the vertices duplicated for the texture coordinates stay separated.
+     * @param creaseAngle - angle in degrees between two triangles above which their common edge is kept hard
+     */
+    public void calculateCreaseShadingNormals(float creaseAngle) {
+        loadArrays();
+        CreaseNormals crease = new CreaseNormals();
+        crease.calculate(vertexpos, triangles, texturesCoord, creaseAngle);
+        vertexpos = crease.vertexpos;
+        normals = crease.normals;
+        texturesCoord = crease.texturesCoord;
+        triangles = crease.triangles;
+    }
+
+    /**
+     * Calculate the normal of a triangle weighted by its area and the product of its angles, as added to its vertices by the smooth shading.
+     * @param vertexpos - vertices position array
+     * @param triangles - triangles array
+     * @param i - index in the triangles array of the first vertex of the triangle
+     * @param out - array receiving the weighted normal
+     * @param o - index in out of the x coordinate
+     */
+    static void weightedFaceNormal(float[] vertexpos, int[] triangles, int i, float[] out, int o) {
+        final int i1 = triangles[i] * 3;
+        final int i2 = triangles[i + 1] * 3;
+        final int i3 = triangles[i + 2] * 3;
+        final float p1x = vertexpos[i1], p1y = vertexpos[i1 + 1], p1z = vertexpos[i1 + 2];
+        final float p2x = vertexpos[i2], p2y = vertexpos[i2 + 1], p2z = vertexpos[i2 + 2];
+        final float p3x = vertexpos[i3], p3y = vertexpos[i3 + 1], p3z = vertexpos[i3 + 2];
+        final float v1x = p3x - p1x, v1y = p3y - p1y, v1z = p3z - p1z;
+        final float v2x = p3x - p2x, v2y = p3y - p2y, v2z = p3z - p2z;
+        final float a1 = calcAngle(p2x - p1x, p2y - p1y, p2z - p1z, v1x, v1y, v1z);
+        final float a2 = calcAngle(v2x, v2y, v2z, p1x - p2x, p1y - p2y, p1z - p2z);
+        final float a3 = calcAngle(-v1x, -v1y, -v1z, -v2x, -v2y, -v2z);
+        out[o] = (v1y * v2z - v1z * v2y) * a1 * a2 * a3;
+        out[o + 1] = (v1z * v2x - v1x * v2z) * a1 * a2 * a3;
+        out[o + 2] = (v1x * v2y - v1y * v2x) * a1 * a2 * a3;
+    }
+
+    /**
+     * Normalize in place each vector of an array of 3 floats per vertex, null vectors being left as is.
+     * @param normals - the array to normalize
+     */
+    static void normalizeAll(float[] normals) {
         for (int i = 0; i < normals.length; i += 3) {
-            Vec3f n = new Vec3f(normals[i], normals[i + 1], normals[i + 2]);
-            n.normalize();
-            normals[i] = n.x;
-            normals[i + 1] = n.y;
-            normals[i + 2] = n.z;
+            final float x = normals[i], y = normals[i + 1], z = normals[i + 2];
+            final float l = x * x + y * y + z * z;
+            if (l != 0.F) {
+                final float inv = 1.F / (float) Math.sqrt(l);
+                normals[i] = x * inv;
+                normals[i + 1] = y * inv;
+                normals[i + 2] = z * inv;
+            }
         }
     }
 
     /**
-     * Calculate and returns an angle between the vector p1p2 and p1p3.
-     * @param p1 - the common point of the 2 vectors
-     * @param p2 - extremity of the first vector
-     * @param p3 - extremity of the second vector
+     * Calculate and returns the angle between two vectors.
+     * @param ux - x coordinate of the first vector
+     * @param uy - y coordinate of the first vector
+     * @param uz - z coordinate of the first vector
+     * @param vx - x coordinate of the second vector
+     * @param vy - y coordinate of the second vector
+     * @param vz - z coordinate of the second vector
      * @return an angle in radian.
      */
-    private float calcAngle(Vec3f p1, Vec3f p2, Vec3f p3) {
-        Vec3f v1 = new Vec3f();
-        v1.setSub(p2, p1);
-        Vec3f v2 = new Vec3f();
-        v2.setSub(p3, p1);
-        return (float) Math.acos(v1.dotProduct(v2) / (v1.length() * v2.length()));
+    static float calcAngle(float ux, float uy, float uz, float vx, float vy, float vz) {
+        final float lu = (float) Math.sqrt(ux * ux + uy * uy + uz * uz);
+        final float lv = (float) Math.sqrt(vx * vx + vy * vy + vz * vz);
+        return (float) Math.acos((ux * vx + uy * vy + uz * vz) / (lu * lv));
+    }
+
+    /**
+     * Reorder the triangles to make a better use of the post-transform vertex cache of the GPU, then renumber the vertices in the order they are first used.
+     * The geometry is unchanged, only the order of the triangles and of the vertices, see {@link VertexCacheOptimizer}.
+     * The average cache miss ratio before and after is logged.
+     * @return the current mesh
+     */
+    public Mesh optimizeVertexCache() {
+        loadArrays();
+        int nbVertices = getVerticesCount();
+        float before = VertexCacheOptimizer.acmr(triangles, nbVertices);
+        setTrianglesInFetchOrder(VertexCacheOptimizer.optimizeTriangles(triangles, nbVertices));
+        MainActivity.log("Vertex cache optimized, ACMR (FIFO " + VertexCacheOptimizer.FIFO_SIZE + ") : " + before + " -> " + VertexCacheOptimizer.acmr(triangles, nbVertices));
+        return this;
+    }
+
+    /**
+     * Reorder the triangles so the triangles facing outwards are drawn first, and hide more fragments from the depth test, see {@link OverdrawOptimizer}.
+     * Should be called after {@link #optimizeVertexCache()}, whose order is kept inside clusters of triangles. The vertices are then renumbered in the order they are first used.
+     * The average cache miss ratio before and after is logged. The overdraw, whose estimation rasterizes the mesh 6 times,
+     * is not measured here but on demand with {@link #getOverdraw()}.
+     * @param threshold - largest ratio of the ACMR of a cluster to the current ACMR, 1.05 is a good trade-off
+     * @return the current mesh
+     */
+    public Mesh optimizeOverdraw(float threshold) {
+        loadArrays();
+        int nbVertices = getVerticesCount();
+        float acmrBefore = VertexCacheOptimizer.acmr(triangles, nbVertices);
+        setTrianglesInFetchOrder(OverdrawOptimizer.optimize(vertexpos, triangles, nbVertices, threshold));
+        MainActivity.log("Overdraw optimized, ACMR : " + acmrBefore + " -> " + VertexCacheOptimizer.acmr(triangles, nbVertices));
+        return this;
+    }
+
+    /**
+     * Returns the estimated overdraw of the mesh, the number of fragments shaded for each covered pixel,
+     * with back face culling and a depth test, averaged over 6 orthographic views along the axes.
+     * @return the overdraw, 1 if no fragment is shaded twice
+     */
+    public float getOverdraw() {
+        loadArrays();
+        return OverdrawOptimizer.overdraw(vertexpos, triangles);
+    }
+
+    /**
+     * Build a simplified copy of the mesh with the given ratio of its triangles, see {@link QuadricSimplifier}.
+     * The seams of the normals and of the texture coordinates are kept.
+     * A mesh whose triangles all have their own vertices, as imported with flat shading, is simplified on its positions and gets flat normals again.
+     * @param ratio - ratio of the triangles to keep, between 0 and 1
+     * @return the simplified mesh, sent to the GPU the same way as this one
+     */
+    public Mesh simplify(float ratio) {
+        loadArrays();
+        boolean flat = hasOwnVertices();
+        QuadricSimplifier simplifier = new QuadricSimplifier();
+        simplifier.simplify(vertexpos, flat ? null : normals, texturesCoord, triangles, (int) (triangles.length / 3 * ratio));
+        int[] simplified = simplifier.triangles;
+        Mesh mesh;
+        if (flat) {
+            float[] pos = new float[simplified.length * 3];
+            float[] textures = texturesCoord == null ? null : new float[simplified.length * 2];
+            int[] tris = new int[simplified.length];
+            for (int i = 0; i < simplified.length; i++) {
+                System.arraycopy(vertexpos, simplified[i] * 3, pos, i * 3, 3);
+                if (textures != null)
+                    System.arraycopy(texturesCoord, simplified[i] * 2, textures, i * 2, 2);
+                tris[i] = i;
+            }
+            mesh = new Mesh(pos, tris, new float[pos.length], textures);
+            mesh.calculateFlatShadingNormals();
+        } else {
+            mesh = new Mesh(vertexpos, simplified, normals, texturesCoord);
+            mesh.removeUnusedVertices();
+        }
+        mesh.compressed = compressed;
+        return mesh;
+    }
+
+    /**
+     * Build a chain of levels of detail, each level being simplified from the previous one, and reordered for the vertex cache.
+     * The number of triangles and the time taken by each level are logged.
+     * @param ratios - decreasing ratios of the triangles of this mesh to keep in each level
+     * @return the levels, starting with this mesh
+     */
+    public Mesh[] generateLODChain(float... ratios) {
+        Mesh[] levels = new Mesh[ratios.length + 1];
+        levels[0] = this;
+        int nbTriangles = getIndicesCount() / 3;
+        for (int i = 0; i < ratios.length; i++) {
+            long start = System.nanoTime();
+            Mesh previous = levels[i];
+            levels[i + 1] = previous.simplify(ratios[i] * nbTriangles / (previous.getIndicesCount() / 3));
+            if (!levels[i + 1].hasOwnVertices())
+                levels[i + 1].optimizeVertexCache();
+            MainActivity.log("LOD " + (i + 1) + " : " + levels[i + 1].getIndicesCount() / 3 + " / " + nbTriangles + " triangles in "
+                    + (System.nanoTime() - start) / 1000000 + " ms");
+        }
+        return levels;
+    }
+
+    /**
+     * Estimate the Hausdorff distance between the surfaces of this mesh and another one, see {@link MeshDistance}.
+     * @param other - the other mesh
+     * @return the largest distance from a vertex or a triangle center of one mesh to the other mesh
+     */
+    public float hausdorffDistance(Mesh other) {
+        return MeshDistance.hausdorff(getVertexpos(), getTriangles(), other.getVertexpos(), other.getTriangles());
+    }
+
+    /**
+     * Compute a sphere containing the vertices : centered on their bounding box, with the distance to the farthest vertex as radius.
+     * @return the center x, y, z and the radius of the sphere
+     */
+    public float[] getBoundingSphere() {
+        loadArrays();
+        float[] min = {Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY};
+        float[] max = {Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
+        for (int i = 0; i < vertexpos.length; i++) {
+            min[i % 3] = Math.min(min[i % 3], vertexpos[i]);
+            max[i % 3] = Math.max(max[i % 3], vertexpos[i]);
+        }
+        if (vertexpos.length == 0)
+            return new float[4];
+        float cx = (min[0] + max[0]) * 0.5F, cy = (min[1] + max[1]) * 0.5F, cz = (min[2] + max[2]) * 0.5F;
+        float radius = 0.F;
+        for (int i = 0; i < vertexpos.length; i += 3) {
+            float dx = vertexpos[i] - cx, dy = vertexpos[i + 1] - cy, dz = vertexpos[i + 2] - cz;
+            radius = Math.max(radius, dx * dx + dy * dy + dz * dz);
+        }
+        return new float[]{cx, cy, cz, (float) Math.sqrt(radius)};
+    }
+
+    /**
+     * Returns true if every vertex is used by a single triangle corner, as in the meshes imported with flat shading.
+     * @return true if no vertex is shared
+     */
+    private boolean hasOwnVertices() {
+        loadArrays();
+        if (triangles.length != vertexpos.length / 3)
+            return false;
+        boolean[] used = new boolean[triangles.length];
+        for (int v : triangles) {
+            if (used[v])
+                return false;
+            used[v] = true;
+        }
+        return true;
+    }
+
+    /**
+     * Renumber the vertices in the order they are first used, and remove the vertices that are not used by any triangle.
+     */
+    private void removeUnusedVertices() {
+        setTrianglesInFetchOrder(triangles);
+        int used = 0;
+        for (int v : triangles)
+            used = Math.max(used, v + 1);
+        vertexpos = Arrays.copyOf(vertexpos, used * 3);
+        normals = Arrays.copyOf(normals, used * 3);
+        if (texturesCoord != null)
+            texturesCoord = Arrays.copyOf(texturesCoord, used * 2);
+    }
+
+    /**
+     * Replace the triangles array by a reordering of it, and renumber the vertices in the order they are first used so they are fetched sequentially.
+     * @param reordered - the same triangles in another order
+     */
+    private void setTrianglesInFetchOrder(int[] reordered) {
+        int[] remap = VertexCacheOptimizer.fetchOrder(reordered, getVerticesCount());
+        for (int i = 0; i < reordered.length; i++)
+            reordered[i] = remap[reordered[i]];
+        triangles = reordered;
+        vertexpos = VertexCacheOptimizer.remap(vertexpos, 3, remap);
+        normals = VertexCacheOptimizer.remap(normals, 3, remap);
+        if (texturesCoord != null)
+            texturesCoord = VertexCacheOptimizer.remap(texturesCoord, 2, remap);
+    }
+
+    /**
+     * Returns the average cache miss ratio of the triangles, the number of vertices transformed per triangle with a simulated FIFO cache of {@link VertexCacheOptimizer#FIFO_SIZE} vertices.
+     * @return the ACMR, between 0.5 and 3, the lower the better
+     */
+    public float getACMR() {
+        loadArrays();
+        return VertexCacheOptimizer.acmr(triangles, getVerticesCount());
     }
 
     /**
@@ -192,89 +593,170 @@ public class Mesh {
 
 
     /**
-     * Initialize the buffers on the GPU.
+     * Send the vertices to the GPU with the {@link CompressedVertexLayout}, using half of the memory at the cost of a small quantization error.
+     * Must be called before {@link #initGraphics()}.
+     * @param compressed - true to compress the vertices
+     * @return the current mesh
      */
-    public void initGraphics() {
-        //est nécessaire car les coordonnées de textures ne sont pas implantées pour tous les maillages utilisés
-        if (texturesCoord == null)
-            texturesCoord = new float[vertexpos.length / 3 * 2];
-        /*
-         * Buffer des sommets
-         */
-        ByteBuffer posbytebuf = ByteBuffer.allocateDirect(vertexpos.length * Float.BYTES);
-        posbytebuf.order(ByteOrder.nativeOrder());
-        FloatBuffer posbuffer = posbytebuf.asFloatBuffer();
-        posbuffer.put(vertexpos);
-        posbuffer.position(0);
-
-
-        /*
-         * Buffer des triangles
-         */
-        ByteBuffer trianglesbutebuf = ByteBuffer.allocateDirect(triangles.length * Integer.BYTES);
-        trianglesbutebuf.order(ByteOrder.nativeOrder());
-        IntBuffer trianglesbuf = trianglesbutebuf.asIntBuffer();
-        trianglesbuf.put(triangles);
-        trianglesbuf.position(0);
-
-        /*
-         * Buffer des normals
-         */
-        ByteBuffer normalbytebuf = ByteBuffer.allocateDirect(normals.length * Float.BYTES);
-        normalbytebuf.order(ByteOrder.nativeOrder());
-        FloatBuffer normalbuffer = normalbytebuf.asFloatBuffer();
-        normalbuffer.put(normals);
-        normalbuffer.position(0);
-
-        /*
-         * Buffer des textures
-         */
-        ByteBuffer texturebytebuf = ByteBuffer.allocateDirect(texturesCoord.length * Float.BYTES);
-        texturebytebuf.order(ByteOrder.nativeOrder());
-        FloatBuffer texturebuffer = texturebytebuf.asFloatBuffer();
-        texturebuffer.put(texturesCoord);
-        texturebuffer.position(0);
-
-
-        int[] buffers = new int[1];
-        GLES20.glGenBuffers(1, buffers, 0);
-
-        glposbuffer = buffers[0];
-
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, glposbuffer);
-        GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, vertexpos.length * Float.BYTES, posbuffer, GLES20.GL_STATIC_DRAW);
-
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
-
-        int[] trianglesbuffers = new int[1];
-        GLES20.glGenBuffers(1, trianglesbuffers, 0);
-
-        gltrianglesbuffer = trianglesbuffers[0];
-
-        GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, gltrianglesbuffer);
-        GLES20.glBufferData(GLES20.GL_ELEMENT_ARRAY_BUFFER, triangles.length * Integer.BYTES, trianglesbuf, GLES20.GL_STATIC_DRAW);
+    public Mesh setCompressed(boolean compressed) {
+        this.compressed = compressed;
+        return this;
+    }
 
-        GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+    /**
+     * Returns true if the vertices are sent to the GPU with the {@link CompressedVertexLayout}.
+     * @return true if the vertices are compressed
+     */
+    public boolean isCompressed() {
+        return compressed;
+    }
 
-        int[] normalsbuffers = new int[1];
-        GLES20.glGenBuffers(1, normalsbuffers, 0);
+    /**
+     * Returns the data of the mesh as it is sent to the GPU, in the layout given by {@link #setCompressed(boolean)}.
+     * The buffers of a mesh loaded from a {@link MeshFile} are returned as is if they have this layout, otherwise they are built from the arrays.
+     * @return the buffers of the mesh
+     */
+    MeshBuffers getBuffers() {
+        if (mapped != null && mapped.compressed == compressed)
+            return mapped;
+        loadArrays();
+        MeshBuffers buffers = MeshBuffers.build(vertexpos, normals, texturesCoord, triangles, compressed);
+        if (buffers.remap != null)
+            MainActivity.log("Mesh split in " + buffers.batchesCount + " batches for 16 bits indices : "
+                    + buffers.nbVertices + " -> " + buffers.verticesCount + " vertices");
+        return buffers;
+    }
 
-        glnormalbuffer = normalsbuffers[0];
+    /**
+     * Initialize the buffers on the GPU.
+     * The vertex attributes are interleaved in a single array buffer with {@link VertexLayout}, or with {@link CompressedVertexLayout} if the mesh is compressed.
+     * The triangles use 16 bits indices, the mesh being split in batches by {@link IndexSplitter} if it has too many vertices.
+     * The unique edges of each batch are extracted once by {@link EdgeExtractor} for the wireframe.
+     * A mesh loaded from a {@link MeshFile} with the same layout already has all of these, and its mapped buffers are sent as is.
+     */
+    public void initGraphics() {
+        MeshBuffers buffers = getBuffers();
+        batchFirstIndex = buffers.firstIndex;
+        batchIndicesCount = buffers.indicesCount;
+        batchFirstVertex = buffers.firstVertex;
+        batchesCount = buffers.batchesCount;
+        batchFirstEdgeIndex = buffers.firstEdgeIndex;
+        batchEdgeIndicesCount = buffers.edgeIndicesCount;
+        positionScale = buffers.positionScale;
+        positionOffset = buffers.positionOffset;
+        textureDequantization = buffers.textureDequantization;
+        ByteBuffer vertexbuffer = buffers.vertices;
+        int vertexbufferSize = vertexbuffer.capacity();
+        ShortBuffer indicesbuf = buffers.indices;
+        ShortBuffer edgesbuf = buffers.edges;
+
+        int[] glbuffers = new int[3];
+        GL.glGenBuffers(3, glbuffers, 0);
+
+        glvertexbuffer = glbuffers[0];
+        gltrianglesbuffer = glbuffers[1];
+        gledgesbuffer = glbuffers[2];
+        GpuResourceTracker tracker = GpuResourceTracker.getInstance();
+        String owner = getClass().getSimpleName();
+        tracker.track(GpuResourceTracker.Category.BUFFER, glvertexbuffer, owner + " vertices");
+        tracker.setSize(GpuResourceTracker.Category.BUFFER, glvertexbuffer, vertexbufferSize);
+        tracker.track(GpuResourceTracker.Category.BUFFER, gltrianglesbuffer, owner + " triangles");
+        tracker.setSize(GpuResourceTracker.Category.BUFFER, gltrianglesbuffer, indicesbuf.capacity() * Short.BYTES);
+        tracker.track(GpuResourceTracker.Category.BUFFER, gledgesbuffer, owner + " edges");
+        tracker.setSize(GpuResourceTracker.Category.BUFFER, gledgesbuffer, edgesbuf.capacity() * Short.BYTES);
+
+        GL.glBindBuffer(GLES20.GL_ARRAY_BUFFER, glvertexbuffer);
+        GL.glBufferData(GLES20.GL_ARRAY_BUFFER, vertexbufferSize, vertexbuffer, GLES20.GL_STATIC_DRAW);
+
+        GL.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+
+        GL.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, gltrianglesbuffer);
+        GL.glBufferData(GLES20.GL_ELEMENT_ARRAY_BUFFER, indicesbuf.capacity() * Short.BYTES, indicesbuf, GLES20.GL_STATIC_DRAW);
+
+        GL.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, gledgesbuffer);
+        GL.glBufferData(GLES20.GL_ELEMENT_ARRAY_BUFFER, edgesbuf.capacity() * Short.BYTES, edgesbuf, GLES20.GL_STATIC_DRAW);
+
+        GL.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+    }
 
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, glnormalbuffer);
-        GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, normals.length * Float.BYTES, normalbuffer, GLES20.GL_STATIC_DRAW);
+    /**
+     * Delete the buffers of the mesh on the GPU with the {@link GpuResourceTracker}.
+     * Usually called by the {@link MeshBufferRegistry} when the last object drawing the mesh is destroyed.
+     */
+    public void releaseGraphics() {
+        GpuResourceTracker tracker = GpuResourceTracker.getInstance();
+        tracker.delete(GpuResourceTracker.Category.BUFFER, glvertexbuffer);
+        tracker.delete(GpuResourceTracker.Category.BUFFER, gltrianglesbuffer);
+        tracker.delete(GpuResourceTracker.Category.BUFFER, gledgesbuffer);
+        glvertexbuffer = 0;
+        gltrianglesbuffer = 0;
+        gledgesbuffer = 0;
+    }
 
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+    /**
+     * Copy an array in a direct buffer that can be sent to the GPU.
+     * @param array - the array to copy
+     * @return a direct buffer in the native order
+     */
+    static ShortBuffer toBuffer(short[] array) {
+        ByteBuffer bytebuf = ByteBuffer.allocateDirect(array.length * Short.BYTES);
+        bytebuf.order(ByteOrder.nativeOrder());
+        ShortBuffer buffer = bytebuf.asShortBuffer();
+        buffer.put(array);
+        buffer.position(0);
+        return buffer;
+    }
 
-        int[] texturebuffers = new int[1];
-        GLES20.glGenBuffers(1, texturebuffers, 0);
+    /**
+     * Bind the vertices buffer and give the attributes and their dequantization to the shaders.
+     * @param shaders - shader which receive the buffers as attribute variables
+     * @param batch - index of the batch of triangles to draw, whose vertices are given to the shaders
+     */
+    private void bindVertices(final MultipleLightingShaders shaders, int batch) {
+        if (compressed) {
+            int base = batchFirstVertex[batch] * CompressedVertexLayout.STRIDE;
+            shaders.setPositionsPointer(3, GLES20.GL_UNSIGNED_SHORT, CompressedVertexLayout.STRIDE, base + CompressedVertexLayout.POSITION_OFFSET);
+            shaders.setNormalsPointer(2, GLES20.GL_SHORT, CompressedVertexLayout.STRIDE, base + CompressedVertexLayout.NORMAL_OFFSET);
+            shaders.setTexturePointer(2, GLES20.GL_UNSIGNED_SHORT, CompressedVertexLayout.STRIDE, base + CompressedVertexLayout.TEXTURE_OFFSET);
+        } else {
+            int base = batchFirstVertex[batch] * VertexLayout.STRIDE;
+            shaders.setPositionsPointer(3, GLES20.GL_FLOAT, VertexLayout.STRIDE, base + VertexLayout.POSITION_OFFSET);
+            shaders.setNormalsPointer(3, GLES20.GL_FLOAT, VertexLayout.STRIDE, base + VertexLayout.NORMAL_OFFSET);
+            shaders.setTexturePointer(2, GLES20.GL_FLOAT, VertexLayout.STRIDE, base + VertexLayout.TEXTURE_OFFSET);
+        }
+    }
 
-        gltexturebuffer = texturebuffers[0];
+    /**
+     * Give the dequantization of the attributes to the shaders.
+     * @param shaders - shader which receive the uniform variables
+     */
+    private void setDequantization(final MultipleLightingShaders shaders) {
+        shaders.setPositionDequantization(positionScale, positionOffset);
+        shaders.setOctahedralNormals(compressed);
+        shaders.setTextureDequantization(textureDequantization);
+    }
 
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, gltexturebuffer);
-        GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, texturesCoord.length * Float.BYTES, texturebuffer, GLES20.GL_STATIC_DRAW);
+    /**
+     * Draw the triangles of each batch.
+     * @param shaders - shader which receive the buffers as attribute variables
+     */
+    private void drawTriangles(final MultipleLightingShaders shaders) {
+        for (int b = 0; b < batchesCount; b++) {
+            bindVertices(shaders, b);
+            GL.glDrawElements(GLES20.GL_TRIANGLES, batchIndicesCount[b], GLES20.GL_UNSIGNED_SHORT, batchFirstIndex[b] * Short.BYTES);
+        }
+    }
 
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+    /**
+     * Draw the unique edges of each batch as lines, in one draw call per batch.
+     * @param shaders - shader which receive the buffers as attribute variables
+     */
+    private void drawEdges(final MultipleLightingShaders shaders) {
+        GL.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, gledgesbuffer);
+        for (int b = 0; b < batchesCount; b++) {
+            bindVertices(shaders, b);
+            GL.glDrawElements(GLES20.GL_LINES, batchEdgeIndicesCount[b], GLES20.GL_UNSIGNED_SHORT, batchFirstEdgeIndex[b] * Short.BYTES);
+        }
     }
 
     /**
@@ -283,17 +765,13 @@ public class Mesh {
      */
     public void draw(final MultipleLightingShaders shaders) {
 
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, glposbuffer);
-        shaders.setPositionsPointer(3, GLES20.GL_FLOAT);
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, glnormalbuffer);
-        shaders.setNormalsPointer(3, GLES20.GL_FLOAT);
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, gltexturebuffer);
-        shaders.setTexturePointer(2, GLES20.GL_FLOAT);
-        GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, gltrianglesbuffer);
-        GLES20.glDrawElements(GLES20.GL_TRIANGLES, triangles.length, GLES20.GL_UNSIGNED_INT, 0);
-        GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
+        GL.glBindBuffer(GLES20.GL_ARRAY_BUFFER, glvertexbuffer);
+        setDequantization(shaders);
+        GL.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, gltrianglesbuffer);
+        drawTriangles(shaders);
+        GL.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+        GL.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        GL.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
     }
 
     /**
@@ -301,12 +779,20 @@ public class Mesh {
      * @param shaders - shader which receive the buffers as attribute variables to draw the mesh according to its corresponding glsl.
      */
     public void draw(final DepthShader shaders) {
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, glposbuffer);
-        shaders.setPositionsPointer(3, GLES20.GL_FLOAT);
-        GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, gltrianglesbuffer);
-        GLES20.glDrawElements(GLES20.GL_TRIANGLES, triangles.length, GLES20.GL_UNSIGNED_INT, 0);
-        GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        GL.glBindBuffer(GLES20.GL_ARRAY_BUFFER, glvertexbuffer);
+        shaders.setPositionDequantization(positionScale, positionOffset);
+        GL.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, gltrianglesbuffer);
+        for (int b = 0; b < batchesCount; b++) {
+            if (compressed)
+                shaders.setPositionsPointer(3, GLES20.GL_UNSIGNED_SHORT, CompressedVertexLayout.STRIDE,
+                        batchFirstVertex[b] * CompressedVertexLayout.STRIDE + CompressedVertexLayout.POSITION_OFFSET);
+            else
+                shaders.setPositionsPointer(3, GLES20.GL_FLOAT, VertexLayout.STRIDE,
+                        batchFirstVertex[b] * VertexLayout.STRIDE + VertexLayout.POSITION_OFFSET);
+            GL.glDrawElements(GLES20.GL_TRIANGLES, batchIndicesCount[b], GLES20.GL_UNSIGNED_SHORT, batchFirstIndex[b] * Short.BYTES);
+        }
+        GL.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+        GL.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
     }
 
     /**
@@ -314,23 +800,20 @@ public class Mesh {
      * @param shaders - shader which receive the buffers as attribute variables to draw the mesh according to its corresponding glsl.
      */
     public void drawWithLines(final MultipleLightingShaders shaders) {
-        GLES20.glPolygonOffset(2.F, 4.F);
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, glposbuffer);
-        shaders.setPositionsPointer(3, GLES20.GL_FLOAT);
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, glnormalbuffer);
-        shaders.setNormalsPointer(3, GLES20.GL_FLOAT);
+        GL.glPolygonOffset(2.F, 4.F);
+        GL.glBindBuffer(GLES20.GL_ARRAY_BUFFER, glvertexbuffer);
+        setDequantization(shaders);
 
-        GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, gltrianglesbuffer);
-        GLES20.glDrawElements(GLES20.GL_TRIANGLES, triangles.length, GLES20.GL_UNSIGNED_INT, 0);
+        GL.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, gltrianglesbuffer);
+        drawTriangles(shaders);
 
-        GLES20.glDisable(GLES20.GL_POLYGON_OFFSET_FILL);
+        GL.glDisable(GLES20.GL_POLYGON_OFFSET_FILL);
         shaders.setMaterialColor(MyGLRenderer.black);
 
-        for (int i = 0; i < triangles.length; i += 3)
-            GLES20.glDrawElements(GLES20.GL_LINE_LOOP, 3, GLES20.GL_UNSIGNED_INT, i * Integer.BYTES);
+        drawEdges(shaders);
 
-        GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        GL.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+        GL.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
 
 
     }
@@ -341,20 +824,15 @@ public class Mesh {
      */
     public void drawLinesOnly(final MultipleLightingShaders shaders) {
 
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, glposbuffer);
-        shaders.setPositionsPointer(3, GLES20.GL_FLOAT);
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, glnormalbuffer);
-        shaders.setNormalsPointer(3, GLES20.GL_FLOAT);
-
-        GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, gltrianglesbuffer);
+        GL.glBindBuffer(GLES20.GL_ARRAY_BUFFER, glvertexbuffer);
+        setDequantization(shaders);
 
         shaders.setMaterialColor(MyGLRenderer.black);
 
-        for (int i = 0; i < triangles.length; i += 3)
-            GLES20.glDrawElements(GLES20.GL_LINE_LOOP, 3, GLES20.GL_UNSIGNED_INT, i * Integer.BYTES);
+        drawEdges(shaders);
 
-        GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        GL.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+        GL.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
 
     }
 }
@@ -0,0 +1,103 @@
+package fr.univ_poitiers.dptinfo.algo3d.mesh;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import fr.univ_poitiers.dptinfo.algo3d.MainActivity;
+
+/**
+ * Class singleton to share the GPU buffers of the meshes between the objects using them.
+ * A mesh is sent to the GPU by {@link Mesh#initGraphics()} when its first user acquires it,
+ * and its buffers are deleted by {@link Mesh#releaseGraphics()} when its last user releases it.
+ * The meshes are compared by identity, so a shared instance like {@link Plane#INSTANCE} is uploaded once.
+ */
+public class MeshBufferRegistry {
+
+    /**
+     * Number of users of each mesh sent to the GPU.
+     */
+    private final Map<Mesh, Integer> references = new IdentityHashMap<>();
+
+    /**
+     * Singleton instance.
+     */
+    private static MeshBufferRegistry INSTANCE;
+
+    /**
+     * Constructor.
+     */
+    private MeshBufferRegistry() {
+    }
+
+    /**
+     * Returns the singleton instance.
+     * Thread proof with double check to not put the synchronized over all the method.
+     * @return the registry
+     */
+    public static MeshBufferRegistry getInstance() {
+        if (INSTANCE != null)
+            return INSTANCE;
+        synchronized (MeshBufferRegistry.class) {
+            if (INSTANCE == null)
+                INSTANCE = new MeshBufferRegistry();
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * Add a user to the mesh, sending it to the GPU if it is its first user.
+     * @param mesh - the mesh to draw
+     */
+    public void acquire(Mesh mesh) {
+        Integer count = references.get(mesh);
+        if (count == null) {
+            mesh.initGraphics();
+            count = 0;
+        }
+        references.put(mesh, count + 1);
+    }
+
+    /**
+     * Remove a user of the mesh, deleting its buffers on the GPU if it was its last user.
+     * @param mesh - the mesh not drawn anymore by the user
+     */
+    public void release(Mesh mesh) {
+        Integer count = references.get(mesh);
+        if (count == null) {
+            MainActivity.log("Release of a mesh that is not on the GPU.");
+            return;
+        }
+        if (count == 1) {
+            references.remove(mesh);
+            mesh.releaseGraphics();
+        } else
+            references.put(mesh, count - 1);
+    }
+
+    /**
+     * Returns the number of users of the mesh.
+     * @param mesh - the mesh
+     * @return the number of users, 0 if the mesh is not on the GPU
+     */
+    public int getReferenceCount(Mesh mesh) {
+        Integer count = references.get(mesh);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Returns the number of meshes on the GPU.
+     * @return the number of meshes
+     */
+    public int getMeshesCount() {
+        return references.size();
+    }
+
+    /**
+     * Forget all the meshes without deleting their buffers.
+     * To be called when the OpenGL context is created, the buffers of the previous context being already lost,
+     * so the meshes are sent again to the GPU when the objects are started.
+     */
+    public void clear() {
+        references.clear();
+    }
+}
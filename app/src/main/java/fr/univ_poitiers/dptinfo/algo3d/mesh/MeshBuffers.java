@@ -0,0 +1,217 @@
+package fr.univ_poitiers.dptinfo.algo3d.mesh;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Data of a mesh as it is sent to the GPU by {@link Mesh#initGraphics()} : the interleaved vertices of the batches,
+ * their 16 bits triangle and edge indices, and the dequantization of the compressed vertices.
+ * It is either built from the arrays of the mesh by {@link #build(float[], float[], float[], int[], boolean)},
+ * or made of views of a memory mapped {@link MeshFile}, in which case the arrays of the mesh are rebuilt from it only if they are accessed.
+ * Does not depend on OpenGL.
+ */
+class MeshBuffers {
+
+    /**
+     * Transformation of the positions and texture coordinates given to the shaders for vertices that are not compressed.
+     */
+    static final float[] NO_SCALE = {1.F, 1.F, 1.F}, NO_OFFSET = {0.F, 0.F, 0.F}, NO_TEXTURE_DEQUANTIZATION = {1.F, 1.F, 0.F, 0.F};
+
+    /**
+     * True if the vertices use the {@link CompressedVertexLayout}, false for the {@link VertexLayout}.
+     */
+    boolean compressed;
+    /**
+     * True if the mesh has texture coordinates.
+     */
+    boolean textures;
+    /**
+     * Number of vertices of the mesh, before the vertices used by several batches are duplicated.
+     */
+    int nbVertices;
+    /**
+     * Number of vertices of the batches.
+     */
+    int verticesCount;
+    /**
+     * The interleaved vertices of the batches, a direct buffer in the native order.
+     */
+    ByteBuffer vertices;
+    /**
+     * For each vertex of the batches, the index of the vertex of the mesh, or null if the mesh was not split and the vertices are the same.
+     */
+    IntBuffer remap;
+    /**
+     * The 16 bits indices of the triangles of all the batches, relative to the first vertex of their batch.
+     */
+    ShortBuffer indices;
+    /**
+     * The 16 bits indices of the unique edges of all the batches, relative to the first vertex of their batch.
+     */
+    ShortBuffer edges;
+    /**
+     * Number of batches.
+     */
+    int batchesCount;
+    /**
+     * For each batch, the index of its first triangle index, its number of triangle indices and the index of its first vertex.
+     */
+    int[] firstIndex, indicesCount, firstVertex;
+    /**
+     * For each batch, the index of its first edge index and its number of edge indices.
+     */
+    int[] firstEdgeIndex, edgeIndicesCount;
+    /**
+     * Dequantization of the positions given to the shaders.
+     */
+    float[] positionScale = NO_SCALE, positionOffset = NO_OFFSET;
+    /**
+     * Dequantization of the texture coordinates given to the shaders.
+     */
+    float[] textureDequantization = NO_TEXTURE_DEQUANTIZATION;
+
+    /**
+     * Returns the size in bytes of a vertex.
+     * @return the stride of the layout of the vertices
+     */
+    int stride() {
+        return compressed ? CompressedVertexLayout.STRIDE : VertexLayout.STRIDE;
+    }
+
+    /**
+     * Build the buffers from the arrays of a mesh : the triangles are split into 16 bits batches by {@link IndexSplitter},
+     * the unique edges are extracted by {@link EdgeExtractor} and the vertices of the batches are interleaved.
+     * @param vertexpos - vertices position, 3 floats per vertex
+     * @param normals - normals, 3 floats per vertex
+     * @param texturesCoord - texture coordinates, 2 floats per vertex, or null
+     * @param triangles - triangles, 3 vertex indices per triangle
+     * @param compressed - true to interleave the vertices with the {@link CompressedVertexLayout}
+     * @return the buffers
+     */
+    static MeshBuffers build(float[] vertexpos, float[] normals, float[] texturesCoord, int[] triangles, boolean compressed) {
+        MeshBuffers buffers = new MeshBuffers();
+        buffers.compressed = compressed;
+        buffers.textures = texturesCoord != null;
+        buffers.nbVertices = vertexpos.length / 3;
+        FloatBuffer posbuffer = FloatBuffer.wrap(vertexpos);
+        FloatBuffer normalbuffer = FloatBuffer.wrap(normals);
+        FloatBuffer texturebuffer = texturesCoord == null ? null : FloatBuffer.wrap(texturesCoord);
+        IndexSplitter splitter = new IndexSplitter();
+        splitter.split(IntBuffer.wrap(triangles), buffers.nbVertices);
+        if (splitter.vertices != null) {
+            posbuffer = FloatBuffer.wrap(splitter.gather(posbuffer, 3));
+            normalbuffer = FloatBuffer.wrap(splitter.gather(normalbuffer, 3));
+            if (texturebuffer != null)
+                texturebuffer = FloatBuffer.wrap(splitter.gather(texturebuffer, 2));
+            buffers.remap = IntBuffer.wrap(splitter.vertices);
+        }
+        buffers.verticesCount = splitter.verticesCount;
+        buffers.batchesCount = splitter.batchesCount;
+        buffers.firstIndex = splitter.firstIndex;
+        buffers.indicesCount = splitter.indicesCount;
+        buffers.firstVertex = splitter.firstVertex;
+        buffers.indices = Mesh.toBuffer(splitter.indices);
+        EdgeExtractor extractor = new EdgeExtractor();
+        extractor.extract(splitter.indices, splitter.firstIndex, splitter.indicesCount, splitter.batchesCount);
+        buffers.firstEdgeIndex = extractor.firstIndex;
+        buffers.edgeIndicesCount = extractor.indicesCount;
+        buffers.edges = Mesh.toBuffer(extractor.indices);
+        if (compressed) {
+            CompressedVertexLayout layout = new CompressedVertexLayout(posbuffer, normalbuffer, texturebuffer);
+            buffers.vertices = layout.getBuffer();
+            buffers.positionScale = layout.getPositionScale();
+            buffers.positionOffset = layout.getPositionOffset();
+            buffers.textureDequantization = layout.getTextureDequantization();
+        } else {
+            buffers.vertices = VertexLayout.interleave(posbuffer, normalbuffer, texturebuffer);
+        }
+        return buffers;
+    }
+
+    /**
+     * Returns the index in the mesh of a vertex of the batches.
+     * @param i - index of the vertex in the batches
+     * @return the index of the vertex in the mesh
+     */
+    private int meshVertex(int i) {
+        return remap == null ? i : remap.get(i);
+    }
+
+    /**
+     * Rebuild the vertex positions of the mesh, dequantized if the vertices are compressed.
+     * @return the positions, 3 floats per vertex
+     */
+    float[] unpackPositions() {
+        float[] vertexpos = new float[nbVertices * 3];
+        int stride = stride();
+        for (int i = 0; i < verticesCount; i++) {
+            int v = meshVertex(i) * 3, base = i * stride;
+            for (int k = 0; k < 3; k++) {
+                if (compressed)
+                    vertexpos[v + k] = CompressedVertexLayout.dequantize(vertices.getShort(base + CompressedVertexLayout.POSITION_OFFSET + k * Short.BYTES),
+                            positionOffset[k], positionScale[k]);
+                else
+                    vertexpos[v + k] = vertices.getFloat(base + VertexLayout.POSITION_OFFSET + k * Float.BYTES);
+            }
+        }
+        return vertexpos;
+    }
+
+    /**
+     * Rebuild the normals of the mesh, decoded if the vertices are compressed.
+     * @return the normals, 3 floats per vertex
+     */
+    float[] unpackNormals() {
+        float[] normals = new float[nbVertices * 3];
+        float[] decoded = new float[3];
+        int stride = stride();
+        for (int i = 0; i < verticesCount; i++) {
+            int v = meshVertex(i) * 3, base = i * stride;
+            if (compressed) {
+                CompressedVertexLayout.decodeOctahedral(vertices.getShort(base + CompressedVertexLayout.NORMAL_OFFSET),
+                        vertices.getShort(base + CompressedVertexLayout.NORMAL_OFFSET + Short.BYTES), decoded);
+                System.arraycopy(decoded, 0, normals, v, 3);
+            } else {
+                for (int k = 0; k < 3; k++)
+                    normals[v + k] = vertices.getFloat(base + VertexLayout.NORMAL_OFFSET + k * Float.BYTES);
+            }
+        }
+        return normals;
+    }
+
+    /**
+     * Rebuild the texture coordinates of the mesh, dequantized if the vertices are compressed.
+     * @return the texture coordinates, 2 floats per vertex, or null if the mesh has none
+     */
+    float[] unpackTexturesCoord() {
+        if (!textures)
+            return null;
+        float[] texturesCoord = new float[nbVertices * 2];
+        int stride = stride();
+        for (int i = 0; i < verticesCount; i++) {
+            int v = meshVertex(i) * 2, base = i * stride;
+            for (int k = 0; k < 2; k++) {
+                if (compressed)
+                    texturesCoord[v + k] = CompressedVertexLayout.dequantize(vertices.getShort(base + CompressedVertexLayout.TEXTURE_OFFSET + k * Short.BYTES),
+                            textureDequantization[2 + k], textureDequantization[k]);
+                else
+                    texturesCoord[v + k] = vertices.getFloat(base + VertexLayout.TEXTURE_OFFSET + k * Float.BYTES);
+            }
+        }
+        return texturesCoord;
+    }
+
+    /**
+     * Rebuild the triangles of the mesh from the 16 bits indices of the batches.
+     * @return the triangles, 3 vertex indices per triangle
+     */
+    int[] unpackTriangles() {
+        int[] triangles = new int[indices.capacity()];
+        for (int b = 0; b < batchesCount; b++)
+            for (int i = firstIndex[b]; i < firstIndex[b] + indicesCount[b]; i++)
+                triangles[i] = meshVertex(firstVertex[b] + (indices.get(i) & 0xFFFF));
+        return triangles;
+    }
+}
@@ -0,0 +1,330 @@
+package fr.univ_poitiers.dptinfo.algo3d.mesh;
+
+import java.util.Arrays;
+
+/**
+ * Class to measure how far the surfaces of two meshes are from each other, to check the quality of a simplified mesh.
+ * The Hausdorff distance is the largest distance from a point of one surface to the other surface.
+ * It is estimated by sampling the vertices and the centers of the triangles of each mesh,
+ * the closest triangles of the other mesh being found with a uniform grid.
+ */
+class MeshDistance {
+
+    /**
+     * Vertices position array of the measured surface.
+     */
+    private final float[] vertexpos;
+    /**
+     * Triangles array of the measured surface.
+     */
+    private final int[] triangles;
+    /**
+     * Minimum corner of the grid.
+     */
+    private final float[] min = new float[3];
+    /**
+     * Size of a cell of the grid.
+     */
+    private final float cellSize;
+    /**
+     * Number of cells of the grid along each axis.
+     */
+    private final int[] cells = new int[3];
+    /**
+     * The triangles of the cell c are cellTriangles[cellOffsets[c]] to cellTriangles[cellOffsets[c + 1] - 1].
+     */
+    private final int[] cellOffsets;
+    /**
+     * Triangles of each cell.
+     */
+    private final int[] cellTriangles;
+    /**
+     * Last query that tested each triangle, to test a triangle once per query.
+     */
+    private final int[] tested;
+    /**
+     * Number of the current query.
+     */
+    private int query;
+
+    /**
+     * Build the grid of a surface.
+     * @param vertexpos - vertices position array
+     * @param triangles - triangles array
+     */
+    MeshDistance(float[] vertexpos, int[] triangles) {
+        this.vertexpos = vertexpos;
+        this.triangles = triangles;
+        int nbTriangles = triangles.length / 3;
+        float[] max = new float[3];
+        bounds(vertexpos, triangles, min, max);
+        float extent = Math.max(max[0] - min[0], Math.max(max[1] - min[1], max[2] - min[2]));
+        //about one triangle per cell, grown for the flat meshes
+        float size = Math.max(extent / 1023.F, Float.MIN_NORMAL);
+        while (cellsCount(min, max, size) > 2L * nbTriangles + 8)
+            size *= 1.25F;
+        cellSize = size;
+        for (int k = 0; k < 3; k++)
+            cells[k] = (int) ((max[k] - min[k]) / cellSize) + 1;
+
+        int[] range = new int[6];
+        cellOffsets = new int[cells[0] * cells[1] * cells[2] + 1];
+        for (int t = 0; t < nbTriangles; t++) {
+            cellRange(t, range);
+            for (int z = range[2]; z <= range[5]; z++)
+                for (int y = range[1]; y <= range[4]; y++)
+                    for (int x = range[0]; x <= range[3]; x++)
+                        cellOffsets[cell(x, y, z) + 1]++;
+        }
+        for (int c = 0; c + 1 < cellOffsets.length; c++)
+            cellOffsets[c + 1] += cellOffsets[c];
+        cellTriangles = new int[cellOffsets[cellOffsets.length - 1]];
+        int[] next = Arrays.copyOf(cellOffsets, cellOffsets.length);
+        for (int t = 0; t < nbTriangles; t++) {
+            cellRange(t, range);
+            for (int z = range[2]; z <= range[5]; z++)
+                for (int y = range[1]; y <= range[4]; y++)
+                    for (int x = range[0]; x <= range[3]; x++)
+                        cellTriangles[next[cell(x, y, z)]++] = t;
+        }
+        tested = new int[nbTriangles];
+    }
+
+    /**
+     * Returns the number of cells of a grid.
+     * @param min - minimum corner of the grid
+     * @param max - maximum corner of the grid
+     * @param size - size of a cell
+     * @return the number of cells
+     */
+    private static long cellsCount(float[] min, float[] max, float size) {
+        long count = 1;
+        for (int k = 0; k < 3; k++)
+            count *= (long) ((max[k] - min[k]) / size) + 1;
+        return count;
+    }
+
+    /**
+     * Estimate the Hausdorff distance between two surfaces.
+     * @param vertexposA - vertices position array of the first surface
+     * @param trianglesA - triangles array of the first surface
+     * @param vertexposB - vertices position array of the second surface
+     * @param trianglesB - triangles array of the second surface
+     * @return the largest distance from a sample of one surface to the other one
+     */
+    static float hausdorff(float[] vertexposA, int[] trianglesA, float[] vertexposB, int[] trianglesB) {
+        return Math.max(new MeshDistance(vertexposB, trianglesB).farthest(vertexposA, trianglesA),
+                new MeshDistance(vertexposA, trianglesA).farthest(vertexposB, trianglesB));
+    }
+
+    /**
+     * Compute the bounding box of the vertices used by triangles.
+     * @param vertexpos - vertices position array
+     * @param triangles - triangles array
+     * @param min - array receiving the minimum corner
+     * @param max - array receiving the maximum corner
+     */
+    private static void bounds(float[] vertexpos, int[] triangles, float[] min, float[] max) {
+        Arrays.fill(min, Float.POSITIVE_INFINITY);
+        Arrays.fill(max, Float.NEGATIVE_INFINITY);
+        for (int v : triangles) {
+            for (int k = 0; k < 3; k++) {
+                min[k] = Math.min(min[k], vertexpos[v * 3 + k]);
+                max[k] = Math.max(max[k], vertexpos[v * 3 + k]);
+            }
+        }
+        if (triangles.length == 0) {
+            Arrays.fill(min, 0.F);
+            Arrays.fill(max, 0.F);
+        }
+    }
+
+    /**
+     * Returns the largest distance from the vertices and the centers of the triangles of a surface to the measured surface.
+     * @param vertexpos - vertices position array of the sampled surface
+     * @param triangles - triangles array of the sampled surface
+     * @return the largest distance
+     */
+    float farthest(float[] vertexpos, int[] triangles) {
+        float result = 0.F;
+        for (int i = 0; i < triangles.length; i += 3) {
+            int i1 = triangles[i] * 3, i2 = triangles[i + 1] * 3, i3 = triangles[i + 2] * 3;
+            result = Math.max(result, distance(vertexpos[i1], vertexpos[i1 + 1], vertexpos[i1 + 2]));
+            result = Math.max(result, distance((vertexpos[i1] + vertexpos[i2] + vertexpos[i3]) / 3.F,
+                    (vertexpos[i1 + 1] + vertexpos[i2 + 1] + vertexpos[i3 + 1]) / 3.F,
+                    (vertexpos[i1 + 2] + vertexpos[i2 + 2] + vertexpos[i3 + 2]) / 3.F));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the distance from a point to the measured surface.
+     * The cells are searched in growing shells around the cell of the point, until the closest triangle found is closer than the next shell.
+     * @param px - x coordinate of the point
+     * @param py - y coordinate of the point
+     * @param pz - z coordinate of the point
+     * @return the distance, infinite if the surface has no triangle
+     */
+    float distance(float px, float py, float pz) {
+        query++;
+        int cx = clamp((int) Math.floor((px - min[0]) / cellSize), cells[0]);
+        int cy = clamp((int) Math.floor((py - min[1]) / cellSize), cells[1]);
+        int cz = clamp((int) Math.floor((pz - min[2]) / cellSize), cells[2]);
+        int maxShell = Math.max(cells[0], Math.max(cells[1], cells[2]));
+        float best = Float.POSITIVE_INFINITY;
+        for (int r = 0; r <= maxShell; r++) {
+            //the cells of the shell r are at least (r - 1) cells away from the point
+            if (r > 1 && best <= (r - 1) * cellSize * (r - 1) * cellSize)
+                break;
+            for (int z = Math.max(cz - r, 0); z <= Math.min(cz + r, cells[2] - 1); z++) {
+                for (int y = Math.max(cy - r, 0); y <= Math.min(cy + r, cells[1] - 1); y++) {
+                    //inside the shell, only the first and last cells of the row are new
+                    boolean side = Math.abs(z - cz) == r || Math.abs(y - cy) == r;
+                    for (int x = Math.max(cx - r, 0); x <= Math.min(cx + r, cells[0] - 1); x++) {
+                        if (side || Math.abs(x - cx) == r)
+                            best = Math.min(best, searchCell(cell(x, y, z), px, py, pz));
+                    }
+                }
+            }
+        }
+        return (float) Math.sqrt(best);
+    }
+
+    /**
+     * Returns the smallest squared distance from a point to the triangles of a cell that were not tested yet by the current query.
+     * @param c - index of the cell
+     * @param px - x coordinate of the point
+     * @param py - y coordinate of the point
+     * @param pz - z coordinate of the point
+     * @return the squared distance, infinite if no triangle was tested
+     */
+    private float searchCell(int c, float px, float py, float pz) {
+        float best = Float.POSITIVE_INFINITY;
+        for (int i = cellOffsets[c]; i < cellOffsets[c + 1]; i++) {
+            int t = cellTriangles[i];
+            if (tested[t] == query)
+                continue;
+            tested[t] = query;
+            best = Math.min(best, squaredDistance(t, px, py, pz));
+        }
+        return best;
+    }
+
+    /**
+     * Clamp a cell coordinate inside the grid.
+     * @param c - the coordinate
+     * @param n - number of cells along the axis
+     * @return the clamped coordinate
+     */
+    private static int clamp(int c, int n) {
+        return Math.max(0, Math.min(n - 1, c));
+    }
+
+    /**
+     * Returns the index of a cell.
+     * @param x - x coordinate of the cell
+     * @param y - y coordinate of the cell
+     * @param z - z coordinate of the cell
+     * @return the index of the cell
+     */
+    private int cell(int x, int y, int z) {
+        return (z * cells[1] + y) * cells[0] + x;
+    }
+
+    /**
+     * Compute the range of cells overlapped by the bounding box of a triangle.
+     * @param t - index of the triangle
+     * @param range - array receiving the minimum then the maximum cell coordinates
+     */
+    private void cellRange(int t, int[] range) {
+        for (int k = 0; k < 3; k++) {
+            float lo = Float.POSITIVE_INFINITY, hi = Float.NEGATIVE_INFINITY;
+            for (int j = 0; j < 3; j++) {
+                float v = vertexpos[triangles[t * 3 + j] * 3 + k];
+                lo = Math.min(lo, v);
+                hi = Math.max(hi, v);
+            }
+            range[k] = clamp((int) Math.floor((lo - min[k]) / cellSize), cells[k]);
+            range[k + 3] = clamp((int) Math.floor((hi - min[k]) / cellSize), cells[k]);
+        }
+    }
+
+    /**
+     * Returns the squared distance from a point to a triangle, with the closest point method of Christer Ericson.
+     * A degenerate triangle, of zero area, has no barycentric coordinates inside it and is measured as its closest edge.
+     * @param t - index of the triangle
+     * @param px - x coordinate of the point
+     * @param py - y coordinate of the point
+     * @param pz - z coordinate of the point
+     * @return the squared distance
+     */
+    private float squaredDistance(int t, float px, float py, float pz) {
+        int ia = triangles[t * 3] * 3, ib = triangles[t * 3 + 1] * 3, ic = triangles[t * 3 + 2] * 3;
+        float ax = vertexpos[ia], ay = vertexpos[ia + 1], az = vertexpos[ia + 2];
+        float abx = vertexpos[ib] - ax, aby = vertexpos[ib + 1] - ay, abz = vertexpos[ib + 2] - az;
+        float acx = vertexpos[ic] - ax, acy = vertexpos[ic + 1] - ay, acz = vertexpos[ic + 2] - az;
+        float apx = px - ax, apy = py - ay, apz = pz - az;
+        float d1 = abx * apx + aby * apy + abz * apz, d2 = acx * apx + acy * apy + acz * apz;
+        float v, w;
+        if (d1 <= 0.F && d2 <= 0.F) {
+            v = 0.F;
+            w = 0.F;
+        } else {
+            float bpx = apx - abx, bpy = apy - aby, bpz = apz - abz;
+            float d3 = abx * bpx + aby * bpy + abz * bpz, d4 = acx * bpx + acy * bpy + acz * bpz;
+            float cpx = apx - acx, cpy = apy - acy, cpz = apz - acz;
+            float d5 = abx * cpx + aby * cpy + abz * cpz, d6 = acx * cpx + acy * cpy + acz * cpz;
+            float vc = d1 * d4 - d3 * d2, vb = d5 * d2 - d1 * d6, va = d3 * d6 - d5 * d4;
+            if (d3 >= 0.F && d4 <= d3) {
+                v = 1.F;
+                w = 0.F;
+            } else if (d6 >= 0.F && d5 <= d6) {
+                v = 0.F;
+                w = 1.F;
+            } else if (vc <= 0.F && d1 >= 0.F && d3 <= 0.F && d1 - d3 > 0.F) {
+                v = d1 / (d1 - d3);
+                w = 0.F;
+            } else if (vb <= 0.F && d2 >= 0.F && d6 <= 0.F && d2 - d6 > 0.F) {
+                v = 0.F;
+                w = d2 / (d2 - d6);
+            } else if (va <= 0.F && d4 - d3 >= 0.F && d5 - d6 >= 0.F && (d4 - d3) + (d5 - d6) > 0.F) {
+                w = (d4 - d3) / ((d4 - d3) + (d5 - d6));
+                v = 1.F - w;
+            } else if (va + vb + vc > 0.F) {
+                float denom = 1.F / (va + vb + vc);
+                v = vb * denom;
+                w = vc * denom;
+            } else {
+                //zero area, the division would give NaN or infinite coordinates
+                return Math.min(segmentSquaredDistance(0.F, 0.F, 0.F, abx, aby, abz, apx, apy, apz),
+                        Math.min(segmentSquaredDistance(abx, aby, abz, acx - abx, acy - aby, acz - abz, apx, apy, apz),
+                                segmentSquaredDistance(0.F, 0.F, 0.F, acx, acy, acz, apx, apy, apz)));
+            }
+        }
+        float dx = apx - abx * v - acx * w, dy = apy - aby * v - acy * w, dz = apz - abz * v - acz * w;
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * Returns the squared distance from a point to a segment, a segment of length 0 being a point.
+     * @param sx - x coordinate of the start of the segment
+     * @param sy - y coordinate of the start of the segment
+     * @param sz - z coordinate of the start of the segment
+     * @param ex - x coordinate of the vector from the start to the end of the segment
+     * @param ey - y coordinate of the vector from the start to the end of the segment
+     * @param ez - z coordinate of the vector from the start to the end of the segment
+     * @param px - x coordinate of the point
+     * @param py - y coordinate of the point
+     * @param pz - z coordinate of the point
+     * @return the squared distance
+     */
+    private static float segmentSquaredDistance(float sx, float sy, float sz, float ex, float ey, float ez, float px, float py, float pz) {
+        float dx = px - sx, dy = py - sy, dz = pz - sz;
+        float length = ex * ex + ey * ey + ez * ez;
+        float t = length > 0.F ? Math.max(0.F, Math.min(1.F, (dx * ex + dy * ey + dz * ez) / length)) : 0.F;
+        dx -= ex * t;
+        dy -= ey * t;
+        dz -= ez * t;
+        return dx * dx + dy * dy + dz * dz;
+    }
+}
@@ -0,0 +1,323 @@
+package fr.univ_poitiers.dptinfo.algo3d.mesh;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * Class to write a Mesh in a compact binary file and to load it back by memory mapping the file.
+ * The file contains the mesh as it is sent to the GPU by {@link Mesh#initGraphics()} : the batches of 16 bits indices of {@link IndexSplitter},
+ * the interleaved vertices of the batches in the {@link VertexLayout} or the {@link CompressedVertexLayout}, the triangle indices and the edge indices.
+ * Everything is stored in the native byte order, so the views of the mapped file are given directly to the GPU, without being copied nor converted.
+ * The arrays of the mesh are only rebuilt from the file if they are accessed.
+ *
+ * Header layout, 40 bytes :
+ * <ul>
+ *     <li>magic number {@link #MAGIC} (int)</li>
+ *     <li>format version {@link #VERSION} (int)</li>
+ *     <li>flags : {@link #FLAG_TEXTURES} if the mesh has texture coordinates, {@link #FLAG_COMPRESSED} if the vertices are compressed,
+ *     {@link #FLAG_SPLIT} if the vertices used by several batches are duplicated (int)</li>
+ *     <li>number of vertices of the mesh (int)</li>
+ *     <li>number of triangle indices (int)</li>
+ *     <li>number of vertices of the batches (int)</li>
+ *     <li>number of batches (int)</li>
+ *     <li>number of edge indices (int)</li>
+ *     <li>CRC32 checksum of the data following the header (long)</li>
+ * </ul>
+ * Data following the header, each part starting on a multiple of 4 bytes :
+ * <ul>
+ *     <li>for each batch, the index of its first triangle index, its number of triangle indices, the index of its first vertex,
+ *     the index of its first edge index and its number of edge indices (5 ints)</li>
+ *     <li>scale and offset of the positions, then size and minimum of the texture coordinates, of the compressed vertices (10 floats)</li>
+ *     <li>the interleaved vertices of the batches</li>
+ *     <li>if {@link #FLAG_SPLIT} is set, for each vertex of the batches, the index of the vertex of the mesh (ints)</li>
+ *     <li>the triangle indices, padded to a multiple of 4 bytes (unsigned shorts)</li>
+ *     <li>the edge indices, padded to a multiple of 4 bytes (unsigned shorts)</li>
+ * </ul>
+ */
+public class MeshFile {
+
+    /**
+     * Magic number at the beginning of the file, "A3DM" when read in big endian.
+     */
+    public static final int MAGIC = 0x4133444D;
+    /**
+     * Version of the format, to be incremented when the layout changes.
+     * Version 1 stored the arrays of the mesh, version 2 stores its GPU buffers.
+     */
+    public static final int VERSION = 2;
+    /**
+     * Flag set when the mesh has texture coordinates.
+     */
+    public static final int FLAG_TEXTURES = 1;
+    /**
+     * Flag set when the vertices use the {@link CompressedVertexLayout}.
+     */
+    public static final int FLAG_COMPRESSED = 2;
+    /**
+     * Flag set when the mesh is split in several batches sharing vertices, and the index of the vertex of the mesh of each vertex is stored.
+     */
+    public static final int FLAG_SPLIT = 4;
+    /**
+     * Size of the header in bytes.
+     */
+    static final int HEADER_SIZE = 40;
+    /**
+     * Number of ints stored per batch.
+     */
+    private static final int BATCH_INTS = 5;
+    /**
+     * Number of floats of the dequantization of the vertices.
+     */
+    private static final int DEQUANTIZATION_FLOATS = 10;
+    /**
+     * Size of the buffer used to write the file and compute the checksum.
+     */
+    private static final int BLOCK_SIZE = 1 << 16;
+
+    /**
+     * Constructor. Not to be used, all methods are static.
+     */
+    private MeshFile() {
+    }
+
+    /**
+     * Write the mesh in the given file, with the layout of its vertices given by {@link Mesh#setCompressed(boolean)}.
+     * @param mesh - the mesh to write
+     * @param file - the destination file, replaced if it exists
+     * @throws IOException if the file can not be written
+     */
+    public static void write(Mesh mesh, File file) throws IOException {
+        MeshBuffers buffers = mesh.getBuffers();
+        FileOutputStream output = new FileOutputStream(file);
+        try {
+            FileChannel channel = output.getChannel();
+            ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE).order(ByteOrder.nativeOrder());
+            CRC32 crc = new CRC32();
+            channel.position(HEADER_SIZE);
+            for (int b = 0; b < buffers.batchesCount; b++) {
+                writeInt(channel, block, crc, buffers.firstIndex[b]);
+                writeInt(channel, block, crc, buffers.indicesCount[b]);
+                writeInt(channel, block, crc, buffers.firstVertex[b]);
+                writeInt(channel, block, crc, buffers.firstEdgeIndex[b]);
+                writeInt(channel, block, crc, buffers.edgeIndicesCount[b]);
+            }
+            float[][] dequantization = {buffers.positionScale, buffers.positionOffset, buffers.textureDequantization};
+            for (float[] values : dequantization)
+                for (float value : values)
+                    writeInt(channel, block, crc, Float.floatToRawIntBits(value));
+            ByteBuffer vertices = buffers.vertices.duplicate();
+            vertices.clear();
+            while (vertices.hasRemaining()) {
+                if (!block.hasRemaining())
+                    flush(channel, block, crc);
+                ByteBuffer part = vertices.duplicate();
+                part.limit(part.position() + Math.min(block.remaining(), part.remaining()));
+                block.put(part);
+                vertices.position(part.position());
+            }
+            if (buffers.remap != null)
+                for (int i = 0; i < buffers.verticesCount; i++)
+                    writeInt(channel, block, crc, buffers.remap.get(i));
+            writeShorts(channel, block, crc, buffers.indices);
+            writeShorts(channel, block, crc, buffers.edges);
+            flush(channel, block, crc);
+
+            block.putInt(MAGIC);
+            block.putInt(VERSION);
+            block.putInt((buffers.textures ? FLAG_TEXTURES : 0) | (buffers.compressed ? FLAG_COMPRESSED : 0) | (buffers.remap != null ? FLAG_SPLIT : 0));
+            block.putInt(buffers.nbVertices);
+            block.putInt(buffers.indices.capacity());
+            block.putInt(buffers.verticesCount);
+            block.putInt(buffers.batchesCount);
+            block.putInt(buffers.edges.capacity());
+            block.putLong(crc.getValue());
+            block.flip();
+            channel.position(0);
+            while (block.hasRemaining())
+                channel.write(block);
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Write an int through the block buffer.
+     * @param channel - the destination channel
+     * @param block - the buffer used to write the file
+     * @param crc - the checksum being computed
+     * @param value - the int to write
+     * @throws IOException if the file can not be written
+     */
+    private static void writeInt(FileChannel channel, ByteBuffer block, CRC32 crc, int value) throws IOException {
+        if (block.remaining() < Integer.BYTES)
+            flush(channel, block, crc);
+        block.putInt(value);
+    }
+
+    /**
+     * Write a buffer of shorts through the block buffer, followed by a padding short if their number is odd.
+     * @param channel - the destination channel
+     * @param block - the buffer used to write the file
+     * @param crc - the checksum being computed
+     * @param shorts - the shorts to write, read from the index 0
+     * @throws IOException if the file can not be written
+     */
+    private static void writeShorts(FileChannel channel, ByteBuffer block, CRC32 crc, ShortBuffer shorts) throws IOException {
+        int count = shorts.capacity();
+        for (int i = 0; i < count + count % 2; i++) {
+            if (block.remaining() < Short.BYTES)
+                flush(channel, block, crc);
+            block.putShort(i < count ? shorts.get(i) : 0);
+        }
+    }
+
+    /**
+     * Write the content of the block buffer in the channel, update the checksum and clear the buffer.
+     * @param channel - the destination channel
+     * @param block - the buffer used to write the file
+     * @param crc - the checksum being computed
+     * @throws IOException if the file can not be written
+     */
+    private static void flush(FileChannel channel, ByteBuffer block, CRC32 crc) throws IOException {
+        crc.update(block.array(), 0, block.position());
+        block.flip();
+        while (block.hasRemaining())
+            channel.write(block);
+        block.clear();
+    }
+
+    /**
+     * Load a mesh by memory mapping the given file.
+     * The returned mesh uses views of the mapped file as GPU buffers, nothing is copied into Java arrays unless the arrays are accessed.
+     * @param file - the file written by {@link #write(Mesh, File)}
+     * @param verify - true to check the checksum of the data, which requires reading the whole file once
+     * @return the loaded mesh
+     * @throws IOException if the file can not be read, or if it is invalid, from another version or corrupted
+     */
+    public static Mesh load(File file, boolean verify) throws IOException {
+        FileInputStream input = new FileInputStream(file);
+        MappedByteBuffer mapped;
+        try {
+            FileChannel channel = input.getChannel();
+            if (channel.size() < HEADER_SIZE)
+                throw new IOException("Mesh file too small : " + file);
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            //the mapping stays valid after the channel is closed
+            input.close();
+        }
+        mapped.order(ByteOrder.nativeOrder());
+        int magic = mapped.getInt(0);
+        if (magic != MAGIC) {
+            if (magic == Integer.reverseBytes(MAGIC))
+                throw new IOException("Mesh file written with another byte order : " + file);
+            throw new IOException("Not a mesh file : " + file);
+        }
+        int version = mapped.getInt(4);
+        if (version != VERSION)
+            throw new IOException("Unsupported mesh file version " + version + " : " + file);
+        int flags = mapped.getInt(8);
+        MeshBuffers buffers = new MeshBuffers();
+        buffers.textures = (flags & FLAG_TEXTURES) != 0;
+        buffers.compressed = (flags & FLAG_COMPRESSED) != 0;
+        boolean split = (flags & FLAG_SPLIT) != 0;
+        buffers.nbVertices = mapped.getInt(12);
+        int nbIndices = mapped.getInt(16);
+        buffers.verticesCount = mapped.getInt(20);
+        buffers.batchesCount = mapped.getInt(24);
+        int nbEdgeIndices = mapped.getInt(28);
+        long checksum = mapped.getLong(32);
+        if (buffers.nbVertices < 0 || nbIndices < 0 || buffers.verticesCount < 0 || buffers.batchesCount < 0 || nbEdgeIndices < 0)
+            throw new IOException("Invalid mesh file size : " + file);
+        long size = HEADER_SIZE + ((long) buffers.batchesCount * BATCH_INTS + DEQUANTIZATION_FLOATS) * 4
+                + (long) buffers.verticesCount * (buffers.stride() + (split ? Integer.BYTES : 0))
+                + padded(nbIndices) + padded(nbEdgeIndices);
+        if (size != mapped.capacity())
+            throw new IOException("Invalid mesh file size : " + file);
+        if (verify && checksum(mapped) != checksum)
+            throw new IOException("Mesh file checksum mismatch : " + file);
+
+        int offset = HEADER_SIZE;
+        IntBuffer table = slice(mapped, offset, buffers.batchesCount * BATCH_INTS * Integer.BYTES).asIntBuffer();
+        offset += buffers.batchesCount * BATCH_INTS * Integer.BYTES;
+        buffers.firstIndex = new int[buffers.batchesCount];
+        buffers.indicesCount = new int[buffers.batchesCount];
+        buffers.firstVertex = new int[buffers.batchesCount];
+        buffers.firstEdgeIndex = new int[buffers.batchesCount];
+        buffers.edgeIndicesCount = new int[buffers.batchesCount];
+        for (int b = 0; b < buffers.batchesCount; b++) {
+            buffers.firstIndex[b] = table.get(b * BATCH_INTS);
+            buffers.indicesCount[b] = table.get(b * BATCH_INTS + 1);
+            buffers.firstVertex[b] = table.get(b * BATCH_INTS + 2);
+            buffers.firstEdgeIndex[b] = table.get(b * BATCH_INTS + 3);
+            buffers.edgeIndicesCount[b] = table.get(b * BATCH_INTS + 4);
+        }
+        FloatBuffer dequantization = slice(mapped, offset, DEQUANTIZATION_FLOATS * Float.BYTES).asFloatBuffer();
+        offset += DEQUANTIZATION_FLOATS * Float.BYTES;
+        buffers.positionScale = new float[3];
+        buffers.positionOffset = new float[3];
+        buffers.textureDequantization = new float[4];
+        dequantization.get(buffers.positionScale).get(buffers.positionOffset).get(buffers.textureDequantization);
+        buffers.vertices = slice(mapped, offset, buffers.verticesCount * buffers.stride());
+        offset += buffers.verticesCount * buffers.stride();
+        if (split) {
+            buffers.remap = slice(mapped, offset, buffers.verticesCount * Integer.BYTES).asIntBuffer();
+            offset += buffers.verticesCount * Integer.BYTES;
+        }
+        buffers.indices = slice(mapped, offset, nbIndices * Short.BYTES).asShortBuffer();
+        offset += padded(nbIndices);
+        buffers.edges = slice(mapped, offset, nbEdgeIndices * Short.BYTES).asShortBuffer();
+        return new Mesh(buffers);
+    }
+
+    /**
+     * Returns the size in bytes of a number of shorts padded to a multiple of 4 bytes.
+     * @param count - number of shorts
+     * @return the padded size
+     */
+    private static long padded(int count) {
+        return ((long) count + count % 2) * Short.BYTES;
+    }
+
+    /**
+     * Returns a view of a part of the buffer, in the native order.
+     * @param buffer - the whole buffer
+     * @param offset - index of the first byte of the view
+     * @param length - number of bytes of the view
+     * @return the view
+     */
+    private static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset);
+        view.limit(offset + length);
+        return view.slice().order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Compute the CRC32 checksum of the data following the header.
+     * @param buffer - the whole file
+     * @return the checksum
+     */
+    private static long checksum(ByteBuffer buffer) {
+        CRC32 crc = new CRC32();
+        byte[] block = new byte[BLOCK_SIZE];
+        ByteBuffer data = buffer.duplicate();
+        data.position(HEADER_SIZE);
+        while (data.hasRemaining()) {
+            int length = Math.min(block.length, data.remaining());
+            data.get(block, 0, length);
+            crc.update(block, 0, length);
+        }
+        return crc.getValue();
+    }
+}
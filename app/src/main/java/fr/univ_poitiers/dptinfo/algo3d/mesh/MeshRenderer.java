@@ -1,9 +1,8 @@
 package fr.univ_poitiers.dptinfo.algo3d.mesh;
 
-import android.opengl.Matrix;
-
 import fr.univ_poitiers.dptinfo.algo3d.gameobject.Component;
 import fr.univ_poitiers.dptinfo.algo3d.gameobject.GameObject;
+import fr.univ_poitiers.dptinfo.algo3d.math.Mat4f;
 import fr.univ_poitiers.dptinfo.algo3d.shaders.DepthShader;
 import fr.univ_poitiers.dptinfo.algo3d.shaders.ShaderManager;
 
@@ -16,6 +15,14 @@ public class MeshRenderer extends Component {
      * The material used by the renderer.
      */
     private Material material;
+    /**
+     * The mesh sent to the GPU in {@link #start()}, released when the GameObject is destroyed.
+     */
+    private Mesh acquiredMesh;
+    /**
+     * Model view matrix of the mesh, allocated once to be reused at each draw.
+     */
+    private final float[] modelviewmatrix = new float[16];
 
     /**
      * Constructor.
@@ -42,14 +49,27 @@ public class MeshRenderer extends Component {
     }
 
     /**
-     * Call the {@link Mesh#initGraphics()} of the mesh contained in the {@link MeshFilter}, if they are not null, to send the data to the GPU.
+     * Acquire the mesh contained in the {@link MeshFilter}, if they are not null, from the {@link MeshBufferRegistry}, to send the data to the GPU if it is not there yet.
      */
     @Override
     public void start() {
         MeshFilter mf = gameObject.getCompotent(MeshFilter.class);
         material.getShader().use();
-        if (mf != null && mf.getMesh() != null)
-            gameObject.getCompotent(MeshFilter.class).getMesh().initGraphics();
+        if (mf != null && mf.getMesh() != null) {
+            acquiredMesh = mf.getMesh();
+            MeshBufferRegistry.getInstance().acquire(acquiredMesh);
+        }
+    }
+
+    /**
+     * Release the mesh acquired in {@link #start()}, so its buffers are deleted if no other object uses it.
+     */
+    @Override
+    public void onDestroy() {
+        if (acquiredMesh != null) {
+            MeshBufferRegistry.getInstance().release(acquiredMesh);
+            acquiredMesh = null;
+        }
     }
 
     /**
@@ -66,8 +86,7 @@ public class MeshRenderer extends Component {
     private void renderShadow() {
         MeshFilter mf = gameObject.getCompotent(MeshFilter.class);
         if (mf != null && mf.getMesh() != null) {
-            float[] modelviewmatrix = new float[16];
-            Matrix.multiplyMM(modelviewmatrix, 0, ShaderManager.getInstance().getDepthShader().getViewMatrix(), 0, transform.getGlobalModelMatrix(), 0);
+            Mat4f.multiply(modelviewmatrix, 0, ShaderManager.getInstance().getDepthShader().getViewMatrix(), 0, transform.getGlobalModelMatrix(), 0);
             ShaderManager.getInstance().getDepthShader().use();
             ShaderManager.getInstance().getDepthShader().setModelViewMatrix(modelviewmatrix);
             gameObject.getCompotent(MeshFilter.class).getMesh().draw(ShaderManager.getInstance().getDepthShader());
@@ -88,8 +107,7 @@ public class MeshRenderer extends Component {
      */
     private void render() {
         if (gameObject.getCompotent(MeshFilter.class) != null) {
-            float[] modelviewmatrix = new float[16];
-            Matrix.multiplyMM(modelviewmatrix, 0, material.getShader().getViewMatrix(), 0, transform.getGlobalModelMatrix(), 0);
+            Mat4f.multiply(modelviewmatrix, 0, material.getShader().getViewMatrix(), 0, transform.getGlobalModelMatrix(), 0);
             material.getShader().use();
             material.update();
             material.getShader().setModelViewMatrix(modelviewmatrix);
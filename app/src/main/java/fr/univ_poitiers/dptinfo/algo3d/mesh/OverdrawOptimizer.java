@@ -0,0 +1,291 @@
+package fr.univ_poitiers.dptinfo.algo3d.mesh;
+
+import java.util.Arrays;
+
+/**
+ * Class to reorder the triangles of a mesh so the fragments hidden by other triangles of the mesh are less often shaded.
+ * The triangles, already ordered for the vertex cache by {@link VertexCacheOptimizer}, are cut into clusters of consecutive triangles
+ * where the cut costs little to the vertex cache, then the clusters are sorted by how much they face outwards from the center of the mesh.
+ * The clusters on the outside of the mesh are then drawn first from most points of view, and hide the ones behind them from the depth test.
+ * The gain is measured with {@link #overdraw(float[], int[])}, a small software rasterizer counting the shaded fragments.
+ * Does not depend on OpenGL.
+ */
+class OverdrawOptimizer {
+
+    /**
+     * Size in pixels of the square views rendered by the overdraw estimator.
+     */
+    private static final int RESOLUTION = 256;
+
+    /**
+     * Constructor. Not to be used, all methods are static.
+     */
+    private OverdrawOptimizer() {
+    }
+
+    /**
+     * Simulated FIFO vertex cache of {@link VertexCacheOptimizer#FIFO_SIZE} vertices, that can be emptied at once.
+     */
+    private static class Fifo {
+        /**
+         * For each vertex, the time it entered the cache.
+         */
+        final int[] entered;
+        /**
+         * Current time, incremented by each miss and by the flushes.
+         */
+        int time;
+
+        /**
+         * Constructor.
+         * @param nbVertices - number of vertices
+         */
+        Fifo(int nbVertices) {
+            entered = new int[nbVertices];
+            Arrays.fill(entered, Integer.MIN_VALUE / 2);
+        }
+
+        /**
+         * Add the vertices of a triangle to the cache.
+         * @param triangles - triangles array
+         * @param t - index of the triangle
+         * @return the number of vertices that were not in the cache
+         */
+        int add(int[] triangles, int t) {
+            int misses = 0;
+            for (int k = 0; k < 3; k++) {
+                int v = triangles[t * 3 + k];
+                if (time - entered[v] >= VertexCacheOptimizer.FIFO_SIZE) {
+                    entered[v] = time++;
+                    misses++;
+                }
+            }
+            return misses;
+        }
+
+        /**
+         * Empty the cache.
+         */
+        void flush() {
+            time += VertexCacheOptimizer.FIFO_SIZE;
+        }
+    }
+
+    /**
+     * Reorder the triangles to reduce the overdraw.
+     * @param vertexpos - vertices position array
+     * @param triangles - triangles array, preferably ordered for the vertex cache
+     * @param nbVertices - number of vertices
+     * @param threshold - largest ratio of the ACMR of a cluster to the ACMR of the original order, 1 to only cut where the vertex cache is emptied anyway
+     * @return the reordered triangles array, the triangles keeping their orientation
+     */
+    static int[] optimize(float[] vertexpos, int[] triangles, int nbVertices, float threshold) {
+        int nbTriangles = triangles.length / 3;
+        int[] clusters = clusters(triangles, nbVertices, threshold);
+        int nbClusters = clusters.length - 1;
+
+        //center of the mesh : average of the used vertices
+        boolean[] used = new boolean[nbVertices];
+        float mx = 0.F, my = 0.F, mz = 0.F;
+        int count = 0;
+        for (int v : triangles) {
+            if (!used[v]) {
+                used[v] = true;
+                mx += vertexpos[v * 3];
+                my += vertexpos[v * 3 + 1];
+                mz += vertexpos[v * 3 + 2];
+                count++;
+            }
+        }
+        if (count > 0) {
+            mx /= count;
+            my /= count;
+            mz /= count;
+        }
+
+        //sort key of each cluster : its area weighted center, seen along its area weighted normal, from the center of the mesh
+        long[] order = new long[nbClusters];
+        for (int c = 0; c < nbClusters; c++) {
+            float cx = 0.F, cy = 0.F, cz = 0.F, nx = 0.F, ny = 0.F, nz = 0.F, area = 0.F;
+            for (int t = clusters[c]; t < clusters[c + 1]; t++) {
+                int i1 = triangles[t * 3] * 3, i2 = triangles[t * 3 + 1] * 3, i3 = triangles[t * 3 + 2] * 3;
+                float v1x = vertexpos[i2] - vertexpos[i1], v1y = vertexpos[i2 + 1] - vertexpos[i1 + 1], v1z = vertexpos[i2 + 2] - vertexpos[i1 + 2];
+                float v2x = vertexpos[i3] - vertexpos[i1], v2y = vertexpos[i3 + 1] - vertexpos[i1 + 1], v2z = vertexpos[i3 + 2] - vertexpos[i1 + 2];
+                float x = v1y * v2z - v1z * v2y, y = v1z * v2x - v1x * v2z, z = v1x * v2y - v1y * v2x;
+                float a = (float) Math.sqrt(x * x + y * y + z * z);
+                cx += (vertexpos[i1] + vertexpos[i2] + vertexpos[i3]) * a;
+                cy += (vertexpos[i1 + 1] + vertexpos[i2 + 1] + vertexpos[i3 + 1]) * a;
+                cz += (vertexpos[i1 + 2] + vertexpos[i2 + 2] + vertexpos[i3 + 2]) * a;
+                nx += x;
+                ny += y;
+                nz += z;
+                area += a;
+            }
+            float key = 0.F;
+            float l = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+            if (area != 0.F && l != 0.F)
+                key = ((cx / (area * 3.F) - mx) * nx + (cy / (area * 3.F) - my) * ny + (cz / (area * 3.F) - mz) * nz) / l;
+            //decreasing keys as increasing sortable ints, the index of the cluster in the low bits keeps the sort stable
+            int bits = Float.floatToIntBits(-key);
+            bits ^= (bits >> 31) & 0x7FFFFFFF;
+            order[c] = ((long) bits << 32) | c;
+        }
+        Arrays.sort(order);
+
+        int[] result = new int[nbTriangles * 3];
+        int n = 0;
+        for (long o : order) {
+            int c = (int) o;
+            int length = (clusters[c + 1] - clusters[c]) * 3;
+            System.arraycopy(triangles, clusters[c] * 3, result, n, length);
+            n += length;
+        }
+        return result;
+    }
+
+    /**
+     * Cut the triangles into clusters of consecutive triangles.
+     * The hard boundaries are the triangles whose 3 vertices miss the cache, where the cache is emptied anyway.
+     * Each hard cluster is then cut as soon as its beginning, with an empty cache, has an ACMR under the threshold times the ACMR of the hard cluster.
+     * @param triangles - triangles array
+     * @param nbVertices - number of vertices
+     * @param threshold - largest ratio of the ACMR of a cluster to the ACMR of the hard cluster
+     * @return the index of the first triangle of each cluster, followed by the number of triangles
+     */
+    static int[] clusters(int[] triangles, int nbVertices, float threshold) {
+        int nbTriangles = triangles.length / 3;
+        int[] hard = new int[16];
+        int nbHard = 0;
+        int[] misses = new int[nbTriangles];
+        Fifo fifo = new Fifo(nbVertices);
+        for (int t = 0; t < nbTriangles; t++) {
+            misses[t] = fifo.add(triangles, t);
+            if (misses[t] == 3 || t == 0) {
+                if (nbHard == hard.length)
+                    hard = Arrays.copyOf(hard, nbHard * 2);
+                hard[nbHard++] = t;
+            }
+        }
+
+        int[] clusters = new int[nbHard + 1];
+        int nbClusters = 0;
+        fifo = new Fifo(nbVertices);
+        for (int h = 0; h < nbHard; h++) {
+            int start = hard[h];
+            int end = h + 1 < nbHard ? hard[h + 1] : nbTriangles;
+            int hardMisses = 0;
+            for (int t = start; t < end; t++)
+                hardMisses += misses[t];
+            float limit = threshold * hardMisses / (end - start);
+
+            fifo.flush();
+            int clusterStart = start;
+            int clusterMisses = 0;
+            for (int t = start; t < end; t++) {
+                clusterMisses += fifo.add(triangles, t);
+                boolean cut = t + 1 == end || clusterMisses <= limit * (t + 1 - clusterStart);
+                if (cut) {
+                    if (nbClusters + 1 == clusters.length)
+                        clusters = Arrays.copyOf(clusters, clusters.length * 2);
+                    clusters[nbClusters++] = clusterStart;
+                    clusterStart = t + 1;
+                    clusterMisses = 0;
+                    fifo.flush();
+                }
+            }
+        }
+        clusters[nbClusters] = nbTriangles;
+        return Arrays.copyOf(clusters, nbClusters + 1);
+    }
+
+    /**
+     * Estimate the overdraw of the triangles, drawn in their order with back face culling and a depth test.
+     * The mesh is rendered by a software rasterizer in 6 orthographic views of {@link #RESOLUTION} pixels, along the axes in both directions,
+     * as the GPU does with the counter-clockwise front faces and the GL_LESS depth function.
+     * @param vertexpos - vertices position array
+     * @param triangles - triangles array
+     * @return the number of shaded fragments divided by the number of covered pixels, 1 without overdraw
+     */
+    static float overdraw(float[] vertexpos, int[] triangles) {
+        float[] min = {Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY};
+        float[] max = {Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
+        for (int v : triangles) {
+            for (int k = 0; k < 3; k++) {
+                min[k] = Math.min(min[k], vertexpos[v * 3 + k]);
+                max[k] = Math.max(max[k], vertexpos[v * 3 + k]);
+            }
+        }
+        float extent = Math.max(max[0] - min[0], Math.max(max[1] - min[1], max[2] - min[2]));
+        if (triangles.length == 0 || extent == 0.F)
+            return 1.F;
+        float scale = (RESOLUTION - 1) / extent;
+
+        //right, up and viewer axes of the 6 views, each one with right x up = viewer
+        int[][] axes = {{1, 2, 0}, {2, 1, 0}, {2, 0, 1}, {0, 2, 1}, {0, 1, 2}, {1, 0, 2}};
+        float[] viewerSigns = {1.F, -1.F, 1.F, -1.F, 1.F, -1.F};
+        float[] depth = new float[RESOLUTION * RESOLUTION];
+        long shaded = 0, covered = 0;
+        for (int view = 0; view < axes.length; view++) {
+            int ru = axes[view][0], rv = axes[view][1], rd = axes[view][2];
+            float sign = viewerSigns[view];
+            Arrays.fill(depth, Float.POSITIVE_INFINITY);
+            for (int i = 0; i < triangles.length; i += 3) {
+                int i1 = triangles[i] * 3, i2 = triangles[i + 1] * 3, i3 = triangles[i + 2] * 3;
+                shaded += rasterize(depth,
+                        (vertexpos[i1 + ru] - min[ru]) * scale, (vertexpos[i1 + rv] - min[rv]) * scale, -sign * vertexpos[i1 + rd],
+                        (vertexpos[i2 + ru] - min[ru]) * scale, (vertexpos[i2 + rv] - min[rv]) * scale, -sign * vertexpos[i2 + rd],
+                        (vertexpos[i3 + ru] - min[ru]) * scale, (vertexpos[i3 + rv] - min[rv]) * scale, -sign * vertexpos[i3 + rd]);
+            }
+            for (float d : depth)
+                if (d != Float.POSITIVE_INFINITY)
+                    covered++;
+        }
+        return covered == 0 ? 1.F : shaded / (float) covered;
+    }
+
+    /**
+     * Rasterize a triangle in the depth buffer, the pixels being sampled at their centers.
+     * The triangle is culled if it is not counter-clockwise.
+     * @param depth - depth buffer, {@link #RESOLUTION} pixels square, the lower the closer
+     * @param x1 - x coordinate in pixels of the first vertex
+     * @param y1 - y coordinate in pixels of the first vertex
+     * @param z1 - depth of the first vertex
+     * @param x2 - x coordinate in pixels of the second vertex
+     * @param y2 - y coordinate in pixels of the second vertex
+     * @param z2 - depth of the second vertex
+     * @param x3 - x coordinate in pixels of the third vertex
+     * @param y3 - y coordinate in pixels of the third vertex
+     * @param z3 - depth of the third vertex
+     * @return the number of fragments passing the depth test
+     */
+    private static int rasterize(float[] depth, float x1, float y1, float z1, float x2, float y2, float z2, float x3, float y3, float z3) {
+        float area = (x2 - x1) * (y3 - y1) - (x3 - x1) * (y2 - y1);
+        if (area <= 0.F)
+            return 0;
+        int minX = Math.max(0, (int) Math.ceil(Math.min(x1, Math.min(x2, x3)) - 0.5F));
+        int maxX = Math.min(RESOLUTION - 1, (int) Math.floor(Math.max(x1, Math.max(x2, x3)) - 0.5F));
+        int minY = Math.max(0, (int) Math.ceil(Math.min(y1, Math.min(y2, y3)) - 0.5F));
+        int maxY = Math.min(RESOLUTION - 1, (int) Math.floor(Math.max(y1, Math.max(y2, y3)) - 0.5F));
+        float inv = 1.F / area;
+        int shaded = 0;
+        for (int y = minY; y <= maxY; y++) {
+            float py = y + 0.5F;
+            for (int x = minX; x <= maxX; x++) {
+                float px = x + 0.5F;
+                //barycentric coordinates, a pixel on an edge belongs to both triangles
+                float w1 = ((x3 - x2) * (py - y2) - (y3 - y2) * (px - x2)) * inv;
+                float w2 = ((x1 - x3) * (py - y3) - (y1 - y3) * (px - x3)) * inv;
+                float w3 = 1.F - w1 - w2;
+                if (w1 < 0.F || w2 < 0.F || w3 < 0.F)
+                    continue;
+                float z = w1 * z1 + w2 * z2 + w3 * z3;
+                int p = y * RESOLUTION + x;
+                if (z < depth[p]) {
+                    depth[p] = z;
+                    shaded++;
+                }
+            }
+        }
+        return shaded;
+    }
+}
@@ -0,0 +1,130 @@
+package fr.univ_poitiers.dptinfo.algo3d.mesh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Class to calculate the smooth shading normals of a large mesh with all the cores of the device.
+ * The weighted normal of each triangle is calculated in parallel, then each vertex gathers the normals of its triangles
+ * through a vertex to triangles adjacency stored in compressed sparse rows, so no two tasks write the same value.
+ * The triangles of a vertex are gathered in the same order as the serial accumulation, so the result is identical.
+ */
+class ParallelNormals {
+
+    /**
+     * Minimal number of triangles for the parallel calculation to be used, smaller meshes are faster to process serially.
+     */
+    static final int MIN_TRIANGLES = 1 << 15;
+
+    /**
+     * Constructor. Not to be used, all methods are static.
+     */
+    private ParallelNormals() {
+    }
+
+    /**
+     * Calculate the smooth shading normals, as {@link Mesh#calculateSmoothShadingNormals()} does.
+     * @param vertexpos - vertices position array
+     * @param triangles - triangles array
+     * @return the normals array
+     */
+    static float[] smooth(final float[] vertexpos, final int[] triangles) {
+        final int nbVertices = vertexpos.length / 3;
+        final int nbTriangles = triangles.length / 3;
+        final float[] faces = new float[triangles.length];
+        invoke(nbTriangles, new Range() {
+            @Override
+            void run(int start, int end) {
+                for (int t = start; t < end; t++)
+                    Mesh.weightedFaceNormal(vertexpos, triangles, t * 3, faces, t * 3);
+            }
+        });
+
+        //adjacency : the triangles of the vertex v are adjacency[offsets[v]] to adjacency[offsets[v + 1] - 1]
+        final int[] offsets = new int[nbVertices + 1];
+        for (int i = 0; i < triangles.length; i++)
+            offsets[triangles[i] + 1]++;
+        for (int v = 0; v < nbVertices; v++)
+            offsets[v + 1] += offsets[v];
+        final int[] adjacency = new int[triangles.length];
+        int[] next = offsets.clone();
+        for (int i = 0; i < triangles.length; i++)
+            adjacency[next[triangles[i]]++] = i / 3 * 3;
+
+        final float[] normals = new float[vertexpos.length];
+        invoke(nbVertices, new Range() {
+            @Override
+            void run(int start, int end) {
+                for (int v = start; v < end; v++) {
+                    float x = 0.F, y = 0.F, z = 0.F;
+                    for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+                        int f = adjacency[k];
+                        x += faces[f];
+                        y += faces[f + 1];
+                        z += faces[f + 2];
+                    }
+                    normals[v * 3] = x;
+                    normals[v * 3 + 1] = y;
+                    normals[v * 3 + 2] = z;
+                }
+            }
+        });
+        Mesh.normalizeAll(normals);
+        return normals;
+    }
+
+    /**
+     * Split the interval [0, size[ into ranges and process them in the common {@link ForkJoinPool}.
+     * @param size - number of elements to process
+     * @param range - the processing applied to each range
+     */
+    private static void invoke(int size, Range range) {
+        int nbRanges = Math.max(1, Math.min(ForkJoinPool.getCommonPoolParallelism() * 4, size / 1024));
+        List<Callable<Void>> tasks = new ArrayList<>(nbRanges);
+        for (int i = 0; i < nbRanges; i++)
+            tasks.add(range.of((int) ((long) size * i / nbRanges), (int) ((long) size * (i + 1) / nbRanges)));
+        List<Future<Void>> results = ForkJoinPool.commonPool().invokeAll(tasks);
+        try {
+            for (Future<Void> result : results)
+                result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Normals calculation interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error while calculating the normals", e.getCause());
+        }
+    }
+
+    /**
+     * Processing of a range of elements.
+     */
+    private abstract static class Range {
+
+        /**
+         * Process the elements from start included to end excluded.
+         * @param start - first element
+         * @param end - element after the last one
+         */
+        abstract void run(int start, int end);
+
+        /**
+         * Returns a task processing the given range.
+         * @param start - first element
+         * @param end - element after the last one
+         * @return the task
+         */
+        Callable<Void> of(final int start, final int end) {
+            return new Callable<Void>() {
+                @Override
+                public Void call() {
+                    run(start, end);
+                    return null;
+                }
+            };
+        }
+    }
+}
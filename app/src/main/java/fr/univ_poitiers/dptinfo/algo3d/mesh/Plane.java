@@ -1,8 +1,8 @@
 package fr.univ_poitiers.dptinfo.algo3d.mesh;
 
-
 import android.opengl.GLES20;
 
+import fr.univ_poitiers.dptinfo.algo3d.gl.GL;
 import fr.univ_poitiers.dptinfo.algo3d.shaders.DepthShader;
 
 /**
@@ -67,8 +67,8 @@ public class Plane extends Mesh {
      */
     @Override
     public void draw(DepthShader shaders) {
-        GLES20.glCullFace(GLES20.GL_BACK);
+        GL.glCullFace(GLES20.GL_BACK);
         super.draw(shaders);
-        GLES20.glCullFace(GLES20.GL_FRONT);
+        GL.glCullFace(GLES20.GL_FRONT);
     }
 }
@@ -8,6 +8,7 @@ import java.nio.FloatBuffer;
 
 import fr.univ_poitiers.dptinfo.algo3d.MyGLRenderer;
 import fr.univ_poitiers.dptinfo.algo3d.Vec3f;
+import fr.univ_poitiers.dptinfo.algo3d.gl.GL;
 import fr.univ_poitiers.dptinfo.algo3d.shaders.NoLightShaders;
 
 /**
@@ -61,7 +62,7 @@ public class Quad {
      */
     public void draw(final NoLightShaders shaders) {
         shaders.setPositionsPointer(3, GLES20.GL_FLOAT, 3 * Float.BYTES, this.vertexbuffer);
-        GLES20.glDrawArrays(GLES20.GL_TRIANGLES, 0, this.nbvertices);
+        GL.glDrawArrays(GLES20.GL_TRIANGLES, 0, this.nbvertices);
         MyGLRenderer.checkGlError("glDrawArrays (GL_TRIANGLES)");
     }
 
@@ -72,7 +73,7 @@ public class Quad {
      */
     public void drawWireframe(final NoLightShaders shaders) {
         shaders.setPositionsPointer(3, GLES20.GL_FLOAT, 3 * Float.BYTES, this.vertexbuffer);
-        GLES20.glDrawArrays(GLES20.GL_LINE_LOOP, 0, 4); // Only 4 vertices to draw a quad...
+        GL.glDrawArrays(GLES20.GL_LINE_LOOP, 0, 4); // Only 4 vertices to draw a quad...
         MyGLRenderer.checkGlError("glDrawArrays (GL_LINE_LOOP)");
     }
 }
@@ -0,0 +1,643 @@
+package fr.univ_poitiers.dptinfo.algo3d.mesh;
+
+import java.util.Arrays;
+
+/**
+ * Class to simplify a mesh by collapsing its edges, the cheapest first, with the quadric error metrics of Garland and Heckbert.
+ * A collapse moves a vertex onto one of its neighbours, so no new vertex is created and the attributes of the vertices are kept as they are.
+ * The vertices sharing a position with different attributes (the seams of the texture coordinates or of the normals) are handled together :
+ * a seam vertex can only slide along its seam, and the vertices where several seams meet, or on the non manifold edges, never move.
+ * The vertices of the open borders can only slide along their border.
+ * The edges are collapsed in passes, each vertex being touched by at most one collapse per pass.
+ */
+class QuadricSimplifier {
+
+    /**
+     * Weight of the planes added along the borders and the seams, to keep their shape.
+     */
+    private static final double EDGE_WEIGHT = 10.0;
+    /**
+     * Smallest cosine between the normals of a triangle before and after a collapse, to prevent the triangles from flipping.
+     */
+    private static final float MIN_FLIP_COSINE = 0.25F;
+
+    /**
+     * Triangles array of the simplified mesh, referencing the vertices of the original mesh.
+     */
+    int[] triangles;
+    /**
+     * Square root of the largest quadric error of the collapses.
+     */
+    float error;
+
+    /**
+     * For each vertex, the first vertex with the same position : the vertices of a position are handled together.
+     */
+    private int[] position;
+    /**
+     * Quadric of each position, 10 doubles : the upper half of the symmetric 4x4 matrix.
+     */
+    private double[] quadrics;
+    /**
+     * Vertices position array.
+     */
+    private float[] vertexpos;
+
+    /**
+     * Simplify the mesh.
+     * The vertices with exactly the same position, normal and texture coordinates are welded first.
+     * @param vertexpos - vertices position array
+     * @param normals - normals array, or null to weld the vertices without looking at their normals, that are then to be calculated again
+     * @param texturesCoord - texture coordinates array, may be null
+     * @param triangles - triangles array
+     * @param target - number of triangles to reach, more triangles are kept if no more edge can be collapsed
+     */
+    void simplify(float[] vertexpos, float[] normals, float[] texturesCoord, int[] triangles, int target) {
+        this.vertexpos = vertexpos;
+        int nbVertices = vertexpos.length / 3;
+        int[] wedge = weld(nbVertices, vertexpos, normals, texturesCoord);
+        position = weld(nbVertices, vertexpos, null, null);
+        int[] tris = new int[triangles.length];
+        for (int i = 0; i < triangles.length; i++)
+            tris[i] = wedge[triangles[i]];
+        int count = removeDegenerated(tris, tris.length / 3);
+        error = 0.F;
+
+        Topology topology = new Topology(nbVertices);
+        topology.build(tris, count, position);
+        quadrics = new double[nbVertices * 10];
+        for (int t = 0; t < count; t++)
+            addTriangleQuadric(tris, t);
+        for (int e = 0; e < topology.edgesCount; e++) {
+            if (topology.isBorderOrSeam(e, tris))
+                addEdgeQuadric(topology, tris, e);
+        }
+
+        int[] remap = new int[nbVertices];
+        for (int v = 0; v < nbVertices; v++)
+            remap[v] = v;
+        boolean[] locked = new boolean[nbVertices];
+        int[] mark = new int[nbVertices];
+        int[] wedgeFrom = new int[8], wedgeTo = new int[8];
+        while (count > target) {
+            //cost of each edge, collapsed in its cheapest direction
+            int nbCandidates = 0;
+            int[] from = new int[topology.edgesCount], to = new int[topology.edgesCount];
+            float[] cost = new float[topology.edgesCount];
+            for (int e = 0; e < topology.edgesCount; e++) {
+                int p = topology.edgeFrom[e], q = topology.edgeTo[e];
+                float pq = topology.canMove(p, q, e) ? evaluate(p, q) : Float.POSITIVE_INFINITY;
+                float qp = topology.canMove(q, p, e) ? evaluate(q, p) : Float.POSITIVE_INFINITY;
+                if (pq == Float.POSITIVE_INFINITY && qp == Float.POSITIVE_INFINITY)
+                    continue;
+                from[nbCandidates] = pq <= qp ? p : q;
+                to[nbCandidates] = pq <= qp ? q : p;
+                cost[nbCandidates] = Math.min(pq, qp);
+                nbCandidates++;
+            }
+            long[] order = new long[nbCandidates];
+            for (int c = 0; c < nbCandidates; c++)
+                order[c] = ((long) Float.floatToIntBits(cost[c]) << 32) | c;
+            Arrays.sort(order);
+            //a collapse removes 2 triangles, collapse half of what is needed in this pass, and not much more expensive than that
+            int goal = Math.max(1, (count - target) / 4);
+            float limit = nbCandidates == 0 ? 0.F : cost[(int) order[Math.min(goal, nbCandidates - 1)]] * 1.5F;
+
+            Arrays.fill(locked, false);
+            int removed = 0;
+            for (long o : order) {
+                int c = (int) o;
+                if (removed >= (count - target) || cost[c] > limit)
+                    break;
+                int p = from[c], q = to[c];
+                if (locked[p] || locked[q])
+                    continue;
+                int nbWedges = topology.mapWedges(p, q, tris, wedgeFrom, wedgeTo);
+                if (nbWedges < 0 || !topology.linked(p, q, tris, mark) || flips(topology, p, q, tris))
+                    continue;
+                for (int w = 0; w < nbWedges; w++)
+                    remap[wedgeFrom[w]] = wedgeTo[w];
+                for (int k = 0; k < 10; k++)
+                    quadrics[q * 10 + k] += quadrics[p * 10 + k];
+                locked[q] = true;
+                topology.lockNeighbours(p, tris, locked);
+                removed += topology.sharedTriangles(p, q, tris);
+                error = Math.max(error, (float) Math.sqrt(cost[c]));
+            }
+            if (removed == 0)
+                break;
+            for (int i = 0; i < count * 3; i++)
+                tris[i] = remap[tris[i]];
+            count = removeDegenerated(tris, count);
+            topology.build(tris, count, position);
+        }
+        this.triangles = Arrays.copyOf(tris, count * 3);
+    }
+
+    /**
+     * Find for each vertex the first vertex with the same attributes.
+     * @param nbVertices - number of vertices
+     * @param vertexpos - vertices position array
+     * @param normals - normals array, may be null
+     * @param texturesCoord - texture coordinates array, may be null
+     * @return for each vertex, the index of the first vertex with the same attributes
+     */
+    private static int[] weld(int nbVertices, float[] vertexpos, float[] normals, float[] texturesCoord) {
+        int size = Integer.highestOneBit(Math.max(nbVertices, 1) * 2) * 2;
+        int[] table = new int[size];
+        Arrays.fill(table, -1);
+        int[] result = new int[nbVertices];
+        for (int v = 0; v < nbVertices; v++) {
+            int h = hash(vertexpos, v * 3, 3, 0);
+            if (normals != null)
+                h = hash(normals, v * 3, 3, h);
+            if (texturesCoord != null)
+                h = hash(texturesCoord, v * 2, 2, h);
+            int slot = h & (size - 1);
+            while (table[slot] >= 0 && !(same(vertexpos, table[slot], v, 3) && (normals == null || same(normals, table[slot], v, 3))
+                    && (texturesCoord == null || same(texturesCoord, table[slot], v, 2))))
+                slot = (slot + 1) & (size - 1);
+            if (table[slot] < 0)
+                table[slot] = v;
+            result[v] = table[slot];
+        }
+        return result;
+    }
+
+    /**
+     * Combine the bits of some floats into a hash.
+     * @param values - the array of floats
+     * @param offset - index of the first float
+     * @param length - number of floats
+     * @param h - hash to combine with
+     * @return the new hash
+     */
+    private static int hash(float[] values, int offset, int length, int h) {
+        for (int k = 0; k < length; k++) {
+            //0 and -0 are the same position
+            int bits = Float.floatToIntBits(values[offset + k] + 0.F);
+            h = (h ^ bits) * 0x9E3779B1;
+            h ^= h >>> 15;
+        }
+        return h;
+    }
+
+    /**
+     * Returns true if two vertices have the same attribute.
+     * @param values - attribute array
+     * @param a - index of the first vertex
+     * @param b - index of the second vertex
+     * @param size - number of floats per vertex
+     * @return true if the attributes are equal
+     */
+    private static boolean same(float[] values, int a, int b, int size) {
+        for (int k = 0; k < size; k++)
+            if (values[a * size + k] != values[b * size + k])
+                return false;
+        return true;
+    }
+
+    /**
+     * Remove the triangles with two corners at the same position, keeping the order of the other ones.
+     * @param tris - triangles array
+     * @param count - number of triangles
+     * @return the new number of triangles
+     */
+    private int removeDegenerated(int[] tris, int count) {
+        int n = 0;
+        for (int t = 0; t < count; t++) {
+            int a = tris[t * 3], b = tris[t * 3 + 1], c = tris[t * 3 + 2];
+            if (position[a] == position[b] || position[b] == position[c] || position[c] == position[a])
+                continue;
+            tris[n * 3] = a;
+            tris[n * 3 + 1] = b;
+            tris[n * 3 + 2] = c;
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * Add the plane of a triangle, weighted by its area, to the quadrics of its 3 positions.
+     * @param tris - triangles array
+     * @param t - index of the triangle
+     */
+    private void addTriangleQuadric(int[] tris, int t) {
+        int i1 = tris[t * 3] * 3, i2 = tris[t * 3 + 1] * 3, i3 = tris[t * 3 + 2] * 3;
+        double v1x = vertexpos[i2] - vertexpos[i1], v1y = vertexpos[i2 + 1] - vertexpos[i1 + 1], v1z = vertexpos[i2 + 2] - vertexpos[i1 + 2];
+        double v2x = vertexpos[i3] - vertexpos[i1], v2y = vertexpos[i3 + 1] - vertexpos[i1 + 1], v2z = vertexpos[i3 + 2] - vertexpos[i1 + 2];
+        double nx = v1y * v2z - v1z * v2y, ny = v1z * v2x - v1x * v2z, nz = v1x * v2y - v1y * v2x;
+        double l = Math.sqrt(nx * nx + ny * ny + nz * nz);
+        if (l == 0.0)
+            return;
+        nx /= l;
+        ny /= l;
+        nz /= l;
+        double d = -(nx * vertexpos[i1] + ny * vertexpos[i1 + 1] + nz * vertexpos[i1 + 2]);
+        for (int k = 0; k < 3; k++)
+            addPlane(position[tris[t * 3 + k]], nx, ny, nz, d, l * 0.5);
+    }
+
+    /**
+     * Add the plane going through a border or seam edge and perpendicular to its triangle, to the quadrics of its 2 positions.
+     * @param topology - topology of the mesh
+     * @param tris - triangles array
+     * @param e - index of the edge
+     */
+    private void addEdgeQuadric(Topology topology, int[] tris, int e) {
+        int p = topology.edgeFrom[e], q = topology.edgeTo[e];
+        int t = topology.anyTriangle(p, q, tris);
+        int i1 = tris[t * 3] * 3, i2 = tris[t * 3 + 1] * 3, i3 = tris[t * 3 + 2] * 3;
+        double v1x = vertexpos[i2] - vertexpos[i1], v1y = vertexpos[i2 + 1] - vertexpos[i1 + 1], v1z = vertexpos[i2 + 2] - vertexpos[i1 + 2];
+        double v2x = vertexpos[i3] - vertexpos[i1], v2y = vertexpos[i3 + 1] - vertexpos[i1 + 1], v2z = vertexpos[i3 + 2] - vertexpos[i1 + 2];
+        double nx = v1y * v2z - v1z * v2y, ny = v1z * v2x - v1x * v2z, nz = v1x * v2y - v1y * v2x;
+        double ex = vertexpos[q * 3] - vertexpos[p * 3], ey = vertexpos[q * 3 + 1] - vertexpos[p * 3 + 1], ez = vertexpos[q * 3 + 2] - vertexpos[p * 3 + 2];
+        double mx = ey * nz - ez * ny, my = ez * nx - ex * nz, mz = ex * ny - ey * nx;
+        double l = Math.sqrt(mx * mx + my * my + mz * mz);
+        if (l == 0.0)
+            return;
+        mx /= l;
+        my /= l;
+        mz /= l;
+        double d = -(mx * vertexpos[p * 3] + my * vertexpos[p * 3 + 1] + mz * vertexpos[p * 3 + 2]);
+        double weight = (ex * ex + ey * ey + ez * ez) * EDGE_WEIGHT;
+        addPlane(p, mx, my, mz, d, weight);
+        addPlane(q, mx, my, mz, d, weight);
+    }
+
+    /**
+     * Add a weighted plane to the quadric of a position.
+     * @param p - the position
+     * @param a - x coordinate of the unit normal of the plane
+     * @param b - y coordinate of the unit normal of the plane
+     * @param c - z coordinate of the unit normal of the plane
+     * @param d - distance of the plane to the origin
+     * @param weight - weight of the plane
+     */
+    private void addPlane(int p, double a, double b, double c, double d, double weight) {
+        int o = p * 10;
+        quadrics[o] += a * a * weight;
+        quadrics[o + 1] += a * b * weight;
+        quadrics[o + 2] += a * c * weight;
+        quadrics[o + 3] += a * d * weight;
+        quadrics[o + 4] += b * b * weight;
+        quadrics[o + 5] += b * c * weight;
+        quadrics[o + 6] += b * d * weight;
+        quadrics[o + 7] += c * c * weight;
+        quadrics[o + 8] += c * d * weight;
+        quadrics[o + 9] += d * d * weight;
+    }
+
+    /**
+     * Compute the error of moving a position onto another one : the sum of their quadrics evaluated at the second one.
+     * @param p - the moved position
+     * @param q - the kept position
+     * @return the error
+     */
+    private float evaluate(int p, int q) {
+        double x = vertexpos[q * 3], y = vertexpos[q * 3 + 1], z = vertexpos[q * 3 + 2];
+        double e = 0.0;
+        for (int v = p; ; v = q) {
+            int o = v * 10;
+            e += quadrics[o] * x * x + 2.0 * quadrics[o + 1] * x * y + 2.0 * quadrics[o + 2] * x * z + 2.0 * quadrics[o + 3] * x
+                    + quadrics[o + 4] * y * y + 2.0 * quadrics[o + 5] * y * z + 2.0 * quadrics[o + 6] * y
+                    + quadrics[o + 7] * z * z + 2.0 * quadrics[o + 8] * z + quadrics[o + 9];
+            if (v == q)
+                break;
+        }
+        return (float) Math.max(e, 0.0);
+    }
+
+    /**
+     * Returns true if moving a position onto another one turns over one of the triangles around it.
+     * @param topology - topology of the mesh
+     * @param p - the moved position
+     * @param q - the kept position
+     * @param tris - triangles array
+     * @return true if a triangle would flip
+     */
+    private boolean flips(Topology topology, int p, int q, int[] tris) {
+        for (int i = topology.offsets[p]; i < topology.offsets[p + 1]; i++) {
+            int t = topology.triangles[i];
+            int k = position[tris[t * 3]] == p ? 0 : position[tris[t * 3 + 1]] == p ? 1 : 2;
+            int b = position[tris[t * 3 + (k + 1) % 3]], c = position[tris[t * 3 + (k + 2) % 3]];
+            if (b == q || c == q)
+                continue;
+            float[] pos = vertexpos;
+            float e1x = pos[b * 3] - pos[p * 3], e1y = pos[b * 3 + 1] - pos[p * 3 + 1], e1z = pos[b * 3 + 2] - pos[p * 3 + 2];
+            float e2x = pos[c * 3] - pos[p * 3], e2y = pos[c * 3 + 1] - pos[p * 3 + 1], e2z = pos[c * 3 + 2] - pos[p * 3 + 2];
+            float f1x = pos[b * 3] - pos[q * 3], f1y = pos[b * 3 + 1] - pos[q * 3 + 1], f1z = pos[b * 3 + 2] - pos[q * 3 + 2];
+            float f2x = pos[c * 3] - pos[q * 3], f2y = pos[c * 3 + 1] - pos[q * 3 + 1], f2z = pos[c * 3 + 2] - pos[q * 3 + 2];
+            float nx = e1y * e2z - e1z * e2y, ny = e1z * e2x - e1x * e2z, nz = e1x * e2y - e1y * e2x;
+            float mx = f1y * f2z - f1z * f2y, my = f1z * f2x - f1x * f2z, mz = f1x * f2y - f1y * f2x;
+            float dot = nx * mx + ny * my + nz * mz;
+            if (dot <= MIN_FLIP_COSINE * (float) Math.sqrt((nx * nx + ny * ny + nz * nz) * (mx * mx + my * my + mz * mz)))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Adjacency of the positions of the mesh, built again after each pass.
+     */
+    private static class Topology {
+        /**
+         * For each vertex, the first vertex with the same position.
+         */
+        int[] position;
+        /**
+         * The triangles of the position p are triangles[offsets[p]] to triangles[offsets[p + 1] - 1].
+         */
+        int[] offsets;
+        /**
+         * Triangles of each position.
+         */
+        int[] triangles = new int[0];
+        /**
+         * The vertices of the position p are wedges[wedgeOffsets[p]] to wedges[wedgeOffsets[p + 1] - 1].
+         */
+        int[] wedgeOffsets;
+        /**
+         * Vertices of each position.
+         */
+        int[] wedges = new int[0];
+        /**
+         * The two positions of each edge.
+         */
+        int[] edgeFrom = new int[0], edgeTo = new int[0];
+        /**
+         * Number of triangles of each edge.
+         */
+        int[] edgeTriangles = new int[0];
+        /**
+         * Number of edges.
+         */
+        int edgesCount;
+        /**
+         * True for the positions on an open border.
+         */
+        boolean[] border;
+        /**
+         * True for the positions that must not move : on a non manifold edge.
+         */
+        boolean[] fixed;
+        /**
+         * Last time each vertex was seen, to list the vertices of a position once.
+         */
+        int[] stamp;
+        /**
+         * Current time of the stamps.
+         */
+        int time;
+
+        /**
+         * Constructor.
+         * @param nbVertices - number of vertices of the mesh
+         */
+        Topology(int nbVertices) {
+            offsets = new int[nbVertices + 1];
+            wedgeOffsets = new int[nbVertices + 1];
+            border = new boolean[nbVertices];
+            fixed = new boolean[nbVertices];
+            stamp = new int[nbVertices];
+        }
+
+        /**
+         * Build the adjacency.
+         * @param tris - triangles array
+         * @param count - number of triangles
+         * @param position - for each vertex, the first vertex with the same position
+         */
+        void build(int[] tris, int count, int[] position) {
+            this.position = position;
+            int nbVertices = offsets.length - 1;
+            Arrays.fill(offsets, 0);
+            Arrays.fill(wedgeOffsets, 0);
+            for (int i = 0; i < count * 3; i++)
+                offsets[position[tris[i]] + 1]++;
+            time++;
+            for (int i = 0; i < count * 3; i++) {
+                if (stamp[tris[i]] != time) {
+                    stamp[tris[i]] = time;
+                    wedgeOffsets[position[tris[i]] + 1]++;
+                }
+            }
+            for (int p = 0; p < nbVertices; p++) {
+                offsets[p + 1] += offsets[p];
+                wedgeOffsets[p + 1] += wedgeOffsets[p];
+            }
+            if (triangles.length < count * 3)
+                triangles = new int[count * 3];
+            if (wedges.length < wedgeOffsets[nbVertices])
+                wedges = new int[wedgeOffsets[nbVertices]];
+            int[] next = offsets.clone();
+            int[] nextWedge = wedgeOffsets.clone();
+            time++;
+            for (int i = 0; i < count * 3; i++) {
+                int p = position[tris[i]];
+                triangles[next[p]++] = i / 3;
+                if (stamp[tris[i]] != time) {
+                    stamp[tris[i]] = time;
+                    wedges[nextWedge[p]++] = tris[i];
+                }
+            }
+
+            //edges : sorted keys of the pairs of positions, counted
+            long[] keys = new long[count * 3];
+            for (int t = 0; t < count; t++) {
+                for (int k = 0; k < 3; k++) {
+                    int a = position[tris[t * 3 + k]], b = position[tris[t * 3 + (k + 1) % 3]];
+                    keys[t * 3 + k] = ((long) Math.min(a, b) << 32) | Math.max(a, b);
+                }
+            }
+            Arrays.sort(keys);
+            if (edgeFrom.length < keys.length) {
+                edgeFrom = new int[keys.length];
+                edgeTo = new int[keys.length];
+                edgeTriangles = new int[keys.length];
+            }
+            Arrays.fill(border, false);
+            Arrays.fill(fixed, false);
+            edgesCount = 0;
+            for (int i = 0; i < keys.length; ) {
+                int j = i;
+                while (j < keys.length && keys[j] == keys[i])
+                    j++;
+                int a = (int) (keys[i] >>> 32), b = (int) keys[i];
+                edgeFrom[edgesCount] = a;
+                edgeTo[edgesCount] = b;
+                edgeTriangles[edgesCount] = j - i;
+                if (j - i == 1)
+                    border[a] = border[b] = true;
+                else if (j - i > 2)
+                    fixed[a] = fixed[b] = true;
+                edgesCount++;
+                i = j;
+            }
+        }
+
+        /**
+         * Returns true if an edge is on an open border, or on a seam of the attributes.
+         * @param e - index of the edge
+         * @param tris - triangles array
+         * @return true if the edge needs to keep its shape
+         */
+        boolean isBorderOrSeam(int e, int[] tris) {
+            if (edgeTriangles[e] != 2)
+                return edgeTriangles[e] == 1;
+            int p = edgeFrom[e], q = edgeTo[e];
+            int wp = -1, wq = -1;
+            for (int i = offsets[p]; i < offsets[p + 1]; i++) {
+                int t = triangles[i];
+                int cp = corner(tris, t, p), cq = corner(tris, t, q);
+                if (cq < 0)
+                    continue;
+                if (wp < 0) {
+                    wp = tris[cp];
+                    wq = tris[cq];
+                } else if (wp != tris[cp] || wq != tris[cq]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Returns the index in the triangles array of the corner of a triangle at a position.
+         * @param tris - triangles array
+         * @param t - index of the triangle
+         * @param p - the position
+         * @return the index of the corner, -1 if the triangle does not use the position
+         */
+        int corner(int[] tris, int t, int p) {
+            for (int k = 0; k < 3; k++)
+                if (position[tris[t * 3 + k]] == p)
+                    return t * 3 + k;
+            return -1;
+        }
+
+        /**
+         * Returns a triangle using two positions.
+         * @param p - the first position
+         * @param q - the second position
+         * @param tris - triangles array
+         * @return the index of the triangle, -1 if there is none
+         */
+        int anyTriangle(int p, int q, int[] tris) {
+            for (int i = offsets[p]; i < offsets[p + 1]; i++)
+                if (corner(tris, triangles[i], q) >= 0)
+                    return triangles[i];
+            return -1;
+        }
+
+        /**
+         * Returns the number of triangles using two positions.
+         * @param p - the first position
+         * @param q - the second position
+         * @param tris - triangles array
+         * @return the number of triangles of the edge
+         */
+        int sharedTriangles(int p, int q, int[] tris) {
+            int n = 0;
+            for (int i = offsets[p]; i < offsets[p + 1]; i++)
+                if (corner(tris, triangles[i], q) >= 0)
+                    n++;
+            return n;
+        }
+
+        /**
+         * Returns true if the topology allows to move a position onto another one along an edge.
+         * @param p - the moved position
+         * @param q - the kept position
+         * @param e - index of the edge
+         * @return false if the position is fixed, or on a border and the edge does not follow it
+         */
+        boolean canMove(int p, int q, int e) {
+            if (fixed[p])
+                return false;
+            return !border[p] || edgeTriangles[e] == 1;
+        }
+
+        /**
+         * Find the vertex of the kept position that replaces each vertex of the moved position, from the triangles of the edge.
+         * Fails when a vertex of the moved position is not on the edge (its seam does not follow the edge), or would be replaced by two vertices.
+         * @param p - the moved position
+         * @param q - the kept position
+         * @param tris - triangles array
+         * @param from - array receiving the vertices of the moved position
+         * @param to - array receiving the vertices replacing them
+         * @return the number of vertices of the moved position, -1 if the collapse would break a seam
+         */
+        int mapWedges(int p, int q, int[] tris, int[] from, int[] to) {
+            int n = wedgeOffsets[p + 1] - wedgeOffsets[p];
+            if (n > from.length)
+                return -1;
+            for (int w = 0; w < n; w++) {
+                from[w] = wedges[wedgeOffsets[p] + w];
+                to[w] = -1;
+            }
+            for (int i = offsets[p]; i < offsets[p + 1]; i++) {
+                int t = triangles[i];
+                int cq = corner(tris, t, q);
+                if (cq < 0)
+                    continue;
+                int vp = tris[corner(tris, t, p)];
+                for (int w = 0; w < n; w++) {
+                    if (from[w] == vp) {
+                        if (to[w] >= 0 && to[w] != tris[cq])
+                            return -1;
+                        to[w] = tris[cq];
+                    }
+                }
+            }
+            for (int w = 0; w < n; w++)
+                if (to[w] < 0)
+                    return -1;
+            return n;
+        }
+
+        /**
+         * Returns true if the neighbours shared by two positions are only the ones of the triangles of their edge, so the collapse keeps the mesh manifold.
+         * @param p - the moved position
+         * @param q - the kept position
+         * @param tris - triangles array
+         * @param mark - array of the size of the vertices, used to mark the neighbours
+         * @return true if the collapse is allowed
+         */
+        boolean linked(int p, int q, int[] tris, int[] mark) {
+            time++;
+            for (int i = offsets[p]; i < offsets[p + 1]; i++) {
+                int t = triangles[i];
+                for (int k = 0; k < 3; k++)
+                    mark[position[tris[t * 3 + k]]] = time;
+            }
+            time++;
+            int shared = 0;
+            for (int i = offsets[q]; i < offsets[q + 1]; i++) {
+                int t = triangles[i];
+                for (int k = 0; k < 3; k++) {
+                    int r = position[tris[t * 3 + k]];
+                    if (r != p && r != q && mark[r] == time - 1) {
+                        mark[r] = time;
+                        shared++;
+                    }
+                }
+            }
+            return shared == sharedTriangles(p, q, tris);
+        }
+
+        /**
+         * Lock the moved position and its neighbours for the rest of the pass, as their triangles change.
+         * @param p - the moved position
+         * @param tris - triangles array
+         * @param locked - locked positions
+         */
+        void lockNeighbours(int p, int[] tris, boolean[] locked) {
+            for (int i = offsets[p]; i < offsets[p + 1]; i++) {
+                int t = triangles[i];
+                for (int k = 0; k < 3; k++)
+                    locked[position[tris[t * 3 + k]]] = true;
+            }
+        }
+    }
+}
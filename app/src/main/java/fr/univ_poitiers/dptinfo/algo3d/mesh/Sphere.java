@@ -2,7 +2,6 @@ package fr.univ_poitiers.dptinfo.algo3d.mesh;
 
 
 //TODO :
-// - revoir l'objimporter pour conserver les sommets qui peuvent etre communs, avec une hashmap de paire<vertex,normal>
 // - faire la réflexion par stencil buffer
 // - réparer les textures des murs avec portes
 // - mettre des textures sur les autres objets, notamment les obj
@@ -0,0 +1,240 @@
+package fr.univ_poitiers.dptinfo.algo3d.mesh;
+
+import java.util.Arrays;
+
+/**
+ * Class to reorder the triangles of a mesh so the GPU reuses more vertices from its post-transform cache,
+ * with the linear-speed vertex cache optimisation of Tom Forsyth, then to reorder the vertices in the order they are first used,
+ * so they are also fetched sequentially from memory.
+ * The gain is measured with the average cache miss ratio (ACMR), the number of vertices transformed per triangle with a simulated FIFO cache.
+ * Does not depend on OpenGL.
+ */
+class VertexCacheOptimizer {
+
+    /**
+     * Size of the simulated LRU cache used to score the vertices.
+     */
+    private static final int CACHE_SIZE = 32;
+    /**
+     * Size of the FIFO cache used to compute the ACMR, close to the post-transform caches of the mobile GPUs.
+     */
+    static final int FIFO_SIZE = 16;
+    /**
+     * Decay of the score of a vertex with its position in the cache.
+     */
+    private static final float CACHE_DECAY_POWER = 1.5F;
+    /**
+     * Score of the vertices of the last added triangle, lower so the next triangle does not use the same edge.
+     */
+    private static final float LAST_TRIANGLE_SCORE = 0.75F;
+    /**
+     * Weight of the bonus given to the vertices with few remaining triangles, so they are finished first.
+     */
+    private static final float VALENCE_BOOST_SCALE = 2.0F;
+    /**
+     * Power of the bonus given to the vertices with few remaining triangles.
+     */
+    private static final float VALENCE_BOOST_POWER = -0.5F;
+
+    /**
+     * Score of a vertex for each position in the cache.
+     */
+    private static final float[] CACHE_SCORES = new float[CACHE_SIZE];
+    /**
+     * Bonus of a vertex for each small number of remaining triangles.
+     */
+    private static final float[] VALENCE_SCORES = new float[64];
+
+    static {
+        for (int i = 0; i < CACHE_SIZE; i++)
+            CACHE_SCORES[i] = i < 3 ? LAST_TRIANGLE_SCORE : (float) Math.pow(1.F - (i - 3) / (float) (CACHE_SIZE - 3), CACHE_DECAY_POWER);
+        for (int i = 1; i < VALENCE_SCORES.length; i++)
+            VALENCE_SCORES[i] = VALENCE_BOOST_SCALE * (float) Math.pow(i, VALENCE_BOOST_POWER);
+    }
+
+    /**
+     * Constructor. Not to be used, all methods are static.
+     */
+    private VertexCacheOptimizer() {
+    }
+
+    /**
+     * Compute the score of a vertex.
+     * @param cachePosition - position of the vertex in the cache, -1 if it is not in the cache
+     * @param remaining - number of triangles using the vertex that are not added yet
+     * @return the score of the vertex
+     */
+    private static float score(int cachePosition, int remaining) {
+        if (remaining == 0)
+            return -1.F;
+        float valence = remaining < VALENCE_SCORES.length ? VALENCE_SCORES[remaining] : VALENCE_BOOST_SCALE * (float) Math.pow(remaining, VALENCE_BOOST_POWER);
+        return (cachePosition >= 0 ? CACHE_SCORES[cachePosition] : 0.F) + valence;
+    }
+
+    /**
+     * Reorder the triangles to improve the use of the post-transform vertex cache.
+     * @param triangles - triangles array, 3 vertex indices per triangle
+     * @param nbVertices - number of vertices
+     * @return the reordered triangles array, the triangles keeping their orientation
+     */
+    static int[] optimizeTriangles(int[] triangles, int nbVertices) {
+        int nbTriangles = triangles.length / 3;
+        //adjacency : the remaining triangles of the vertex v are adjacency[offsets[v]] to adjacency[offsets[v] + remaining[v] - 1]
+        int[] offsets = new int[nbVertices + 1];
+        for (int i = 0; i < triangles.length; i++)
+            offsets[triangles[i] + 1]++;
+        for (int v = 0; v < nbVertices; v++)
+            offsets[v + 1] += offsets[v];
+        int[] remaining = new int[nbVertices];
+        int[] adjacency = new int[triangles.length];
+        for (int i = 0; i < triangles.length; i++) {
+            int v = triangles[i];
+            adjacency[offsets[v] + remaining[v]++] = i / 3;
+        }
+
+        int[] cachePosition = new int[nbVertices];
+        Arrays.fill(cachePosition, -1);
+        float[] vertexScore = new float[nbVertices];
+        for (int v = 0; v < nbVertices; v++)
+            vertexScore[v] = score(-1, remaining[v]);
+        boolean[] added = new boolean[nbTriangles];
+
+        int[] cache = new int[CACHE_SIZE + 3];
+        int cacheCount = 0;
+        int[] newCache = new int[CACHE_SIZE + 3];
+        int[] result = new int[triangles.length];
+        int next = 0;
+        int best = -1;
+        for (int n = 0; n < nbTriangles; n++) {
+            if (best < 0) {
+                //no candidate around the cache : take the first triangle not added yet
+                while (added[next])
+                    next++;
+                best = next;
+            }
+            added[best] = true;
+            System.arraycopy(triangles, best * 3, result, n * 3, 3);
+
+            //the vertices of the triangle go in front of the cache, and lose the triangle from their adjacency
+            int newCount = 0;
+            for (int k = 0; k < 3; k++) {
+                int v = triangles[best * 3 + k];
+                int start = offsets[v];
+                int end = start + remaining[v];
+                for (int i = start; i < end; i++) {
+                    if (adjacency[i] == best) {
+                        adjacency[i] = adjacency[end - 1];
+                        remaining[v]--;
+                        break;
+                    }
+                }
+                if (!contains(newCache, newCount, v))
+                    newCache[newCount++] = v;
+            }
+            for (int i = 0; i < cacheCount; i++) {
+                if (!contains(newCache, newCount, cache[i]))
+                    newCache[newCount++] = cache[i];
+            }
+            for (int i = CACHE_SIZE; i < newCount; i++) {
+                cachePosition[newCache[i]] = -1;
+                vertexScore[newCache[i]] = score(-1, remaining[newCache[i]]);
+            }
+            int[] swap = cache;
+            cache = newCache;
+            newCache = swap;
+            cacheCount = Math.min(newCount, CACHE_SIZE);
+
+            for (int i = 0; i < cacheCount; i++) {
+                int v = cache[i];
+                cachePosition[v] = i;
+                vertexScore[v] = score(i, remaining[v]);
+            }
+            //score the triangles of the vertices of the cache and choose the best one
+            best = -1;
+            float bestScore = -1.F;
+            for (int i = 0; i < cacheCount; i++) {
+                int v = cache[i];
+                for (int j = offsets[v]; j < offsets[v] + remaining[v]; j++) {
+                    int t = adjacency[j];
+                    float s = vertexScore[triangles[t * 3]] + vertexScore[triangles[t * 3 + 1]] + vertexScore[triangles[t * 3 + 2]];
+                    if (s > bestScore) {
+                        bestScore = s;
+                        best = t;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns true if the value is in the first elements of the array.
+     * @param array - the array
+     * @param count - number of elements to look at
+     * @param value - the value to find
+     * @return true if the value is found
+     */
+    private static boolean contains(int[] array, int count, int value) {
+        for (int i = 0; i < count; i++)
+            if (array[i] == value)
+                return true;
+        return false;
+    }
+
+    /**
+     * Compute the new index of each vertex so they are numbered in the order they are first used by the triangles.
+     * The vertices that are not used are put at the end.
+     * @param triangles - triangles array
+     * @param nbVertices - number of vertices
+     * @return the new index of each vertex
+     */
+    static int[] fetchOrder(int[] triangles, int nbVertices) {
+        int[] remap = new int[nbVertices];
+        Arrays.fill(remap, -1);
+        int count = 0;
+        for (int v : triangles)
+            if (remap[v] < 0)
+                remap[v] = count++;
+        for (int v = 0; v < nbVertices; v++)
+            if (remap[v] < 0)
+                remap[v] = count++;
+        return remap;
+    }
+
+    /**
+     * Move the attributes of the vertices to their new index.
+     * @param attributes - attributes of the vertices
+     * @param size - number of floats per vertex
+     * @param remap - new index of each vertex
+     * @return the moved attributes
+     */
+    static float[] remap(float[] attributes, int size, int[] remap) {
+        float[] result = new float[attributes.length];
+        for (int v = 0; v < remap.length; v++)
+            System.arraycopy(attributes, v * size, result, remap[v] * size, size);
+        return result;
+    }
+
+    /**
+     * Compute the average cache miss ratio of the triangles with a FIFO cache of {@link #FIFO_SIZE} vertices.
+     * 3 when no vertex is reused, 0.5 at best for a large regular grid.
+     * @param triangles - triangles array
+     * @param nbVertices - number of vertices
+     * @return the number of vertices transformed per triangle
+     */
+    static float acmr(int[] triangles, int nbVertices) {
+        if (triangles.length == 0)
+            return 0.F;
+        //a vertex is in the cache if it entered it less than FIFO_SIZE misses ago
+        int[] entered = new int[nbVertices];
+        Arrays.fill(entered, Integer.MIN_VALUE / 2);
+        int misses = 0;
+        for (int v : triangles) {
+            if (misses - entered[v] >= FIFO_SIZE) {
+                entered[v] = misses;
+                misses++;
+            }
+        }
+        return misses / (float) (triangles.length / 3);
+    }
+}
@@ -0,0 +1,86 @@
+package fr.univ_poitiers.dptinfo.algo3d.mesh;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Interleaved layout of the vertices sent to the GPU : the position, the normal and the texture coordinates of a vertex are stored next to each other,
+ * so a mesh only needs one array buffer and the attributes of a vertex are read from the same cache lines.
+ * Does not depend on OpenGL, the packing can be done without a GPU context.
+ */
+public class VertexLayout {
+
+    /**
+     * Number of floats of a vertex : 3 for the position, 3 for the normal and 2 for the texture coordinates.
+     */
+    public static final int FLOATS = 8;
+    /**
+     * Size in bytes between two vertices, to give as stride to the attribute pointers.
+     */
+    public static final int STRIDE = FLOATS * Float.BYTES;
+    /**
+     * Offset in bytes of the position in a vertex.
+     */
+    public static final int POSITION_OFFSET = 0;
+    /**
+     * Offset in bytes of the normal in a vertex.
+     */
+    public static final int NORMAL_OFFSET = 3 * Float.BYTES;
+    /**
+     * Offset in bytes of the texture coordinates in a vertex.
+     */
+    public static final int TEXTURE_OFFSET = 6 * Float.BYTES;
+
+    /**
+     * Constructor. Not to be used, all methods are static.
+     */
+    private VertexLayout() {
+    }
+
+    /**
+     * Interleave the attributes of the vertices into a direct buffer that can be sent to the GPU.
+     * The buffers are read from their position 0 and are not modified.
+     * @param vertexpos - vertices position, 3 floats per vertex
+     * @param normals - normals, 3 floats per vertex
+     * @param texturesCoord - texture coordinates, 2 floats per vertex, or null to fill them with 0
+     * @return a direct buffer in the native order, with {@link #STRIDE} bytes per vertex
+     */
+    public static ByteBuffer interleave(FloatBuffer vertexpos, FloatBuffer normals, FloatBuffer texturesCoord) {
+        int nbVertices = vertexpos.capacity() / 3;
+        ByteBuffer bytes = ByteBuffer.allocateDirect(nbVertices * STRIDE).order(ByteOrder.nativeOrder());
+        FloatBuffer buffer = bytes.asFloatBuffer();
+        for (int i = 0; i < nbVertices; i++) {
+            buffer.put(vertexpos.get(i * 3)).put(vertexpos.get(i * 3 + 1)).put(vertexpos.get(i * 3 + 2));
+            buffer.put(normals.get(i * 3)).put(normals.get(i * 3 + 1)).put(normals.get(i * 3 + 2));
+            if (texturesCoord != null)
+                buffer.put(texturesCoord.get(i * 2)).put(texturesCoord.get(i * 2 + 1));
+            else
+                buffer.put(0.F).put(0.F);
+        }
+        return bytes;
+    }
+
+    /**
+     * Interleave the attributes of the vertices into a direct buffer that can be sent to the GPU.
+     * The buffers are read from their position 0 and are not modified.
+     * @param vertexpos - vertices position, 3 floats per vertex
+     * @param normals - normals, 3 floats per vertex
+     * @param texturesCoord - texture coordinates, 2 floats per vertex, or null to fill them with 0
+     * @return a direct buffer in the native order, with {@link #FLOATS} floats per vertex
+     */
+    public static FloatBuffer pack(FloatBuffer vertexpos, FloatBuffer normals, FloatBuffer texturesCoord) {
+        return interleave(vertexpos, normals, texturesCoord).asFloatBuffer();
+    }
+
+    /**
+     * Interleave the attributes of the vertices into a direct buffer that can be sent to the GPU.
+     * @param vertexpos - vertices position, 3 floats per vertex
+     * @param normals - normals, 3 floats per vertex
+     * @param texturesCoord - texture coordinates, 2 floats per vertex, or null to fill them with 0
+     * @return a direct buffer in the native order, with {@link #FLOATS} floats per vertex
+     */
+    public static FloatBuffer pack(float[] vertexpos, float[] normals, float[] texturesCoord) {
+        return pack(FloatBuffer.wrap(vertexpos), FloatBuffer.wrap(normals), texturesCoord == null ? null : FloatBuffer.wrap(texturesCoord));
+    }
+}
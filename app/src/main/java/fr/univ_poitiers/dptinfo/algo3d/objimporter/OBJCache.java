@@ -0,0 +1,257 @@
+package fr.univ_poitiers.dptinfo.algo3d.objimporter;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import fr.univ_poitiers.dptinfo.algo3d.MainActivity;
+import fr.univ_poitiers.dptinfo.algo3d.mesh.Mesh;
+import fr.univ_poitiers.dptinfo.algo3d.mesh.MeshFile;
+import fr.univ_poitiers.dptinfo.algo3d.shaders.ShadingMode;
+
+/**
+ * Disk cache of the imported meshes, used by {@link OBJImporter} when set with {@link OBJImporter#setCache(OBJCache)}.
+ * The key is a hash of the bytes of the .obj file and of the import settings, the value is the imported mesh stored as a {@link MeshFile}.
+ * When the total size of the cached files exceeds the maximum size, the least recently used ones are deleted.
+ */
+public class OBJCache {
+
+    /**
+     * Version of the import process, part of the key.
+     * Must be incremented when the importer or the simplification produce a different mesh for the same file, so that the old entries are not used anymore.
+     */
+    static final int IMPORT_VERSION = 1;
+
+    /**
+     * Extension of the cached files.
+     */
+    private static final String EXTENSION = ".mesh";
+
+    /**
+     * Directory containing the cached files.
+     */
+    private final File directory;
+    /**
+     * Maximum total size of the cached files, in bytes.
+     */
+    private final long maxSize;
+
+    /**
+     * Number of meshes loaded from the cache.
+     */
+    private int hits;
+    /**
+     * Number of meshes that were not in the cache and had to be imported.
+     */
+    private int misses;
+    /**
+     * Total time spent to load the meshes found in the cache, in nanoseconds.
+     */
+    private long hitsNanos;
+    /**
+     * Total time spent to import the meshes that were not in the cache, in nanoseconds.
+     */
+    private long missesNanos;
+
+    /**
+     * Constructor.
+     * @param directory - directory containing the cached files, preferably in the {@link android.content.Context#getCacheDir()} directory. Created if it does not exist.
+     * @param maxSize - maximum total size of the cached files, in bytes
+     */
+    public OBJCache(File directory, long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        if (!directory.isDirectory() && !directory.mkdirs())
+            MainActivity.log("Could not create the mesh cache directory " + directory);
+    }
+
+    /**
+     * Compute the key of an .obj file imported with the given shading mode.
+     * @param data - bytes of the .obj file
+     * @param shadingMode - how the normals are calculated
+     * @param creaseAngle - crease angle in degrees, only part of the key with {@link ShadingMode#CREASE_SHADING}
+     * @param optimizeVertexCache - true if the mesh is reordered for the vertex cache
+     * @param overdrawThreshold - threshold of the overdraw optimization, 0 if it is disabled
+     * @param compressed - true if the vertices are sent to the GPU with the compressed layout, which is the layout of the cached file
+     * @return the key of the imported mesh
+     */
+    String key(byte[] data, ShadingMode shadingMode, float creaseAngle, boolean optimizeVertexCache, float overdrawThreshold, boolean compressed) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-1 not available", e);
+        }
+        byte[] hash = digest.digest(data);
+        StringBuilder key = new StringBuilder(hash.length * 2 + 32);
+        for (byte b : hash) {
+            key.append(Character.forDigit((b >> 4) & 0xF, 16));
+            key.append(Character.forDigit(b & 0xF, 16));
+        }
+        key.append('-').append(shadingMode.name().toLowerCase());
+        if (shadingMode == ShadingMode.CREASE_SHADING)
+            key.append('-').append(Float.floatToIntBits(creaseAngle));
+        if (optimizeVertexCache)
+            key.append("-vcache");
+        if (overdrawThreshold > 0.F)
+            key.append("-overdraw").append(Float.floatToIntBits(overdrawThreshold));
+        if (compressed)
+            key.append("-compressed");
+        key.append("-v").append(IMPORT_VERSION).append('.').append(MeshFile.VERSION);
+        return key.toString();
+    }
+
+    /**
+     * Compute the key of a level of detail built by {@link Mesh#generateLODChain(float...)} from an imported mesh.
+     * Each level being simplified from the previous one, the key contains the ratios of all the levels up to this one.
+     * @param key - the key of the imported mesh returned by {@link #key(byte[], ShadingMode, float, boolean, float, boolean)}
+     * @param ratios - the ratios given to {@link Mesh#generateLODChain(float...)}
+     * @param level - index of the level, 1 for the first simplified one
+     * @return the key of the level
+     */
+    String levelKey(String key, float[] ratios, int level) {
+        StringBuilder levelKey = new StringBuilder(key.length() + level * 9 + 4);
+        levelKey.append(key).append("-lod");
+        for (int i = 0; i < level; i++)
+            levelKey.append('-').append(Integer.toHexString(Float.floatToIntBits(ratios[i])));
+        return levelKey.toString();
+    }
+
+    /**
+     * Returns the mesh stored with the given key and updates the counters.
+     * An invalid file is deleted and counted as a miss.
+     * @param key - the key returned by {@link #key(byte[], ShadingMode, float, boolean, float, boolean)}
+     * @param start - {@link System#nanoTime()} at the beginning of the import, to measure the load time
+     * @return the cached mesh or null if there is none
+     */
+    synchronized Mesh get(String key, long start) {
+        File file = new File(directory, key + EXTENSION);
+        if (file.isFile()) {
+            try {
+                Mesh mesh = MeshFile.load(file, true);
+                //the modification date is used as the last access date for the eviction
+                file.setLastModified(System.currentTimeMillis());
+                hits++;
+                long nanos = System.nanoTime() - start;
+                hitsNanos += nanos;
+                MainActivity.log("Mesh cache hit " + key + " loaded in " + nanos / 1000000 + " ms");
+                return mesh;
+            } catch (IOException e) {
+                MainActivity.log("Invalid mesh cache file " + file + " : " + e.getMessage());
+                file.delete();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Store the imported mesh with the given key, updates the counters and evicts the least recently used files if the cache is too big.
+     * @param key - the key returned by {@link #key(byte[], ShadingMode, float, boolean, float, boolean)}
+     * @param mesh - the imported mesh
+     * @param start - {@link System#nanoTime()} at the beginning of the import, to measure the import time
+     */
+    synchronized void put(String key, Mesh mesh, long start) {
+        File file = new File(directory, key + EXTENSION);
+        File tmp = new File(directory, key + ".tmp");
+        try {
+            MeshFile.write(mesh, tmp);
+            if (!tmp.renameTo(file))
+                throw new IOException("Could not rename " + tmp);
+        } catch (IOException e) {
+            MainActivity.log("Could not write the mesh cache file " + file + " : " + e.getMessage());
+            tmp.delete();
+        }
+        misses++;
+        long nanos = System.nanoTime() - start;
+        missesNanos += nanos;
+        MainActivity.log("Mesh cache miss " + key + " imported in " + nanos / 1000000 + " ms");
+        evict();
+    }
+
+    /**
+     * Delete the least recently used files until the total size is under the maximum size.
+     */
+    private void evict() {
+        File[] files = directory.listFiles();
+        if (files == null)
+            return;
+        long size = 0;
+        for (File f : files)
+            size += f.length();
+        if (size <= maxSize)
+            return;
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File f1, File f2) {
+                return Long.compare(f1.lastModified(), f2.lastModified());
+            }
+        });
+        for (int i = 0; i < files.length && size > maxSize; i++) {
+            if (files[i].getName().endsWith(EXTENSION)) {
+                long length = files[i].length();
+                if (files[i].delete()) {
+                    size -= length;
+                    MainActivity.log("Mesh cache file evicted " + files[i].getName());
+                }
+            }
+        }
+    }
+
+    /**
+     * Delete all the cached files.
+     */
+    public synchronized void clear() {
+        File[] files = directory.listFiles();
+        if (files == null)
+            return;
+        for (File f : files) {
+            if (f.getName().endsWith(EXTENSION))
+                f.delete();
+        }
+    }
+
+    /**
+     * Returns the number of meshes loaded from the cache.
+     * @return the number of hits
+     */
+    public synchronized int getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of meshes that were not in the cache.
+     * @return the number of misses
+     */
+    public synchronized int getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the total time spent to load the meshes found in the cache.
+     * @return the time in nanoseconds
+     */
+    public synchronized long getHitsNanos() {
+        return hitsNanos;
+    }
+
+    /**
+     * Returns the total time spent to import the meshes that were not in the cache, including the parsing and the writing of the cache file.
+     * @return the time in nanoseconds
+     */
+    public synchronized long getMissesNanos() {
+        return missesNanos;
+    }
+
+    /**
+     * Returns a summary of the counters, to be logged.
+     * @return the summary of the cache statistics
+     */
+    @Override
+    public synchronized String toString() {
+        return "Mesh cache : " + hits + " hits (" + hitsNanos / 1000000 + " ms), "
+                + misses + " misses (" + missesNanos / 1000000 + " ms)";
+    }
+}
@@ -1,12 +1,16 @@
 package fr.univ_poitiers.dptinfo.algo3d.objimporter;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
+import fr.univ_poitiers.dptinfo.algo3d.MainActivity;
 import fr.univ_poitiers.dptinfo.algo3d.mesh.Mesh;
 import fr.univ_poitiers.dptinfo.algo3d.shaders.ShadingMode;
 
@@ -15,155 +19,468 @@ import fr.univ_poitiers.dptinfo.algo3d.shaders.ShadingMode;
  */
 public class OBJImporter {
 
+    /**
+     * Minimal size in bytes of a chunk parsed by {@link #importOBJParallel(InputStream, ShadingMode)}.
+     */
+    private static final int MIN_CHUNK_SIZE = 1 << 20;
+
+    /**
+     * Default crease angle in degrees used by the {@link ShadingMode#CREASE_SHADING} mode.
+     */
+    public static final float DEFAULT_CREASE_ANGLE = 30.F;
+
+    /**
+     * Crease angle in degrees used by the {@link ShadingMode#CREASE_SHADING} mode.
+     */
+    private static float creaseAngle = DEFAULT_CREASE_ANGLE;
+
+    /**
+     * True to reorder the triangles and the vertices of the indexed meshes for the vertex cache of the GPU, see {@link Mesh#optimizeVertexCache()}.
+     * Disabled by default, as it changes the order of the vertices of the imported meshes.
+     */
+    private static boolean optimizeVertexCache;
+
+    /**
+     * Default threshold of the overdraw optimization, see {@link Mesh#optimizeOverdraw(float)}.
+     */
+    public static final float DEFAULT_OVERDRAW_THRESHOLD = 1.05F;
+
+    /**
+     * Threshold of the overdraw optimization, 0 if the meshes are not reordered to reduce the overdraw.
+     * Disabled by default, as it changes the order of the triangles of the imported meshes.
+     */
+    private static float overdrawThreshold;
+
+    /**
+     * True to send the imported meshes to the GPU with the compressed vertex layout, see {@link Mesh#setCompressed(boolean)}.
+     */
+    private static boolean compressVertices;
+
+    /**
+     * Cache of the imported meshes, null if the meshes are not cached.
+     */
+    private static OBJCache cache;
+
+    /**
+     * Set the cache used by the import methods.
+     * When a cache is set, the file is hashed and the mesh is loaded from the cache if the same file was already imported with the same shading mode.
+     * @param cache - the cache to use, or null to disable the cache
+     */
+    public static void setCache(OBJCache cache) {
+        OBJImporter.cache = cache;
+    }
+
+    /**
+     * Returns the cache used by the import methods.
+     * @return the cache, or null if there is none
+     */
+    public static OBJCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Set the crease angle used by the {@link ShadingMode#CREASE_SHADING} mode : the edges between two triangles making a larger angle stay hard.
+     * @param creaseAngle - the angle in degrees
+     */
+    public static void setCreaseAngle(float creaseAngle) {
+        OBJImporter.creaseAngle = creaseAngle;
+    }
+
+    /**
+     * Returns the crease angle used by the {@link ShadingMode#CREASE_SHADING} mode.
+     * @return the angle in degrees
+     */
+    public static float getCreaseAngle() {
+        return creaseAngle;
+    }
+
+    /**
+     * Set if the indexed meshes are reordered for the vertex cache of the GPU after their import, see {@link Mesh#optimizeVertexCache()}.
+     * The meshes without shared vertices, flat shaded without normals in the file, are never reordered.
+     * @param optimizeVertexCache - true to reorder the meshes, false by default
+     */
+    public static void setOptimizeVertexCache(boolean optimizeVertexCache) {
+        OBJImporter.optimizeVertexCache = optimizeVertexCache;
+    }
+
+    /**
+     * Returns true if the indexed meshes are reordered for the vertex cache of the GPU after their import.
+     * @return true if the meshes are reordered
+     */
+    public static boolean isOptimizeVertexCache() {
+        return optimizeVertexCache;
+    }
+
+    /**
+     * Set the threshold of the overdraw optimization applied to the meshes after their import, see {@link Mesh#optimizeOverdraw(float)}.
+     * @param overdrawThreshold - largest ratio of the ACMR of a cluster to the ACMR of the mesh, or 0, the default, to disable the optimization
+     */
+    public static void setOverdrawThreshold(float overdrawThreshold) {
+        OBJImporter.overdrawThreshold = overdrawThreshold;
+    }
+
+    /**
+     * Returns the threshold of the overdraw optimization applied to the meshes after their import.
+     * @return the threshold, 0 if the optimization is disabled
+     */
+    public static float getOverdrawThreshold() {
+        return overdrawThreshold;
+    }
+
+    /**
+     * Set if the imported meshes are sent to the GPU with the compressed vertex layout, see {@link Mesh#setCompressed(boolean)}.
+     * The meshes stored in the cache have this layout, so they are loaded and sent to the GPU without being converted.
+     * @param compressVertices - true to compress the vertices, false by default
+     */
+    public static void setCompressVertices(boolean compressVertices) {
+        OBJImporter.compressVertices = compressVertices;
+    }
+
+    /**
+     * Returns true if the imported meshes are sent to the GPU with the compressed vertex layout.
+     * @return true if the vertices are compressed
+     */
+    public static boolean isCompressVertices() {
+        return compressVertices;
+    }
+
     /**
      * Static method to parse the obj file and build the position and triangles array.
      * Normals are either calculated or parsed if they are present in the obj file.
      * Texture coordinates are not tested yet.
-     * Still a work in progress, should use a map of to verify if a vertex index, normal index paire already exists.
-     * For now, all vertices are independent when normals are given, so the size of the Mesh can be quite big.
+     * The indexed meshes are then reordered for the vertex cache of the GPU if enabled by {@link #setOptimizeVertexCache(boolean)},
+     * and all the meshes to reduce the overdraw if enabled by {@link #setOverdrawThreshold(float)}.
+     * When normals or texture coordinates are given, the corners sharing the same position, texture coordinate and normal indices are welded into a single vertex by a {@link VertexWelder}.
+     * If a cache is set, the mesh is loaded from it when possible.
      * @param stream - stream of the corresponding .obj file, preferably the return of {@link android.content.res.Resources#openRawResource(int)}
-     * @param shadingMode - how the normals should be calculated (flat or smooth).
+     * @param shadingMode - how the normals should be calculated (flat, smooth or crease).
      * @return the imported mesh
      */
     public static Mesh importOBJ(InputStream stream, ShadingMode shadingMode) {
-        List<Float> verticesList = new ArrayList<>();
-        List<Float> normalsList = new ArrayList<>();
-        List<Float> texturesList = new ArrayList<>();
-        List<OBJFace> trianglesList = new ArrayList<>();
-        BufferedReader reader = new BufferedReader(new InputStreamReader(stream));
-        String lineText;
+        if (cache != null)
+            return importCached(stream, shadingMode, false);
+        OBJParser parser = new OBJParser();
         try {
-            while ((lineText = reader.readLine()) != null) {
-                if (!lineText.isEmpty()) {
-                    String[] data = lineText.split(" ");
-                    switch (data[0]) {
-                        case "v":
-                            verticesList.add(Float.parseFloat(data[1]));
-                            verticesList.add(Float.parseFloat(data[2]));
-                            verticesList.add(Float.parseFloat(data[3]));
-                            break;
-                        case "vn":
-                            normalsList.add(Float.parseFloat(data[1]));
-                            normalsList.add(Float.parseFloat(data[2]));
-                            normalsList.add(Float.parseFloat(data[3]));
-                            break;
-                        case "vt":
-                            texturesList.add(Float.parseFloat(data[1]));
-                            texturesList.add(Float.parseFloat(data[2]));
-                            break;
-
-                        case "f":
-                            trianglesList.add(new OBJFace(data));
-                            break;
-                        default:
-                    }
-                }
-            }
+            parser.parse(stream);
         } catch (IOException e) {
             e.printStackTrace();
         }
+        return buildMesh(parser, shadingMode, false);
+    }
+
+    /**
+     * Static method to parse the obj file with all the cores of the device and build the mesh.
+     * The file is read in memory and split into line-aligned chunks, each one being parsed by its own {@link OBJParser} in the common {@link ForkJoinPool}.
+     * The results are then merged and the mesh is built as with {@link #importOBJ(InputStream, ShadingMode)}, the smooth shading normals of large meshes being also calculated in parallel.
+     * Small files are parsed sequentially, as the split would cost more than it saves.
+     * If a cache is set, the mesh is loaded from it when possible.
+     * @param stream - stream of the corresponding .obj file, preferably the return of {@link android.content.res.Resources#openRawResource(int)}
+     * @param shadingMode - how the normals should be calculated (flat, smooth or crease).
+     * @return the imported mesh, identical to the one returned by {@link #importOBJ(InputStream, ShadingMode)}
+     */
+    public static Mesh importOBJParallel(InputStream stream, ShadingMode shadingMode) {
+        if (cache != null)
+            return importCached(stream, shadingMode, true);
+        return buildMesh(parseParallel(readAll(stream)), shadingMode, true);
+    }
+
+    /**
+     * Import the obj file with {@link #importOBJParallel(InputStream, ShadingMode)} and build its levels of detail with {@link Mesh#generateLODChain(float...)}.
+     * If a cache is set, the levels are cached as well, so the file is only simplified the first time it is imported with these ratios.
+     * @param stream - stream of the corresponding .obj file, preferably the return of {@link android.content.res.Resources#openRawResource(int)}
+     * @param shadingMode - how the normals should be calculated (flat, smooth or crease).
+     * @param ratios - decreasing ratios of the triangles of the imported mesh to keep in each level
+     * @return the levels, starting with the imported mesh
+     */
+    public static Mesh[] importLODChainParallel(InputStream stream, ShadingMode shadingMode, float... ratios) {
+        OBJCache cache = OBJImporter.cache;
+        if (cache == null)
+            return importOBJParallel(stream, shadingMode).generateLODChain(ratios);
+        long start = System.nanoTime();
+        byte[] data = readAll(stream);
+        String key = cache.key(data, shadingMode, creaseAngle, optimizeVertexCache, overdrawThreshold, compressVertices);
+        Mesh[] levels = new Mesh[ratios.length + 1];
+        for (int i = 1; i < levels.length; i++) {
+            levels[i] = cache.get(cache.levelKey(key, ratios, i), start);
+            if (levels[i] == null) {
+                //a level is missing, the whole chain is built again as each level is simplified from the previous one,
+                //the simplification being deterministic the levels already cached are identical and not stored again
+                long chainStart = System.nanoTime();
+                levels = importCached(data, key, shadingMode, true, start).generateLODChain(ratios);
+                for (int j = i; j < levels.length; j++)
+                    cache.put(cache.levelKey(key, ratios, j), levels[j], chainStart);
+                return levels;
+            }
+            start = System.nanoTime();
+        }
+        levels[0] = importCached(data, key, shadingMode, true, start);
+        return levels;
+    }
+
+    /**
+     * Load the mesh from the cache, or import it and store it in the cache.
+     * @param stream - stream of the .obj file
+     * @param shadingMode - how the normals should be calculated (flat, smooth or crease).
+     * @param parallel - true to parse the file with {@link #parseParallel(byte[])} and calculate the normals in parallel
+     * @return the imported mesh
+     */
+    private static Mesh importCached(InputStream stream, ShadingMode shadingMode, boolean parallel) {
+        long start = System.nanoTime();
+        byte[] data = readAll(stream);
+        return importCached(data, cache.key(data, shadingMode, creaseAngle, optimizeVertexCache, overdrawThreshold, compressVertices), shadingMode, parallel, start);
+    }
+
+    /**
+     * Load the mesh from the cache, or import it and store it in the cache.
+     * @param data - bytes of the .obj file
+     * @param key - key of the mesh, returned by {@link OBJCache#key(byte[], ShadingMode, float, boolean, float, boolean)}
+     * @param shadingMode - how the normals should be calculated (flat, smooth or crease).
+     * @param parallel - true to parse the file with {@link #parseParallel(byte[])} and calculate the normals in parallel
+     * @param start - {@link System#nanoTime()} at the beginning of the import
+     * @return the imported mesh
+     */
+    private static Mesh importCached(byte[] data, String key, ShadingMode shadingMode, boolean parallel, long start) {
+        OBJCache cache = OBJImporter.cache;
+        Mesh mesh = cache.get(key, start);
+        if (mesh == null) {
+            OBJParser parser;
+            if (parallel) {
+                parser = parseParallel(data);
+            } else {
+                parser = new OBJParser();
+                parser.parse(data, 0, data.length);
+            }
+            mesh = buildMesh(parser, shadingMode, parallel);
+            cache.put(key, mesh, start);
+        }
+        return mesh;
+    }
+
+    /**
+     * Parse the bytes of an obj file with all the cores of the device.
+     * @param data - bytes of the .obj file
+     * @return the parser containing the data of the whole file
+     */
+    private static OBJParser parseParallel(byte[] data) {
+        long start = System.nanoTime();
+        int nbChunks = Math.min(ForkJoinPool.getCommonPoolParallelism() * 4, data.length / MIN_CHUNK_SIZE);
+        OBJParser parser;
+        if (nbChunks <= 1) {
+            parser = new OBJParser();
+            parser.parse(data, 0, data.length);
+        } else {
+            List<Callable<OBJParser>> tasks = new ArrayList<>(nbChunks);
+            int chunkStart = 0;
+            for (int i = 1; i <= nbChunks; i++) {
+                int chunkEnd = i == nbChunks ? data.length : lineEnd(data, (int) ((long) data.length * i / nbChunks));
+                if (chunkEnd > chunkStart)
+                    tasks.add(new ChunkParser(data, chunkStart, chunkEnd));
+                chunkStart = chunkEnd;
+            }
+            List<Future<OBJParser>> results = ForkJoinPool.commonPool().invokeAll(tasks);
+            OBJParser[] parts = new OBJParser[results.size()];
+            try {
+                for (int i = 0; i < parts.length; i++)
+                    parts[i] = results.get(i).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("OBJ import interrupted", e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException("Error while parsing the OBJ file", e.getCause());
+            }
+            parser = OBJParser.merge(parts);
+        }
+        long end = System.nanoTime();
+        MainActivity.log("OBJ parsed on " + Math.max(nbChunks, 1) + " chunks in " + (end - start) / 1000000 + " ms ("
+                + (long) (data.length / 1048576.0 / ((end - start + 1) / 1e9)) + " MB/s)");
+        return parser;
+    }
+
+    /**
+     * Task parsing one chunk of the file.
+     */
+    private static class ChunkParser implements Callable<OBJParser> {
+        /**
+         * Bytes of the whole file.
+         */
+        private final byte[] data;
+        /**
+         * Index of the first byte of the chunk.
+         */
+        private final int start;
+        /**
+         * Index following the last byte of the chunk.
+         */
+        private final int end;
+
+        /**
+         * Constructor.
+         * @param data - bytes of the whole file
+         * @param start - index of the first byte of the chunk, at the beginning of a line
+         * @param end - index following the last byte of the chunk, at the beginning of a line
+         */
+        ChunkParser(byte[] data, int start, int end) {
+            this.data = data;
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Parse the chunk.
+         * @return the parser containing the data of the chunk
+         */
+        @Override
+        public OBJParser call() {
+            OBJParser parser = new OBJParser();
+            parser.parse(data, start, end);
+            return parser;
+        }
+    }
+
+    /**
+     * Returns the index following the end of the line containing the given index.
+     * @param data - bytes of the file
+     * @param index - index of a byte of the line
+     * @return the index of the beginning of the next line, or the length of the array
+     */
+    private static int lineEnd(byte[] data, int index) {
+        while (index < data.length && data[index] != '\n')
+            index++;
+        return Math.min(index + 1, data.length);
+    }
+
+    /**
+     * Read all the bytes of the stream and close it.
+     * If the stream can not be read, an exception is thrown rather than returning a truncated file,
+     * which would otherwise be imported and stored in the cache under the key of its partial content.
+     * @param stream - the stream to read
+     * @return an array with exactly the bytes of the stream
+     */
+    private static byte[] readAll(InputStream stream) {
+        byte[] data = new byte[1 << 16];
+        int size = 0;
         try {
-            reader.close();
+            data = new byte[Math.max(stream.available(), data.length)];
+            int read;
+            while ((read = stream.read(data, size, data.length - size)) != -1) {
+                size += read;
+                if (size == data.length)
+                    data = Arrays.copyOf(data, data.length * 2);
+            }
         } catch (IOException e) {
-            e.printStackTrace();
+            throw new RuntimeException("Error while reading the OBJ file", e);
+        } finally {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
         }
+        return size == data.length ? data : Arrays.copyOf(data, size);
+    }
+
+    /**
+     * Build the mesh from the arrays filled by the parser.
+     * @param parser - parser that has read the whole .obj file
+     * @param shadingMode - how the normals should be calculated (flat, smooth or crease).
+     * @param parallel - true to calculate the smooth shading normals with all the cores of the device, see {@link Mesh#setParallelNormals(boolean)}
+     * @return the imported mesh
+     */
+    static Mesh buildMesh(OBJParser parser, ShadingMode shadingMode, boolean parallel) {
         Mesh mesh;
+        int nbTriangles = parser.getTrianglesCount();
+        int[] corners = parser.corners;
+        float[] positions = parser.positions;
+        int[] triangles = new int[nbTriangles * 3];
         float[] vertexpos;
-        int[] triangles = new int[trianglesList.size() * 3];
-        vertexpos = new float[trianglesList.size() * 9];
-        if (normalsList.isEmpty() && texturesList.isEmpty()) {
-            if (shadingMode == ShadingMode.SMOOTH_SHADING) {
-                vertexpos = new float[verticesList.size()];
-                for (int i = 0; i < verticesList.size(); i++) {
-                    vertexpos[i] = verticesList.get(i);
-                }
-                for (int i = 0; i < trianglesList.size(); i++) {
-                    triangles[i * 3] = trianglesList.get(i).getV1().getV() - 1;
-                    triangles[i * 3 + 1] = trianglesList.get(i).getV2().getV() - 1;
-                    triangles[i * 3 + 2] = trianglesList.get(i).getV3().getV() - 1;
-                }
-                mesh = new Mesh(vertexpos, triangles);
-                mesh.calculateSmoothShadingNormals();
-
-            } else {
-                for (int i = 0; i < trianglesList.size(); i++) {
-                    vertexpos[i * 9] = verticesList.get((trianglesList.get(i).getV1().getV() - 1) * 3);
-                    vertexpos[i * 9 + 1] = verticesList.get((trianglesList.get(i).getV1().getV() - 1) * 3 + 1);
-                    vertexpos[i * 9 + 2] = verticesList.get((trianglesList.get(i).getV1().getV() - 1) * 3 + 2);
-                    vertexpos[i * 9 + 3] = verticesList.get((trianglesList.get(i).getV2().getV() - 1) * 3);
-                    vertexpos[i * 9 + 4] = verticesList.get((trianglesList.get(i).getV2().getV() - 1) * 3 + 1);
-                    vertexpos[i * 9 + 5] = verticesList.get((trianglesList.get(i).getV2().getV() - 1) * 3 + 2);
-                    vertexpos[i * 9 + 6] = verticesList.get((trianglesList.get(i).getV3().getV() - 1) * 3);
-                    vertexpos[i * 9 + 7] = verticesList.get((trianglesList.get(i).getV3().getV() - 1) * 3 + 1);
-                    vertexpos[i * 9 + 8] = verticesList.get((trianglesList.get(i).getV3().getV() - 1) * 3 + 2);
-                    triangles[i * 3] = i * 3;
-                    triangles[i * 3 + 1] = i * 3 + 1;
-                    triangles[i * 3 + 2] = i * 3 + 2;
-                }
-                mesh = new Mesh(vertexpos, triangles);
-                mesh.calculateFlatShadingNormals();
+        //the flat shaded meshes without normals in the file have their own vertices for each triangle, nothing to reuse from the vertex cache
+        boolean indexed = parser.normalsSize != 0 || shadingMode != ShadingMode.FLAT_SHADING;
+        if (!indexed) {
+            vertexpos = new float[nbTriangles * 9];
+            float[] textures = parser.texturesSize == 0 ? null : new float[nbTriangles * 6];
+            for (int i = 0; i < triangles.length; i++) {
+                copy(positions, corners[i * 3], vertexpos, i, 3);
+                if (textures != null)
+                    copy(parser.textures, corners[i * 3 + 1], textures, i, 2);
+                triangles[i] = i;
             }
-        } else if (texturesList.isEmpty()) {
-            float[] normals = new float[vertexpos.length];
-            for (int i = 0; i < trianglesList.size(); i++) {
-                vertexpos[i * 9] = verticesList.get((trianglesList.get(i).getV1().getV() - 1) * 3);
-                vertexpos[i * 9 + 1] = verticesList.get((trianglesList.get(i).getV1().getV() - 1) * 3 + 1);
-                vertexpos[i * 9 + 2] = verticesList.get((trianglesList.get(i).getV1().getV() - 1) * 3 + 2);
-                vertexpos[i * 9 + 3] = verticesList.get((trianglesList.get(i).getV2().getV() - 1) * 3);
-                vertexpos[i * 9 + 4] = verticesList.get((trianglesList.get(i).getV2().getV() - 1) * 3 + 1);
-                vertexpos[i * 9 + 5] = verticesList.get((trianglesList.get(i).getV2().getV() - 1) * 3 + 2);
-                vertexpos[i * 9 + 6] = verticesList.get((trianglesList.get(i).getV3().getV() - 1) * 3);
-                vertexpos[i * 9 + 7] = verticesList.get((trianglesList.get(i).getV3().getV() - 1) * 3 + 1);
-                vertexpos[i * 9 + 8] = verticesList.get((trianglesList.get(i).getV3().getV() - 1) * 3 + 2);
-                normals[i * 9] = normalsList.get((trianglesList.get(i).getV1().getVn() - 1) * 3);
-                normals[i * 9 + 1] = normalsList.get((trianglesList.get(i).getV1().getVn() - 1) * 3 + 1);
-                normals[i * 9 + 2] = normalsList.get((trianglesList.get(i).getV1().getVn() - 1) * 3 + 2);
-                normals[i * 9 + 3] = normalsList.get((trianglesList.get(i).getV2().getVn() - 1) * 3);
-                normals[i * 9 + 4] = normalsList.get((trianglesList.get(i).getV2().getVn() - 1) * 3 + 1);
-                normals[i * 9 + 5] = normalsList.get((trianglesList.get(i).getV2().getVn() - 1) * 3 + 2);
-                normals[i * 9 + 6] = normalsList.get((trianglesList.get(i).getV3().getVn() - 1) * 3);
-                normals[i * 9 + 7] = normalsList.get((trianglesList.get(i).getV3().getVn() - 1) * 3 + 1);
-                normals[i * 9 + 8] = normalsList.get((trianglesList.get(i).getV3().getVn() - 1) * 3 + 2);
-                triangles[i * 3] = i * 3;
-                triangles[i * 3 + 1] = i * 3 + 1;
-                triangles[i * 3 + 2] = i * 3 + 2;
+            if (textures == null)
+                mesh = new Mesh(vertexpos, triangles);
+            else
+                mesh = new Mesh(vertexpos, triangles, new float[vertexpos.length], textures);
+            mesh.calculateFlatShadingNormals();
+        } else if (parser.normalsSize == 0 && parser.texturesSize == 0) {
+            vertexpos = Arrays.copyOf(positions, parser.positionsSize);
+            for (int i = 0; i < triangles.length; i++) {
+                triangles[i] = corners[i * 3];
             }
-            mesh = new Mesh(vertexpos, triangles, normals);
+            mesh = new Mesh(vertexpos, triangles);
+            calculateNormals(mesh.setParallelNormals(parallel), shadingMode);
         } else {
-            float[] normals = new float[vertexpos.length];
-            float[] textures = new float[vertexpos.length / 3 * 2];
-            for (int i = 0; i < trianglesList.size(); i++) {
-                vertexpos[i * 9] = verticesList.get((trianglesList.get(i).getV1().getV() - 1) * 3);
-                vertexpos[i * 9 + 1] = verticesList.get((trianglesList.get(i).getV1().getV() - 1) * 3 + 1);
-                vertexpos[i * 9 + 2] = verticesList.get((trianglesList.get(i).getV1().getV() - 1) * 3 + 2);
-                vertexpos[i * 9 + 3] = verticesList.get((trianglesList.get(i).getV2().getV() - 1) * 3);
-                vertexpos[i * 9 + 4] = verticesList.get((trianglesList.get(i).getV2().getV() - 1) * 3 + 1);
-                vertexpos[i * 9 + 5] = verticesList.get((trianglesList.get(i).getV2().getV() - 1) * 3 + 2);
-                vertexpos[i * 9 + 6] = verticesList.get((trianglesList.get(i).getV3().getV() - 1) * 3);
-                vertexpos[i * 9 + 7] = verticesList.get((trianglesList.get(i).getV3().getV() - 1) * 3 + 1);
-                vertexpos[i * 9 + 8] = verticesList.get((trianglesList.get(i).getV3().getV() - 1) * 3 + 2);
-                textures[i * 6] = texturesList.get((trianglesList.get(i).getV1().getVt() - 1) * 2);
-                textures[i * 6 + 1] = texturesList.get((trianglesList.get(i).getV1().getVt() - 1) * 2 + 1);
-                textures[i * 6 + 2] = texturesList.get((trianglesList.get(i).getV2().getVt() - 1) * 2);
-                textures[i * 6 + 3] = texturesList.get((trianglesList.get(i).getV2().getVt() - 1) * 2 + 1);
-                textures[i * 6 + 4] = texturesList.get((trianglesList.get(i).getV3().getVt() - 1) * 2);
-                textures[i * 6 + 5] = texturesList.get((trianglesList.get(i).getV3().getVt() - 1) * 2 + 1);
-                normals[i * 9] = normalsList.get((trianglesList.get(i).getV1().getVn() - 1) * 3);
-                normals[i * 9 + 1] = normalsList.get((trianglesList.get(i).getV1().getVn() - 1) * 3 + 1);
-                normals[i * 9 + 2] = normalsList.get((trianglesList.get(i).getV1().getVn() - 1) * 3 + 2);
-                normals[i * 9 + 3] = normalsList.get((trianglesList.get(i).getV2().getVn() - 1) * 3);
-                normals[i * 9 + 4] = normalsList.get((trianglesList.get(i).getV2().getVn() - 1) * 3 + 1);
-                normals[i * 9 + 5] = normalsList.get((trianglesList.get(i).getV2().getVn() - 1) * 3 + 2);
-                normals[i * 9 + 6] = normalsList.get((trianglesList.get(i).getV3().getVn() - 1) * 3);
-                normals[i * 9 + 7] = normalsList.get((trianglesList.get(i).getV3().getVn() - 1) * 3 + 1);
-                normals[i * 9 + 8] = normalsList.get((trianglesList.get(i).getV3().getVn() - 1) * 3 + 2);
-                triangles[i * 3] = i * 3;
-                triangles[i * 3 + 1] = i * 3 + 1;
-                triangles[i * 3 + 2] = i * 3 + 2;
+            VertexWelder welder = new VertexWelder();
+            triangles = welder.weld(corners, triangles.length);
+            MainActivity.log("OBJ vertices welded : " + welder.getCornersCount() + " -> " + welder.getVerticesCount());
+            int[] vertices = welder.getVertices();
+            int nbVertices = welder.getVerticesCount();
+            vertexpos = new float[nbVertices * 3];
+            float[] normals = new float[nbVertices * 3];
+            float[] textures = parser.texturesSize == 0 ? null : new float[nbVertices * 2];
+            //a file can mix corners with and without normals, the normals are then calculated for the whole mesh
+            boolean missingNormals = parser.normalsSize == 0;
+            for (int i = 0; i < nbVertices; i++) {
+                copy(positions, vertices[i * 3], vertexpos, i, 3);
+                if (textures != null)
+                    copy(parser.textures, vertices[i * 3 + 1], textures, i, 2);
+                if (parser.normalsSize != 0 && !copy(parser.normals, vertices[i * 3 + 2], normals, i, 3))
+                    missingNormals = true;
+            }
+            if (textures == null)
+                mesh = new Mesh(vertexpos, triangles, normals);
+            else
+                mesh = new Mesh(vertexpos, triangles, normals, textures);
+            if (missingNormals) {
+                if (parser.normalsSize != 0)
+                    MainActivity.log("OBJ normals missing on some corners, the normals are calculated");
+                calculateNormals(mesh.setParallelNormals(parallel), shadingMode);
             }
-            mesh = new Mesh(vertexpos, triangles, normals, textures);
         }
-        return mesh;
+        if (optimizeVertexCache && indexed)
+            mesh.optimizeVertexCache();
+        if (overdrawThreshold > 0.F && triangles.length > 0)
+            mesh.optimizeOverdraw(overdrawThreshold);
+        return mesh.setCompressed(compressVertices);
+    }
+
+    /**
+     * Calculate the smooth or crease shading normals of an indexed mesh.
+     * @param mesh - the mesh
+     * @param shadingMode - {@link ShadingMode#CREASE_SHADING} to keep the hard edges, otherwise the normals are smooth
+     */
+    private static void calculateNormals(Mesh mesh, ShadingMode shadingMode) {
+        if (shadingMode == ShadingMode.CREASE_SHADING) {
+            int nbVertices = mesh.getVerticesCount();
+            mesh.calculateCreaseShadingNormals(creaseAngle);
+            MainActivity.log("OBJ vertices split along the creases : " + nbVertices + " -> " + mesh.getVerticesCount());
+        } else {
+            mesh.calculateSmoothShadingNormals();
+        }
+    }
+
+    /**
+     * Copy the element of the given index from the source array to the destination array.
+     * A missing index, -1 for a corner without texture coordinate or normal, leaves the destination element to 0.
+     * @param src - source array
+     * @param srcIndex - index of the element in the source array, or -1
+     * @param dst - destination array
+     * @param dstIndex - index of the element in the destination array
+     * @param size - number of floats per element
+     * @return false if the index was missing
+     */
+    private static boolean copy(float[] src, int srcIndex, float[] dst, int dstIndex, int size) {
+        if (srcIndex < 0)
+            return false;
+        System.arraycopy(src, srcIndex * size, dst, dstIndex * size, size);
+        return true;
     }
 
 }
@@ -0,0 +1,480 @@
+package fr.univ_poitiers.dptinfo.algo3d.objimporter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Streaming parser of .obj files.
+ * The bytes are tokenized directly into growable primitive arrays, without creating a String per line or a boxed Float per coordinate.
+ * Only the v, vt, vn and f statements are read, the others are ignored.
+ * Faces with more than 3 vertices are triangulated as a fan.
+ */
+class OBJParser {
+
+    /**
+     * Initial size of the read buffer.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Powers of ten that are exactly representable as floats and doubles, used by the fast paths of {@link #parseFloat(byte[], int, int)}.
+     */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * Array storing the vertex positions, 3 floats per vertex.
+     */
+    float[] positions = new float[3 * 1024];
+    /**
+     * Number of floats used in {@link #positions}.
+     */
+    int positionsSize;
+    /**
+     * Array storing the normals, 3 floats per normal.
+     */
+    float[] normals = new float[0];
+    /**
+     * Number of floats used in {@link #normals}.
+     */
+    int normalsSize;
+    /**
+     * Array storing the texture coordinates, 2 floats per texture coordinate.
+     */
+    float[] textures = new float[0];
+    /**
+     * Number of floats used in {@link #textures}.
+     */
+    int texturesSize;
+    /**
+     * Array storing the triangles corners, 3 ints per corner : the position, texture coordinate and normal indices.
+     * Indices start at 0, a missing texture coordinate or normal index is stored as -1.
+     */
+    int[] corners = new int[9 * 1024];
+    /**
+     * Number of ints used in {@link #corners}.
+     */
+    int cornersSize;
+
+    /**
+     * Indices in {@link #corners} of the values that were given as negative indices, relative to the elements already read.
+     * They must be rebased when the parser only read a part of the file, see {@link #merge(OBJParser[])}.
+     */
+    private int[] relativeCorners = new int[0];
+    /**
+     * Number of ints used in {@link #relativeCorners}.
+     */
+    private int relativeCornersSize;
+
+    /**
+     * Position, texture coordinate and normal indices of the first corner of the current face, used for the fan triangulation.
+     * The fourth int is a bit mask of the indices that were relative.
+     */
+    private final int[] firstCorner = new int[4];
+    /**
+     * Position, texture coordinate and normal indices of the previous corner of the current face, used for the fan triangulation.
+     * The fourth int is a bit mask of the indices that were relative.
+     */
+    private final int[] previousCorner = new int[4];
+    /**
+     * Position, texture coordinate and normal indices of the corner being parsed.
+     * The fourth int is a bit mask of the indices that were relative.
+     */
+    private final int[] currentCorner = new int[4];
+    /**
+     * Index in the input array of the end of the last parsed token.
+     */
+    private int cursor;
+
+    /**
+     * Parse the whole stream.
+     * The stream is read by blocks, only the complete lines of a block are parsed and the remaining bytes are kept for the next block.
+     * The stream is closed at the end.
+     * @param stream - stream of the .obj file
+     * @throws IOException if the stream can not be read
+     */
+    void parse(InputStream stream) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int size = 0;
+        try {
+            int read;
+            while ((read = stream.read(buffer, size, buffer.length - size)) != -1) {
+                size += read;
+                int end = size;
+                while (end > 0 && buffer[end - 1] != '\n')
+                    end--;
+                if (end == 0) {
+                    //the line does not fit in the buffer
+                    if (size == buffer.length)
+                        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    continue;
+                }
+                parse(buffer, 0, end);
+                System.arraycopy(buffer, end, buffer, 0, size - end);
+                size -= end;
+            }
+            parse(buffer, 0, size);
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Parse the lines contained between the start and end indices of the array.
+     * @param data - bytes of the .obj file
+     * @param start - index of the first byte of the first line
+     * @param end - index following the last byte to parse
+     */
+    void parse(byte[] data, int start, int end) {
+        int i = start;
+        while (i < end) {
+            int lineEnd = i;
+            while (lineEnd < end && data[lineEnd] != '\n')
+                lineEnd++;
+            parseLine(data, i, lineEnd);
+            i = lineEnd + 1;
+        }
+    }
+
+    /**
+     * Parse one line, without its end of line character.
+     * @param data - bytes of the .obj file
+     * @param start - index of the first byte of the line
+     * @param end - index following the last byte of the line
+     */
+    private void parseLine(byte[] data, int start, int end) {
+        int i = skipSpaces(data, start, end);
+        if (i >= end)
+            return;
+        if (data[i] == 'v') {
+            if (i + 1 < end && isSpace(data[i + 1])) {
+                positions = ensureCapacity(positions, positionsSize + 3);
+                cursor = i + 1;
+                positions[positionsSize++] = nextFloat(data, end);
+                positions[positionsSize++] = nextFloat(data, end);
+                positions[positionsSize++] = nextFloat(data, end);
+            } else if (i + 2 < end && data[i + 1] == 'n' && isSpace(data[i + 2])) {
+                normals = ensureCapacity(normals, normalsSize + 3);
+                cursor = i + 2;
+                normals[normalsSize++] = nextFloat(data, end);
+                normals[normalsSize++] = nextFloat(data, end);
+                normals[normalsSize++] = nextFloat(data, end);
+            } else if (i + 2 < end && data[i + 1] == 't' && isSpace(data[i + 2])) {
+                textures = ensureCapacity(textures, texturesSize + 2);
+                cursor = i + 2;
+                textures[texturesSize++] = nextFloat(data, end);
+                textures[texturesSize++] = nextFloat(data, end);
+            }
+        } else if (data[i] == 'f' && i + 1 < end && isSpace(data[i + 1])) {
+            parseFace(data, i + 1, end);
+        }
+    }
+
+    /**
+     * Parse the corners of a face and add its triangles.
+     * @param data - bytes of the .obj file
+     * @param start - index following the f statement
+     * @param end - index following the last byte of the line
+     */
+    private void parseFace(byte[] data, int start, int end) {
+        int nbCorners = 0;
+        cursor = start;
+        while (true) {
+            int i = skipSpaces(data, cursor, end);
+            if (i >= end || data[i] == '#')
+                break;
+            cursor = i;
+            parseCorner(data, end);
+            if (nbCorners == 0) {
+                System.arraycopy(currentCorner, 0, firstCorner, 0, 4);
+            } else if (nbCorners >= 2) {
+                corners = ensureCapacity(corners, cornersSize + 9);
+                addCorner(firstCorner);
+                addCorner(previousCorner);
+                addCorner(currentCorner);
+            }
+            System.arraycopy(currentCorner, 0, previousCorner, 0, 4);
+            nbCorners++;
+        }
+        if (nbCorners < 3)
+            throw new NumberFormatException("Face with less than 3 vertices");
+    }
+
+    /**
+     * Parse a corner in the v, v/vt, v//vn or v/vt/vn format into {@link #currentCorner}.
+     * @param data - bytes of the .obj file
+     * @param end - index following the last byte of the line
+     */
+    private void parseCorner(byte[] data, int end) {
+        currentCorner[1] = -1;
+        currentCorner[2] = -1;
+        currentCorner[3] = 0;
+        parseIndex(data, end, 0, positionsSize / 3);
+        if (cursor < end && data[cursor] == '/') {
+            cursor++;
+            if (cursor < end && data[cursor] != '/')
+                parseIndex(data, end, 1, texturesSize / 2);
+            if (cursor < end && data[cursor] == '/') {
+                cursor++;
+                parseIndex(data, end, 2, normalsSize / 3);
+            }
+        }
+    }
+
+    /**
+     * Parse an index of the current corner, convert it to an index starting at 0 and mark it if it was relative.
+     * @param data - bytes of the .obj file
+     * @param end - index following the last byte of the line
+     * @param component - 0 for the position, 1 for the texture coordinate and 2 for the normal
+     * @param count - number of elements of this kind already read
+     */
+    private void parseIndex(byte[] data, int end, int component, int count) {
+        int index = nextInt(data, end);
+        currentCorner[component] = resolve(index, count);
+        if (index < 0)
+            currentCorner[3] |= 1 << component;
+    }
+
+    /**
+     * Add a corner at the end of the {@link #corners} array, whose capacity must already be sufficient.
+     * @param corner - position, texture coordinate and normal indices
+     */
+    private void addCorner(int[] corner) {
+        if (corner[3] != 0) {
+            relativeCorners = ensureCapacity(relativeCorners, relativeCornersSize + 3);
+            for (int i = 0; i < 3; i++) {
+                if ((corner[3] & (1 << i)) != 0)
+                    relativeCorners[relativeCornersSize++] = cornersSize + i;
+            }
+        }
+        corners[cornersSize++] = corner[0];
+        corners[cornersSize++] = corner[1];
+        corners[cornersSize++] = corner[2];
+    }
+
+    /**
+     * Convert an .obj index, starting at 1 or relative to the end if negative, into an index starting at 0.
+     * @param index - index read in the file
+     * @param count - number of elements of this kind already read
+     * @return the index starting at 0
+     */
+    private static int resolve(int index, int count) {
+        if (index > 0)
+            return index - 1;
+        if (index < 0)
+            return count + index;
+        throw new NumberFormatException("Invalid index 0");
+    }
+
+    /**
+     * Parse the integer starting at {@link #cursor} and move the cursor after it.
+     * @param data - bytes of the .obj file
+     * @param end - index following the last byte of the line
+     * @return the parsed integer
+     */
+    private int nextInt(byte[] data, int end) {
+        int i = cursor;
+        boolean negative = false;
+        if (i < end && (data[i] == '-' || data[i] == '+')) {
+            negative = data[i] == '-';
+            i++;
+        }
+        int start = i;
+        int value = 0;
+        while (i < end && data[i] >= '0' && data[i] <= '9') {
+            value = value * 10 + (data[i] - '0');
+            i++;
+        }
+        if (i == start)
+            throw new NumberFormatException("Index expected in face definition");
+        cursor = i;
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parse the float following {@link #cursor}, after the spaces, and move the cursor after it.
+     * @param data - bytes of the .obj file
+     * @param end - index following the last byte of the line
+     * @return the parsed float
+     */
+    private float nextFloat(byte[] data, int end) {
+        int start = skipSpaces(data, cursor, end);
+        int i = start;
+        while (i < end && !isSpace(data[i]))
+            i++;
+        cursor = i;
+        return parseFloat(data, start, i);
+    }
+
+    /**
+     * Hand-written float parser, giving the same result as {@link Float#parseFloat(String)}.
+     * Decimal numbers with up to 18 digits are converted with a single correctly rounded division,
+     * the other cases are delegated to {@link Float#parseFloat(String)}.
+     * @param data - bytes of the .obj file
+     * @param start - index of the first character of the number
+     * @param end - index following the last character of the number
+     * @return the parsed float
+     */
+    static float parseFloat(byte[] data, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (data[i] == '-' || data[i] == '+')) {
+            negative = data[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean hasDigits = false;
+        while (i < end && data[i] >= '0' && data[i] <= '9') {
+            hasDigits = true;
+            if (mantissa != 0 || data[i] != '0')
+                digits++;
+            mantissa = mantissa * 10 + (data[i] - '0');
+            i++;
+        }
+        if (i < end && data[i] == '.') {
+            i++;
+            while (i < end && data[i] >= '0' && data[i] <= '9') {
+                hasDigits = true;
+                if (mantissa != 0 || data[i] != '0')
+                    digits++;
+                mantissa = mantissa * 10 + (data[i] - '0');
+                exponent--;
+                i++;
+            }
+        }
+        if (hasDigits && i < end && (data[i] == 'e' || data[i] == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (data[i] == '-' || data[i] == '+')) {
+                negativeExponent = data[i] == '-';
+                i++;
+            }
+            int value = 0;
+            int exponentStart = i;
+            while (i < end && data[i] >= '0' && data[i] <= '9' && value < 10000) {
+                value = value * 10 + (data[i] - '0');
+                i++;
+            }
+            if (i == exponentStart)
+                hasDigits = false;
+            exponent += negativeExponent ? -value : value;
+        }
+        if (!hasDigits || i != end || digits > 18)
+            return Float.parseFloat(new String(data, start, end - start));
+        float result;
+        if (mantissa == 0) {
+            result = 0.f;
+        } else if (mantissa < (1 << 24) && exponent >= -10 && exponent <= 10) {
+            //both operands are exact floats, so the single operation is correctly rounded
+            result = exponent < 0 ? mantissa / (float) POWERS_OF_TEN[-exponent] : mantissa * (float) POWERS_OF_TEN[exponent];
+        } else if (mantissa < (1L << 53) && exponent >= -22 && exponent <= 22) {
+            //correctly rounded double, the conversion to float only differs when the double is exactly halfway between two floats
+            double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+            if ((Double.doubleToRawLongBits(value) & 0x1FFFFFFFL) == 0x10000000L || value < Float.MIN_NORMAL || value > Float.MAX_VALUE)
+                return Float.parseFloat(new String(data, start, end - start));
+            result = (float) value;
+        } else {
+            return Float.parseFloat(new String(data, start, end - start));
+        }
+        return negative ? -result : result;
+    }
+
+    /**
+     * Returns the index of the first character that is not a space or a tab, starting from the given index.
+     * @param data - bytes of the .obj file
+     * @param start - index from which to search
+     * @param end - index following the last byte of the line
+     * @return index of the first non space character, or end
+     */
+    private static int skipSpaces(byte[] data, int start, int end) {
+        while (start < end && isSpace(data[start]))
+            start++;
+        return start;
+    }
+
+    /**
+     * Returns true if the character separates two tokens.
+     * The carriage return is considered as a space so that files with Windows line endings are supported.
+     * @param c - a character
+     * @return true if the character is a space, a tab or a carriage return
+     */
+    private static boolean isSpace(byte c) {
+        return c == ' ' || c == '\t' || c == '\r';
+    }
+
+    /**
+     * Returns an array with at least the given capacity, grown by doubling if necessary.
+     * @param array - the current array
+     * @param capacity - the minimal capacity
+     * @return the same array or a bigger copy of it
+     */
+    static float[] ensureCapacity(float[] array, int capacity) {
+        if (capacity <= array.length)
+            return array;
+        return Arrays.copyOf(array, Math.max(capacity, array.length * 2));
+    }
+
+    /**
+     * Returns an array with at least the given capacity, grown by doubling if necessary.
+     * @param array - the current array
+     * @param capacity - the minimal capacity
+     * @return the same array or a bigger copy of it
+     */
+    static int[] ensureCapacity(int[] array, int capacity) {
+        if (capacity <= array.length)
+            return array;
+        return Arrays.copyOf(array, Math.max(capacity, array.length * 2));
+    }
+
+    /**
+     * Concatenate the results of parsers that have read consecutive parts of the same file.
+     * Positive indices are absolute and are kept as is, while the relative ones are rebased
+     * on the number of elements read by the previous parts.
+     * @param parts - the parsers, in the order of the parts in the file
+     * @return a parser containing the same data as if it had read the whole file
+     */
+    static OBJParser merge(OBJParser[] parts) {
+        OBJParser merged = new OBJParser();
+        int positionsSize = 0, normalsSize = 0, texturesSize = 0, cornersSize = 0;
+        for (OBJParser part : parts) {
+            positionsSize += part.positionsSize;
+            normalsSize += part.normalsSize;
+            texturesSize += part.texturesSize;
+            cornersSize += part.cornersSize;
+        }
+        merged.positions = new float[positionsSize];
+        merged.normals = new float[normalsSize];
+        merged.textures = new float[texturesSize];
+        merged.corners = new int[cornersSize];
+        for (OBJParser part : parts) {
+            int[] bases = {merged.positionsSize / 3, merged.texturesSize / 2, merged.normalsSize / 3};
+            int cornersBase = merged.cornersSize;
+            System.arraycopy(part.positions, 0, merged.positions, merged.positionsSize, part.positionsSize);
+            System.arraycopy(part.normals, 0, merged.normals, merged.normalsSize, part.normalsSize);
+            System.arraycopy(part.textures, 0, merged.textures, merged.texturesSize, part.texturesSize);
+            System.arraycopy(part.corners, 0, merged.corners, merged.cornersSize, part.cornersSize);
+            for (int i = 0; i < part.relativeCornersSize; i++) {
+                int index = part.relativeCorners[i];
+                merged.corners[cornersBase + index] += bases[index % 3];
+            }
+            merged.positionsSize += part.positionsSize;
+            merged.normalsSize += part.normalsSize;
+            merged.texturesSize += part.texturesSize;
+            merged.cornersSize += part.cornersSize;
+        }
+        return merged;
+    }
+
+    /**
+     * Returns the number of triangles parsed.
+     * @return the number of triangles
+     */
+    int getTrianglesCount() {
+        return cornersSize / 9;
+    }
+}
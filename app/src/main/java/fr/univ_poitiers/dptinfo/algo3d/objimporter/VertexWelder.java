@@ -0,0 +1,116 @@
+package fr.univ_poitiers.dptinfo.algo3d.objimporter;
+
+import java.util.Arrays;
+
+/**
+ * Class to merge the triangles corners sharing the same position, texture coordinate and normal indices into a single vertex.
+ * Uses an open addressing hash table with linear probing on primitive arrays, so no object is created per corner.
+ */
+class VertexWelder {
+
+    /**
+     * Value of an empty slot of the hash table.
+     */
+    private static final int EMPTY = -1;
+
+    /**
+     * Hash table storing the index of the unique vertices, or {@link #EMPTY}.
+     */
+    private int[] table;
+    /**
+     * Mask to apply to a hash to get a slot of the table, the size of the table being a power of 2.
+     */
+    private int mask;
+    /**
+     * The position, texture coordinate and normal indices of each unique vertex.
+     */
+    private int[] vertices;
+    /**
+     * Number of unique vertices.
+     */
+    private int verticesCount;
+    /**
+     * Number of corners given to the welder.
+     */
+    private int cornersCount;
+
+    /**
+     * Weld the corners and returns, for each corner, the index of its unique vertex.
+     * @param corners - the position, texture coordinate and normal indices of each corner
+     * @param nbCorners - number of corners in the array
+     * @return array of the unique vertex index of each corner, that can be used as the triangles array
+     */
+    int[] weld(int[] corners, int nbCorners) {
+        int capacity = Integer.highestOneBit(Math.max(nbCorners, 1) * 2 - 1) << 1;
+        table = new int[capacity];
+        Arrays.fill(table, EMPTY);
+        mask = capacity - 1;
+        vertices = new int[nbCorners * 3];
+        verticesCount = 0;
+        cornersCount = nbCorners;
+        int[] indices = new int[nbCorners];
+        for (int i = 0; i < nbCorners; i++) {
+            int v = corners[i * 3];
+            int vt = corners[i * 3 + 1];
+            int vn = corners[i * 3 + 2];
+            int slot = hash(v, vt, vn) & mask;
+            while (true) {
+                int vertex = table[slot];
+                if (vertex == EMPTY) {
+                    vertex = verticesCount++;
+                    vertices[vertex * 3] = v;
+                    vertices[vertex * 3 + 1] = vt;
+                    vertices[vertex * 3 + 2] = vn;
+                    table[slot] = vertex;
+                    indices[i] = vertex;
+                    break;
+                }
+                if (vertices[vertex * 3] == v && vertices[vertex * 3 + 1] == vt && vertices[vertex * 3 + 2] == vn) {
+                    indices[i] = vertex;
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+        table = null;
+        return indices;
+    }
+
+    /**
+     * Mix the three indices into a well distributed hash.
+     * @param v - position index
+     * @param vt - texture coordinate index
+     * @param vn - normal index
+     * @return the hash of the triple
+     */
+    private static int hash(int v, int vt, int vn) {
+        int h = v * 0x9E3779B1;
+        h = (h ^ (h >>> 15) ^ vt) * 0x85EBCA77;
+        h = (h ^ (h >>> 13) ^ vn) * 0xC2B2AE3D;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the position, texture coordinate and normal indices of each unique vertex, 3 ints per vertex.
+     * @return the array of the unique vertices, only the first {@link #getVerticesCount()} * 3 ints are used
+     */
+    int[] getVertices() {
+        return vertices;
+    }
+
+    /**
+     * Returns the number of unique vertices after the welding.
+     * @return the number of vertices after the welding
+     */
+    int getVerticesCount() {
+        return verticesCount;
+    }
+
+    /**
+     * Returns the number of vertices before the welding, that is to say one per triangle corner.
+     * @return the number of vertices before the welding
+     */
+    int getCornersCount() {
+        return cornersCount;
+    }
+}
@@ -12,6 +12,7 @@ import java.nio.FloatBuffer;
 
 import fr.univ_poitiers.dptinfo.algo3d.MainActivity;
 import fr.univ_poitiers.dptinfo.algo3d.MyGLRenderer;
+import fr.univ_poitiers.dptinfo.algo3d.gl.GL;
 
 /**
  * Abstract class to manipulate any shaders. Only position of vertices and their tranformation
@@ -106,28 +107,28 @@ public abstract class BasicShaders {
         int fragmentshader = loadShader(GLES20.GL_FRAGMENT_SHADER, fragsrc);
 
         // Create a GL program
-        int shaderprogram = GLES20.glCreateProgram();
+        int shaderprogram = GL.glCreateProgram();
         MyGLRenderer.checkGlError("glCreateProgram");
         if (shaderprogram == 0) return shaderprogram; // error ???
 
         // Attach vertex shader to program
-        GLES20.glAttachShader(shaderprogram, vertexshader);
+        GL.glAttachShader(shaderprogram, vertexshader);
         MyGLRenderer.checkGlError("glAttachShader");
         // Attach fragment shader to program
-        GLES20.glAttachShader(shaderprogram, fragmentshader);
+        GL.glAttachShader(shaderprogram, fragmentshader);
         MyGLRenderer.checkGlError("glAttachShader");
 
         // Link both shaders into a program
-        GLES20.glLinkProgram(shaderprogram);
+        GL.glLinkProgram(shaderprogram);
         // Check if a link error appeared
         int[] linkStatus = new int[1];
-        GLES20.glGetProgramiv(shaderprogram, GLES20.GL_LINK_STATUS, linkStatus, 0);
+        GL.glGetProgramiv(shaderprogram, GLES20.GL_LINK_STATUS, linkStatus, 0);
         if (linkStatus[0] != GLES20.GL_TRUE) {
             throw new RuntimeException("Could not link program: "
-                    + GLES20.glGetProgramInfoLog(shaderprogram));
+                    + GL.glGetProgramInfoLog(shaderprogram));
         }
         // Now activate program
-        GLES20.glUseProgram(shaderprogram);
+        GL.glUseProgram(shaderprogram);
         MyGLRenderer.checkGlError("glUseProgram");
         MainActivity.log("Shaders initialized");
         return shaderprogram;
@@ -143,21 +144,21 @@ public abstract class BasicShaders {
     public static int loadShader(int type, String shaderCode) {
         // create a vertex shader type (GLES20.GL_VERTEX_SHADER)
         // or a fragment shader type (GLES20.GL_FRAGMENT_SHADER)
-        int shader = GLES20.glCreateShader(type);
+        int shader = GL.glCreateShader(type);
         MyGLRenderer.checkGlError("glCreateShader");
         if (shader == 0) return shader; // Could not create ??
 
         // Add the source code to the shader and compile it
-        GLES20.glShaderSource(shader, shaderCode);
+        GL.glShaderSource(shader, shaderCode);
         MyGLRenderer.checkGlError("glShaderSource");
 
         // Compile shader and check compile errors
-        GLES20.glCompileShader(shader);
+        GL.glCompileShader(shader);
         int[] compiled = new int[1];
-        GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, compiled, 0);
+        GL.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, compiled, 0);
         if (compiled[0] == 0) {
             throw new RuntimeException("Could not compile shader: "
-                    + GLES20.glGetShaderInfoLog(shader));
+                    + GL.glGetShaderInfoLog(shader));
         }
 
         return shader;
@@ -177,6 +178,14 @@ public abstract class BasicShaders {
      * (GLSL uniform variable)
      */
     private int uModelViewMatrix;
+    /**
+     * Scale of the quantized vertex positions (GLSL uniform variable), see {@link fr.univ_poitiers.dptinfo.algo3d.mesh.CompressedVertexLayout}
+     */
+    private int uPositionScale;
+    /**
+     * Offset of the scaled vertex positions (GLSL uniform variable)
+     */
+    private int uPositionOffset;
 
 
     /**
@@ -207,18 +216,23 @@ public abstract class BasicShaders {
      */
     public void findVariables() {
         // Variables for matrices
-        this.uProjectionMatrix = GLES20.glGetUniformLocation(this.shaderprogram, "uProjectionMatrix");
+        this.uProjectionMatrix = GL.glGetUniformLocation(this.shaderprogram, "uProjectionMatrix");
         if (this.uProjectionMatrix == -1)
             throw new RuntimeException("uPojectionMatrix not found in shaders");
-        this.uModelViewMatrix = GLES20.glGetUniformLocation(this.shaderprogram, "uModelViewMatrix");
+        this.uModelViewMatrix = GL.glGetUniformLocation(this.shaderprogram, "uModelViewMatrix");
         if (this.uProjectionMatrix == -1)
             throw new RuntimeException("uModelViewMatrix not found in shaders");
 
+        this.uPositionScale = GL.glGetUniformLocation(this.shaderprogram, "uPositionScale");
+        this.uPositionOffset = GL.glGetUniformLocation(this.shaderprogram, "uPositionOffset");
+        if (this.uPositionScale == -1 || this.uPositionOffset == -1)
+            MainActivity.log("Warning: uPositionScale or uPositionOffset not found in shaders, compressed meshes not supported");
+
         // vertex attributes
-        this.aVertexPosition = GLES20.glGetAttribLocation(this.shaderprogram, "aVertexPosition");
+        this.aVertexPosition = GL.glGetAttribLocation(this.shaderprogram, "aVertexPosition");
         if (this.aVertexPosition == -1)
             throw new RuntimeException("aVertexPosition not found in shaders");
-        GLES20.glEnableVertexAttribArray(this.aVertexPosition);
+        GL.glEnableVertexAttribArray(this.aVertexPosition);
     }
 
     /*====================
@@ -232,7 +246,7 @@ public abstract class BasicShaders {
      * @param matrix Matrix used to set the modelview matrix
      */
     public void setModelViewMatrix(final float[] matrix) {
-        GLES20.glUniformMatrix4fv(this.uModelViewMatrix, 1, false, matrix, 0);
+        GL.glUniformMatrix4fv(this.uModelViewMatrix, 1, false, matrix, 0);
     }
 
     /**
@@ -241,7 +255,7 @@ public abstract class BasicShaders {
      * @param matrix Matrix used to set the projection matrix
      */
     public void setProjectionMatrix(final float[] matrix) {
-        GLES20.glUniformMatrix4fv(this.uProjectionMatrix, 1, false, matrix, 0);
+        GL.glUniformMatrix4fv(this.uProjectionMatrix, 1, false, matrix, 0);
     }
 
 
@@ -260,7 +274,7 @@ public abstract class BasicShaders {
      */
     public void setPositionsPointer(final int size, final int dtype, final int stride,
                                     final FloatBuffer buffer) {
-        GLES20.glVertexAttribPointer(this.aVertexPosition, size, dtype, false, stride, buffer);
+        GL.glVertexAttribPointer(this.aVertexPosition, size, dtype, false, stride, buffer);
     }
 
     /**
@@ -270,14 +284,39 @@ public abstract class BasicShaders {
      * @param dtype Type of coordinates
      */
     public void setPositionsPointer(final int size, final int dtype) {
-        GLES20.glVertexAttribPointer(this.aVertexPosition, size, dtype, false, 0, 0);
+        GL.glVertexAttribPointer(this.aVertexPosition, size, dtype, false, 0, 0);
+    }
+
+    /**
+     * Provide the shaders with the vertex positions of the desired VBO, interleaved with other attributes.
+     * Integer coordinates are normalized, see {@link #setPositionDequantization(float[], float[])}.
+     *
+     * @param size   Number of coordinates for each vertex
+     * @param dtype  Type of coordinates
+     * @param stride Offset in bytes between two vertices
+     * @param offset Offset in bytes of the position in a vertex
+     */
+    public void setPositionsPointer(final int size, final int dtype, final int stride, final int offset) {
+        GL.glVertexAttribPointer(this.aVertexPosition, size, dtype, dtype != GLES20.GL_FLOAT, stride, offset);
+    }
+
+    /**
+     * Set the transformation applied to the vertex positions : position * scale + offset.
+     * Used by the compressed meshes, whose positions are quantized in their bounding box.
+     *
+     * @param scale  Scale of the 3 coordinates, 1 for not compressed meshes
+     * @param offset Offset of the 3 coordinates, 0 for not compressed meshes
+     */
+    public void setPositionDequantization(final float[] scale, final float[] offset) {
+        GL.glUniform3fv(this.uPositionScale, 1, scale, 0);
+        GL.glUniform3fv(this.uPositionOffset, 1, offset, 0);
     }
 
     /**
      * Defines the shader as the one being used by the GPU.
      */
     public void use() {
-        GLES20.glUseProgram(shaderprogram);
+        GL.glUseProgram(shaderprogram);
     }
 
     /**
@@ -1,9 +1,9 @@
 package fr.univ_poitiers.dptinfo.algo3d.shaders;
 
 import android.content.Context;
-import android.opengl.GLES20;
 
 import fr.univ_poitiers.dptinfo.algo3d.MainActivity;
+import fr.univ_poitiers.dptinfo.algo3d.gl.GL;
 
 /**
  * Shader class to use lightning with the blinn phong formula and different types of light.
@@ -43,14 +43,14 @@ public class BlinnPhongTypeLightShaders extends LightingShaders {
     @Override
     public void findVariables() {
         super.findVariables();
-        this.uLightType = GLES20.glGetUniformLocation(this.shaderprogram, "uLightType");
+        this.uLightType = GL.glGetUniformLocation(this.shaderprogram, "uLightType");
         if (this.uLightType == -1) MainActivity.log("Warning:  uLightType not found in shaders...");
-        this.uCutOff = GLES20.glGetUniformLocation(this.shaderprogram, "uCutOff");
+        this.uCutOff = GL.glGetUniformLocation(this.shaderprogram, "uCutOff");
         if (this.uCutOff == -1) MainActivity.log("Warning:  uCutOff not found in shaders...");
-        this.uOuterCutOff = GLES20.glGetUniformLocation(this.shaderprogram, "uOuterCutOff");
+        this.uOuterCutOff = GL.glGetUniformLocation(this.shaderprogram, "uOuterCutOff");
         if (this.uOuterCutOff == -1)
             MainActivity.log("Warning:  uOuterCutOff not found in shaders...");
-        this.uLightDirection = GLES20.glGetUniformLocation(this.shaderprogram, "uLightDir");
+        this.uLightDirection = GL.glGetUniformLocation(this.shaderprogram, "uLightDir");
         if (this.uLightDirection == -1) throw new RuntimeException("uLightDir not found in shaders");
     }
 
@@ -59,7 +59,7 @@ public class BlinnPhongTypeLightShaders extends LightingShaders {
      * @param lightType - type of light
      */
     public void setLightType(int lightType) {
-        GLES20.glUniform1i(this.uLightType, lightType);
+        GL.glUniform1i(this.uLightType, lightType);
     }
 
     /**
@@ -67,7 +67,7 @@ public class BlinnPhongTypeLightShaders extends LightingShaders {
      * @param lightdir - direction of the light
      */
     public void setLightDirection(final float[] lightdir) {
-        GLES20.glUniform3fv(this.uLightDirection, 1, lightdir, 0);
+        GL.glUniform3fv(this.uLightDirection, 1, lightdir, 0);
     }
 
     /**
@@ -94,7 +94,7 @@ public class BlinnPhongTypeLightShaders extends LightingShaders {
      * @param cutOff - cut off of the light
      */
     public void setCutOff(float cutOff) {
-        GLES20.glUniform1f(this.uCutOff, cutOff);
+        GL.glUniform1f(this.uCutOff, cutOff);
     }
 
     /**
@@ -102,7 +102,7 @@ public class BlinnPhongTypeLightShaders extends LightingShaders {
      * @param outerCutOff - outer cut off of the light
      */
     public void setOuterCutOff(float outerCutOff) {
-        GLES20.glUniform1f(this.uOuterCutOff, outerCutOff);
+        GL.glUniform1f(this.uOuterCutOff, outerCutOff);
     }
 
 }
@@ -1,10 +1,11 @@
 package fr.univ_poitiers.dptinfo.algo3d.shaders;
 
-import android.opengl.Matrix;
+import java.util.List;
 
 import fr.univ_poitiers.dptinfo.algo3d.MyGLRenderer;
 import fr.univ_poitiers.dptinfo.algo3d.gameobject.Component;
 import fr.univ_poitiers.dptinfo.algo3d.gameobject.GameObject;
+import fr.univ_poitiers.dptinfo.algo3d.math.Mat4f;
 
 /**
  * Component to make object emit light.
@@ -19,11 +20,11 @@ public class Light extends Component {
     /**
      * Position of the light.
      */
-    private float[] position;
+    private float[] position = new float[3];
     /**
      * Direction of the light.
      */
-    private float[] direction;
+    private float[] direction = new float[3];
     /**
      * Ambient color of the light.
      * By default, {@link MyGLRenderer#darkgray}.
@@ -68,6 +69,11 @@ public class Light extends Component {
      */
     private float outerCutOff = 17.5f;
 
+    /**
+     * Model view matrix of the parent of the light for each shader, allocated once to be reused at each frame.
+     */
+    private final float[] modelviewmatrix = new float[16];
+
     /**
      * Constructor using the default value.
      * @param gameObject - the gameobject linked to the component
@@ -77,31 +83,25 @@ public class Light extends Component {
     }
 
     /**
-     * Calculate the view position of the light with the given view matrix and returns it as an array of 3 float.
+     * Calculate the view position of the light with the given view matrix.
      * @param viewmatrix
-     * @return position of the light
+     * @param result - array of 3 float receiving the position of the light
      */
-    public float[] getPos(final float[] viewmatrix) {
-        float[] lightPos = new float[4];
-        Matrix.multiplyMV(lightPos, 0, viewmatrix, 0, new float[]{transform.getPosx(), transform.getPosy(), transform.getPosz(), 1.0f}, 0);
-        return new float[]{lightPos[0], lightPos[1], lightPos[2]};
+    public void getPos(final float[] viewmatrix, float[] result) {
+        Mat4f.transformPoint(result, 0, viewmatrix, 0, transform.getPosx(), transform.getPosy(), transform.getPosz());
     }
 
     /**
-     * Calculate the view direction of the light with the given view matrix and returns it as an array of 3 float.
+     * Calculate the view direction of the light with the given view matrix.
      * @param viewmatrix
-     * @return direction of the light
-     */
-    public float[] getDir(final float[] viewmatrix) {
-        float[] lightDir = new float[4];
-        float[] lightlocalDir = new float[]{
-                (float) (Math.cos(Math.toRadians(transform.getRoty())) * Math.cos(Math.toRadians(transform.getRotx()))),
-                (float) Math.sin(Math.toRadians(transform.getRotx())),
-                (float) (Math.sin(Math.toRadians(transform.getRoty())) * Math.cos(Math.toRadians(transform.getRotx()))),
-                0.f
-        };
-        Matrix.multiplyMV(lightDir, 0, viewmatrix, 0, lightlocalDir, 0);
-        return new float[]{lightDir[0], lightDir[1], lightDir[2]};
+     * @param result - array of 3 float receiving the direction of the light
+     */
+    public void getDir(final float[] viewmatrix, float[] result) {
+        double rotx = Math.toRadians(transform.getRotx()), roty = Math.toRadians(transform.getRoty());
+        Mat4f.transformDirection(result, 0, viewmatrix, 0,
+                (float) (Math.cos(roty) * Math.cos(rotx)),
+                (float) Math.sin(rotx),
+                (float) (Math.sin(roty) * Math.cos(rotx)));
     }
 
 
@@ -114,8 +114,8 @@ public class Light extends Component {
      */
     private void initLighting(BasicShaders shaders, final float[] modelviewmatrix) {
         shaders.use();
-        position = getPos(modelviewmatrix);
-        direction = getDir(modelviewmatrix);
+        getPos(modelviewmatrix, position);
+        getDir(modelviewmatrix, direction);
         if (shaders.useTypeLight()) {
             if (shaders instanceof MultipleLightingShaders) {
                 MultipleLightingShaders mls = (MultipleLightingShaders) shaders;
@@ -163,9 +163,10 @@ public class Light extends Component {
     @Override
     public void earlyUpdate() {
         super.earlyUpdate();
-        for (MultipleLightingShaders s : ShaderManager.getInstance().getShaders().values()) {
-            float[] modelviewmatrix = new float[16];
-            Matrix.multiplyMM(modelviewmatrix, 0, s.getViewMatrix(), 0, transform.getParentModelViewMatrix(), 0);
+        List<MultipleLightingShaders> shaders = ShaderManager.getInstance().getShaderList();
+        for (int i = 0; i < shaders.size(); i++) {
+            MultipleLightingShaders s = shaders.get(i);
+            Mat4f.multiply(modelviewmatrix, 0, s.getViewMatrix(), 0, transform.getParentModelViewMatrix(), 0);
             initLighting(s, modelviewmatrix);
         }
     }
@@ -1,9 +1,10 @@
 package fr.univ_poitiers.dptinfo.algo3d.shaders;
 
 import android.content.Context;
-import android.opengl.GLES20;
 
 import fr.univ_poitiers.dptinfo.algo3d.MainActivity;
+import fr.univ_poitiers.dptinfo.algo3d.gl.GL;
+import fr.univ_poitiers.dptinfo.algo3d.math.Mat3f;
 
 /**
  * Abstract class to represent shaders (vertex and fragment ones) that allow a
@@ -20,6 +21,10 @@ public abstract class LightingShaders extends BasicShaders {
      * GLSL uniform transformation matrix for normal (from object's space to viewer's space)
      */
     protected int uNormalMatrix;
+    /**
+     * Normal matrix computed from the model view matrix, allocated once to be reused at each draw.
+     */
+    private final float[] normalMatrix = new float[9];
     // ======================================
     // Uniform variables for (a single) light
     // ======================================
@@ -98,86 +103,59 @@ public abstract class LightingShaders extends BasicShaders {
     public void findVariables() {
         super.findVariables();
         // Variables for matrices
-        this.uNormalMatrix = GLES20.glGetUniformLocation(this.shaderprogram, "uNormalMatrix");
+        this.uNormalMatrix = GL.glGetUniformLocation(this.shaderprogram, "uNormalMatrix");
         if (this.uNormalMatrix == -1)
             throw new RuntimeException("uNormalMatrix not found in shaders");
 
         // Variables for light source
-        this.uLighting = GLES20.glGetUniformLocation(this.shaderprogram, "uLighting");
+        this.uLighting = GL.glGetUniformLocation(this.shaderprogram, "uLighting");
         if (this.uLighting == -1) MainActivity.log("uLighting not found in shaders...");
 
-        this.uLightPosition = GLES20.glGetUniformLocation(this.shaderprogram, "uLightPos");
+        this.uLightPosition = GL.glGetUniformLocation(this.shaderprogram, "uLightPos");
         if (this.uLightPosition == -1) throw new RuntimeException("uLightPos not found in shaders");
 
-        this.uAmbiantLight = GLES20.glGetUniformLocation(this.shaderprogram, "uAmbiantLight");
+        this.uAmbiantLight = GL.glGetUniformLocation(this.shaderprogram, "uAmbiantLight");
         if (this.uAmbiantLight == -1)
             throw new RuntimeException("uAmbiantLight not found in shaders");
 
-        this.uLightColor = GLES20.glGetUniformLocation(this.shaderprogram, "uLightColor");
+        this.uLightColor = GL.glGetUniformLocation(this.shaderprogram, "uLightColor");
         if (this.uLightColor == -1) throw new RuntimeException("uLightColor not found in shaders");
 
-        this.uLightSpecular = GLES20.glGetUniformLocation(this.shaderprogram, "uLightSpecular");
+        this.uLightSpecular = GL.glGetUniformLocation(this.shaderprogram, "uLightSpecular");
         if (this.uLightSpecular == -1)
             MainActivity.log("Warning: uLightSpecular not found in shaders");
 
-        this.uConstantAttenuation = GLES20.glGetUniformLocation(this.shaderprogram, "uConstantAttenuation");
+        this.uConstantAttenuation = GL.glGetUniformLocation(this.shaderprogram, "uConstantAttenuation");
         if (this.uConstantAttenuation == -1)
             MainActivity.log("Warning:  uConstantAttenuation not found in shaders...");
-        this.uLinearAttenuation = GLES20.glGetUniformLocation(this.shaderprogram, "uLinearAttenuation");
+        this.uLinearAttenuation = GL.glGetUniformLocation(this.shaderprogram, "uLinearAttenuation");
         if (this.uLinearAttenuation == -1)
             MainActivity.log("Warning:  uLinearAttenuation not found in shaders...");
-        this.uQuadraticAttenuation = GLES20.glGetUniformLocation(this.shaderprogram, "uQuadraticAttenuation");
+        this.uQuadraticAttenuation = GL.glGetUniformLocation(this.shaderprogram, "uQuadraticAttenuation");
         if (this.uQuadraticAttenuation == -1)
             MainActivity.log("Warning: uQuadraticAttenuation not found in shaders...");
 
         // Variables for material
-        this.uNormalizing = GLES20.glGetUniformLocation(this.shaderprogram, "uNormalizing");
+        this.uNormalizing = GL.glGetUniformLocation(this.shaderprogram, "uNormalizing");
         if (this.uNormalizing == -1) MainActivity.log("uNormalizing not found in shaders...");
 
-        this.uMaterialColor = GLES20.glGetUniformLocation(this.shaderprogram, "uMaterialColor");
+        this.uMaterialColor = GL.glGetUniformLocation(this.shaderprogram, "uMaterialColor");
         if (this.uMaterialColor == -1)
             throw new RuntimeException("uMaterialColor not found in shaders");
 
-        this.uMaterialSpecular = GLES20.glGetUniformLocation(this.shaderprogram, "uMaterialSpecular");
+        this.uMaterialSpecular = GL.glGetUniformLocation(this.shaderprogram, "uMaterialSpecular");
         if (this.uMaterialSpecular == -1)
             MainActivity.log("Warning: uMaterialSpecular not found in shaders");
 
-        this.uMaterialShininess = GLES20.glGetUniformLocation(this.shaderprogram, "uMaterialShininess");
+        this.uMaterialShininess = GL.glGetUniformLocation(this.shaderprogram, "uMaterialShininess");
         if (this.uMaterialShininess == -1)
             MainActivity.log("Warning: uMaterialShininess not found in shaders");
 
         // vertex attributes
-        this.aVertexNormal = GLES20.glGetAttribLocation(this.shaderprogram, "aVertexNormal");
+        this.aVertexNormal = GL.glGetAttribLocation(this.shaderprogram, "aVertexNormal");
         if (this.aVertexNormal == -1)
             throw new RuntimeException("aVertexNormal not found in shaders");
-        GLES20.glEnableVertexAttribArray(this.aVertexNormal);
-    }
-
-    /**
-     * Convert a ModelView Matrix into a NormalMatrix
-     * More exactly, the translation and scale component of the transformation must be ignored,
-     * while only the rotation component must be taken into account
-     * OpenGL redbook mainly recommend a transposition of the inverse matrix...
-     *
-     * @param a ModelView matrix (in)
-     * @param b Normal matrix (out)
-     */
-    static void convertMVtoNM(final float[] a, float[] b) {
-        float c = a[0], d = a[1], e = a[2],
-                g = a[4], f = a[5], h = a[6],
-                i = a[8], j = a[9], k = a[10],
-                l = k * f - h * j, o = -k * g + h * i, m = j * g - f * i, n = c * l + d * o + e * m;
-        if (n == 0.) return;
-        n = 1.f / n;
-        b[0] = l * n;
-        b[3] = (-k * d + e * j) * n;
-        b[6] = (h * d - e * f) * n;
-        b[1] = o * n;
-        b[4] = (k * c - e * i) * n;
-        b[7] = (-h * c + e * g) * n;
-        b[2] = m * n;
-        b[5] = (-j * c + d * i) * n;
-        b[8] = (f * c - d * g) * n;
+        GL.glEnableVertexAttribArray(this.aVertexNormal);
     }
 
     // ================
@@ -191,15 +169,13 @@ public abstract class LightingShaders extends BasicShaders {
      */
     @Override
     public void setModelViewMatrix(final float[] matrix) {
-        float[] normal_matrix = new float[9];
-
         // Set modelview matrix
         super.setModelViewMatrix(matrix);
 
         // Set normal matrix according to the modelview matrix.
         // Scaling and translation must not be applied, only rotations...
-        convertMVtoNM(matrix, normal_matrix);
-        GLES20.glUniformMatrix3fv(this.uNormalMatrix, 1, false, normal_matrix, 0);
+        Mat3f.normalMatrix(normalMatrix, 0, matrix, 0);
+        GL.glUniformMatrix3fv(this.uNormalMatrix, 1, false, normalMatrix, 0);
     }
 
     // =====================
@@ -212,7 +188,7 @@ public abstract class LightingShaders extends BasicShaders {
      * @param state on/off value
      */
     public void setLighting(final boolean state) {
-        if (this.uLighting != -1) GLES20.glUniform1i(this.uLighting, state ? 1 : 0);
+        if (this.uLighting != -1) GL.glUniform1i(this.uLighting, state ? 1 : 0);
     }
 
     /**
@@ -221,7 +197,7 @@ public abstract class LightingShaders extends BasicShaders {
      * @param lightpos position of the light
      */
     public void setLightPosition(final float[] lightpos) {
-        GLES20.glUniform3fv(this.uLightPosition, 1, lightpos, 0);
+        GL.glUniform3fv(this.uLightPosition, 1, lightpos, 0);
     }
 
     /**
@@ -230,7 +206,7 @@ public abstract class LightingShaders extends BasicShaders {
      * @param amblight color of light
      */
     public void setAmbiantLight(final float[] amblight) {
-        GLES20.glUniform4fv(this.uAmbiantLight, 1, amblight, 0);
+        GL.glUniform4fv(this.uAmbiantLight, 1, amblight, 0);
     }
 
     /**
@@ -239,7 +215,7 @@ public abstract class LightingShaders extends BasicShaders {
      * @param lightcolor color of the diffuse light component
      */
     public void setLightColor(final float[] lightcolor) {
-        GLES20.glUniform4fv(this.uLightColor, 1, lightcolor, 0);
+        GL.glUniform4fv(this.uLightColor, 1, lightcolor, 0);
     }
 
     /**
@@ -248,7 +224,7 @@ public abstract class LightingShaders extends BasicShaders {
      * @param lightspec specular light component
      */
     public void setLightSpecular(final float[] lightspec) {
-        GLES20.glUniform4fv(this.uLightSpecular, 1, lightspec, 0);
+        GL.glUniform4fv(this.uLightSpecular, 1, lightspec, 0);
     }
 
     /**
@@ -257,9 +233,9 @@ public abstract class LightingShaders extends BasicShaders {
      * @param constant,linear,quadratic constant, linear and quadratic light attenuation
      */
     public void setLightAttenuation(final float constant, final float linear, final float quadratic) {
-        GLES20.glUniform1f(this.uConstantAttenuation, constant);
-        GLES20.glUniform1f(this.uLinearAttenuation, linear);
-        GLES20.glUniform1f(this.uQuadraticAttenuation, quadratic);
+        GL.glUniform1f(this.uConstantAttenuation, constant);
+        GL.glUniform1f(this.uLinearAttenuation, linear);
+        GL.glUniform1f(this.uQuadraticAttenuation, quadratic);
     }
 
     // ==================
@@ -273,7 +249,7 @@ public abstract class LightingShaders extends BasicShaders {
      */
     public void setNormalizing(final boolean state) {
         if (this.uNormalizing != -1)
-            GLES20.glUniform1i(this.uNormalizing, state ? 1 : 0);
+            GL.glUniform1i(this.uNormalizing, state ? 1 : 0);
     }
 
     /**
@@ -282,7 +258,7 @@ public abstract class LightingShaders extends BasicShaders {
      * @param matcolor color to set to the object
      */
     public void setMaterialColor(final float[] matcolor) {
-        GLES20.glUniform4fv(this.uMaterialColor, 1, matcolor, 0);
+        GL.glUniform4fv(this.uMaterialColor, 1, matcolor, 0);
     }
 
     /**
@@ -291,7 +267,7 @@ public abstract class LightingShaders extends BasicShaders {
      * @param matspec specular color to set to the object
      */
     public void setMaterialSpecular(final float[] matspec) {
-        GLES20.glUniform4fv(this.uMaterialSpecular, 1, matspec, 0);
+        GL.glUniform4fv(this.uMaterialSpecular, 1, matspec, 0);
     }
 
     /**
@@ -300,7 +276,7 @@ public abstract class LightingShaders extends BasicShaders {
      * @param shininess shininess of the object
      */
     public void setMaterialShininess(final float shininess) {
-        GLES20.glUniform1f(this.uMaterialShininess, shininess);
+        GL.glUniform1f(this.uMaterialShininess, shininess);
     }
 
     // ===================
@@ -314,7 +290,7 @@ public abstract class LightingShaders extends BasicShaders {
      * @param dtype type of coordinates
      */
     public void setNormalsPointer(int size, int dtype) {
-        GLES20.glVertexAttribPointer(this.aVertexNormal, size, dtype, false, 0, 0);
+        GL.glVertexAttribPointer(this.aVertexNormal, size, dtype, false, 0, 0);
     }
 
 
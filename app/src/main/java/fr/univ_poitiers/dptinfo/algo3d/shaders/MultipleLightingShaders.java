@@ -4,6 +4,8 @@ import android.content.Context;
 import android.opengl.GLES20;
 
 import fr.univ_poitiers.dptinfo.algo3d.MainActivity;
+import fr.univ_poitiers.dptinfo.algo3d.gl.GL;
+import fr.univ_poitiers.dptinfo.algo3d.math.Mat3f;
 
 /**
  * Abstract class to represent shaders (vertex and fragment ones) that allow a
@@ -18,6 +20,10 @@ public abstract class MultipleLightingShaders extends BasicShaders {
      * GLSL uniform transformation matrix for normal (from object's space to viewer's space)
      */
     protected int uNormalMatrix;
+    /**
+     * Normal matrix computed from the model view matrix, allocated once to be reused at each draw.
+     */
+    private final float[] normalMatrix = new float[9];
 
     // =====================================
     // Uniform variables for object material
@@ -38,6 +44,10 @@ public abstract class MultipleLightingShaders extends BasicShaders {
      * GLSL uniform Shininess of the material (for specular component)
      */
     protected int uMaterialShininess;
+    /**
+     * GLSL uniform boolean to decode the normals from the octahedral mapping (or not)
+     */
+    protected int uOctahedralNormals;
     // ================================
     // Attributes to manage GLES arrays
     // ================================
@@ -70,6 +80,28 @@ public abstract class MultipleLightingShaders extends BasicShaders {
      */
     private final int NB_SPOT_LIGHTS = 1;
 
+    /**
+     * Fields of the directional lights in the shader, in the order of their locations in {@link #dirLights}.
+     */
+    private static final String[] DIR_LIGHT_FIELDS = {"direction", "ambient", "diffuse", "specular"};
+
+    /**
+     * Fields of the point lights in the shader, in the order of their locations in {@link #pointLights}.
+     */
+    private static final String[] POINT_LIGHT_FIELDS = {"position", "ambient", "diffuse", "specular", "constant", "linear", "quadratic"};
+
+    /**
+     * Fields of the spot lights in the shader, in the order of their locations in {@link #spotLights}.
+     */
+    private static final String[] SPOT_LIGHT_FIELDS = {"position", "direction", "ambient", "diffuse", "specular", "cutOff", "outerCutOff", "constant", "linear", "quadratic"};
+
+    /**
+     * GLSL uniform locations of the fields of each light, by light then field.
+     * Found once in {@link #findVariables()}, so no name is built when the lights are set at each frame.
+     * Not initialized in their declaration, as {@link #findVariables()} is called by the constructor of the super class.
+     */
+    private int[][] dirLights, pointLights, spotLights;
+
     /**
      * Number of directional lights added in the shader.
      */
@@ -100,63 +132,61 @@ public abstract class MultipleLightingShaders extends BasicShaders {
     public void findVariables() {
         super.findVariables();
         // Variables for matrices
-        this.uNormalMatrix = GLES20.glGetUniformLocation(this.shaderprogram, "uNormalMatrix");
+        this.uNormalMatrix = GL.glGetUniformLocation(this.shaderprogram, "uNormalMatrix");
         if (this.uNormalMatrix == -1)
             throw new RuntimeException("uNormalMatrix not found in shaders");
 
         // Variables for light source
-        this.uLighting = GLES20.glGetUniformLocation(this.shaderprogram, "uLighting");
+        this.uLighting = GL.glGetUniformLocation(this.shaderprogram, "uLighting");
         if (this.uLighting == -1) MainActivity.log("uLighting not found in shaders...");
 
 
         // Variables for material
-        this.uNormalizing = GLES20.glGetUniformLocation(this.shaderprogram, "uNormalizing");
+        this.uNormalizing = GL.glGetUniformLocation(this.shaderprogram, "uNormalizing");
         if (this.uNormalizing == -1) MainActivity.log("uNormalizing not found in shaders...");
 
-        this.uMaterialColor = GLES20.glGetUniformLocation(this.shaderprogram, "uMaterialColor");
+        this.uMaterialColor = GL.glGetUniformLocation(this.shaderprogram, "uMaterialColor");
         if (this.uMaterialColor == -1)
             throw new RuntimeException("uMaterialColor not found in shaders");
 
-        this.uMaterialSpecular = GLES20.glGetUniformLocation(this.shaderprogram, "uMaterialSpecular");
+        this.uMaterialSpecular = GL.glGetUniformLocation(this.shaderprogram, "uMaterialSpecular");
         if (this.uMaterialSpecular == -1)
             MainActivity.log("Warning: uMaterialSpecular not found in shaders");
 
-        this.uMaterialShininess = GLES20.glGetUniformLocation(this.shaderprogram, "uMaterialShininess");
+        this.uMaterialShininess = GL.glGetUniformLocation(this.shaderprogram, "uMaterialShininess");
         if (this.uMaterialShininess == -1)
             MainActivity.log("Warning: uMaterialShininess not found in shaders");
 
+        this.uOctahedralNormals = GL.glGetUniformLocation(this.shaderprogram, "uOctahedralNormals");
+        if (this.uOctahedralNormals == -1)
+            MainActivity.log("Warning: uOctahedralNormals not found in shaders, compressed meshes not supported");
+
         // vertex attributes
-        this.aVertexNormal = GLES20.glGetAttribLocation(this.shaderprogram, "aVertexNormal");
+        this.aVertexNormal = GL.glGetAttribLocation(this.shaderprogram, "aVertexNormal");
         if (this.aVertexNormal == -1)
             throw new RuntimeException("aVertexNormal not found in shaders");
-        GLES20.glEnableVertexAttribArray(this.aVertexNormal);
+        GL.glEnableVertexAttribArray(this.aVertexNormal);
+
+        // Variables for lights
+        this.dirLights = findLightVariables("dirLights", NB_DIR_LIGHTS, DIR_LIGHT_FIELDS);
+        this.pointLights = findLightVariables("pointLights", NB_POINT_LIGHTS, POINT_LIGHT_FIELDS);
+        this.spotLights = findLightVariables("spotLights", NB_SPOT_LIGHTS, SPOT_LIGHT_FIELDS);
     }
 
     /**
-     * Convert a ModelView Matrix into a NormalMatrix
-     * More exactly, the translation and scale component of the transformation must be ignored,
-     * while only the rotation component must be taken into account
-     * OpenGL redbook mainly recommend a transposition of the inverse matrix...
+     * Get the uniform locations of the fields of each light of a GLSL array of lights.
      *
-     * @param a ModelView matrix (in)
-     * @param b Normal matrix (out)
-     */
-    static void convertMVtoNM(final float[] a, float[] b) {
-        float c = a[0], d = a[1], e = a[2],
-                g = a[4], f = a[5], h = a[6],
-                i = a[8], j = a[9], k = a[10],
-                l = k * f - h * j, o = -k * g + h * i, m = j * g - f * i, n = c * l + d * o + e * m;
-        if (n == 0.) return;
-        n = 1.f / n;
-        b[0] = l * n;
-        b[3] = (-k * d + e * j) * n;
-        b[6] = (h * d - e * f) * n;
-        b[1] = o * n;
-        b[4] = (k * c - e * i) * n;
-        b[7] = (-h * c + e * g) * n;
-        b[2] = m * n;
-        b[5] = (-j * c + d * i) * n;
-        b[8] = (f * c - d * g) * n;
+     * @param array  name of the array in the shader
+     * @param count  number of lights in the array
+     * @param fields names of the fields of a light
+     * @return the locations by light then field
+     */
+    private int[][] findLightVariables(String array, int count, String[] fields) {
+        int[][] locations = new int[count][fields.length];
+        for (int l = 0; l < count; l++)
+            for (int f = 0; f < fields.length; f++)
+                locations[l][f] = GL.glGetUniformLocation(this.shaderprogram, array + "[" + l + "]." + fields[f]);
+        return locations;
     }
 
     // ================
@@ -170,15 +200,13 @@ public abstract class MultipleLightingShaders extends BasicShaders {
      */
     @Override
     public void setModelViewMatrix(final float[] matrix) {
-        float[] normal_matrix = new float[9];
-
         // Set modelview matrix
         super.setModelViewMatrix(matrix);
 
         // Set normal matrix according to the modelview matrix.
         // Scaling and translation must not be applied, only rotations...
-        convertMVtoNM(matrix, normal_matrix);
-        GLES20.glUniformMatrix3fv(this.uNormalMatrix, 1, false, normal_matrix, 0);
+        Mat3f.normalMatrix(normalMatrix, 0, matrix, 0);
+        GL.glUniformMatrix3fv(this.uNormalMatrix, 1, false, normalMatrix, 0);
     }
 
 
@@ -193,7 +221,7 @@ public abstract class MultipleLightingShaders extends BasicShaders {
      */
     public void setNormalizing(final boolean state) {
         if (this.uNormalizing != -1)
-            GLES20.glUniform1i(this.uNormalizing, state ? 1 : 0);
+            GL.glUniform1i(this.uNormalizing, state ? 1 : 0);
     }
 
     /**
@@ -202,7 +230,7 @@ public abstract class MultipleLightingShaders extends BasicShaders {
      * @param matcolor color to set to the object
      */
     public void setMaterialColor(final float[] matcolor) {
-        GLES20.glUniform4fv(this.uMaterialColor, 1, matcolor, 0);
+        GL.glUniform4fv(this.uMaterialColor, 1, matcolor, 0);
     }
 
     /**
@@ -211,7 +239,7 @@ public abstract class MultipleLightingShaders extends BasicShaders {
      * @param matspec specular color to set to the object
      */
     public void setMaterialSpecular(final float[] matspec) {
-        GLES20.glUniform4fv(this.uMaterialSpecular, 1, matspec, 0);
+        GL.glUniform4fv(this.uMaterialSpecular, 1, matspec, 0);
     }
 
     /**
@@ -220,7 +248,7 @@ public abstract class MultipleLightingShaders extends BasicShaders {
      * @param shininess shininess of the object
      */
     public void setMaterialShininess(final float shininess) {
-        GLES20.glUniform1f(this.uMaterialShininess, shininess);
+        GL.glUniform1f(this.uMaterialShininess, shininess);
     }
 
     // ===================
@@ -234,7 +262,30 @@ public abstract class MultipleLightingShaders extends BasicShaders {
      * @param dtype type of coordinates
      */
     public void setNormalsPointer(int size, int dtype) {
-        GLES20.glVertexAttribPointer(this.aVertexNormal, size, dtype, false, 0, 0);
+        GL.glVertexAttribPointer(this.aVertexNormal, size, dtype, false, 0, 0);
+    }
+
+    /**
+     * Set normal array of the desired VBO, interleaved with other attributes, for future drawings.
+     * Integer coordinates are normalized, see {@link #setOctahedralNormals(boolean)}.
+     *
+     * @param size   number of coordinates by normals
+     * @param dtype  type of coordinates
+     * @param stride offset in bytes between two vertices
+     * @param offset offset in bytes of the normal in a vertex
+     */
+    public void setNormalsPointer(int size, int dtype, int stride, int offset) {
+        GL.glVertexAttribPointer(this.aVertexNormal, size, dtype, dtype != GLES20.GL_FLOAT, stride, offset);
+    }
+
+    /**
+     * Set the decoding of the normals from the octahedral mapping on/off.
+     * Used by the compressed meshes, whose normals are given as 2 coordinates.
+     *
+     * @param state on/off value
+     */
+    public void setOctahedralNormals(final boolean state) {
+        GL.glUniform1i(this.uOctahedralNormals, state ? 1 : 0);
     }
 
     // =======================
@@ -247,7 +298,7 @@ public abstract class MultipleLightingShaders extends BasicShaders {
      * @param state on/off value
      */
     public void setLighting(final boolean state) {
-        if (this.uLighting != -1) GLES20.glUniform1i(this.uLighting, state ? 1 : 0);
+        if (this.uLighting != -1) GL.glUniform1i(this.uLighting, state ? 1 : 0);
     }
 
 
@@ -259,10 +310,11 @@ public abstract class MultipleLightingShaders extends BasicShaders {
      */
     public void setDirLight(Light light) {
         if (curr_dir < NB_DIR_LIGHTS) {
-            GLES20.glUniform3fv(GLES20.glGetUniformLocation(this.shaderprogram, "dirLights[" + curr_dir + "].direction"), 1, light.getDirection(), 0);
-            GLES20.glUniform4fv(GLES20.glGetUniformLocation(this.shaderprogram, "dirLights[" + curr_dir + "].ambient"), 1, light.getAmbient(), 0);
-            GLES20.glUniform4fv(GLES20.glGetUniformLocation(this.shaderprogram, "dirLights[" + curr_dir + "].diffuse"), 1, light.getDiffuse(), 0);
-            GLES20.glUniform4fv(GLES20.glGetUniformLocation(this.shaderprogram, "dirLights[" + curr_dir + "].specular"), 1, light.getSpecular(), 0);
+            int[] u = dirLights[curr_dir];
+            GL.glUniform3fv(u[0], 1, light.getDirection(), 0);
+            GL.glUniform4fv(u[1], 1, light.getAmbient(), 0);
+            GL.glUniform4fv(u[2], 1, light.getDiffuse(), 0);
+            GL.glUniform4fv(u[3], 1, light.getSpecular(), 0);
             curr_dir++;
         } else
             MainActivity.log("More directional lights in Scene than in shaders, modify the shaders to take this light in account.");
@@ -276,13 +328,14 @@ public abstract class MultipleLightingShaders extends BasicShaders {
      */
     public void setPointLight(Light light) {
         if (curr_point < NB_POINT_LIGHTS) {
-            GLES20.glUniform3fv(GLES20.glGetUniformLocation(this.shaderprogram, "pointLights[" + curr_point + "].position"), 1, light.getPosition(), 0);
-            GLES20.glUniform4fv(GLES20.glGetUniformLocation(this.shaderprogram, "pointLights[" + curr_point + "].ambient"), 1, light.getAmbient(), 0);
-            GLES20.glUniform4fv(GLES20.glGetUniformLocation(this.shaderprogram, "pointLights[" + curr_point + "].diffuse"), 1, light.getDiffuse(), 0);
-            GLES20.glUniform4fv(GLES20.glGetUniformLocation(this.shaderprogram, "pointLights[" + curr_point + "].specular"), 1, light.getSpecular(), 0);
-            GLES20.glUniform1f(GLES20.glGetUniformLocation(this.shaderprogram, "pointLights[" + curr_point + "].constant"), light.getConstant());
-            GLES20.glUniform1f(GLES20.glGetUniformLocation(this.shaderprogram, "pointLights[" + curr_point + "].linear"), light.getLinear());
-            GLES20.glUniform1f(GLES20.glGetUniformLocation(this.shaderprogram, "pointLights[" + curr_point + "].quadratic"), light.getQuadratic());
+            int[] u = pointLights[curr_point];
+            GL.glUniform3fv(u[0], 1, light.getPosition(), 0);
+            GL.glUniform4fv(u[1], 1, light.getAmbient(), 0);
+            GL.glUniform4fv(u[2], 1, light.getDiffuse(), 0);
+            GL.glUniform4fv(u[3], 1, light.getSpecular(), 0);
+            GL.glUniform1f(u[4], light.getConstant());
+            GL.glUniform1f(u[5], light.getLinear());
+            GL.glUniform1f(u[6], light.getQuadratic());
             curr_point++;
         } else
             MainActivity.log("More point lights in Scene than in shaders, modify the shaders to take this light in account.");
@@ -297,16 +350,17 @@ public abstract class MultipleLightingShaders extends BasicShaders {
      */
     public void setSpotLight(Light light) {
         if (curr_spot < NB_SPOT_LIGHTS) {
-            GLES20.glUniform3fv(GLES20.glGetUniformLocation(this.shaderprogram, "spotLights[" + curr_spot + "].position"), 1, light.getPosition(), 0);
-            GLES20.glUniform3fv(GLES20.glGetUniformLocation(this.shaderprogram, "spotLights[" + curr_spot + "].direction"), 1, light.getDirection(), 0);
-            GLES20.glUniform4fv(GLES20.glGetUniformLocation(this.shaderprogram, "spotLights[" + curr_spot + "].ambient"), 1, light.getAmbient(), 0);
-            GLES20.glUniform4fv(GLES20.glGetUniformLocation(this.shaderprogram, "spotLights[" + curr_spot + "].diffuse"), 1, light.getDiffuse(), 0);
-            GLES20.glUniform4fv(GLES20.glGetUniformLocation(this.shaderprogram, "spotLights[" + curr_spot + "].specular"), 1, light.getSpecular(), 0);
-            GLES20.glUniform1f(GLES20.glGetUniformLocation(this.shaderprogram, "spotLights[" + curr_spot + "].cutOff"), light.getCutOff());
-            GLES20.glUniform1f(GLES20.glGetUniformLocation(this.shaderprogram, "spotLights[" + curr_spot + "].outerCutOff"), light.getOuterCutOff());
-            GLES20.glUniform1f(GLES20.glGetUniformLocation(this.shaderprogram, "spotLights[" + curr_spot + "].constant"), light.getConstant());
-            GLES20.glUniform1f(GLES20.glGetUniformLocation(this.shaderprogram, "spotLights[" + curr_spot + "].linear"), light.getLinear());
-            GLES20.glUniform1f(GLES20.glGetUniformLocation(this.shaderprogram, "spotLights[" + curr_spot + "].quadratic"), light.getQuadratic());
+            int[] u = spotLights[curr_spot];
+            GL.glUniform3fv(u[0], 1, light.getPosition(), 0);
+            GL.glUniform3fv(u[1], 1, light.getDirection(), 0);
+            GL.glUniform4fv(u[2], 1, light.getAmbient(), 0);
+            GL.glUniform4fv(u[3], 1, light.getDiffuse(), 0);
+            GL.glUniform4fv(u[4], 1, light.getSpecular(), 0);
+            GL.glUniform1f(u[5], light.getCutOff());
+            GL.glUniform1f(u[6], light.getOuterCutOff());
+            GL.glUniform1f(u[7], light.getConstant());
+            GL.glUniform1f(u[8], light.getLinear());
+            GL.glUniform1f(u[9], light.getQuadratic());
             curr_spot++;
         } else
             MainActivity.log("More spot lights in Scene than in shaders, modify the shaders to take this light in account.");
@@ -328,6 +382,16 @@ public abstract class MultipleLightingShaders extends BasicShaders {
      */
     public void setTexturePointer(int size, int dtype) { }
 
+    /**
+     * Not implemented. To be redefined by {@link TexturesShaders}.
+     */
+    public void setTexturePointer(int size, int dtype, int stride, int offset) { }
+
+    /**
+     * Not implemented. To be redefined by {@link TexturesShaders}.
+     */
+    public void setTextureDequantization(final float[] dequantization) { }
+
     /**
      * Not implemented. To be redefined by {@link TexturesShaders}.
      */
@@ -1,7 +1,8 @@
 package fr.univ_poitiers.dptinfo.algo3d.shaders;
 
 import android.content.Context;
-import android.opengl.GLES20;
+
+import fr.univ_poitiers.dptinfo.algo3d.gl.GL;
 
 /**
  * Implementation class to manipulate shaders for non-lighted objects (uniform color).
@@ -65,7 +66,7 @@ public class NoLightShaders extends BasicShaders {
         super.findVariables();
 
         // Variables for material
-        this.uColor = GLES20.glGetUniformLocation(this.shaderprogram, "uColor");
+        this.uColor = GL.glGetUniformLocation(this.shaderprogram, "uColor");
     }
 
 
@@ -79,6 +80,6 @@ public class NoLightShaders extends BasicShaders {
      * @param color Color of the object
      */
     public void setColor(final float[] color) {
-        GLES20.glUniform4fv(this.uColor, 1, color, 0);
+        GL.glUniform4fv(this.uColor, 1, color, 0);
     }
 }
@@ -1,7 +1,9 @@
 package fr.univ_poitiers.dptinfo.algo3d.shaders;
 
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -14,6 +16,11 @@ public class ShaderManager {
      */
     private Map<Class<? extends MultipleLightingShaders>, MultipleLightingShaders> shaders = new HashMap<>();
 
+    /**
+     * The shaders of the map in a list, to be iterated at each frame with an index, without allocating an iterator.
+     */
+    private final List<MultipleLightingShaders> shaderList = new ArrayList<>();
+
     /**
      * Shader to be used for the shadow map.
      */
@@ -64,11 +71,31 @@ public class ShaderManager {
     }
 
     /**
-     * Add the given shaders to the map
+     * Returns the shaders of the map as a list, not to be modified.
+     * @return list of shaders
+     */
+    public List<MultipleLightingShaders> getShaderList() {
+        return shaderList;
+    }
+
+    /**
+     * Remove all the shaders.
+     */
+    public void clearShaders() {
+        shaders.clear();
+        shaderList.clear();
+    }
+
+    /**
+     * Add the given shaders to the map, replacing the shaders of the same type
      * @param shaders
      */
     public void addShaders(MultipleLightingShaders shaders) {
-        this.shaders.put(shaders.getClass(), shaders);
+        MultipleLightingShaders previous = this.shaders.put(shaders.getClass(), shaders);
+        if (previous != null)
+            shaderList.set(shaderList.indexOf(previous), shaders);
+        else
+            shaderList.add(shaders);
     }
 
     /**
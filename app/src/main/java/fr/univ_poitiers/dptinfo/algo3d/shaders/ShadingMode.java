@@ -1,9 +1,11 @@
 package fr.univ_poitiers.dptinfo.algo3d.shaders;
 
 /**
- * Enum to differentiate the type of normal calculation for flat or smooth shading.
+ * Enum to differentiate the type of normal calculation for flat, smooth or crease shading.
+ * The crease shading is smooth except along the edges sharper than a crease angle, which stay hard.
  */
 public enum ShadingMode {
     FLAT_SHADING,
-    SMOOTH_SHADING
+    SMOOTH_SHADING,
+    CREASE_SHADING
 }
@@ -1,7 +1,8 @@
 package fr.univ_poitiers.dptinfo.algo3d.shaders;
 
 import android.content.Context;
-import android.opengl.GLES20;
+
+import fr.univ_poitiers.dptinfo.algo3d.gl.GL;
 
 /**
  * Shader class to use multiple lights with the blinn phong formula, with textures and some shadows for directional lights.
@@ -42,15 +43,15 @@ public class ShadowShaders extends TexturesShaders {
     public void findVariables() {
         super.findVariables();
 
-        this.lightSpaceMatrix = GLES20.glGetUniformLocation(this.shaderprogram, "lightSpaceMatrix");
+        this.lightSpaceMatrix = GL.glGetUniformLocation(this.shaderprogram, "lightSpaceMatrix");
         if (this.lightSpaceMatrix == -1)
             throw new RuntimeException("lightSpaceMatrix not found in shaders");
 
-        this.uModelMatrix = GLES20.glGetUniformLocation(this.shaderprogram, "uModelMatrix");
+        this.uModelMatrix = GL.glGetUniformLocation(this.shaderprogram, "uModelMatrix");
         if (this.uModelMatrix == -1)
             throw new RuntimeException("uModelMatrix not found in shaders");
 
-        this.shadowMap = GLES20.glGetUniformLocation(this.shaderprogram, "shadowMap");
+        this.shadowMap = GL.glGetUniformLocation(this.shaderprogram, "shadowMap");
         if (this.shadowMap == -1) throw new RuntimeException("shadowMap not found in shaders");
 
     }
@@ -72,7 +73,7 @@ public class ShadowShaders extends TexturesShaders {
      */
     @Override
     public void setLightSpaceMatrix(float[] matrix) {
-        GLES20.glUniformMatrix4fv(this.lightSpaceMatrix, 1, false, matrix, 0);
+        GL.glUniformMatrix4fv(this.lightSpaceMatrix, 1, false, matrix, 0);
     }
 
     /**
@@ -81,7 +82,7 @@ public class ShadowShaders extends TexturesShaders {
      */
     @Override
     public void setModelMatrix(float[] matrix) {
-        GLES20.glUniformMatrix4fv(this.uModelMatrix, 1, false, matrix, 0);
+        GL.glUniformMatrix4fv(this.uModelMatrix, 1, false, matrix, 0);
     }
 
     /**
@@ -90,7 +91,7 @@ public class ShadowShaders extends TexturesShaders {
      */
     @Override
     public void setDepthMap(int depthMap) {
-        GLES20.glUniform1i(this.shadowMap, depthMap);
+        GL.glUniform1i(this.shadowMap, depthMap);
     }
 
 }
@@ -3,6 +3,9 @@ package fr.univ_poitiers.dptinfo.algo3d.shaders;
 import android.content.Context;
 import android.opengl.GLES20;
 
+import fr.univ_poitiers.dptinfo.algo3d.MainActivity;
+import fr.univ_poitiers.dptinfo.algo3d.gl.GL;
+
 /**
  * Shader class to use multiple lights with the blinn phong formula, with textures.
  */
@@ -23,6 +26,11 @@ public class TexturesShaders extends MultipleLightingShaders {
      */
     protected int uTexturing;
 
+    /**
+     * GLSL uniform scale (xy) and offset (zw) of the texture coordinates.
+     */
+    protected int uTextureDequantization;
+
 
     /**
      * Constructor. nothing to do, everything is done in the super class...
@@ -39,15 +47,18 @@ public class TexturesShaders extends MultipleLightingShaders {
     @Override
     public void findVariables() {
         super.findVariables();
-        this.aVertexTexture = GLES20.glGetAttribLocation(this.shaderprogram, "aVertexTexture");
+        this.aVertexTexture = GL.glGetAttribLocation(this.shaderprogram, "aVertexTexture");
         if (this.aVertexTexture == -1)
             throw new RuntimeException("aVertexTexture not found in shaders");
-        GLES20.glEnableVertexAttribArray(this.aVertexTexture);
-        this.uTextureUnit = GLES20.glGetUniformLocation(this.shaderprogram, "uTextureUnit");
+        GL.glEnableVertexAttribArray(this.aVertexTexture);
+        this.uTextureUnit = GL.glGetUniformLocation(this.shaderprogram, "uTextureUnit");
         if (this.uTextureUnit == -1)
             throw new RuntimeException("uTextureUnit not found in shaders");
-        this.uTexturing = GLES20.glGetUniformLocation(this.shaderprogram, "uTexturing");
+        this.uTexturing = GL.glGetUniformLocation(this.shaderprogram, "uTexturing");
         if (this.uTexturing == -1) throw new RuntimeException("uTexturing not found in shaders");
+        this.uTextureDequantization = GL.glGetUniformLocation(this.shaderprogram, "uTextureDequantization");
+        if (this.uTextureDequantization == -1)
+            MainActivity.log("Warning: uTextureDequantization not found in shaders, compressed meshes not supported");
 
 
     }
@@ -70,7 +81,32 @@ public class TexturesShaders extends MultipleLightingShaders {
      */
     @Override
     public void setTexturePointer(int size, int dtype) {
-        GLES20.glVertexAttribPointer(this.aVertexTexture, size, dtype, false, 0, 0);
+        GL.glVertexAttribPointer(this.aVertexTexture, size, dtype, false, 0, 0);
+    }
+
+    /**
+     * Set texture coordinate array of the desired VBO, interleaved with other attributes, for future drawings.
+     * Integer coordinates are normalized, see {@link #setTextureDequantization(float[])}.
+     *
+     * @param size   number of coordinates by texture
+     * @param dtype  type of coordinates
+     * @param stride offset in bytes between two vertices
+     * @param offset offset in bytes of the texture coordinates in a vertex
+     */
+    @Override
+    public void setTexturePointer(int size, int dtype, int stride, int offset) {
+        GL.glVertexAttribPointer(this.aVertexTexture, size, dtype, dtype != GLES20.GL_FLOAT, stride, offset);
+    }
+
+    /**
+     * Set the transformation applied to the texture coordinates : coordinates * scale + offset.
+     * Used by the compressed meshes, whose texture coordinates are quantized in their bounding box.
+     *
+     * @param dequantization scale (x, y) and offset (z, w), (1, 1, 0, 0) for not compressed meshes
+     */
+    @Override
+    public void setTextureDequantization(final float[] dequantization) {
+        GL.glUniform4fv(this.uTextureDequantization, 1, dequantization, 0);
     }
 
     /**
@@ -79,7 +115,7 @@ public class TexturesShaders extends MultipleLightingShaders {
      */
     @Override
     public void setTextureUnit(final int textureUnit) {
-        GLES20.glUniform1i(this.uTextureUnit, textureUnit);
+        GL.glUniform1i(this.uTextureUnit, textureUnit);
     }
 
     /**
@@ -89,6 +125,6 @@ public class TexturesShaders extends MultipleLightingShaders {
      */
     @Override
     public void setTexturing(final boolean state) {
-        if (this.uTexturing != -1) GLES20.glUniform1i(this.uTexturing, state ? 1 : 0);
+        if (this.uTexturing != -1) GL.glUniform1i(this.uTexturing, state ? 1 : 0);
     }
 }
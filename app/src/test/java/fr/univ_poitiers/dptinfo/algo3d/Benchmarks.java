@@ -0,0 +1,56 @@
+package fr.univ_poitiers.dptinfo.algo3d;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Helper of the microbenchmarks run as JVM tests, the classes whose name ends with Benchmark.
+ * They are excluded from the unit tests by default, and run alone with ./gradlew testDebugUnitTest -Pbenchmarks --tests '*Benchmark' -i to see their output.
+ * Each measure is repeated after a warm-up of the JIT, and the median is kept,
+ * so the numbers compare the implementations on the same machine, not the absolute speed on a device.
+ */
+public final class Benchmarks {
+
+    /**
+     * Number of runs before the measure, to let the JIT compile the code.
+     */
+    private static final int WARMUP_RUNS = 5;
+
+    /**
+     * Number of measured runs.
+     */
+    private static final int MEASURED_RUNS = 10;
+
+    /**
+     * Constructor. Not to be used, all methods are static.
+     */
+    private Benchmarks() {
+    }
+
+    /**
+     * Measure the median time of a task.
+     * @param task - the task to measure
+     * @return the median time of a run, in nanoseconds
+     */
+    public static long median(Runnable task) {
+        for (int i = 0; i < WARMUP_RUNS; i++)
+            task.run();
+        long[] times = new long[MEASURED_RUNS];
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            long start = System.nanoTime();
+            task.run();
+            times[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+        return times[MEASURED_RUNS / 2];
+    }
+
+    /**
+     * Print a line of result.
+     * @param format - format of the line, see {@link String#format(Locale, String, Object...)}
+     * @param args - values of the line
+     */
+    public static void report(String format, Object... args) {
+        System.out.println(String.format(Locale.ROOT, format, args));
+    }
+}
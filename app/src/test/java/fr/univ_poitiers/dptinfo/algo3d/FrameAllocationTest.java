@@ -0,0 +1,203 @@
+package fr.univ_poitiers.dptinfo.algo3d;
+
+import android.content.Context;
+import android.opengl.GLSurfaceView;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import fr.univ_poitiers.dptinfo.algo3d.gameobject.GameObject;
+import fr.univ_poitiers.dptinfo.algo3d.gl.GL;
+import fr.univ_poitiers.dptinfo.algo3d.gl.GLBackend;
+import fr.univ_poitiers.dptinfo.algo3d.gl.RecordingBackend;
+import fr.univ_poitiers.dptinfo.algo3d.mesh.Cube;
+import fr.univ_poitiers.dptinfo.algo3d.mesh.Donut;
+import fr.univ_poitiers.dptinfo.algo3d.mesh.LODGroup;
+import fr.univ_poitiers.dptinfo.algo3d.mesh.Material;
+import fr.univ_poitiers.dptinfo.algo3d.mesh.MeshBufferRegistry;
+import fr.univ_poitiers.dptinfo.algo3d.mesh.Sphere;
+import fr.univ_poitiers.dptinfo.algo3d.shaders.DepthShader;
+import fr.univ_poitiers.dptinfo.algo3d.shaders.Light;
+import fr.univ_poitiers.dptinfo.algo3d.shaders.LightType;
+import fr.univ_poitiers.dptinfo.algo3d.shaders.ShaderManager;
+import fr.univ_poitiers.dptinfo.algo3d.shaders.ShadowShaders;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test that the frames of a scene do not allocate memory once started, the OpenGL calls being counted by a {@link RecordingBackend}.
+ * The frames are drawn by {@link MyGLRenderer#onDrawFrame} : the shadow pass, then the reflection and the main passes.
+ * The test JVM runs without escape analysis, see the build, so an allocation is measured even when the desktop JIT would remove it and ART would not.
+ */
+public class FrameAllocationTest {
+
+    /**
+     * Shaders drawing the meshes, whose sources are not compiled by the recording backend.
+     */
+    private static class TestShaders extends ShadowShaders {
+
+        /**
+         * Constructor.
+         */
+        TestShaders() {
+            super(null);
+        }
+
+        /**
+         * Create a program from empty shaders.
+         * @param context - not used
+         * @return the program handle
+         */
+        @Override
+        public int createProgram(Context context) {
+            return initializeShaders("void main() {}", "void main() {}");
+        }
+    }
+
+    /**
+     * Number of frames measured.
+     */
+    private static final int FRAMES = 10000;
+
+    /**
+     * Backend counting the calls of the test.
+     */
+    private RecordingBackend backend;
+    /**
+     * Backend before the test, restored after it.
+     */
+    private GLBackend previous;
+    /**
+     * Objects of the scene.
+     */
+    private final List<GameObject> gameObjects = new ArrayList<>();
+    /**
+     * Scene of the objects.
+     */
+    private Scene scene;
+    /**
+     * Renderer drawing the frames.
+     */
+    private MyGLRenderer renderer;
+    /**
+     * Parent of the donut, rotated at each frame.
+     */
+    private GameObject pivot;
+    /**
+     * Object with levels of detail, moved away from the camera at each frame.
+     */
+    private GameObject lod;
+
+    /**
+     * Create the shaders and the objects of the scene.
+     */
+    @Before
+    public void setUp() {
+        previous = GL.getBackend();
+        backend = new RecordingBackend();
+        backend.setLogging(false);
+        GL.setBackend(backend);
+        GpuResourceTracker.getInstance().forgetAll();
+        MeshBufferRegistry.getInstance().clear();
+        ShaderManager.getInstance().clearShaders();
+        ShaderManager.getInstance().addShaders(new TestShaders());
+        ShaderManager.getInstance().setDepthShader(new DepthShader(null) {
+            @Override
+            public int createProgram(Context context) {
+                return initializeShaders("void main() {}", "void main() {}");
+            }
+        });
+
+        pivot = new GameObject();
+        GameObject donut = new GameObject();
+        donut.setMesh(new Donut(1.F, 0.3F, 50, 20));
+        donut.addMeshRenderer(material(MyGLRenderer.cyan));
+        donut.getTransform().posx(2.F);
+        pivot.addChildren(donut);
+        gameObjects.add(pivot);
+
+        GameObject cube = new GameObject();
+        cube.setMesh(new Cube(1.F));
+        cube.addMeshRenderer(material(MyGLRenderer.magenta));
+        gameObjects.add(cube);
+
+        lod = new GameObject();
+        lod.addComponent(LODGroup.class);
+        lod.getCompotent(LODGroup.class).setLevels(new Sphere(32, 32).generateLODChain(0.5F, 0.2F), new float[]{0.6F, 0.3F, 0.F});
+        lod.addMeshRenderer(material(MyGLRenderer.white));
+        gameObjects.add(lod);
+
+        LightType[] types = {LightType.DIRECTIONAL, LightType.POINT, LightType.SPOT};
+        for (LightType type : types) {
+            GameObject light = new GameObject();
+            light.addComponent(Light.class);
+            light.getCompotent(Light.class).setType(type);
+            light.getTransform().posy(3.F).rotx(-60.F);
+            gameObjects.add(light);
+        }
+
+        for (GameObject go : gameObjects)
+            go.start();
+        scene = new Scene(gameObjects, gameObjects.get(gameObjects.size() - types.length));
+        renderer = new MyGLRenderer(new GLSurfaceView(null), scene);
+        renderer.onSurfaceChanged(null, 800, 600);
+    }
+
+    /**
+     * Destroy the objects, then restore the shaders and the backend.
+     */
+    @After
+    public void tearDown() {
+        scene.finish();
+        MeshBufferRegistry.getInstance().clear();
+        ShaderManager.getInstance().clearShaders();
+        ShaderManager.getInstance().setDepthShader(null);
+        GpuResourceTracker.getInstance().forgetAll();
+        GL.setBackend(previous);
+    }
+
+    /**
+     * Create a material drawn by the {@link TestShaders}.
+     * @param color - color of the material
+     * @return the material
+     */
+    private static Material material(float[] color) {
+        Material material = new Material(color);
+        material.setShader(TestShaders.class);
+        return material;
+    }
+
+    /**
+     * Render a frame with the renderer after moving the objects.
+     * @param frame - number of the frame
+     */
+    private void frame(int frame) {
+        backend.resetFrame();
+        pivot.getTransform().roty(frame % 360);
+        lod.getTransform().posz(-(frame % 100) * 0.5F);
+        renderer.onDrawFrame(null);
+    }
+
+    /**
+     * Once the JIT has compiled the frame, moving the objects, choosing the levels of detail, setting the lights and drawing do not allocate.
+     */
+    @Test
+    public void framesDoNotAllocate() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        for (int f = 0; f < 10000; f++)
+            frame(f);
+        assertTrue(backend.getDrawCalls() > 0);
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int f = 0; f < FRAMES; f++)
+            frame(f);
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+        //less than a byte per frame, the compilation of the methods may allocate a few objects once
+        assertTrue(allocated + " bytes allocated by " + FRAMES + " frames", allocated < FRAMES);
+    }
+}
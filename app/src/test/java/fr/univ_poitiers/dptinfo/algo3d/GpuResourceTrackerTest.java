@@ -0,0 +1,123 @@
+package fr.univ_poitiers.dptinfo.algo3d;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import fr.univ_poitiers.dptinfo.algo3d.gl.GL;
+import fr.univ_poitiers.dptinfo.algo3d.gl.GLBackend;
+import fr.univ_poitiers.dptinfo.algo3d.gl.RecordingBackend;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the {@link GpuResourceTracker}, the OpenGL calls being recorded by a {@link RecordingBackend}.
+ */
+public class GpuResourceTrackerTest {
+
+    /**
+     * Backend recording the calls of the test.
+     */
+    private RecordingBackend backend;
+    /**
+     * Backend before the test, restored after it.
+     */
+    private GLBackend previous;
+    /**
+     * The tracker, empty at the beginning of each test.
+     */
+    private GpuResourceTracker tracker;
+
+    /**
+     * Record the OpenGL calls and start with an empty tracker.
+     */
+    @Before
+    public void setUp() {
+        previous = GL.getBackend();
+        backend = new RecordingBackend();
+        GL.setBackend(backend);
+        tracker = GpuResourceTracker.getInstance();
+        tracker.forgetAll();
+    }
+
+    /**
+     * Restore the backend and empty the tracker.
+     */
+    @After
+    public void tearDown() {
+        tracker.forgetAll();
+        GL.setBackend(previous);
+    }
+
+    /**
+     * Create a buffer and track it.
+     * @param owner - owner of the buffer
+     * @param size - size of the buffer in bytes
+     * @return the name of the buffer
+     */
+    private int createBuffer(String owner, long size) {
+        int[] ids = new int[1];
+        GL.glGenBuffers(1, ids, 0);
+        tracker.track(GpuResourceTracker.Category.BUFFER, ids[0], owner);
+        tracker.setSize(GpuResourceTracker.Category.BUFFER, ids[0], size);
+        return ids[0];
+    }
+
+    /**
+     * The tracked objects are counted with their size and listed in the report, and deleted on the GPU with the tracker.
+     */
+    @Test
+    public void createDeleteReport() {
+        int vertices = createBuffer("Cube vertices", 1000);
+        int triangles = createBuffer("Cube triangles", 200);
+        assertEquals(2, tracker.getCount(GpuResourceTracker.Category.BUFFER));
+        assertEquals(1200, tracker.getBytes(GpuResourceTracker.Category.BUFFER));
+        assertEquals(1200, tracker.getTotalBytes());
+        String report = tracker.getReport(true);
+        assertTrue(report, report.contains("BUFFER : 2 objects"));
+        assertTrue(report, report.contains(vertices + " (Cube vertices) : 1000 bytes"));
+        assertTrue(report, report.contains(triangles + " (Cube triangles) : 200 bytes"));
+
+        tracker.delete(GpuResourceTracker.Category.BUFFER, vertices);
+        assertEquals(1, backend.getCallCount("glDeleteBuffers"));
+        assertEquals(1, tracker.getCount(GpuResourceTracker.Category.BUFFER));
+        assertEquals(200, tracker.getBytes(GpuResourceTracker.Category.BUFFER));
+        //an object deleted twice, or created in a previous context, is not deleted again
+        tracker.delete(GpuResourceTracker.Category.BUFFER, vertices);
+        assertEquals(1, backend.getCallCount("glDeleteBuffers"));
+    }
+
+    /**
+     * The shadow map, generated again each time the surface changes, deletes the previous frame buffer and depth texture.
+     */
+    @Test
+    public void rotationDoesNotLeakShadowMap() {
+        MyGLRenderer renderer = new MyGLRenderer(null, null);
+        for (int i = 0; i < 3; i++)
+            renderer.generateShadowFBO();
+        assertEquals(1, tracker.getCount(GpuResourceTracker.Category.FRAMEBUFFER));
+        assertEquals(1, tracker.getCount(GpuResourceTracker.Category.TEXTURE));
+        assertEquals(2048L * 2048 * Integer.BYTES, tracker.getBytes(GpuResourceTracker.Category.TEXTURE));
+        assertEquals(2, backend.getCallCount("glDeleteFramebuffers"));
+        assertEquals(2, backend.getCallCount("glDeleteTextures"));
+        assertTrue(backend.getCalls().contains("glDeleteFramebuffers(1, [" + (renderer.fboId[0] - 2) + "], 0)"));
+    }
+
+    /**
+     * The objects still alive at the end are listed with their owner, then all deleted.
+     */
+    @Test
+    public void deleteAllFreesLeftovers() {
+        createBuffer("Leaked vertices", 64);
+        new MyGLRenderer(null, null).generateShadowFBO();
+        assertEquals(3, tracker.getTotalCount());
+        assertTrue(tracker.getReport(true).contains("(Leaked vertices) : 64 bytes"));
+        tracker.deleteAll();
+        assertEquals(0, tracker.getTotalCount());
+        assertEquals(0, tracker.getTotalBytes());
+        assertEquals(1, backend.getCallCount("glDeleteBuffers"));
+        assertEquals(1, backend.getCallCount("glDeleteTextures"));
+        assertEquals(1, backend.getCallCount("glDeleteFramebuffers"));
+    }
+}
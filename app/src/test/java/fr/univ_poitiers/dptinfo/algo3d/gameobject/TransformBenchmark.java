@@ -0,0 +1,159 @@
+package fr.univ_poitiers.dptinfo.algo3d.gameobject;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import fr.univ_poitiers.dptinfo.algo3d.Benchmarks;
+import fr.univ_poitiers.dptinfo.algo3d.math.Mat4f;
+import fr.univ_poitiers.dptinfo.algo3d.math.QuatfBenchmark;
+
+/**
+ * Benchmark of the global matrices computed per frame for the global model matrices of a scene shaped as the one of the application,
+ * with the cached matrices of {@link Transform}, against the original transforms computing the whole parent chain at each call.
+ */
+public class TransformBenchmark {
+
+    /**
+     * Number of rooms of the scene, each one being the parent of {@link #CHILDREN} objects.
+     */
+    private static final int ROOMS = 6;
+
+    /**
+     * Number of children of each room : walls, floor, ceiling and furniture.
+     */
+    private static final int CHILDREN = 8;
+
+    /**
+     * Calls of getGlobalModelMatrix per object and frame : one in the shadow pass, two in the reflection and in the main passes.
+     */
+    private static final int CALLS_PER_FRAME = 5;
+
+    /**
+     * Number of frames of each measure.
+     */
+    private static final int FRAMES = 1000;
+
+    /**
+     * Transform as it was before the matrices were cached : each call computes the local matrix and the global matrix of the parent again, in new arrays.
+     */
+    private static class LegacyTransform {
+
+        /**
+         * Position, euler angles and scale.
+         */
+        final float[] t = new float[3], r = new float[3], s = {1.F, 1.F, 1.F};
+        /**
+         * Parent transform, null for a root.
+         */
+        final LegacyTransform parent;
+
+        /**
+         * Constructor.
+         * @param parent - the parent transform, null for a root
+         */
+        LegacyTransform(LegacyTransform parent) {
+            this.parent = parent;
+        }
+
+        /**
+         * Compute the global matrix, counting the global matrices computed, of the transform and of its ancestors.
+         * @param counter - array whose first element counts the global matrices computed
+         * @return a new array containing the global matrix
+         */
+        float[] getGlobalModelMatrix(long[] counter) {
+            float[] local = new float[16];
+            QuatfBenchmark.eulerChain(local, 0, new float[32], t, r, s, 0);
+            counter[0]++;
+            if (parent == null)
+                return local;
+            float[] global = new float[16];
+            Mat4f.multiply(global, 0, parent.getGlobalModelMatrix(counter), 0, local, 0);
+            return global;
+        }
+    }
+
+    /**
+     * Measure the global matrices computed and the time per frame, with static objects then with one room moving at each frame.
+     */
+    @Test
+    public void matricesPerFrame() {
+        final List<LegacyTransform> legacy = new ArrayList<>();
+        final List<Transform> cached = new ArrayList<>();
+        final List<GameObject> gameObjects = new ArrayList<>();
+        for (int room = 0; room < ROOMS; room++) {
+            LegacyTransform legacyRoom = new LegacyTransform(null);
+            legacyRoom.t[2] = room * 6.F;
+            legacy.add(legacyRoom);
+            GameObject roomObject = new GameObject();
+            roomObject.getTransform().posz(room * 6.F);
+            gameObjects.add(roomObject);
+            cached.add(roomObject.getTransform());
+            for (int c = 0; c < CHILDREN; c++) {
+                LegacyTransform legacyChild = new LegacyTransform(legacyRoom);
+                legacyChild.t[0] = c;
+                legacyChild.r[1] = c * 45.F;
+                legacy.add(legacyChild);
+                GameObject child = new GameObject();
+                child.getTransform().posx(c).roty(c * 45.F);
+                roomObject.addChildren(child);
+                cached.add(child.getTransform());
+            }
+        }
+        final TransformStore store = TransformStore.getInstance();
+        final long[] counter = new long[1];
+
+        for (int moving = 0; moving < 2; moving++) {
+            final boolean move = moving == 1;
+            Runnable legacyFrames = new Runnable() {
+                @Override
+                public void run() {
+                    for (int f = 0; f < FRAMES; f++) {
+                        if (move)
+                            legacy.get(0).r[1] = f;
+                        for (int i = 0; i < legacy.size(); i++)
+                            for (int call = 0; call < CALLS_PER_FRAME; call++)
+                                legacy.get(i).getGlobalModelMatrix(counter);
+                    }
+                }
+            };
+            Runnable cachedFrames = new Runnable() {
+                @Override
+                public void run() {
+                    for (int f = 0; f < FRAMES; f++) {
+                        if (move)
+                            cached.get(0).roty(f);
+                        for (int i = 0; i < cached.size(); i++)
+                            for (int call = 0; call < CALLS_PER_FRAME; call++)
+                                cached.get(i).getGlobalModelMatrix();
+                    }
+                }
+            };
+            long legacyTime = Benchmarks.median(legacyFrames);
+            long cachedTime = Benchmarks.median(cachedFrames);
+            counter[0] = 0;
+            legacyFrames.run();
+            long before = versionsSum(store);
+            cachedFrames.run();
+            long cachedMatrices = versionsSum(store) - before;
+            Benchmarks.report("%s, %d objects : original %.1f global matrices and %.1f us per frame, cached %.2f global matrices and %.1f us per frame",
+                    move ? "one room moving" : "static scene", legacy.size(),
+                    (double) counter[0] / FRAMES, legacyTime / 1000.0 / FRAMES, (double) cachedMatrices / FRAMES, cachedTime / 1000.0 / FRAMES);
+        }
+        for (GameObject go : gameObjects)
+            GameObject.destroy(go);
+    }
+
+    /**
+     * Returns the sum of the versions of the global matrices of a store, incremented each time a global matrix is computed.
+     * @param store - the store
+     * @return the sum of the versions
+     */
+    private static long versionsSum(TransformStore store) {
+        long sum = 0;
+        for (int i = 0; i < store.size(); i++)
+            sum += store.versions[i];
+        return sum;
+    }
+}
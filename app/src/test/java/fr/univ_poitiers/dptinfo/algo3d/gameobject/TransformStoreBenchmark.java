@@ -0,0 +1,159 @@
+package fr.univ_poitiers.dptinfo.algo3d.gameobject;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import fr.univ_poitiers.dptinfo.algo3d.Benchmarks;
+import fr.univ_poitiers.dptinfo.algo3d.math.Mat4f;
+import fr.univ_poitiers.dptinfo.algo3d.math.Quatf;
+
+/**
+ * Benchmark of the update of the {@link TransformStore} with 10k to 100k objects,
+ * against objects each one keeping its own arrays and updated by a traversal of the hierarchy,
+ * and the scaling of the parallel update with the number of threads.
+ */
+public class TransformStoreBenchmark {
+
+    /**
+     * Numbers of objects measured.
+     */
+    private static final int[] SIZES = {10000, 30000, 100000};
+
+    /**
+     * Number of objects of the scaling measure.
+     */
+    private static final int SCALING_SIZE = 100000;
+
+    /**
+     * Returns the number of objects of each level of a hierarchy : 5% of roots, 25% of children and 70% of grandchildren.
+     * @param size - number of objects
+     * @return the sizes of the levels
+     */
+    static int[] levelSizes(int size) {
+        int roots = size / 20, children = size / 4;
+        return new int[]{roots, children, size - roots - children};
+    }
+
+    /**
+     * Object of a scene graph with its own transform and matrices, as the transforms before the store.
+     */
+    private static class Node {
+        /**
+         * Position, rotation as a quaternion and scale.
+         */
+        final float[] t = new float[3], q = new float[4], s = new float[3];
+        /**
+         * Local and global matrices.
+         */
+        final float[] local = new float[16], global = new float[16];
+        /**
+         * Children of the node.
+         */
+        final List<Node> children = new ArrayList<>();
+
+        /**
+         * Update the global matrices of the node and its descendants.
+         * @param parent - global matrix of the parent, null for a root
+         */
+        void update(float[] parent) {
+            Quatf.toTRSMatrix(local, 0, t, 0, q, 0, s, 0);
+            if (parent == null)
+                System.arraycopy(local, 0, global, 0, 16);
+            else
+                Mat4f.multiply(global, 0, parent, 0, local, 0);
+            for (int i = 0; i < children.size(); i++)
+                children.get(i).update(global);
+        }
+    }
+
+    /**
+     * Measure the time per object to update all the objects, and to update the store when 1% of the objects moved.
+     */
+    @Test
+    public void storeSizes() {
+        for (final int size : SIZES) {
+            final TransformStore store = new TransformStore();
+            store.setPool(null);
+            final TransformStoreTest.Hierarchy hierarchy = new TransformStoreTest.Hierarchy(store, size, levelSizes(size));
+            store.update();
+
+            //the same hierarchy with one object per node, created in the order of the ids
+            Node[] nodes = new Node[size];
+            for (int k = 0; k < size; k++) {
+                nodes[k] = new Node();
+                System.arraycopy(hierarchy.positions, k * 3, nodes[k].t, 0, 3);
+                Quatf.fromEuler(nodes[k].q, 0, hierarchy.rotations[k * 3], hierarchy.rotations[k * 3 + 1], hierarchy.rotations[k * 3 + 2]);
+                System.arraycopy(hierarchy.scales, k * 3, nodes[k].s, 0, 3);
+            }
+            final List<Node> roots = new ArrayList<>();
+            for (int k = 0; k < size; k++) {
+                if (hierarchy.parents[k] < 0)
+                    roots.add(nodes[k]);
+                else
+                    nodes[hierarchy.parents[k]].children.add(nodes[k]);
+            }
+
+            long objects = Benchmarks.median(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < roots.size(); i++)
+                        roots.get(i).update(null);
+                }
+            });
+            long full = Benchmarks.median(new Runnable() {
+                @Override
+                public void run() {
+                    for (int k = 0; k < size; k++)
+                        store.setScale(hierarchy.ids[k], hierarchy.scales[k * 3], hierarchy.scales[k * 3 + 1], hierarchy.scales[k * 3 + 2]);
+                    store.update();
+                }
+            });
+            long partial = Benchmarks.median(new Runnable() {
+                @Override
+                public void run() {
+                    for (int k = 0; k < size; k += 100)
+                        store.setScale(hierarchy.ids[k], hierarchy.scales[k * 3], hierarchy.scales[k * 3 + 1], hierarchy.scales[k * 3 + 2]);
+                    store.update();
+                }
+            });
+            Benchmarks.report("%d objects : objects %.1f ns, store %.1f ns per object, store with 1%% moved %.1f ns per object",
+                    size, (double) objects / size, (double) full / size, (double) partial / size);
+        }
+    }
+
+    /**
+     * Measure the time of the update of all the objects serially, then in pools of 1 thread up to the number of processors.
+     */
+    @Test
+    public void threadScaling() {
+        final TransformStore store = new TransformStore();
+        final TransformStoreTest.Hierarchy hierarchy = new TransformStoreTest.Hierarchy(store, 1, levelSizes(SCALING_SIZE));
+        Runnable update = new Runnable() {
+            @Override
+            public void run() {
+                for (int k = 0; k < SCALING_SIZE; k++)
+                    store.setScale(hierarchy.ids[k], hierarchy.scales[k * 3], hierarchy.scales[k * 3 + 1], hierarchy.scales[k * 3 + 2]);
+                store.update();
+            }
+        };
+        store.setPool(null);
+        long serial = Benchmarks.median(update);
+        Benchmarks.report("%d objects : serial %.2f ms", SCALING_SIZE, serial / 1e6);
+        int processors = Runtime.getRuntime().availableProcessors();
+        //1, 2, 4... threads, up to the number of processors
+        int threads = 1;
+        while (true) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            store.setPool(pool);
+            long time = Benchmarks.median(update);
+            pool.shutdown();
+            Benchmarks.report("%d threads : %.2f ms, speedup %.2f", threads, time / 1e6, (double) serial / time);
+            if (threads == processors)
+                break;
+            threads = Math.min(threads * 2, processors);
+        }
+    }
+}
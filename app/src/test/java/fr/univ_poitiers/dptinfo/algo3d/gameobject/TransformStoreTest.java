@@ -0,0 +1,347 @@
+package fr.univ_poitiers.dptinfo.algo3d.gameobject;
+
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import fr.univ_poitiers.dptinfo.algo3d.math.Mat4f;
+import fr.univ_poitiers.dptinfo.algo3d.math.Quatf;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of the {@link TransformStore} against the global matrices composed recursively from the parents, with the same float operations.
+ */
+public class TransformStoreTest {
+
+    /**
+     * Objects of a store with a random hierarchy, and their transforms kept by the test to compute the expected matrices.
+     */
+    static class Hierarchy {
+        /**
+         * The store.
+         */
+        final TransformStore store;
+        /**
+         * Random generator of the hierarchy and of its changes.
+         */
+        final Random random;
+        /**
+         * Id of each object in the store.
+         */
+        final int[] ids;
+        /**
+         * Index of the parent of each object, -1 for the roots.
+         */
+        final int[] parents;
+        /**
+         * Position, euler angles and scale of each object, 3 floats per object.
+         */
+        final float[] positions, rotations, scales;
+        /**
+         * False for the released objects.
+         */
+        final boolean[] alive;
+
+        /**
+         * Create the objects in a random order, level by level, the parent of each object being a random object of the previous level.
+         * @param store - the store
+         * @param seed - seed of the random generator
+         * @param levelSizes - number of objects of each level, the roots being the first level
+         */
+        Hierarchy(TransformStore store, long seed, int... levelSizes) {
+            this.store = store;
+            random = new Random(seed);
+            int count = 0;
+            for (int size : levelSizes)
+                count += size;
+            ids = new int[count];
+            parents = new int[count];
+            positions = new float[count * 3];
+            rotations = new float[count * 3];
+            scales = new float[count * 3];
+            alive = new boolean[count];
+            for (int k = 0; k < count; k++) {
+                ids[k] = store.add();
+                alive[k] = true;
+                move(k);
+            }
+            //objects of each level in a random order, so the store has to sort them
+            int[] order = new int[count];
+            for (int k = 0; k < count; k++)
+                order[k] = k;
+            for (int k = count - 1; k > 0; k--) {
+                int other = random.nextInt(k + 1), swap = order[k];
+                order[k] = order[other];
+                order[other] = swap;
+            }
+            int start = 0;
+            for (int level = 0; level < levelSizes.length; level++) {
+                for (int k = start; k < start + levelSizes[level]; k++) {
+                    int object = order[k];
+                    if (level == 0) {
+                        parents[object] = -1;
+                    } else {
+                        parents[object] = order[start - levelSizes[level - 1] + random.nextInt(levelSizes[level - 1])];
+                        store.setParent(ids[object], ids[parents[object]]);
+                    }
+                }
+                start += levelSizes[level];
+            }
+        }
+
+        /**
+         * Give a random transform to an object.
+         * @param k - index of the object
+         */
+        void move(int k) {
+            for (int c = 0; c < 3; c++) {
+                positions[k * 3 + c] = random.nextFloat() * 2.F - 1.F;
+                rotations[k * 3 + c] = random.nextFloat() * 360.F - 180.F;
+                scales[k * 3 + c] = random.nextFloat() + 0.5F;
+            }
+            store.setPosition(ids[k], positions[k * 3], positions[k * 3 + 1], positions[k * 3 + 2]);
+            store.setRotation(ids[k], rotations[k * 3], rotations[k * 3 + 1], rotations[k * 3 + 2]);
+            store.setScale(ids[k], scales[k * 3], scales[k * 3 + 1], scales[k * 3 + 2]);
+        }
+
+        /**
+         * Release an object, its children becoming roots.
+         * @param k - index of the object
+         */
+        void release(int k) {
+            store.release(ids[k]);
+            alive[k] = false;
+            for (int i = 0; i < parents.length; i++)
+                if (parents[i] == k)
+                    parents[i] = -1;
+        }
+
+        /**
+         * Attach an object to a random alive object which is not one of its descendants.
+         * @param k - index of the object
+         */
+        void reparent(int k) {
+            int parent;
+            do {
+                parent = random.nextInt(parents.length);
+            } while (!alive[parent] || isAncestor(k, parent));
+            parents[k] = parent;
+            store.setParent(ids[k], ids[parent]);
+        }
+
+        /**
+         * Returns true if an object is an ancestor of another one, or the same object.
+         * @param ancestor - index of the possible ancestor
+         * @param k - index of the object
+         * @return true if ancestor is k or one of its ancestors
+         */
+        boolean isAncestor(int ancestor, int k) {
+            for (int p = k; p >= 0; p = parents[p])
+                if (p == ancestor)
+                    return true;
+            return false;
+        }
+
+        /**
+         * Randomly move, release and reparent some alive objects.
+         * @param changes - number of objects changed
+         */
+        void change(int changes) {
+            for (int i = 0; i < changes; i++) {
+                int k = random.nextInt(parents.length);
+                if (!alive[k])
+                    continue;
+                int action = random.nextInt(4);
+                if (action == 0)
+                    release(k);
+                else if (action == 1)
+                    reparent(k);
+                else
+                    move(k);
+            }
+        }
+
+        /**
+         * Compute the expected global matrix of an object : the global matrix of its parent multiplied by its local matrix.
+         * @param k - index of the object
+         * @param result - array receiving the matrix
+         */
+        void expected(int k, float[] result) {
+            float[] q = new float[4];
+            Quatf.fromEuler(q, 0, rotations[k * 3], rotations[k * 3 + 1], rotations[k * 3 + 2]);
+            float[] local = new float[16];
+            Quatf.toTRSMatrix(local, 0, positions, k * 3, q, 0, scales, k * 3);
+            if (parents[k] < 0) {
+                System.arraycopy(local, 0, result, 0, 16);
+                return;
+            }
+            expected(parents[k], result);
+            Mat4f.multiply(result, 0, result, 0, local, 0);
+        }
+
+        /**
+         * Check that the global matrix of each alive object is exactly the expected one.
+         */
+        void check() {
+            float[] expected = new float[16], actual = new float[16];
+            for (int k = 0; k < ids.length; k++) {
+                if (!alive[k])
+                    continue;
+                expected(k, expected);
+                store.getGlobalMatrix(ids[k], actual, 0);
+                assertArrayEquals(expected, actual, 0.F);
+            }
+        }
+    }
+
+    /**
+     * The global matrices are the products of the local matrices along the hierarchy, after the objects are moved, released and reparented.
+     */
+    @Test
+    public void hierarchyMatchesReference() {
+        TransformStore store = new TransformStore();
+        store.setPool(null);
+        Hierarchy hierarchy = new Hierarchy(store, 1, 100, 400, 1500, 3000);
+        hierarchy.check();
+        assertEquals(4, store.levelsCount);
+        for (int round = 0; round < 5; round++) {
+            hierarchy.change(500);
+            hierarchy.check();
+        }
+        int alive = 0;
+        for (boolean a : hierarchy.alive)
+            if (a)
+                alive++;
+        //the released objects are removed from the arrays when they are sorted
+        assertEquals(alive, store.size());
+    }
+
+    /**
+     * The levels computed in parallel give the same bits as the serial update, after the objects are moved, released and reparented.
+     */
+    @Test
+    public void parallelIsBitIdentical() {
+        TransformStore serial = new TransformStore(), parallel = new TransformStore();
+        serial.setPool(null);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        parallel.setPool(pool);
+        //same seed, so the same objects and the same changes in both stores
+        Hierarchy serialHierarchy = new Hierarchy(serial, 2, 1000, 6000, 13000);
+        Hierarchy parallelHierarchy = new Hierarchy(parallel, 2, 1000, 6000, 13000);
+        try {
+            float[] expected = new float[16], actual = new float[16];
+            for (int round = 0; round < 6; round++) {
+                serial.update();
+                parallel.update();
+                if (round == 0) {
+                    //the two last levels are large enough to be split
+                    assertTrue(parallel.levelStart[3] - parallel.levelStart[2] >= TransformStore.MIN_PARALLEL_OBJECTS);
+                    assertTrue(pool.getPoolSize() > 0);
+                }
+                for (int k = 0; k < serialHierarchy.ids.length; k++) {
+                    if (!serialHierarchy.alive[k])
+                        continue;
+                    serial.getGlobalMatrix(serialHierarchy.ids[k], expected, 0);
+                    parallel.getGlobalMatrix(parallelHierarchy.ids[k], actual, 0);
+                    assertTrue("object " + k + " of round " + round, Arrays.equals(expected, actual));
+                }
+                serialHierarchy.change(2000);
+                parallelHierarchy.change(2000);
+            }
+            parallelHierarchy.check();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Only the objects moved and their descendants are computed again.
+     */
+    @Test
+    public void onlyChangedObjectsAreComputed() {
+        TransformStore store = new TransformStore();
+        int root = store.add(), child = store.add(), grandChild = store.add(), other = store.add();
+        store.setParent(child, root);
+        store.setParent(grandChild, child);
+        store.update();
+        int[] versions = new int[4];
+        int[] ids = {root, child, grandChild, other};
+        for (int k = 0; k < 4; k++)
+            versions[k] = store.versions[store.slot(ids[k])];
+        store.update();
+        for (int k = 0; k < 4; k++)
+            assertEquals(versions[k], store.versions[store.slot(ids[k])]);
+        store.setPosition(child, 1.F, 0.F, 0.F);
+        store.update();
+        int[] computed = new int[4];
+        for (int k = 0; k < 4; k++)
+            computed[k] = store.versions[store.slot(ids[k])] - versions[k];
+        assertArrayEquals(new int[]{0, 1, 1, 0}, computed);
+    }
+
+    /**
+     * An object can not become the child of one of its descendants.
+     */
+    @Test
+    public void cycleIsRejected() {
+        TransformStore store = new TransformStore();
+        int root = store.add(), child = store.add();
+        store.setParent(child, root);
+        try {
+            store.setParent(root, child);
+            fail("The cycle was accepted");
+        } catch (IllegalArgumentException e) {
+            //expected
+        }
+        try {
+            store.setParent(root, root);
+            fail("The cycle was accepted");
+        } catch (IllegalArgumentException e) {
+            //expected
+        }
+    }
+
+    /**
+     * Create objects of a scene in the store of the GameObjects, then replace the store as when a new scene is built.
+     * @return the replaced store
+     */
+    private static WeakReference<TransformStore> previousScene() {
+        TransformStore store = TransformStore.getInstance();
+        GameObject parent = new GameObject();
+        for (int i = 0; i < 10; i++)
+            parent.addChildren(new GameObject());
+        parent.getTransform().posx(1.F);
+        assertTrue(store.size() >= 11);
+        TransformStore.reset();
+        assertNotSame(store, TransformStore.getInstance());
+        //the transforms of the previous scene still work with their store
+        assertEquals(1.F, parent.getTransform().getGlobalModelMatrix()[12], 0.F);
+        return new WeakReference<>(store);
+    }
+
+    /**
+     * The transforms of a previous scene are not kept by the store of the new scene, and are collected with their store.
+     * @throws InterruptedException if the test is interrupted while waiting for the garbage collector
+     */
+    @Test
+    public void resetForgetsThePreviousScene() throws InterruptedException {
+        WeakReference<TransformStore> previous = previousScene();
+        assertEquals(0, TransformStore.getInstance().size());
+        new GameObject();
+        assertEquals(1, TransformStore.getInstance().size());
+        for (int i = 0; i < 10 && previous.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull("the store of the previous scene is still referenced", previous.get());
+    }
+}
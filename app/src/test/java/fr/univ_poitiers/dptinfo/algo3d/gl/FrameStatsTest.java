@@ -0,0 +1,110 @@
+package fr.univ_poitiers.dptinfo.algo3d.gl;
+
+import android.opengl.GLES20;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the rolling window of {@link FrameStats} and of the counts given by the {@link StatsBackend}.
+ */
+public class FrameStatsTest {
+
+    /**
+     * End frames with the given numbers of draw calls in the main pass.
+     * @param stats - the statistics
+     * @param drawCalls - the number of draw calls of each frame
+     */
+    private static void frames(FrameStats stats, long... drawCalls) {
+        for (long value : drawCalls) {
+            stats.beginPass(FrameStats.Pass.MAIN);
+            stats.add(FrameStats.Counter.DRAW_CALLS, value);
+            stats.endFrame();
+        }
+    }
+
+    /**
+     * Without frame, all the values are 0.
+     */
+    @Test
+    public void empty() {
+        FrameStats stats = new FrameStats(4);
+        assertEquals(0, stats.getFramesCount());
+        assertEquals(0, stats.getLast(FrameStats.Pass.MAIN, FrameStats.Counter.DRAW_CALLS));
+        assertEquals(0, stats.getMin(FrameStats.Pass.MAIN, FrameStats.Counter.DRAW_CALLS));
+        assertEquals(0, stats.getAverage(FrameStats.Pass.MAIN, FrameStats.Counter.DRAW_CALLS), 0);
+        assertEquals(0, stats.getPercentile99(FrameStats.Pass.MAIN, FrameStats.Counter.DRAW_CALLS));
+    }
+
+    /**
+     * Before the window is full, only the ended frames count, then only the last frames of the window.
+     */
+    @Test
+    public void rollingWindow() {
+        FrameStats stats = new FrameStats(4);
+        frames(stats, 5, 1);
+        assertEquals(2, stats.getFramesCount());
+        assertEquals(1, stats.getLast(FrameStats.Pass.MAIN, FrameStats.Counter.DRAW_CALLS));
+        assertEquals(1, stats.getMin(FrameStats.Pass.MAIN, FrameStats.Counter.DRAW_CALLS));
+        assertEquals(3, stats.getAverage(FrameStats.Pass.MAIN, FrameStats.Counter.DRAW_CALLS), 0);
+        assertEquals(5, stats.getPercentile99(FrameStats.Pass.MAIN, FrameStats.Counter.DRAW_CALLS));
+
+        //5 and 1 leave the window
+        frames(stats, 3, 7, 2, 9);
+        assertEquals(4, stats.getFramesCount());
+        assertEquals(9, stats.getLast(FrameStats.Pass.MAIN, FrameStats.Counter.DRAW_CALLS));
+        assertEquals(2, stats.getMin(FrameStats.Pass.MAIN, FrameStats.Counter.DRAW_CALLS));
+        assertEquals(5.25, stats.getAverage(FrameStats.Pass.MAIN, FrameStats.Counter.DRAW_CALLS), 0);
+        assertEquals(9, stats.getPercentile99(FrameStats.Pass.MAIN, FrameStats.Counter.DRAW_CALLS));
+        //the other passes are not counted
+        assertEquals(0, stats.getMin(FrameStats.Pass.SHADOW, FrameStats.Counter.DRAW_CALLS));
+    }
+
+    /**
+     * The 99th percentile is the value 99% of the frames do not exceed, whatever the order of the frames.
+     */
+    @Test
+    public void percentile99() {
+        FrameStats stats = new FrameStats(200);
+        //values 1 to 200 in a shuffled order
+        for (int i = 0; i < 200; i++)
+            frames(stats, (i * 73) % 200 + 1);
+        assertEquals(198, stats.getPercentile99(FrameStats.Pass.MAIN, FrameStats.Counter.DRAW_CALLS));
+        assertEquals(1, stats.getMin(FrameStats.Pass.MAIN, FrameStats.Counter.DRAW_CALLS));
+        assertEquals(100.5, stats.getAverage(FrameStats.Pass.MAIN, FrameStats.Counter.DRAW_CALLS), 0);
+
+        //up to 2 outliers, 1% of the frames, are above the percentile, each one replacing the oldest frame of the window
+        frames(stats, 10000, 10000);
+        assertEquals(200, stats.getPercentile99(FrameStats.Pass.MAIN, FrameStats.Counter.DRAW_CALLS));
+        frames(stats, 10000);
+        assertEquals(10000, stats.getPercentile99(FrameStats.Pass.MAIN, FrameStats.Counter.DRAW_CALLS));
+    }
+
+    /**
+     * The calls given to the {@link StatsBackend} are counted in the current pass, and forwarded to the wrapped backend.
+     */
+    @Test
+    public void statsBackend() {
+        FrameStats stats = new FrameStats();
+        RecordingBackend recording = new RecordingBackend();
+        StatsBackend backend = new StatsBackend(recording, stats);
+        //outside of the passes, nothing is counted
+        backend.glDrawArrays(GLES20.GL_TRIANGLES, 0, 3);
+        stats.beginPass(FrameStats.Pass.SHADOW);
+        backend.glDrawElements(GLES20.GL_TRIANGLES, 300, GLES20.GL_UNSIGNED_SHORT, 0);
+        stats.beginPass(FrameStats.Pass.MAIN);
+        backend.glDrawElements(GLES20.GL_TRIANGLES, 30, GLES20.GL_UNSIGNED_SHORT, 0);
+        backend.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 12);
+        stats.endFrame();
+        assertEquals(1, stats.getLast(FrameStats.Pass.SHADOW, FrameStats.Counter.DRAW_CALLS));
+        assertEquals(100, stats.getLast(FrameStats.Pass.SHADOW, FrameStats.Counter.TRIANGLES));
+        assertEquals(2, stats.getLast(FrameStats.Pass.MAIN, FrameStats.Counter.DRAW_CALLS));
+        assertEquals(20, stats.getLast(FrameStats.Pass.MAIN, FrameStats.Counter.TRIANGLES));
+        assertEquals(4, recording.getDrawCalls());
+        String report = stats.getReport();
+        assertTrue(report, report.startsWith("Last 1 frames"));
+        assertTrue(report, report.contains("TRIANGLES : 20 / 20.0 / 20"));
+    }
+}
@@ -0,0 +1,144 @@
+package fr.univ_poitiers.dptinfo.algo3d.gl;
+
+import android.content.Context;
+import android.opengl.GLES20;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import fr.univ_poitiers.dptinfo.algo3d.GpuResourceTracker;
+import fr.univ_poitiers.dptinfo.algo3d.mesh.Sphere;
+import fr.univ_poitiers.dptinfo.algo3d.mesh.VertexLayout;
+import fr.univ_poitiers.dptinfo.algo3d.shaders.MultipleLightingShaders;
+import fr.univ_poitiers.dptinfo.algo3d.shaders.ShadowShaders;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the upload and the drawing of a mesh without GPU, the OpenGL calls being recorded by a {@link RecordingBackend}.
+ */
+public class RecordingBackendTest {
+
+    /**
+     * Backend recording the calls of the test.
+     */
+    private RecordingBackend backend;
+    /**
+     * Backend before the test, restored after it.
+     */
+    private GLBackend previous;
+    /**
+     * Shaders drawing the meshes, whose sources are not compiled by the recording backend.
+     */
+    private MultipleLightingShaders shaders;
+
+    /**
+     * Record the OpenGL calls and create the shaders.
+     */
+    @Before
+    public void setUp() {
+        previous = GL.getBackend();
+        backend = new RecordingBackend();
+        GL.setBackend(backend);
+        shaders = new ShadowShaders(null) {
+            @Override
+            public int createProgram(Context context) {
+                return initializeShaders("void main() {}", "void main() {}");
+            }
+        };
+        GpuResourceTracker.getInstance().forgetAll();
+    }
+
+    /**
+     * Restore the backend and forget the buffers of the test.
+     */
+    @After
+    public void tearDown() {
+        GpuResourceTracker.getInstance().forgetAll();
+        GL.setBackend(previous);
+    }
+
+    /**
+     * The buffers of a sphere are created, filled with the interleaved vertices, the triangles and the edges, then drawn in one call.
+     */
+    @Test
+    public void uploadAndDrawSphere() {
+        Sphere sphere = new Sphere(32, 32);
+        int nbIndices = sphere.getIndicesCount();
+        int verticesBytes = sphere.getVerticesCount() * VertexLayout.STRIDE;
+        backend.resetFrame();
+        sphere.initGraphics();
+        assertEquals(1, backend.getCallCount("glGenBuffers"));
+        assertEquals(3, backend.getCallCount("glBufferData"));
+        assertTrue(backend.getCalls().contains("glBufferData(" + GLES20.GL_ARRAY_BUFFER + ", " + verticesBytes
+                + ", Buffer[" + verticesBytes + "], " + GLES20.GL_STATIC_DRAW + ")"));
+        long edgesBytes = backend.getUploadedBytes() - verticesBytes - nbIndices * Short.BYTES;
+        //a closed mesh has 3 edges per 2 triangles, the seam of the texture coordinates adds some
+        assertTrue(edgesBytes >= nbIndices * Short.BYTES);
+        assertEquals(3, GpuResourceTracker.getInstance().getCount(GpuResourceTracker.Category.BUFFER));
+        assertEquals(backend.getUploadedBytes(), GpuResourceTracker.getInstance().getTotalBytes());
+
+        backend.resetFrame();
+        sphere.draw(shaders);
+        assertEquals(1, backend.getDrawCalls());
+        assertEquals(nbIndices, backend.getDrawnVertices());
+        assertTrue(backend.getCalls().contains("glDrawElements(" + GLES20.GL_TRIANGLES + ", " + nbIndices + ", " + GLES20.GL_UNSIGNED_SHORT + ", 0)"));
+
+        backend.resetFrame();
+        sphere.drawWithLines(shaders);
+        assertEquals(2, backend.getDrawCalls());
+        assertEquals(nbIndices + edgesBytes / Short.BYTES, backend.getDrawnVertices());
+
+        sphere.releaseGraphics();
+        assertEquals(0, GpuResourceTracker.getInstance().getTotalCount());
+    }
+
+    /**
+     * A sphere of more than 65535 vertices is drawn in one call per batch of 16 bits indices.
+     */
+    @Test
+    public void drawLargeSphere() {
+        Sphere sphere = new Sphere(300, 300);
+        sphere.initGraphics();
+        backend.resetFrame();
+        sphere.draw(shaders);
+        assertTrue(backend.getDrawCalls() > 1);
+        assertEquals(sphere.getIndicesCount(), backend.getDrawnVertices());
+    }
+
+    /**
+     * Without logging, the calls are counted the same way but not kept, and drawing does not allocate memory at each frame.
+     */
+    @Test
+    public void countingDoesNotAllocate() {
+        Sphere sphere = new Sphere(32, 32);
+        sphere.initGraphics();
+        backend.resetFrame();
+        sphere.drawWithLines(shaders);
+        assertTrue(backend.getCalls().size() > 0);
+        int drawCalls = backend.getCallCount("glDrawElements");
+
+        backend.setLogging(false);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        //the first frames create the counters of the calls
+        for (int i = 0; i < 10000; i++) {
+            backend.resetFrame();
+            sphere.drawWithLines(shaders);
+        }
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < 10000; i++) {
+            backend.resetFrame();
+            sphere.drawWithLines(shaders);
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+        assertEquals(0, backend.getCalls().size());
+        assertEquals(drawCalls, backend.getCallCount("glDrawElements"));
+        //less than a byte per frame, the compilation of the methods may allocate a few objects once
+        assertTrue(allocated + " bytes allocated by 10000 frames", allocated < 10000);
+    }
+}
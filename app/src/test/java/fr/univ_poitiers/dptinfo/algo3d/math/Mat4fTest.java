@@ -0,0 +1,138 @@
+package fr.univ_poitiers.dptinfo.algo3d.math;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of {@link Mat4f} and {@link Mat3f} against the products computed in double precision from their definition.
+ */
+public class Mat4fTest {
+
+    /**
+     * Number of random matrices tested.
+     */
+    private static final int SAMPLES = 10000;
+
+    /**
+     * Tolerance of the comparisons, the coefficients being between -1 and 1.
+     */
+    private static final double EPSILON = 1e-5;
+
+    /**
+     * Fill a matrix with random coefficients between -1 and 1.
+     * @param random - the random generator
+     * @param m - array receiving the matrix
+     * @param mo - offset of the matrix
+     */
+    private static void randomMatrix(Random random, float[] m, int mo) {
+        for (int k = 0; k < 16; k++)
+            m[mo + k] = random.nextFloat() * 2.F - 1.F;
+    }
+
+    /**
+     * Compute the coefficient of a product of column major matrices.
+     * @param a - the left matrix
+     * @param ao - offset of the left matrix
+     * @param b - the right matrix
+     * @param bo - offset of the right matrix
+     * @param row - the row of the coefficient
+     * @param column - the column of the coefficient
+     * @return the coefficient of a * b
+     */
+    private static double product(float[] a, int ao, float[] b, int bo, int row, int column) {
+        double sum = 0;
+        for (int k = 0; k < 4; k++)
+            sum += (double) a[ao + k * 4 + row] * b[bo + column * 4 + k];
+        return sum;
+    }
+
+    /**
+     * The product matches the definition, with offsets in the arrays.
+     */
+    @Test
+    public void multiply() {
+        Random random = new Random(1);
+        float[] a = new float[20], b = new float[24], r = new float[18];
+        for (int s = 0; s < SAMPLES; s++) {
+            randomMatrix(random, a, 4);
+            randomMatrix(random, b, 8);
+            Mat4f.multiply(r, 2, a, 4, b, 8);
+            for (int column = 0; column < 4; column++)
+                for (int row = 0; row < 4; row++)
+                    assertEquals(product(a, 4, b, 8, row, column), r[2 + column * 4 + row], EPSILON);
+        }
+    }
+
+    /**
+     * The result can be written in one of the operands, as the global matrices of the transform store.
+     */
+    @Test
+    public void multiplyInPlace() {
+        Random random = new Random(2);
+        float[] a = new float[16], b = new float[16], expected = new float[16], r = new float[16];
+        for (int s = 0; s < SAMPLES; s++) {
+            randomMatrix(random, a, 0);
+            randomMatrix(random, b, 0);
+            Mat4f.multiply(expected, 0, a, 0, b, 0);
+            System.arraycopy(a, 0, r, 0, 16);
+            Mat4f.multiply(r, 0, r, 0, b, 0);
+            for (int k = 0; k < 16; k++)
+                assertEquals(expected[k], r[k], 0);
+            System.arraycopy(b, 0, r, 0, 16);
+            Mat4f.multiply(r, 0, a, 0, r, 0);
+            for (int k = 0; k < 16; k++)
+                assertEquals(expected[k], r[k], 0);
+        }
+    }
+
+    /**
+     * A point is transformed as the vector (x, y, z, 1) and a direction as the vector (x, y, z, 0).
+     */
+    @Test
+    public void transformPointAndDirection() {
+        Random random = new Random(3);
+        float[] m = new float[16], v = new float[16], r = new float[3];
+        for (int s = 0; s < SAMPLES; s++) {
+            randomMatrix(random, m, 0);
+            randomMatrix(random, v, 0);
+            v[3] = 1.F;
+            Mat4f.transformPoint(r, 0, m, 0, v[0], v[1], v[2]);
+            for (int row = 0; row < 3; row++)
+                assertEquals(product(m, 0, v, 0, row, 0), r[row], EPSILON);
+            v[3] = 0.F;
+            Mat4f.transformDirection(r, 0, m, 0, v[0], v[1], v[2]);
+            for (int row = 0; row < 3; row++)
+                assertEquals(product(m, 0, v, 0, row, 0), r[row], EPSILON);
+        }
+    }
+
+    /**
+     * The transposition of the normal matrix is the inverse of the upper left 3*3 part of the matrix.
+     */
+    @Test
+    public void normalMatrix() {
+        Random random = new Random(4);
+        float[] m = new float[16], n = new float[9];
+        for (int s = 0; s < SAMPLES; s++) {
+            randomMatrix(random, m, 0);
+            double det = m[0] * ((double) m[5] * m[10] - (double) m[9] * m[6])
+                    - m[4] * ((double) m[1] * m[10] - (double) m[9] * m[2])
+                    + m[8] * ((double) m[1] * m[6] - (double) m[5] * m[2]);
+            //the nearly singular matrices amplify the rounding errors
+            if (Math.abs(det) < 0.1)
+                continue;
+            Mat3f.normalMatrix(n, 0, m, 0);
+            for (int column = 0; column < 3; column++)
+                for (int row = 0; row < 3; row++) {
+                    //row of the transposition of n, column of m
+                    double sum = 0;
+                    for (int k = 0; k < 3; k++)
+                        sum += (double) n[row * 3 + k] * m[column * 4 + k];
+                    assertEquals(row == column ? 1 : 0, sum, 1e-3);
+                }
+        }
+    }
+}
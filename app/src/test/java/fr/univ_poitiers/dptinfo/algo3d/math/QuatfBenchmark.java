@@ -0,0 +1,126 @@
+package fr.univ_poitiers.dptinfo.algo3d.math;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import fr.univ_poitiers.dptinfo.algo3d.Benchmarks;
+
+/**
+ * Microbenchmark of the local matrices composed from a quaternion by {@link Quatf#toTRSMatrix(float[], int, float[], int, float[], int, float[], int)},
+ * against the original chain of a translation, three rotations around z, x and y, and a scale.
+ */
+public class QuatfBenchmark {
+
+    /**
+     * Number of transforms of each run.
+     */
+    private static final int TRANSFORMS = 10000;
+
+    /**
+     * Compose the local matrix as the original transforms did with android.opengl.Matrix :
+     * translateM, rotateM around z, x then y, each one being a setRotateM and a multiplyMM, and scaleM.
+     * @param m - array receiving the matrix
+     * @param mo - offset of the matrix
+     * @param temp - temporary array of 32 floats
+     * @param t - array of the translations
+     * @param r - array of the euler angles, in degrees
+     * @param s - array of the scales
+     * @param i - index of the transform
+     */
+    public static void eulerChain(float[] m, int mo, float[] temp, float[] t, float[] r, float[] s, int i) {
+        for (int k = 0; k < 16; k++)
+            m[mo + k] = k % 5 == 0 ? 1.F : 0.F;
+        m[mo + 12] = t[i * 3];
+        m[mo + 13] = t[i * 3 + 1];
+        m[mo + 14] = t[i * 3 + 2];
+        rotate(m, mo, temp, r[i * 3 + 2], 2);
+        rotate(m, mo, temp, r[i * 3], 0);
+        rotate(m, mo, temp, r[i * 3 + 1], 1);
+        for (int c = 0; c < 3; c++)
+            for (int k = 0; k < 4; k++)
+                m[mo + c * 4 + k] *= s[i * 3 + c];
+    }
+
+    /**
+     * Multiply a matrix by a rotation around an axis, as rotateM.
+     * @param m - array of the matrix
+     * @param mo - offset of the matrix
+     * @param temp - temporary array of 32 floats
+     * @param angle - angle in degrees
+     * @param axis - 0, 1 or 2 for x, y or z
+     */
+    private static void rotate(float[] m, int mo, float[] temp, float angle, int axis) {
+        float sin = (float) Math.sin(Math.toRadians(angle)), cos = (float) Math.cos(Math.toRadians(angle));
+        for (int k = 0; k < 16; k++)
+            temp[k] = k % 5 == 0 ? 1.F : 0.F;
+        int a = (axis + 1) % 3, b = (axis + 2) % 3;
+        temp[a * 4 + a] = cos;
+        temp[b * 4 + b] = cos;
+        temp[a * 4 + b] = sin;
+        temp[b * 4 + a] = -sin;
+        Mat4f.multiply(temp, 16, m, mo, temp, 0);
+        System.arraycopy(temp, 16, m, mo, 16);
+    }
+
+    /**
+     * Measure the time per transform of the local matrices, of the conversions between euler angles and quaternions, and of the slerp.
+     */
+    @Test
+    public void localMatrices() {
+        Random random = new Random(1);
+        final float[] t = new float[TRANSFORMS * 3], r = new float[TRANSFORMS * 3], s = new float[TRANSFORMS * 3];
+        final float[] q = new float[TRANSFORMS * 4], m = new float[TRANSFORMS * 16], temp = new float[32];
+        for (int i = 0; i < TRANSFORMS * 3; i++) {
+            t[i] = random.nextFloat() * 20.F - 10.F;
+            r[i] = random.nextFloat() * 360.F - 180.F;
+            s[i] = random.nextFloat() + 0.5F;
+        }
+        for (int i = 0; i < TRANSFORMS; i++)
+            Quatf.fromEuler(q, i * 4, r[i * 3], r[i * 3 + 1], r[i * 3 + 2]);
+
+        long chain = Benchmarks.median(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < TRANSFORMS; i++)
+                    eulerChain(m, i * 16, temp, t, r, s, i);
+            }
+        });
+        final float[] converted = new float[4];
+        long fromEuler = Benchmarks.median(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < TRANSFORMS; i++) {
+                    Quatf.fromEuler(converted, 0, r[i * 3], r[i * 3 + 1], r[i * 3 + 2]);
+                    Quatf.toTRSMatrix(m, i * 16, t, i * 3, converted, 0, s, i * 3);
+                }
+            }
+        });
+        long stored = Benchmarks.median(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < TRANSFORMS; i++)
+                    Quatf.toTRSMatrix(m, i * 16, t, i * 3, q, i * 4, s, i * 3);
+            }
+        });
+        final float[] euler = new float[TRANSFORMS * 3];
+        long toEuler = Benchmarks.median(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < TRANSFORMS; i++)
+                    Quatf.toEuler(q, i * 4, euler, i * 3);
+            }
+        });
+        final float[] interpolated = new float[TRANSFORMS * 4];
+        long slerp = Benchmarks.median(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < TRANSFORMS; i++)
+                    Quatf.slerp(interpolated, i * 4, q, i * 4, q, (TRANSFORMS - 1 - i) * 4, 0.3F);
+            }
+        });
+        Benchmarks.report("local matrix : euler chain %.1f ns, fromEuler + toTRSMatrix %.1f ns, stored quaternion %.1f ns",
+                (double) chain / TRANSFORMS, (double) fromEuler / TRANSFORMS, (double) stored / TRANSFORMS);
+        Benchmarks.report("toEuler %.1f ns, slerp %.1f ns", (double) toEuler / TRANSFORMS, (double) slerp / TRANSFORMS);
+    }
+}
@@ -0,0 +1,273 @@
+package fr.univ_poitiers.dptinfo.algo3d.math;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link Quatf} against the rotation matrices Rz * Rx * Ry of the euler angles, computed in double precision.
+ */
+public class QuatfTest {
+
+    /**
+     * Number of random rotations tested.
+     */
+    private static final int SAMPLES = 20000;
+
+    /**
+     * Tolerance on the coefficients of the rotation matrices.
+     */
+    private static final double EPSILON = 1e-5;
+
+    /**
+     * Compute the rotation matrix Rz * Rx * Ry of euler angles.
+     * @param x - angle around the x axis, in degrees
+     * @param y - angle around the y axis, in degrees
+     * @param z - angle around the z axis, in degrees
+     * @return the matrix, by row then column
+     */
+    static double[][] eulerMatrix(double x, double y, double z) {
+        double cx = Math.cos(Math.toRadians(x)), sx = Math.sin(Math.toRadians(x));
+        double cy = Math.cos(Math.toRadians(y)), sy = Math.sin(Math.toRadians(y));
+        double cz = Math.cos(Math.toRadians(z)), sz = Math.sin(Math.toRadians(z));
+        double[][] rx = {{1, 0, 0}, {0, cx, -sx}, {0, sx, cx}};
+        double[][] ry = {{cy, 0, sy}, {0, 1, 0}, {-sy, 0, cy}};
+        double[][] rz = {{cz, -sz, 0}, {sz, cz, 0}, {0, 0, 1}};
+        return product(rz, product(rx, ry));
+    }
+
+    /**
+     * Multiply two 3*3 matrices.
+     * @param a - the left matrix, by row then column
+     * @param b - the right matrix, by row then column
+     * @return a * b
+     */
+    private static double[][] product(double[][] a, double[][] b) {
+        double[][] r = new double[3][3];
+        for (int i = 0; i < 3; i++)
+            for (int j = 0; j < 3; j++)
+                for (int k = 0; k < 3; k++)
+                    r[i][j] += a[i][k] * b[k][j];
+        return r;
+    }
+
+    /**
+     * Check that a matrix of {@link Quatf#toTRSMatrix(float[], int, float[], int, float[], int, float[], int)} is the rotation scaled then translated.
+     * @param rotation - the expected rotation, by row then column
+     * @param m - the matrix in column major order
+     * @param t - the translation
+     * @param s - the scale
+     */
+    private static void assertTRS(double[][] rotation, float[] m, float[] t, float[] s) {
+        for (int column = 0; column < 3; column++) {
+            for (int row = 0; row < 3; row++)
+                assertEquals(rotation[row][column] * s[column], m[column * 4 + row], EPSILON * Math.abs(s[column]) * 2);
+            assertEquals(0.F, m[column * 4 + 3], 0.F);
+            assertEquals(t[column], m[12 + column], 0.F);
+        }
+        assertEquals(1.F, m[15], 0.F);
+    }
+
+    /**
+     * Returns the rotation matrix of a quaternion, without scale nor translation.
+     * @param q - the quaternion
+     * @return the matrix, by row then column
+     */
+    private static double[][] rotation(float[] q) {
+        float[] m = new float[16];
+        Quatf.toTRSMatrix(m, 0, new float[3], 0, q, 0, new float[]{1.F, 1.F, 1.F}, 0);
+        double[][] r = new double[3][3];
+        for (int column = 0; column < 3; column++)
+            for (int row = 0; row < 3; row++)
+                r[row][column] = m[column * 4 + row];
+        return r;
+    }
+
+    /**
+     * Check that two rotation matrices are equal.
+     * @param expected - the expected matrix
+     * @param actual - the actual matrix
+     * @param epsilon - tolerance on the coefficients
+     */
+    private static void assertRotation(double[][] expected, double[][] actual, double epsilon) {
+        for (int row = 0; row < 3; row++)
+            for (int column = 0; column < 3; column++)
+                assertEquals(expected[row][column], actual[row][column], epsilon);
+    }
+
+    /**
+     * Returns a random unit quaternion, uniformly distributed over the rotations, with a negative w half of the time.
+     * @param random - the random generator
+     * @return the quaternion
+     */
+    private static float[] randomQuaternion(Random random) {
+        float[] q = new float[4];
+        for (int k = 0; k < 4; k++)
+            q[k] = (float) random.nextGaussian();
+        Quatf.normalize(q, 0);
+        return q;
+    }
+
+    /**
+     * Returns the angle of the rotation from a quaternion to another, q and -q being the same rotation.
+     * @param a - the first unit quaternion
+     * @param b - the second unit quaternion
+     * @return the angle in radians, between 0 and pi
+     */
+    private static double angle(float[] a, float[] b) {
+        double dot = 0;
+        for (int k = 0; k < 4; k++)
+            dot += (double) a[k] * b[k];
+        return 2 * Math.acos(Math.min(1, Math.abs(dot)));
+    }
+
+    /**
+     * Returns the length of a quaternion.
+     * @param q - the quaternion
+     * @return its length
+     */
+    private static double length(float[] q) {
+        return Math.sqrt((double) q[0] * q[0] + (double) q[1] * q[1] + (double) q[2] * q[2] + (double) q[3] * q[3]);
+    }
+
+    /**
+     * The quaternion of euler angles is a unit quaternion whose matrix, scaled and translated, is Rz * Rx * Ry.
+     */
+    @Test
+    public void fromEulerMatchesMatrices() {
+        Random random = new Random(1);
+        float[] q = new float[6], m = new float[20], t = new float[3], s = new float[3];
+        for (int i = 0; i < SAMPLES; i++) {
+            float x = random.nextFloat() * 360.F - 180.F, y = random.nextFloat() * 360.F - 180.F, z = random.nextFloat() * 360.F - 180.F;
+            for (int k = 0; k < 3; k++) {
+                t[k] = random.nextFloat() * 20.F - 10.F;
+                s[k] = random.nextFloat() * 4.F - 2.F;
+            }
+            Quatf.fromEuler(q, 2, x, y, z);
+            float[] unit = {q[2], q[3], q[4], q[5]};
+            assertEquals(1, length(unit), 1e-6);
+            Quatf.toTRSMatrix(m, 4, t, 0, q, 2, s, 0);
+            float[] matrix = new float[16];
+            System.arraycopy(m, 4, matrix, 0, 16);
+            assertTRS(eulerMatrix(x, y, z), matrix, t, s);
+        }
+    }
+
+    /**
+     * The euler angles of a quaternion are in their ranges and give back the same rotation,
+     * and the angles themselves when the angle around x is far from -90 and 90.
+     */
+    @Test
+    public void eulerRoundTrip() {
+        Random random = new Random(2);
+        float[] q = new float[4], back = new float[4], euler = new float[3];
+        for (int i = 0; i < SAMPLES; i++) {
+            q = randomQuaternion(random);
+            Quatf.toEuler(q, 0, euler, 0);
+            assertTrue(Math.abs(euler[0]) <= 90.F && Math.abs(euler[1]) <= 180.F && Math.abs(euler[2]) <= 180.F);
+            assertRotation(rotation(q), eulerMatrix(euler[0], euler[1], euler[2]), EPSILON);
+            Quatf.fromEuler(back, 0, euler[0], euler[1], euler[2]);
+            assertRotation(rotation(q), rotation(back), EPSILON);
+
+            float x = random.nextFloat() * 170.F - 85.F, y = random.nextFloat() * 360.F - 180.F, z = random.nextFloat() * 360.F - 180.F;
+            Quatf.fromEuler(q, 0, x, y, z);
+            Quatf.toEuler(q, 0, euler, 0);
+            assertEquals(x, euler[0], 1e-2);
+            //-180 and 180 are the same angle
+            assertEquals(0, Math.IEEEremainder(y - euler[1], 360), 1e-2);
+            assertEquals(0, Math.IEEEremainder(z - euler[2], 360), 1e-2);
+        }
+    }
+
+    /**
+     * At -90 and 90 degrees around x, the angles around y and z can not be separated,
+     * but the angles found still give the same rotation, and the angle around x is kept.
+     */
+    @Test
+    public void gimbalLock() {
+        Random random = new Random(3);
+        float[] q = new float[4], euler = new float[3];
+        for (int i = 0; i < SAMPLES; i++) {
+            float x = random.nextBoolean() ? 90.F : -90.F;
+            //exactly at the gimbal lock, or slightly away from it
+            if (random.nextBoolean())
+                x -= Math.signum(x) * random.nextFloat() * 1e-3F;
+            float y = random.nextFloat() * 360.F - 180.F, z = random.nextFloat() * 360.F - 180.F;
+            Quatf.fromEuler(q, 0, x, y, z);
+            Quatf.toEuler(q, 0, euler, 0);
+            assertEquals(x, euler[0], 0.05);
+            assertRotation(eulerMatrix(x, y, z), eulerMatrix(euler[0], euler[1], euler[2]), 1e-4);
+        }
+        //exact quaternion of a rotation of 90 degrees around x, the angle around y is merged into the one around z
+        float half = (float) Math.sqrt(0.5);
+        Quatf.toEuler(new float[]{half, 0.F, 0.F, half}, 0, euler, 0);
+        assertEquals(90.F, euler[0], 1e-4);
+        assertEquals(0.F, euler[1], 0.F);
+        assertEquals(0.F, euler[2], 1e-4);
+    }
+
+    /**
+     * The slerp goes from the first rotation to the second one at a constant angular speed,
+     * so the midpoint is at half of the angle from both, and its result is a unit quaternion.
+     */
+    @Test
+    public void slerpMidpoints() {
+        Random random = new Random(4);
+        float[] r = new float[4];
+        for (int i = 0; i < SAMPLES; i++) {
+            float[] a = randomQuaternion(random), b = randomQuaternion(random);
+            double total = angle(a, b);
+            Quatf.slerp(r, 0, a, 0, b, 0, 0.5F);
+            assertEquals(1, length(r), 1e-5);
+            assertEquals(total / 2, angle(a, r), 2e-3);
+            assertEquals(total / 2, angle(r, b), 2e-3);
+
+            float t = random.nextFloat();
+            Quatf.slerp(r, 0, a, 0, b, 0, t);
+            assertEquals(1, length(r), 1e-5);
+            assertEquals(total * t, angle(a, r), 2e-3);
+            Quatf.slerp(r, 0, a, 0, b, 0, 0.F);
+            assertEquals(0, angle(a, r), 2e-3);
+            Quatf.slerp(r, 0, a, 0, b, 0, 1.F);
+            assertEquals(0, angle(r, b), 2e-3);
+        }
+    }
+
+    /**
+     * With the quaternions of opposite signs, the slerp takes the shortest path, not the rotation going the other way round.
+     */
+    @Test
+    public void slerpShortestPath() {
+        float[] a = new float[4], b = new float[4], r = new float[4], euler = new float[3];
+        Quatf.setIdentity(a, 0);
+        Quatf.fromEuler(b, 0, 0.F, 10.F, 0.F);
+        for (int k = 0; k < 4; k++)
+            b[k] = -b[k];
+        Quatf.slerp(r, 0, a, 0, b, 0, 0.5F);
+        Quatf.toEuler(r, 0, euler, 0);
+        assertEquals(0.F, euler[0], 1e-4);
+        assertEquals(5.F, euler[1], 1e-4);
+        assertEquals(0.F, euler[2], 1e-4);
+        //the result can be one of the operands
+        Quatf.slerp(a, 0, a, 0, b, 0, 0.5F);
+        for (int k = 0; k < 4; k++)
+            assertEquals(r[k], a[k], 0.F);
+    }
+
+    /**
+     * Close rotations are interpolated linearly then normalized, still giving a unit quaternion between them.
+     */
+    @Test
+    public void slerpCloseRotations() {
+        float[] a = new float[4], b = new float[4], r = new float[4], euler = new float[3];
+        Quatf.fromEuler(a, 0, 0.F, 30.F, 0.F);
+        Quatf.fromEuler(b, 0, 0.F, 30.5F, 0.F);
+        Quatf.slerp(r, 0, a, 0, b, 0, 0.5F);
+        assertEquals(1, length(r), 1e-6);
+        Quatf.toEuler(r, 0, euler, 0);
+        assertEquals(30.25F, euler[1], 1e-3);
+    }
+}
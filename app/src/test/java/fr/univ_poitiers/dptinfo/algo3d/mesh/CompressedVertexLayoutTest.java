@@ -0,0 +1,110 @@
+package fr.univ_poitiers.dptinfo.algo3d.mesh;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the round-trip error of the attributes encoded by {@link CompressedVertexLayout}, decoded as the shaders do.
+ */
+public class CompressedVertexLayoutTest {
+
+    /**
+     * Number of random vertices encoded.
+     */
+    private static final int VERTICES = 100000;
+
+    /**
+     * Largest angle in radians between a normal and its octahedral encoding on 2 shorts, about 0.06 degrees.
+     */
+    private static final double MAX_NORMAL_ANGLE = 1e-3;
+
+    /**
+     * Returns the largest error of a value quantized in a range : half a quantization step, plus the rounding of the float operations.
+     * @param min - minimum of the range
+     * @param extent - size of the range
+     * @return the largest error
+     */
+    private static float bound(float min, float extent) {
+        return extent / 0xFFFF * 0.5F + Math.ulp(Math.max(Math.abs(min), Math.abs(min + extent))) * 4.F;
+    }
+
+    /**
+     * Encode random vertices and check the error of the decoded positions, normals and texture coordinates.
+     */
+    @Test
+    public void roundTripError() {
+        Random random = new Random(5);
+        float[] positions = new float[VERTICES * 3];
+        float[] normals = new float[VERTICES * 3];
+        float[] textures = new float[VERTICES * 2];
+        for (int i = 0; i < VERTICES; i++) {
+            //a box far from the origin, with different sizes along each axis
+            positions[i * 3] = 100.F + random.nextFloat() * 4.F;
+            positions[i * 3 + 1] = -3.F + random.nextFloat() * 0.5F;
+            positions[i * 3 + 2] = random.nextFloat() * 40.F;
+            double x = random.nextGaussian(), y = random.nextGaussian(), z = random.nextGaussian();
+            double l = Math.sqrt(x * x + y * y + z * z);
+            normals[i * 3] = (float) (x / l);
+            normals[i * 3 + 1] = (float) (y / l);
+            normals[i * 3 + 2] = (float) (z / l);
+            textures[i * 2] = random.nextFloat() * 8.F - 2.F;
+            textures[i * 2 + 1] = random.nextFloat();
+        }
+        //the axes and the diagonals, where the octahedron folds
+        float[][] special = {{1, 0, 0}, {-1, 0, 0}, {0, 1, 0}, {0, -1, 0}, {0, 0, 1}, {0, 0, -1}, {0.57735026F, -0.57735026F, -0.57735026F}};
+        for (int i = 0; i < special.length; i++)
+            System.arraycopy(special[i], 0, normals, i * 3, 3);
+
+        CompressedVertexLayout layout = new CompressedVertexLayout(FloatBuffer.wrap(positions), FloatBuffer.wrap(normals), FloatBuffer.wrap(textures));
+        ByteBuffer buffer = layout.getBuffer();
+        assertEquals(VERTICES * CompressedVertexLayout.STRIDE, buffer.capacity());
+        float[] scale = layout.getPositionScale();
+        float[] offset = layout.getPositionOffset();
+        float[] texture = layout.getTextureDequantization();
+        float[] normal = new float[3];
+        double maxAngle = 0.;
+        for (int i = 0; i < VERTICES; i++) {
+            int base = i * CompressedVertexLayout.STRIDE;
+            for (int k = 0; k < 3; k++) {
+                float decoded = CompressedVertexLayout.dequantize(buffer.getShort(base + CompressedVertexLayout.POSITION_OFFSET + k * 2), offset[k], scale[k]);
+                float bound = bound(offset[k], scale[k]);
+                assertEquals("position " + i + " " + k, positions[i * 3 + k], decoded, bound);
+            }
+            for (int k = 0; k < 2; k++) {
+                float decoded = CompressedVertexLayout.dequantize(buffer.getShort(base + CompressedVertexLayout.TEXTURE_OFFSET + k * 2), texture[k + 2], texture[k]);
+                float bound = bound(texture[k + 2], texture[k]);
+                assertEquals("texture " + i + " " + k, textures[i * 2 + k], decoded, bound);
+            }
+            CompressedVertexLayout.decodeOctahedral(buffer.getShort(base + CompressedVertexLayout.NORMAL_OFFSET),
+                    buffer.getShort(base + CompressedVertexLayout.NORMAL_OFFSET + 2), normal);
+            double dot = normal[0] * normals[i * 3] + normal[1] * normals[i * 3 + 1] + normal[2] * normals[i * 3 + 2];
+            double angle = Math.acos(Math.min(1., dot));
+            maxAngle = Math.max(maxAngle, angle);
+            assertTrue("normal " + i + " angle " + angle, angle < MAX_NORMAL_ANGLE);
+            assertEquals(1., normal[0] * normal[0] + normal[1] * normal[1] + normal[2] * normal[2], 1e-6);
+        }
+        System.out.println("largest octahedral normal error : " + Math.toDegrees(maxAngle) + " degrees");
+    }
+
+    /**
+     * A mesh whose coordinates are constant along an axis and without texture coordinates is encoded without division by 0.
+     */
+    @Test
+    public void flatMesh() {
+        float[] positions = {0, 2, 0, 1, 2, 0, 0, 2, 1};
+        float[] normals = {0, 1, 0, 0, 1, 0, 0, 1, 0};
+        CompressedVertexLayout layout = new CompressedVertexLayout(FloatBuffer.wrap(positions), FloatBuffer.wrap(normals), null);
+        ByteBuffer buffer = layout.getBuffer();
+        for (int i = 0; i < 3; i++)
+            assertEquals(2.F, CompressedVertexLayout.dequantize(buffer.getShort(i * CompressedVertexLayout.STRIDE + 2), layout.getPositionOffset()[1], layout.getPositionScale()[1]), 0.F);
+        float[] texture = layout.getTextureDequantization();
+        for (int k = 0; k < 4; k++)
+            assertEquals(0.F, texture[k], 0.F);
+    }
+}
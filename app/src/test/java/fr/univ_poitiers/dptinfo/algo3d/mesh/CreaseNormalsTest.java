@@ -0,0 +1,85 @@
+package fr.univ_poitiers.dptinfo.algo3d.mesh;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of the crease shading normals of {@link Mesh#calculateCreaseShadingNormals(float)}, computed by {@link CreaseNormals}.
+ */
+public class CreaseNormalsTest {
+
+    /**
+     * Build a unit cube whose 8 corners are shared by the faces, the triangles facing outwards.
+     * @return the cube
+     */
+    static Mesh sharedCube() {
+        float[] vertexpos = {
+                0, 0, 0, 1, 0, 0, 1, 1, 0, 0, 1, 0,
+                0, 0, 1, 1, 0, 1, 1, 1, 1, 0, 1, 1};
+        int[] triangles = {
+                0, 3, 2, 0, 2, 1, //z = 0
+                4, 5, 6, 4, 6, 7, //z = 1
+                0, 1, 5, 0, 5, 4, //y = 0
+                3, 7, 6, 3, 6, 2, //y = 1
+                0, 4, 7, 0, 7, 3, //x = 0
+                1, 2, 6, 1, 6, 5}; //x = 1
+        return new Mesh(vertexpos, triangles);
+    }
+
+    /**
+     * Each corner of the cube is split in 3 vertices, one per face, whose normal is the normal of the face.
+     */
+    @Test
+    public void cubeIsSplitAlongItsEdges() {
+        Mesh cube = sharedCube();
+        float[] positions = cube.getVertexpos().clone();
+        int[] original = cube.getTriangles().clone();
+        cube.calculateCreaseShadingNormals(30.F);
+        assertEquals(24, cube.getVerticesCount());
+        float[] vertexpos = cube.getVertexpos(), normals = cube.getNormals();
+        int[] triangles = cube.getTriangles();
+        assertEquals(original.length, triangles.length);
+        for (int i = 0; i < triangles.length; i++) {
+            //the triangles keep their corners at the same positions
+            for (int k = 0; k < 3; k++)
+                assertEquals(positions[original[i] * 3 + k], vertexpos[triangles[i] * 3 + k], 0.F);
+            //the normal of the face : the axis along which the 3 corners of the triangle do not move
+            int t = i - i % 3;
+            for (int k = 0; k < 3; k++) {
+                boolean flat = vertexpos[triangles[t] * 3 + k] == vertexpos[triangles[t + 1] * 3 + k]
+                        && vertexpos[triangles[t] * 3 + k] == vertexpos[triangles[t + 2] * 3 + k];
+                float expected = flat ? (vertexpos[triangles[t] * 3 + k] == 0.F ? -1.F : 1.F) : 0.F;
+                assertEquals("normal of corner " + i, expected, normals[triangles[i] * 3 + k], 1e-6F);
+            }
+        }
+    }
+
+    /**
+     * A sphere has no edge sharper than the crease angle, so its vertices are not split.
+     */
+    @Test
+    public void smoothSphereKeepsItsVertices() {
+        Mesh sphere = new Sphere(32, 32);
+        int nbVertices = sphere.getVerticesCount();
+        sphere.calculateCreaseShadingNormals(30.F);
+        assertEquals(nbVertices, sphere.getVerticesCount());
+    }
+
+    /**
+     * With a crease angle of 180 degrees, the vertices are not split and the normals are the smooth shading ones.
+     */
+    @Test
+    public void flatAngleGivesSmoothNormals() {
+        Mesh[] meshes = {sharedCube(), new Sphere(32, 32), new Donut(1.F, 0.3F, 50, 20)};
+        for (Mesh mesh : meshes) {
+            Mesh smooth = new Mesh(mesh.getVertexpos().clone(), mesh.getTriangles().clone());
+            smooth.calculateSmoothShadingNormals();
+            mesh.calculateCreaseShadingNormals(180.F);
+            assertArrayEquals(smooth.getTriangles(), mesh.getTriangles());
+            assertArrayEquals(smooth.getVertexpos(), mesh.getVertexpos(), 0.F);
+            assertArrayEquals(smooth.getNormals(), mesh.getNormals(), 1e-6F);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package fr.univ_poitiers.dptinfo.algo3d.mesh;
+
+import org.junit.Test;
+
+import java.nio.IntBuffer;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the unique edges extracted by {@link EdgeExtractor}, compared with a {@link HashSet} of the edges of each batch.
+ */
+public class EdgeExtractorTest {
+
+    /**
+     * Build a closed torus : a grid of vertices whose last row and column are joined to the first ones, so each edge is shared by exactly 2 triangles.
+     * The triangles are shuffled so the batches of a large torus are not made of neighbour rows.
+     * @param rows - number of rows of vertices
+     * @param columns - number of columns of vertices
+     * @param seed - seed of the shuffle
+     * @return the triangles of the torus
+     */
+    private static int[] closedTorus(int rows, int columns, long seed) {
+        int[] triangles = new int[rows * columns * 6];
+        int k = 0;
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
+                int a = i * columns + j, b = i * columns + (j + 1) % columns;
+                int c = ((i + 1) % rows) * columns + j, d = ((i + 1) % rows) * columns + (j + 1) % columns;
+                triangles[k++] = a;
+                triangles[k++] = b;
+                triangles[k++] = d;
+                triangles[k++] = a;
+                triangles[k++] = d;
+                triangles[k++] = c;
+            }
+        }
+        Random random = new Random(seed);
+        for (int t = triangles.length / 3 - 1; t > 0; t--) {
+            int other = random.nextInt(t + 1);
+            for (int v = 0; v < 3; v++) {
+                int tmp = triangles[t * 3 + v];
+                triangles[t * 3 + v] = triangles[other * 3 + v];
+                triangles[other * 3 + v] = tmp;
+            }
+        }
+        return triangles;
+    }
+
+    /**
+     * Returns the key of an undirected edge between two original vertices.
+     * @param a - first vertex
+     * @param b - second vertex
+     * @return the key, the same in both directions
+     */
+    private static long key(int a, int b) {
+        return a < b ? ((long) a << 32) | b : ((long) b << 32) | a;
+    }
+
+    /**
+     * Split the triangles, extract the edges of the batches and compare each batch with the reference set of its edges.
+     * @param triangles - triangles of the mesh
+     * @param nbVertices - number of vertices of the mesh
+     * @return the total number of extracted edges
+     */
+    private static int extract(int[] triangles, int nbVertices) {
+        IndexSplitter splitter = new IndexSplitter();
+        splitter.split(IntBuffer.wrap(triangles), nbVertices);
+        EdgeExtractor extractor = new EdgeExtractor();
+        extractor.extract(splitter.indices, splitter.firstIndex, splitter.indicesCount, splitter.batchesCount);
+        int nbEdges = 0;
+        for (int b = 0; b < splitter.batchesCount; b++) {
+            Set<Long> expected = new HashSet<>();
+            for (int i = splitter.firstIndex[b]; i < splitter.firstIndex[b] + splitter.indicesCount[b]; i += 3) {
+                for (int k = 0; k < 3; k++) {
+                    int v0 = triangles[i + k], v1 = triangles[i + (k + 1) % 3];
+                    if (v0 != v1)
+                        expected.add(key(v0, v1));
+                }
+            }
+            Set<Long> extracted = new HashSet<>();
+            for (int i = extractor.firstIndex[b]; i < extractor.firstIndex[b] + extractor.indicesCount[b]; i += 2) {
+                int v0 = original(splitter, b, extractor.indices[i]), v1 = original(splitter, b, extractor.indices[i + 1]);
+                assertTrue("edge " + v0 + "-" + v1 + " extracted twice in batch " + b, extracted.add(key(v0, v1)));
+            }
+            assertEquals("edges of batch " + b, expected, extracted);
+            nbEdges += extracted.size();
+        }
+        assertEquals(extractor.indices.length, nbEdges * 2);
+        return nbEdges;
+    }
+
+    /**
+     * Returns the original vertex of a 16 bits index of a batch.
+     * @param splitter - the splitter of the mesh
+     * @param batch - the batch
+     * @param index - the 16 bits index relative to the first vertex of the batch
+     * @return the index of the vertex in the mesh
+     */
+    private static int original(IndexSplitter splitter, int batch, short index) {
+        int vertex = splitter.firstVertex[batch] + (index & 0xFFFF);
+        return splitter.vertices == null ? vertex : splitter.vertices[vertex];
+    }
+
+    /**
+     * A closed mesh in a single batch has 3 edges per 2 triangles, each one extracted once whatever the orientation of its triangles.
+     */
+    @Test
+    public void closedMesh() {
+        int[] triangles = closedTorus(40, 60, 1);
+        assertEquals(triangles.length / 2, extract(triangles, 40 * 60));
+    }
+
+    /**
+     * A mesh of several batches, with 16 bits indices above 32767, negative as short.
+     * The edges on the border of two batches are extracted in both.
+     */
+    @Test
+    public void multipleBatches() {
+        int rows = 300, columns = 400;
+        int[] triangles = closedTorus(rows, columns, 2);
+        IndexSplitter splitter = new IndexSplitter();
+        splitter.split(IntBuffer.wrap(triangles), rows * columns);
+        assertTrue(splitter.batchesCount > 1);
+        boolean negative = false;
+        for (short index : splitter.indices)
+            negative |= index < 0;
+        assertTrue("indices above 32767", negative);
+        assertTrue(extract(triangles, rows * columns) >= triangles.length / 2);
+    }
+
+    /**
+     * The degenerate edges of a triangle with the same vertex twice are ignored, its other edges are kept.
+     */
+    @Test
+    public void degenerateTriangles() {
+        int[] triangles = {0, 1, 2, 2, 1, 1, 3, 3, 3, 0, 2, 4};
+        assertEquals(5, extract(triangles, 5));
+    }
+}
@@ -0,0 +1,137 @@
+package fr.univ_poitiers.dptinfo.algo3d.mesh;
+
+import org.junit.Test;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the split of the triangles into batches of 16 bits indices by {@link IndexSplitter}, without OpenGL context.
+ */
+public class IndexSplitterTest {
+
+    /**
+     * Build a strip of triangles (i, i + 1, i + 2), each triangle adding one vertex to the previous one.
+     * @param nbVertices - number of vertices of the strip
+     * @return the triangles
+     */
+    private static int[] strip(int nbVertices) {
+        int[] triangles = new int[(nbVertices - 2) * 3];
+        for (int i = 0; i < nbVertices - 2; i++) {
+            triangles[i * 3] = i;
+            triangles[i * 3 + 1] = i + 1;
+            triangles[i * 3 + 2] = i + 2;
+        }
+        return triangles;
+    }
+
+    /**
+     * Split the triangles and check the batches : their size, their ranges of indices and vertices,
+     * and that each remapped index resolves to the position of the original vertex.
+     * @param triangles - triangles of the mesh
+     * @param nbVertices - number of vertices of the mesh
+     * @return the splitter
+     */
+    private static IndexSplitter split(int[] triangles, int nbVertices) {
+        IndexSplitter splitter = new IndexSplitter();
+        splitter.split(IntBuffer.wrap(triangles), nbVertices);
+        int indexEnd = 0;
+        for (int b = 0; b < splitter.batchesCount; b++) {
+            assertEquals("batches are consecutive", indexEnd, splitter.firstIndex[b]);
+            assertEquals("batches contain whole triangles", 0, splitter.indicesCount[b] % 3);
+            indexEnd += splitter.indicesCount[b];
+            int vertexEnd = b + 1 < splitter.batchesCount ? splitter.firstVertex[b + 1] : splitter.verticesCount;
+            assertTrue(vertexEnd - splitter.firstVertex[b] <= IndexSplitter.MAX_VERTICES);
+            for (int i = splitter.firstIndex[b]; i < indexEnd; i++) {
+                int local = splitter.indices[i] & 0xFFFF;
+                assertTrue("0xFFFF is the primitive restart index", local < 0xFFFF);
+                assertTrue(splitter.firstVertex[b] + local < vertexEnd);
+            }
+        }
+        assertEquals(triangles.length, indexEnd);
+
+        //positions equal to the vertex index, to check where the remapped indices point
+        float[] positions = new float[nbVertices * 3];
+        for (int i = 0; i < positions.length; i++)
+            positions[i] = i;
+        float[] gathered = splitter.vertices == null ? positions : splitter.gather(FloatBuffer.wrap(positions), 3);
+        assertEquals(splitter.verticesCount * 3, gathered.length);
+        for (int b = 0; b < splitter.batchesCount; b++) {
+            for (int i = splitter.firstIndex[b]; i < splitter.firstIndex[b] + splitter.indicesCount[b]; i++) {
+                int vertex = splitter.firstVertex[b] + (splitter.indices[i] & 0xFFFF);
+                for (int k = 0; k < 3; k++)
+                    assertEquals(positions[triangles[i] * 3 + k], gathered[vertex * 3 + k], 0.F);
+            }
+        }
+        return splitter;
+    }
+
+    /**
+     * A mesh of at most {@link IndexSplitter#MAX_VERTICES} vertices stays in a single batch with unchanged vertices.
+     */
+    @Test
+    public void singleBatch() {
+        Sphere sphere = new Sphere(32, 32);
+        IndexSplitter splitter = split(sphere.getTriangles(), sphere.getVertexpos().length / 3);
+        assertEquals(1, splitter.batchesCount);
+        assertNull(splitter.vertices);
+
+        splitter = split(strip(IndexSplitter.MAX_VERTICES), IndexSplitter.MAX_VERTICES);
+        assertEquals(1, splitter.batchesCount);
+        assertNull(splitter.vertices);
+    }
+
+    /**
+     * A mesh of 65536 vertices is split, so that no batch uses the index 0xFFFF.
+     */
+    @Test
+    public void splitAbove65535() {
+        IndexSplitter splitter = split(strip(IndexSplitter.MAX_VERTICES + 1), IndexSplitter.MAX_VERTICES + 1);
+        assertEquals(2, splitter.batchesCount);
+    }
+
+    /**
+     * The triangle that does not fit in a batch is moved whole to the next one, its vertices already in the previous batch being duplicated.
+     */
+    @Test
+    public void triangleStraddlingBatches() {
+        int nbVertices = 70000;
+        int[] triangles = strip(nbVertices);
+        IndexSplitter splitter = split(triangles, nbVertices);
+        assertEquals(2, splitter.batchesCount);
+        //the first batch ends with the last triangle whose 3 vertices are below MAX_VERTICES
+        int firstTriangleOfSecondBatch = IndexSplitter.MAX_VERTICES - 2;
+        assertEquals(firstTriangleOfSecondBatch * 3, splitter.firstIndex[1]);
+        assertEquals(IndexSplitter.MAX_VERTICES, splitter.firstVertex[1]);
+        //2 vertices shared by the two batches are duplicated
+        assertEquals(nbVertices + 2, splitter.verticesCount);
+        int second = splitter.firstVertex[1];
+        assertArrayEquals(new int[]{firstTriangleOfSecondBatch, firstTriangleOfSecondBatch + 1, firstTriangleOfSecondBatch + 2},
+                new int[]{splitter.vertices[second], splitter.vertices[second + 1], splitter.vertices[second + 2]});
+    }
+
+    /**
+     * A large mesh with random triangles, including degenerate ones, is split into several batches.
+     */
+    @Test
+    public void multipleBatches() {
+        Random random = new Random(6);
+        int nbVertices = 300000;
+        int[] triangles = new int[600000 * 3];
+        for (int i = 0; i < triangles.length; i += 3) {
+            //triangles of neighbour vertices, as in a real mesh, with some repeated indices
+            int v = random.nextInt(nbVertices - 64);
+            triangles[i] = v;
+            triangles[i + 1] = v + random.nextInt(64);
+            triangles[i + 2] = random.nextInt(10) == 0 ? v : v + random.nextInt(64);
+        }
+        IndexSplitter splitter = split(triangles, nbVertices);
+        assertTrue(splitter.batchesCount > 5);
+    }
+}
@@ -0,0 +1,171 @@
+package fr.univ_poitiers.dptinfo.algo3d.mesh;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import fr.univ_poitiers.dptinfo.algo3d.gameobject.GameObject;
+import fr.univ_poitiers.dptinfo.algo3d.gl.GL;
+import fr.univ_poitiers.dptinfo.algo3d.gl.GLBackend;
+import fr.univ_poitiers.dptinfo.algo3d.gl.RecordingBackend;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests of the selection of the level of detail by {@link LODGroup} : thresholds, hysteresis and counters.
+ * The projection scale is 1 and the camera is at the origin, so the size of an object of radius 1 at the distance d is 1 / d.
+ */
+public class LODGroupTest {
+
+    /**
+     * Smallest size on the screen of each level.
+     */
+    private static final float[] SCREEN_SIZES = {0.5F, 0.25F, 0.F};
+    /**
+     * Number of triangles of each level.
+     */
+    private static final int[] TRIANGLES = {8, 4, 2};
+    /**
+     * View matrix of the camera, at the origin and looking along -z.
+     */
+    private static final float[] IDENTITY = {1.F, 0.F, 0.F, 0.F, 0.F, 1.F, 0.F, 0.F, 0.F, 0.F, 1.F, 0.F, 0.F, 0.F, 0.F, 1.F};
+
+    /**
+     * Backend before the test, restored after it.
+     */
+    private GLBackend previous;
+    /**
+     * The levels, from the most detailed.
+     */
+    private Mesh[] levels;
+    /**
+     * The object whose level is chosen.
+     */
+    private GameObject gameObject;
+    /**
+     * The tested group.
+     */
+    private LODGroup group;
+
+    /**
+     * Build a level of detail of bounding radius 1 centered at the origin.
+     * @param nbTriangles - number of triangles of the level
+     * @return the mesh
+     */
+    private static Mesh level(int nbTriangles) {
+        float[] vertexpos = {-1.F, 0.F, 0.F, 1.F, 0.F, 0.F, 0.F, 1.F, 0.F, 0.F, -1.F, 0.F};
+        int[] triangles = new int[nbTriangles * 3];
+        for (int t = 0; t < nbTriangles; t++) {
+            triangles[t * 3] = 0;
+            triangles[t * 3 + 1] = t % 2 == 0 ? 1 : 3;
+            triangles[t * 3 + 2] = t % 2 == 0 ? 2 : 1;
+        }
+        return new Mesh(vertexpos, triangles);
+    }
+
+    /**
+     * Record the OpenGL calls, set the projection and build the object with its levels.
+     */
+    @Before
+    public void setUp() {
+        previous = GL.getBackend();
+        RecordingBackend backend = new RecordingBackend();
+        backend.setLogging(false);
+        GL.setBackend(backend);
+        float[] projection = new float[16];
+        projection[5] = 1.F;
+        LODGroup.setProjectionMatrix(projection);
+        LODGroup.beginFrame(IDENTITY);
+
+        levels = new Mesh[TRIANGLES.length];
+        for (int i = 0; i < levels.length; i++)
+            levels[i] = level(TRIANGLES[i]);
+        gameObject = new GameObject();
+        gameObject.addComponent(LODGroup.class);
+        group = gameObject.getCompotent(LODGroup.class);
+        group.setLevels(levels, SCREEN_SIZES);
+        group.setHysteresis(0.1F);
+        gameObject.start();
+    }
+
+    /**
+     * Destroy the object and restore the default projection and the backend.
+     */
+    @After
+    public void tearDown() {
+        GameObject.destroy(gameObject);
+        float[] projection = new float[16];
+        projection[5] = 1.F / (float) Math.tan(Math.toRadians(30.0));
+        LODGroup.setProjectionMatrix(projection);
+        GL.setBackend(previous);
+    }
+
+    /**
+     * Move the object at the given distance in front of the camera and update it for a frame of two passes, as the reflection and the main pass.
+     * @param distance - distance to the camera
+     * @return the level of the frame
+     */
+    private int frame(float distance) {
+        gameObject.getTransform().posz(-distance);
+        LODGroup.beginFrame(IDENTITY);
+        gameObject.earlyUpdate();
+        int level = group.getCurrentLevel();
+        //the second pass keeps the level of the frame
+        gameObject.earlyUpdate();
+        assertEquals(level, group.getCurrentLevel());
+        return level;
+    }
+
+    /**
+     * The level changes when a threshold is crossed by more than the hysteresis, in both directions.
+     */
+    @Test
+    public void thresholdsAndHysteresis() {
+        assertEquals(0, frame(1.F));
+        //size 0.476, under the threshold 0.5 but not under 0.45
+        assertEquals(0, frame(2.1F));
+        //size 0.4
+        assertEquals(1, frame(2.5F));
+        //size 0.5, above the threshold but not above 0.55
+        assertEquals(1, frame(2.F));
+        //size 0.588
+        assertEquals(0, frame(1.7F));
+        //size 0.1, past both thresholds at once
+        assertEquals(2, frame(10.F));
+        assertSame(levels[2], gameObject.getCompotent(MeshFilter.class).getMesh());
+        //size 0.233, under the threshold 0.25 but not above 0.275
+        assertEquals(2, frame(4.3F));
+        //size 0.286
+        assertEquals(1, frame(3.5F));
+        assertSame(levels[1], gameObject.getCompotent(MeshFilter.class).getMesh());
+    }
+
+    /**
+     * The counters are updated once per frame, whatever the number of render passes.
+     */
+    @Test
+    public void countersOncePerFrame() {
+        group.resetCounters();
+        float[] distances = {1.F, 2.5F, 2.5F, 10.F, 1.F};
+        int[] expectedLevels = {0, 1, 1, 2, 0};
+        long submitted = 0;
+        for (int f = 0; f < distances.length; f++) {
+            gameObject.getTransform().posz(-distances[f]);
+            LODGroup.beginFrame(IDENTITY);
+            //reflection pass then main pass
+            gameObject.earlyUpdate();
+            gameObject.earlyUpdate();
+            assertEquals(expectedLevels[f], group.getCurrentLevel());
+            submitted += TRIANGLES[expectedLevels[f]];
+        }
+        assertEquals(submitted, group.getSubmittedTriangles());
+        assertEquals(distances.length * TRIANGLES[0], group.getFullDetailTriangles());
+        assertEquals(3, group.getLevelChanges());
+
+        group.resetCounters();
+        assertEquals(0, group.getSubmittedTriangles());
+        assertEquals(0, group.getFullDetailTriangles());
+        assertEquals(0, group.getLevelChanges());
+    }
+}
@@ -0,0 +1,197 @@
+package fr.univ_poitiers.dptinfo.algo3d.mesh;
+
+import android.content.Context;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import fr.univ_poitiers.dptinfo.algo3d.GpuResourceTracker;
+import fr.univ_poitiers.dptinfo.algo3d.MyGLRenderer;
+import fr.univ_poitiers.dptinfo.algo3d.gameobject.GameObject;
+import fr.univ_poitiers.dptinfo.algo3d.gl.GL;
+import fr.univ_poitiers.dptinfo.algo3d.gl.GLBackend;
+import fr.univ_poitiers.dptinfo.algo3d.gl.RecordingBackend;
+import fr.univ_poitiers.dptinfo.algo3d.shaders.ShaderManager;
+import fr.univ_poitiers.dptinfo.algo3d.shaders.ShadowShaders;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests of the sharing of the GPU buffers of the meshes by the {@link MeshBufferRegistry}, the OpenGL calls being counted by a {@link RecordingBackend}.
+ * Each mesh is sent to the GPU in 3 buffers : the vertices, the triangle indices and the edge indices.
+ */
+public class MeshBufferRegistryTest {
+
+    /**
+     * Shaders of the materials, whose sources are not compiled by the recording backend.
+     */
+    private static class TestShaders extends ShadowShaders {
+
+        /**
+         * Constructor.
+         */
+        TestShaders() {
+            super(null);
+        }
+
+        /**
+         * Create a program from empty shaders.
+         * @param context - not used
+         * @return the program handle
+         */
+        @Override
+        public int createProgram(Context context) {
+            return initializeShaders("void main() {}", "void main() {}");
+        }
+    }
+
+    /**
+     * Number of buffers of a mesh on the GPU.
+     */
+    private static final int BUFFERS = 3;
+
+    /**
+     * Backend counting the calls of the test.
+     */
+    private RecordingBackend backend;
+    /**
+     * Backend before the test, restored after it.
+     */
+    private GLBackend previous;
+    /**
+     * The tested registry.
+     */
+    private MeshBufferRegistry registry;
+    /**
+     * Objects created by the test, destroyed after it if they were not.
+     */
+    private final List<GameObject> gameObjects = new ArrayList<>();
+
+    /**
+     * Record the OpenGL calls, create the shaders and start from an empty registry.
+     */
+    @Before
+    public void setUp() {
+        previous = GL.getBackend();
+        backend = new RecordingBackend();
+        backend.setLogging(false);
+        GL.setBackend(backend);
+        GpuResourceTracker.getInstance().forgetAll();
+        ShaderManager.getInstance().clearShaders();
+        ShaderManager.getInstance().addShaders(new TestShaders());
+        registry = MeshBufferRegistry.getInstance();
+        registry.clear();
+        backend.resetFrame();
+    }
+
+    /**
+     * Destroy the objects, then restore the shaders and the backend.
+     */
+    @After
+    public void tearDown() {
+        for (GameObject go : gameObjects)
+            GameObject.destroy(go);
+        registry.clear();
+        ShaderManager.getInstance().clearShaders();
+        GpuResourceTracker.getInstance().forgetAll();
+        GL.setBackend(previous);
+    }
+
+    /**
+     * Create an object drawing the given mesh, not started.
+     * @param mesh - the mesh
+     * @return the object
+     */
+    private GameObject object(Mesh mesh) {
+        GameObject go = new GameObject();
+        go.setMesh(mesh);
+        Material material = new Material(MyGLRenderer.white);
+        material.setShader(TestShaders.class);
+        go.addMeshRenderer(material);
+        gameObjects.add(go);
+        return go;
+    }
+
+    /**
+     * A mesh drawn by several objects is sent once to the GPU, and its buffers are deleted when the last object is destroyed.
+     */
+    @Test
+    public void sharedMeshIsUploadedOnce() {
+        Mesh mesh = new Donut(1.F, 0.3F, 20, 10);
+        GameObject[] users = {object(mesh), object(mesh), object(mesh)};
+        for (GameObject go : users)
+            go.start();
+        assertEquals(BUFFERS, backend.getCallCount("glBufferData"));
+        assertEquals(users.length, registry.getReferenceCount(mesh));
+        assertEquals(1, registry.getMeshesCount());
+
+        GameObject.destroy(users[0]);
+        GameObject.destroy(users[1]);
+        assertEquals(0, backend.getCallCount("glDeleteBuffers"));
+        assertEquals(1, registry.getReferenceCount(mesh));
+
+        GameObject.destroy(users[2]);
+        assertEquals(BUFFERS, backend.getCallCount("glDeleteBuffers"));
+        assertEquals(0, registry.getReferenceCount(mesh));
+        assertEquals(0, registry.getMeshesCount());
+        assertEquals(0, GpuResourceTracker.getInstance().getCount(GpuResourceTracker.Category.BUFFER));
+    }
+
+    /**
+     * After {@link MeshBufferRegistry#clear()}, as when the OpenGL context is created again, a mesh is sent again to the GPU by its next user.
+     */
+    @Test
+    public void uploadedAgainAfterClear() {
+        Mesh mesh = new Donut(1.F, 0.3F, 20, 10);
+        object(mesh).start();
+        assertEquals(BUFFERS, backend.getCallCount("glBufferData"));
+
+        //the buffers are lost with the context
+        registry.clear();
+        GpuResourceTracker.getInstance().forgetAll();
+        backend.resetFrame();
+        object(mesh).start();
+        assertEquals(BUFFERS, backend.getCallCount("glBufferData"));
+        assertEquals(0, backend.getCallCount("glDeleteBuffers"));
+        assertEquals(1, registry.getReferenceCount(mesh));
+    }
+
+    /**
+     * An object with levels of detail acquires all its levels, and its renderer the level in its MeshFilter at the start.
+     * Once destroyed, after a change of level, everything acquired is released and deleted.
+     */
+    @Test
+    public void lodGroupAndRendererAreBalanced() {
+        Mesh[] levels = new Sphere(16, 16).generateLODChain(0.5F, 0.2F);
+        GameObject go = new GameObject();
+        go.addComponent(LODGroup.class);
+        go.getCompotent(LODGroup.class).setLevels(levels, new float[]{0.6F, 0.3F, 0.F});
+        Material material = new Material(MyGLRenderer.white);
+        material.setShader(TestShaders.class);
+        go.addMeshRenderer(material);
+        gameObjects.add(go);
+        go.start();
+        assertEquals(levels.length * BUFFERS, backend.getCallCount("glBufferData"));
+        assertEquals(2, registry.getReferenceCount(levels[0]));
+        for (int i = 1; i < levels.length; i++)
+            assertEquals(1, registry.getReferenceCount(levels[i]));
+
+        //far away, the coarsest level is drawn
+        go.getTransform().posz(-1000.F);
+        LODGroup.beginFrame(new float[]{1.F, 0.F, 0.F, 0.F, 0.F, 1.F, 0.F, 0.F, 0.F, 0.F, 1.F, 0.F, 0.F, 0.F, 0.F, 1.F});
+        go.earlyUpdate();
+        assertSame(levels[levels.length - 1], go.getCompotent(MeshFilter.class).getMesh());
+
+        GameObject.destroy(go);
+        for (Mesh level : levels)
+            assertEquals(0, registry.getReferenceCount(level));
+        assertEquals(0, registry.getMeshesCount());
+        assertEquals(levels.length * BUFFERS, backend.getCallCount("glDeleteBuffers"));
+        assertEquals(0, GpuResourceTracker.getInstance().getCount(GpuResourceTracker.Category.BUFFER));
+    }
+}
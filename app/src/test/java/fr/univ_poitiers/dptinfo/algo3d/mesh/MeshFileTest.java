@@ -0,0 +1,239 @@
+package fr.univ_poitiers.dptinfo.algo3d.mesh;
+
+import android.opengl.GLES20;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteOrder;
+
+import fr.univ_poitiers.dptinfo.algo3d.gl.GL;
+import fr.univ_poitiers.dptinfo.algo3d.gl.GLBackend;
+import fr.univ_poitiers.dptinfo.algo3d.gl.RecordingBackend;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of the {@link MeshFile} written and loaded back, of the mapped buffers sent to the GPU and of the invalid files.
+ */
+public class MeshFileTest {
+
+    /**
+     * Backend keeping the last buffer sent to the array buffer.
+     */
+    private static class UploadBackend extends RecordingBackend {
+        /**
+         * The data of the last upload to GL_ARRAY_BUFFER.
+         */
+        Buffer vertices;
+
+        @Override
+        public void glBufferData(int target, int size, Buffer data, int usage) {
+            super.glBufferData(target, size, data, usage);
+            if (target == GLES20.GL_ARRAY_BUFFER)
+                vertices = data;
+        }
+    }
+
+    /**
+     * The backend replaced during the test.
+     */
+    private GLBackend previous;
+    /**
+     * The backend recording the uploads.
+     */
+    private UploadBackend backend;
+    /**
+     * The file written by the test.
+     */
+    private File file;
+
+    /**
+     * Install the recording backend and create the file.
+     * @throws IOException if the file can not be created
+     */
+    @Before
+    public void setUp() throws IOException {
+        previous = GL.getBackend();
+        backend = new UploadBackend();
+        backend.setLogging(false);
+        GL.setBackend(backend);
+        file = File.createTempFile("mesh", ".mesh");
+    }
+
+    /**
+     * Restore the backend and delete the file.
+     */
+    @After
+    public void tearDown() {
+        GL.setBackend(previous);
+        file.delete();
+    }
+
+    /**
+     * Build a strip of triangles (i, i + 1, i + 2) over vertices with distinct positions and normals.
+     * @param nbVertices - number of vertices
+     * @return the mesh
+     */
+    private static Mesh strip(int nbVertices) {
+        float[] positions = new float[nbVertices * 3], normals = new float[nbVertices * 3];
+        for (int i = 0; i < nbVertices; i++) {
+            positions[i * 3] = i;
+            positions[i * 3 + 1] = i % 2;
+            normals[i * 3 + 2] = 1.F;
+        }
+        int[] triangles = new int[(nbVertices - 2) * 3];
+        for (int i = 0; i < nbVertices - 2; i++) {
+            triangles[i * 3] = i;
+            triangles[i * 3 + 1] = i % 2 == 0 ? i + 1 : i + 2;
+            triangles[i * 3 + 2] = i % 2 == 0 ? i + 2 : i + 1;
+        }
+        return new Mesh(positions, triangles, normals);
+    }
+
+    /**
+     * Write a mesh, load it back and check that its mapped vertices are sent as is to the GPU,
+     * with the same batches as the original mesh, then that its arrays are rebuilt exactly.
+     * @param mesh - the mesh
+     * @return the loaded mesh
+     * @throws IOException if the file can not be written or read
+     */
+    private Mesh roundTrip(Mesh mesh) throws IOException {
+        MeshFile.write(mesh, file);
+        Mesh loaded = MeshFile.load(file, true);
+        assertEquals(mesh.getVerticesCount(), loaded.getVerticesCount());
+        assertEquals(mesh.getIndicesCount(), loaded.getIndicesCount());
+        assertEquals(mesh.isCompressed(), loaded.isCompressed());
+
+        MeshBuffers expected = mesh.getBuffers();
+        MeshBuffers mapped = loaded.getBuffers();
+        assertTrue(mapped.vertices.isDirect());
+        assertEquals(expected.vertices.capacity(), mapped.vertices.capacity());
+        assertEquals(0, expected.vertices.compareTo(mapped.vertices));
+        assertEquals(0, expected.indices.compareTo(mapped.indices));
+        assertEquals(0, expected.edges.compareTo(mapped.edges));
+        assertEquals(expected.batchesCount, mapped.batchesCount);
+        for (int b = 0; b < expected.batchesCount; b++) {
+            assertEquals(expected.firstIndex[b], mapped.firstIndex[b]);
+            assertEquals(expected.indicesCount[b], mapped.indicesCount[b]);
+            assertEquals(expected.firstVertex[b], mapped.firstVertex[b]);
+            assertEquals(expected.firstEdgeIndex[b], mapped.firstEdgeIndex[b]);
+            assertEquals(expected.edgeIndicesCount[b], mapped.edgeIndicesCount[b]);
+        }
+
+        backend.resetFrame();
+        loaded.initGraphics();
+        assertSame("the mapped vertices are uploaded without copy", mapped.vertices, backend.vertices);
+        assertEquals(3, backend.getCallCount("glBufferData"));
+        loaded.releaseGraphics();
+        return loaded;
+    }
+
+    /**
+     * A mesh with texture coordinates gets back the same arrays.
+     * @throws IOException if the file can not be written or read
+     */
+    @Test
+    public void roundTrip() throws IOException {
+        Mesh sphere = new Sphere(32, 32);
+        Mesh loaded = roundTrip(sphere);
+        assertArrayEquals(sphere.getVertexpos(), loaded.getVertexpos(), 0.F);
+        assertArrayEquals(sphere.getNormals(), loaded.getNormals(), 0.F);
+        assertArrayEquals(sphere.getTexturesCoord(), loaded.getTexturesCoord(), 0.F);
+        assertArrayEquals(sphere.getTriangles(), loaded.getTriangles());
+
+        Mesh donut = new Donut(1.F, 0.3F, 50, 20);
+        loaded = roundTrip(donut);
+        assertNull(loaded.getTexturesCoord());
+        assertArrayEquals(donut.getVertexpos(), loaded.getVertexpos(), 0.F);
+        assertArrayEquals(donut.getTriangles(), loaded.getTriangles());
+    }
+
+    /**
+     * A mesh split in several batches stores the original index of its duplicated vertices, so it gets back the same arrays.
+     * @throws IOException if the file can not be written or read
+     */
+    @Test
+    public void splitRoundTrip() throws IOException {
+        Mesh mesh = strip(IndexSplitter.MAX_VERTICES + 5000);
+        Mesh loaded = roundTrip(mesh);
+        assertTrue(loaded.getBuffers().batchesCount > 1);
+        assertArrayEquals(mesh.getVertexpos(), loaded.getVertexpos(), 0.F);
+        assertArrayEquals(mesh.getNormals(), loaded.getNormals(), 0.F);
+        assertArrayEquals(mesh.getTriangles(), loaded.getTriangles());
+    }
+
+    /**
+     * A compressed mesh is stored compressed, and its arrays are rebuilt within the quantization error.
+     * @throws IOException if the file can not be written or read
+     */
+    @Test
+    public void compressedRoundTrip() throws IOException {
+        Mesh sphere = new Sphere(32, 32).setCompressed(true);
+        Mesh loaded = roundTrip(sphere);
+        assertArrayEquals(sphere.getVertexpos(), loaded.getVertexpos(), 2.F / 0xFFFF);
+        assertArrayEquals(sphere.getNormals(), loaded.getNormals(), 1e-3F);
+        assertArrayEquals(sphere.getTexturesCoord(), loaded.getTexturesCoord(), 2.F / 0xFFFF);
+        assertArrayEquals(sphere.getTriangles(), loaded.getTriangles());
+    }
+
+    /**
+     * A byte changed in the data is detected by the checksum.
+     * @throws IOException if the file can not be written or read
+     */
+    @Test
+    public void corruptedDataIsRejected() throws IOException {
+        MeshFile.write(new Sphere(16, 16), file);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            long position = MeshFile.HEADER_SIZE + (raf.length() - MeshFile.HEADER_SIZE) / 2;
+            raf.seek(position);
+            int b = raf.read();
+            raf.seek(position);
+            raf.write(b ^ 0x10);
+        } finally {
+            raf.close();
+        }
+        //without the verification, the mesh is loaded
+        MeshFile.load(file, false);
+        try {
+            MeshFile.load(file, true);
+            fail("The corrupted file was loaded");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("checksum"));
+        }
+    }
+
+    /**
+     * A file of another version of the format is rejected.
+     * @throws IOException if the file can not be written or read
+     */
+    @Test
+    public void unknownVersionIsRejected() throws IOException {
+        MeshFile.write(new Sphere(16, 16), file);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            int version = MeshFile.VERSION + 1;
+            raf.seek(4);
+            raf.writeInt(ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN ? version : Integer.reverseBytes(version));
+        } finally {
+            raf.close();
+        }
+        try {
+            MeshFile.load(file, true);
+            fail("The file of another version was loaded");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("version"));
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package fr.univ_poitiers.dptinfo.algo3d.mesh;
+
+import org.junit.Test;
+
+import fr.univ_poitiers.dptinfo.algo3d.Benchmarks;
+
+/**
+ * Microbenchmark of the flat and smooth normals of {@link Mesh}, against the original implementation allocating {@link fr.univ_poitiers.dptinfo.algo3d.Vec3f} objects.
+ */
+public class MeshNormalsBenchmark {
+
+    /**
+     * Number of triangles of the measured mesh.
+     */
+    private static final int TRIANGLES = 50000;
+
+    /**
+     * Measure the time per triangle of the normals of a random mesh.
+     */
+    @Test
+    public void normals() {
+        final Mesh mesh = MeshNormalsTest.randomMesh(TRIANGLES / 2, TRIANGLES, 4).setParallelNormals(false);
+        final float[] vertexpos = mesh.getVertexpos();
+        final int[] triangles = mesh.getTriangles();
+        long legacyFlat = Benchmarks.median(new Runnable() {
+            @Override
+            public void run() {
+                MeshNormalsTest.LegacyNormals.flat(vertexpos, triangles);
+            }
+        });
+        long flat = Benchmarks.median(new Runnable() {
+            @Override
+            public void run() {
+                mesh.calculateFlatShadingNormals();
+            }
+        });
+        long legacySmooth = Benchmarks.median(new Runnable() {
+            @Override
+            public void run() {
+                MeshNormalsTest.LegacyNormals.smooth(vertexpos, triangles);
+            }
+        });
+        long smooth = Benchmarks.median(new Runnable() {
+            @Override
+            public void run() {
+                mesh.calculateSmoothShadingNormals();
+            }
+        });
+        Benchmarks.report("flat normals : Vec3f %.1f ns/triangle, arrays %.1f ns/triangle", (double) legacyFlat / TRIANGLES, (double) flat / TRIANGLES);
+        Benchmarks.report("smooth normals : Vec3f %.1f ns/triangle, arrays %.1f ns/triangle", (double) legacySmooth / TRIANGLES, (double) smooth / TRIANGLES);
+    }
+}
@@ -0,0 +1,194 @@
+package fr.univ_poitiers.dptinfo.algo3d.mesh;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import fr.univ_poitiers.dptinfo.algo3d.Vec3f;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of the flat and smooth normals of {@link Mesh}, compared to the original implementation based on {@link Vec3f}.
+ */
+public class MeshNormalsTest {
+
+    /**
+     * Generate a random mesh, with degenerate triangles : repeated indices, aligned and coincident points.
+     * @param nbVertices - number of vertices
+     * @param nbTriangles - number of triangles
+     * @param seed - seed of the random generator
+     * @return the mesh
+     */
+    static Mesh randomMesh(int nbVertices, int nbTriangles, long seed) {
+        Random random = new Random(seed);
+        float[] vertexpos = new float[nbVertices * 3];
+        for (int i = 0; i < vertexpos.length; i++)
+            vertexpos[i] = random.nextFloat() * 2.F - 1.F;
+        //aligned points and a point equal to the first one
+        vertexpos[3] = 2.F * vertexpos[0];
+        vertexpos[4] = 2.F * vertexpos[1];
+        vertexpos[5] = 2.F * vertexpos[2];
+        vertexpos[6] = vertexpos[0];
+        vertexpos[7] = vertexpos[1];
+        vertexpos[8] = vertexpos[2];
+        int[] triangles = new int[nbTriangles * 3];
+        for (int i = 0; i < triangles.length; i++)
+            triangles[i] = random.nextInt(nbVertices);
+        triangles[0] = 0;
+        triangles[1] = 1;
+        triangles[2] = 2;
+        triangles[3] = 4;
+        triangles[4] = 4;
+        triangles[5] = 5;
+        return new Mesh(vertexpos, triangles);
+    }
+
+    /**
+     * Check that two normal arrays have the same bits.
+     * @param expected - normals of the original implementation
+     * @param actual - normals of the mesh
+     */
+    static void assertSameBits(float[] expected, float[] actual) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++)
+            assertEquals("normal component " + i, Float.floatToIntBits(expected[i]), Float.floatToIntBits(actual[i]));
+    }
+
+    /**
+     * The flat normals are bit-identical to the original ones.
+     */
+    @Test
+    public void flatNormals() {
+        Mesh[] meshes = {new Sphere(48, 48), randomMesh(1000, 5000, 1)};
+        for (Mesh mesh : meshes) {
+            float[] expected = LegacyNormals.flat(mesh.getVertexpos(), mesh.getTriangles());
+            mesh.calculateFlatShadingNormals();
+            assertSameBits(expected, mesh.getNormals());
+        }
+    }
+
+    /**
+     * The smooth normals are bit-identical to the original ones, calculated sequentially or in parallel.
+     */
+    @Test
+    public void smoothNormals() {
+        Mesh[] meshes = {new Sphere(48, 48), randomMesh(1000, 5000, 2), randomMesh(20000, ParallelNormals.MIN_TRIANGLES + 1000, 3)};
+        for (Mesh mesh : meshes) {
+            float[] expected = LegacyNormals.smooth(mesh.getVertexpos(), mesh.getTriangles());
+            mesh.setParallelNormals(false).calculateSmoothShadingNormals();
+            assertSameBits(expected, mesh.getNormals());
+            mesh.setParallelNormals(true).calculateSmoothShadingNormals();
+            assertSameBits(expected, mesh.getNormals());
+        }
+    }
+
+    /**
+     * Original implementation of the normals, allocating {@link Vec3f} objects for each triangle, kept as reference.
+     */
+    static class LegacyNormals {
+
+        /**
+         * Calculate the flat shading normals.
+         * @param vertexpos - positions of the vertices
+         * @param triangles - indices of the triangles
+         * @return the normals
+         */
+        static float[] flat(float[] vertexpos, int[] triangles) {
+            float[] normals = new float[vertexpos.length];
+            for (int i = 0; i < triangles.length; i += 3) {
+                Vec3f p1 = new Vec3f(vertexpos[triangles[i] * 3], vertexpos[triangles[i] * 3 + 1], vertexpos[triangles[i] * 3 + 2]);
+                Vec3f p2 = new Vec3f(vertexpos[triangles[i + 1] * 3], vertexpos[triangles[i + 1] * 3 + 1], vertexpos[triangles[i + 1] * 3 + 2]);
+                Vec3f p3 = new Vec3f(vertexpos[triangles[i + 2] * 3], vertexpos[triangles[i + 2] * 3 + 1], vertexpos[triangles[i + 2] * 3 + 2]);
+                Vec3f n = getNormal(p1, p2, p3);
+                normals[triangles[i] * 3] = n.x;
+                normals[triangles[i] * 3 + 1] = n.y;
+                normals[triangles[i] * 3 + 2] = n.z;
+                normals[triangles[i + 1] * 3] = n.x;
+                normals[triangles[i + 1] * 3 + 1] = n.y;
+                normals[triangles[i + 1] * 3 + 2] = n.z;
+                normals[triangles[i + 2] * 3] = n.x;
+                normals[triangles[i + 2] * 3 + 1] = n.y;
+                normals[triangles[i + 2] * 3 + 2] = n.z;
+            }
+            return normals;
+        }
+
+        /**
+         * Calculate the smooth shading normals.
+         * @param vertexpos - positions of the vertices
+         * @param triangles - indices of the triangles
+         * @return the normals
+         */
+        static float[] smooth(float[] vertexpos, int[] triangles) {
+            float[] normals = new float[vertexpos.length];
+            for (int i = 0; i < triangles.length; i += 3) {
+                Vec3f p1 = new Vec3f(vertexpos[triangles[i] * 3], vertexpos[triangles[i] * 3 + 1], vertexpos[triangles[i] * 3 + 2]);
+                Vec3f p2 = new Vec3f(vertexpos[triangles[i + 1] * 3], vertexpos[triangles[i + 1] * 3 + 1], vertexpos[triangles[i + 1] * 3 + 2]);
+                Vec3f p3 = new Vec3f(vertexpos[triangles[i + 2] * 3], vertexpos[triangles[i + 2] * 3 + 1], vertexpos[triangles[i + 2] * 3 + 2]);
+                Vec3f v1 = new Vec3f();
+                v1.setSub(p3, p1);
+                Vec3f v2 = new Vec3f();
+                v2.setSub(p3, p2);
+                Vec3f n = new Vec3f();
+                n.setCrossProduct(v1, v2);
+                float a1 = calcAngle(p1, p2, p3);
+                float a2 = calcAngle(p2, p3, p1);
+                float a3 = calcAngle(p3, p1, p2);
+                Vec3f n1 = n.scale(a1);
+                Vec3f n2 = n.scale(a2);
+                Vec3f n3 = n.scale(a3);
+                normals[triangles[i] * 3] += n1.x;
+                normals[triangles[i] * 3 + 1] += n1.y;
+                normals[triangles[i] * 3 + 2] += n1.z;
+                normals[triangles[i + 1] * 3] += n2.x;
+                normals[triangles[i + 1] * 3 + 1] += n2.y;
+                normals[triangles[i + 1] * 3 + 2] += n2.z;
+                normals[triangles[i + 2] * 3] += n3.x;
+                normals[triangles[i + 2] * 3 + 1] += n3.y;
+                normals[triangles[i + 2] * 3 + 2] += n3.z;
+            }
+            for (int i = 0; i < normals.length; i += 3) {
+                Vec3f n = new Vec3f(normals[i], normals[i + 1], normals[i + 2]);
+                n.normalize();
+                normals[i] = n.x;
+                normals[i + 1] = n.y;
+                normals[i + 2] = n.z;
+            }
+            return normals;
+        }
+
+        /**
+         * Calculate the angle between the vectors p1p2 and p1p3.
+         * @param p1 - the common point of the 2 vectors
+         * @param p2 - extremity of the first vector
+         * @param p3 - extremity of the second vector
+         * @return an angle in radian
+         */
+        private static float calcAngle(Vec3f p1, Vec3f p2, Vec3f p3) {
+            Vec3f v1 = new Vec3f();
+            v1.setSub(p2, p1);
+            Vec3f v2 = new Vec3f();
+            v2.setSub(p3, p1);
+            return (float) Math.acos(v1.dotProduct(v2) / (v1.length() * v2.length()));
+        }
+
+        /**
+         * Calculate the normalized cross product of the vectors p1p2 and p1p3.
+         * @param p1 - the common point of the 2 vectors
+         * @param p2 - extremity of the first vector
+         * @param p3 - extremity of the second vector
+         * @return the normal of the plane defined by the vectors p1p2 and p1p3
+         */
+        private static Vec3f getNormal(Vec3f p1, Vec3f p2, Vec3f p3) {
+            Vec3f v1 = new Vec3f();
+            v1.setSub(p2, p1);
+            Vec3f v2 = new Vec3f();
+            v2.setSub(p3, p1);
+            Vec3f n = new Vec3f();
+            n.setCrossProduct(v1, v2);
+            n.normalize();
+            return n;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package fr.univ_poitiers.dptinfo.algo3d.mesh;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the overdraw reduction of {@link Mesh#optimizeOverdraw(float)}, measured with the software rasterizer of {@link OverdrawOptimizer}.
+ */
+public class OverdrawOptimizerTest {
+
+    /**
+     * Threshold of the optimization, the default one of the importer.
+     */
+    private static final float THRESHOLD = 1.05F;
+
+    /**
+     * Copy a mesh with its triangles in a random order.
+     * @param mesh - the mesh
+     * @param seed - seed of the random generator
+     * @return the shuffled copy
+     */
+    private static Mesh shuffled(Mesh mesh, long seed) {
+        int[] triangles = mesh.getTriangles().clone();
+        Random random = new Random(seed);
+        for (int t = triangles.length / 3 - 1; t > 0; t--) {
+            int o = random.nextInt(t + 1);
+            for (int k = 0; k < 3; k++) {
+                int tmp = triangles[t * 3 + k];
+                triangles[t * 3 + k] = triangles[o * 3 + k];
+                triangles[o * 3 + k] = tmp;
+            }
+        }
+        return new Mesh(mesh.getVertexpos().clone(), triangles, mesh.getNormals().clone());
+    }
+
+    /**
+     * Returns the triangles as sorted strings of positions, to compare two meshes whose vertices were renumbered.
+     * Each triangle starts with its smallest vertex so that its orientation is kept.
+     * @param mesh - the mesh
+     * @return the sorted triangles
+     */
+    private static String[] triangles(Mesh mesh) {
+        float[] vertexpos = mesh.getVertexpos();
+        int[] triangles = mesh.getTriangles();
+        String[] result = new String[triangles.length / 3];
+        for (int t = 0; t < result.length; t++) {
+            String[] corners = new String[3];
+            for (int k = 0; k < 3; k++) {
+                int v = triangles[t * 3 + k] * 3;
+                corners[k] = vertexpos[v] + " " + vertexpos[v + 1] + " " + vertexpos[v + 2];
+            }
+            int first = 0;
+            for (int k = 1; k < 3; k++)
+                if (corners[k].compareTo(corners[first]) < 0)
+                    first = k;
+            result[t] = corners[first] + " / " + corners[(first + 1) % 3] + " / " + corners[(first + 2) % 3];
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Optimize a mesh for the vertex cache then for the overdraw, and check the overdraw and the ACMR.
+     * @param mesh - the mesh
+     * @param minGain - smallest expected reduction of the overdraw
+     */
+    private static void check(Mesh mesh, float minGain) {
+        String[] before = triangles(mesh);
+        mesh.optimizeVertexCache();
+        float overdrawBefore = mesh.getOverdraw();
+        float acmrBefore = mesh.getACMR();
+        mesh.optimizeOverdraw(THRESHOLD);
+        float overdrawAfter = mesh.getOverdraw();
+        float acmrAfter = mesh.getACMR();
+        assertTrue(overdrawAfter >= 1.F);
+        assertTrue("overdraw " + overdrawBefore + " -> " + overdrawAfter, overdrawAfter <= overdrawBefore - minGain);
+        assertTrue("ACMR " + acmrBefore + " -> " + acmrAfter, acmrAfter <= acmrBefore * 1.1F);
+        assertArrayEquals("the triangles and their orientation are kept", before, triangles(mesh));
+    }
+
+    /**
+     * The inner side of a torus, hidden by its outer side from most views, is drawn last.
+     */
+    @Test
+    public void torus() {
+        check(new Donut(1.F, 0.4F, 64, 96), 0.01F);
+    }
+
+    /**
+     * A torus whose triangles are in a random order gains more, as the vertex cache order alone does not draw the outer side first.
+     */
+    @Test
+    public void shuffledTorus() {
+        check(shuffled(new Donut(1.F, 0.4F, 64, 96), 7), 0.05F);
+    }
+
+    /**
+     * A convex mesh has no overdraw with back face culling, whatever the order, except the pixels on the edges shared by two triangles.
+     */
+    @Test
+    public void convexMesh() {
+        Mesh sphere = new Sphere(48, 48);
+        sphere.optimizeVertexCache();
+        assertEquals(1.F, sphere.getOverdraw(), 5e-3F);
+        sphere.optimizeOverdraw(THRESHOLD);
+        assertEquals(1.F, sphere.getOverdraw(), 5e-3F);
+    }
+}
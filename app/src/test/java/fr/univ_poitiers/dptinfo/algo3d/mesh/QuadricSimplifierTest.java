@@ -0,0 +1,107 @@
+package fr.univ_poitiers.dptinfo.algo3d.mesh;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the simplified meshes of {@link Mesh#simplify(float)}, measured with the Hausdorff distance of {@link MeshDistance}.
+ */
+public class QuadricSimplifierTest {
+
+    /**
+     * Largest Hausdorff distance between a mesh and its simplification, relative to the diagonal of its bounding box, for each tested ratio.
+     */
+    private static final float[][] RATIO_ERRORS = {{0.5F, 0.01F}, {0.25F, 0.02F}, {0.05F, 0.05F}};
+
+    /**
+     * Returns the diagonal of the bounding box of a mesh.
+     * @param mesh - the mesh
+     * @return the length of the diagonal
+     */
+    private static float diagonal(Mesh mesh) {
+        float[] vertexpos = mesh.getVertexpos();
+        float[] min = {Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY};
+        float[] max = {Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
+        for (int i = 0; i < vertexpos.length; i++) {
+            min[i % 3] = Math.min(min[i % 3], vertexpos[i]);
+            max[i % 3] = Math.max(max[i % 3], vertexpos[i]);
+        }
+        return (float) Math.sqrt((max[0] - min[0]) * (max[0] - min[0]) + (max[1] - min[1]) * (max[1] - min[1]) + (max[2] - min[2]) * (max[2] - min[2]));
+    }
+
+    /**
+     * Check that a mesh is manifold and consistently oriented : no degenerate triangle and no edge used twice in the same direction.
+     * An edge is then shared by at most 2 triangles, one in each direction.
+     * @param mesh - the mesh
+     */
+    private static void assertManifold(Mesh mesh) {
+        int[] triangles = mesh.getTriangles();
+        Set<Long> edges = new HashSet<>();
+        for (int t = 0; t < triangles.length; t += 3) {
+            for (int k = 0; k < 3; k++) {
+                int a = triangles[t + k], b = triangles[t + (k + 1) % 3];
+                assertFalse("degenerate triangle " + t / 3, a == b);
+                assertTrue("edge " + a + "-" + b + " used twice in the same direction", edges.add(((long) a << 32) | b));
+            }
+        }
+    }
+
+    /**
+     * Simplify a mesh with each ratio and check the number of triangles, the manifoldness and the distance to the original surface.
+     * @param name - name of the mesh in the messages
+     * @param mesh - the mesh
+     */
+    private static void check(String name, Mesh mesh) {
+        int nbTriangles = mesh.getTriangles().length / 3;
+        float diagonal = diagonal(mesh);
+        for (float[] ratioError : RATIO_ERRORS) {
+            Mesh simplified = mesh.simplify(ratioError[0]);
+            int target = (int) (nbTriangles * ratioError[0]);
+            int count = simplified.getTriangles().length / 3;
+            assertTrue(name + " " + count + " triangles for a target of " + target, count <= target && count >= target * 0.9F);
+            assertManifold(simplified);
+            float distance = mesh.hausdorffDistance(simplified);
+            assertFalse(name + " distance is NaN", Float.isNaN(distance));
+            System.out.println(name + " at " + ratioError[0] + " : " + count + " triangles, Hausdorff / diagonal " + distance / diagonal);
+            assertTrue(name + " at " + ratioError[0] + " : Hausdorff / diagonal " + distance / diagonal, distance / diagonal <= ratioError[1]);
+        }
+    }
+
+    /**
+     * A UV sphere, whose triangles at the poles share a vertex twice after the first collapses.
+     */
+    @Test
+    public void sphere() {
+        check("sphere", new Sphere(128, 128));
+    }
+
+    /**
+     * A torus, with the seams of its texture coordinates.
+     */
+    @Test
+    public void torus() {
+        check("torus", new Donut(1.F, 0.4F, 96, 64));
+    }
+
+    /**
+     * The distance to a degenerate triangle, of zero area, is the distance to its closest edge and not NaN.
+     */
+    @Test
+    public void degenerateTriangle() {
+        float[] vertexpos = {0, 0, 0, 1, 0, 0, 2, 0, 0, 0, 1, 0};
+        //aligned points, then a triangle whose 2 first vertices are the same, which divided 0 by 0
+        int[] triangles = {0, 1, 2, 3, 3, 0};
+        MeshDistance distance = new MeshDistance(vertexpos, triangles);
+        assertEquals(1.F, distance.distance(1.F, 0.F, 1.F), 1e-6F);
+        assertEquals(0.5F, distance.distance(-0.5F, 0.F, 0.F), 1e-6F);
+        assertEquals(0.F, distance.distance(0.F, 0.5F, 0.F), 1e-6F);
+        assertEquals(0.5F, distance.distance(-0.5F, 0.5F, 0.F), 1e-6F);
+        assertEquals(1.F, distance.distance(3.F, 0.F, 0.F), 1e-6F);
+    }
+}
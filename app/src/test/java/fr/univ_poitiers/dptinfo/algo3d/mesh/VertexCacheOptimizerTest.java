@@ -0,0 +1,139 @@
+package fr.univ_poitiers.dptinfo.algo3d.mesh;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the reordering of the triangles for the vertex cache by {@link VertexCacheOptimizer}, and of its FIFO cache simulation.
+ */
+public class VertexCacheOptimizerTest {
+
+    /**
+     * Returns the triangles as keys independent of their order and of their first corner, but not of their orientation.
+     * @param triangles - triangles array
+     * @param ids - identifier of each vertex, so the triangles of meshes whose vertices were renumbered can be compared
+     * @return the sorted keys
+     */
+    private static long[] triangleKeys(int[] triangles, int[] ids) {
+        long[] keys = new long[triangles.length / 3];
+        for (int t = 0; t < keys.length; t++) {
+            int a = ids[triangles[t * 3]], b = ids[triangles[t * 3 + 1]], c = ids[triangles[t * 3 + 2]];
+            //rotation of the corners starting with the smallest identifier, which keeps the orientation
+            while (a > b || a > c) {
+                int swap = a;
+                a = b;
+                b = c;
+                c = swap;
+            }
+            keys[t] = ((long) a << 42) | ((long) b << 21) | c;
+        }
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    /**
+     * A strip of triangles (i, i + 1, i + 2) transforms each vertex once, and triangles without common vertex transform 3 vertices each.
+     */
+    @Test
+    public void acmrOfKnownOrders() {
+        int nbVertices = 102;
+        int[] strip = new int[(nbVertices - 2) * 3];
+        for (int i = 0; i < nbVertices - 2; i++) {
+            strip[i * 3] = i;
+            strip[i * 3 + 1] = i + 1;
+            strip[i * 3 + 2] = i + 2;
+        }
+        assertEquals(nbVertices / (float) (nbVertices - 2), VertexCacheOptimizer.acmr(strip, nbVertices), 1e-6F);
+
+        int[] disjoint = new int[30];
+        for (int i = 0; i < disjoint.length; i++)
+            disjoint[i] = i;
+        assertEquals(3.F, VertexCacheOptimizer.acmr(disjoint, disjoint.length), 0.F);
+    }
+
+    /**
+     * A vertex stays in the FIFO cache for {@link VertexCacheOptimizer#FIFO_SIZE} misses, whatever the number of hits.
+     */
+    @Test
+    public void acmrFifoEviction() {
+        assertEquals(16, VertexCacheOptimizer.FIFO_SIZE);
+        //5 triangles then the first one again : its vertices entered less than 16 misses ago
+        int[] reused = new int[18];
+        for (int i = 0; i < 15; i++)
+            reused[i] = i;
+        reused[15] = 0;
+        reused[16] = 1;
+        reused[17] = 2;
+        assertEquals(15.F / 6, VertexCacheOptimizer.acmr(reused, 15), 0.F);
+        //6 triangles then the first one again : its vertices were evicted
+        int[] evicted = new int[21];
+        for (int i = 0; i < 18; i++)
+            evicted[i] = i;
+        evicted[18] = 0;
+        evicted[19] = 1;
+        evicted[20] = 2;
+        assertEquals(3.F, VertexCacheOptimizer.acmr(evicted, 18), 0.F);
+    }
+
+    /**
+     * The triangles of a donut shuffled in a random order, with random first corners, are reordered with a lower ACMR,
+     * the mesh keeping the same triangles with the same orientation.
+     */
+    @Test
+    public void shuffledDonutIsOptimized() {
+        Donut donut = new Donut(1.F, 0.3F, 50, 20);
+        int nbVertices = donut.getVerticesCount();
+        int[] triangles = donut.getTriangles().clone();
+        Random random = new Random(1);
+        int nbTriangles = triangles.length / 3;
+        for (int t = nbTriangles - 1; t > 0; t--) {
+            int other = random.nextInt(t + 1);
+            for (int k = 0; k < 3; k++) {
+                int swap = triangles[t * 3 + k];
+                triangles[t * 3 + k] = triangles[other * 3 + k];
+                triangles[other * 3 + k] = swap;
+            }
+        }
+        for (int t = 0; t < nbTriangles; t++) {
+            for (int r = random.nextInt(3); r > 0; r--) {
+                int swap = triangles[t * 3];
+                triangles[t * 3] = triangles[t * 3 + 1];
+                triangles[t * 3 + 1] = triangles[t * 3 + 2];
+                triangles[t * 3 + 2] = swap;
+            }
+        }
+        //the first texture coordinate of each vertex is its original index, moved with the vertex when it is renumbered
+        float[] ids = new float[nbVertices * 2];
+        int[] identity = new int[nbVertices];
+        for (int v = 0; v < nbVertices; v++) {
+            ids[v * 2] = v;
+            identity[v] = v;
+        }
+        Mesh mesh = new Mesh(donut.getVertexpos(), triangles, donut.getNormals(), ids);
+        long[] before = triangleKeys(triangles, identity);
+        float acmrBefore = mesh.getACMR();
+        assertTrue("a shuffled mesh hardly reuses the cache", acmrBefore > 2.F);
+
+        mesh.optimizeVertexCache();
+        float acmrAfter = mesh.getACMR();
+        assertTrue(acmrBefore + " -> " + acmrAfter, acmrAfter < 0.8F);
+        int[] original = new int[nbVertices];
+        float[] moved = mesh.getTexturesCoord();
+        for (int v = 0; v < nbVertices; v++)
+            original[v] = (int) moved[v * 2];
+        assertArrayEquals(before, triangleKeys(mesh.getTriangles(), original));
+        //the vertices are numbered in the order they are first used
+        int next = 0;
+        for (int v : mesh.getTriangles()) {
+            assertTrue(v <= next);
+            if (v == next)
+                next++;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package fr.univ_poitiers.dptinfo.algo3d.mesh;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the interleaving of the vertex attributes by {@link VertexLayout}.
+ */
+public class VertexLayoutTest {
+
+    /**
+     * Check the attributes of each vertex at their offsets in the interleaved bytes.
+     * @param bytes - the interleaved vertices
+     * @param mesh - the mesh whose attributes were interleaved
+     */
+    private static void assertInterleaved(ByteBuffer bytes, Mesh mesh) {
+        float[] vertexpos = mesh.getVertexpos(), normals = mesh.getNormals(), texturesCoord = mesh.getTexturesCoord();
+        int nbVertices = mesh.getVerticesCount();
+        assertEquals(nbVertices * VertexLayout.STRIDE, bytes.capacity());
+        for (int i = 0; i < nbVertices; i++) {
+            int base = i * VertexLayout.STRIDE;
+            for (int k = 0; k < 3; k++) {
+                assertEquals(vertexpos[i * 3 + k], bytes.getFloat(base + VertexLayout.POSITION_OFFSET + k * Float.BYTES), 0.F);
+                assertEquals(normals[i * 3 + k], bytes.getFloat(base + VertexLayout.NORMAL_OFFSET + k * Float.BYTES), 0.F);
+            }
+            for (int k = 0; k < 2; k++)
+                assertEquals(texturesCoord == null ? 0.F : texturesCoord[i * 2 + k],
+                        bytes.getFloat(base + VertexLayout.TEXTURE_OFFSET + k * Float.BYTES), 0.F);
+        }
+    }
+
+    /**
+     * The positions, normals and texture coordinates of each vertex are at their offsets, in a direct buffer in the native order.
+     */
+    @Test
+    public void withTextures() {
+        Mesh sphere = new Sphere(16, 16);
+        ByteBuffer bytes = VertexLayout.interleave(FloatBuffer.wrap(sphere.getVertexpos()), FloatBuffer.wrap(sphere.getNormals()),
+                FloatBuffer.wrap(sphere.getTexturesCoord()));
+        assertTrue(bytes.isDirect());
+        assertEquals(ByteOrder.nativeOrder(), bytes.order());
+        assertInterleaved(bytes, sphere);
+    }
+
+    /**
+     * Without texture coordinates, the vertices keep the same stride and their texture coordinates are 0.
+     */
+    @Test
+    public void withoutTextures() {
+        Mesh donut = new Donut(1.F, 0.3F, 20, 10);
+        assertNull(donut.getTexturesCoord());
+        ByteBuffer bytes = VertexLayout.interleave(FloatBuffer.wrap(donut.getVertexpos()), FloatBuffer.wrap(donut.getNormals()), null);
+        assertInterleaved(bytes, donut);
+    }
+
+    /**
+     * The floats returned by {@link VertexLayout#pack(float[], float[], float[])} are the interleaved vertices, from the position 0.
+     */
+    @Test
+    public void packedFloats() {
+        Mesh sphere = new Sphere(16, 16);
+        FloatBuffer packed = VertexLayout.pack(sphere.getVertexpos(), sphere.getNormals(), sphere.getTexturesCoord());
+        ByteBuffer expected = VertexLayout.interleave(FloatBuffer.wrap(sphere.getVertexpos()), FloatBuffer.wrap(sphere.getNormals()),
+                FloatBuffer.wrap(sphere.getTexturesCoord()));
+        assertEquals(0, packed.position());
+        assertEquals(sphere.getVerticesCount() * VertexLayout.FLOATS, packed.capacity());
+        for (int i = 0; i < packed.capacity(); i++)
+            assertEquals(expected.getFloat(i * Float.BYTES), packed.get(i), 0.F);
+    }
+}
@@ -0,0 +1,250 @@
+package fr.univ_poitiers.dptinfo.algo3d.objimporter;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import fr.univ_poitiers.dptinfo.algo3d.mesh.Mesh;
+import fr.univ_poitiers.dptinfo.algo3d.shaders.ShadingMode;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of the import of .obj files, without OpenGL context.
+ */
+public class OBJImporterTest {
+
+    /**
+     * Temporary directory of the cache.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Square made of two triangles, the first one with texture coordinates and normals, the second one with normals only.
+     */
+    private static final String MIXED_TEXTURES =
+            "v 0 0 0\nv 1 0 0\nv 0 1 0\nv 1 1 0\n"
+                    + "vt 0.25 0.5\nvt 1 0\nvt 0 1\n"
+                    + "vn 0 0 1\n"
+                    + "f 1/1/1 2/2/1 3/3/1\n"
+                    + "f 2//1 4//1 3//1\n";
+
+    /**
+     * Square made of three triangles, with all the forms of corners : v/vt/vn, v//vn and v.
+     */
+    private static final String MIXED_NORMALS = MIXED_TEXTURES + "f 1 2 4\n";
+
+    /**
+     * Unit cube whose 8 corners are shared by the faces, without normals.
+     */
+    private static final String CUBE =
+            "v 0 0 0\nv 1 0 0\nv 1 1 0\nv 0 1 0\nv 0 0 1\nv 1 0 1\nv 1 1 1\nv 0 1 1\n"
+                    + "f 1 4 3\nf 1 3 2\nf 5 6 7\nf 5 7 8\nf 1 2 6\nf 1 6 5\n"
+                    + "f 4 8 7\nf 4 7 3\nf 1 5 8\nf 1 8 4\nf 2 3 7\nf 2 7 6\n";
+
+    /**
+     * Parse an .obj file given as a string.
+     * @param obj - content of the file
+     * @return the parser
+     */
+    static OBJParser parse(String obj) {
+        byte[] data = obj.getBytes(StandardCharsets.US_ASCII);
+        OBJParser parser = new OBJParser();
+        parser.parse(data, 0, data.length);
+        return parser;
+    }
+
+    /**
+     * The corners without texture coordinates get the texture coordinates (0, 0), and the normals of the file are kept.
+     */
+    @Test
+    public void missingTextureCoordinates() {
+        Mesh mesh = OBJImporter.buildMesh(parse(MIXED_TEXTURES), ShadingMode.SMOOTH_SHADING, false);
+        assertEquals(6, mesh.getTriangles().length);
+        float[] textures = mesh.getTexturesCoord();
+        float[] positions = mesh.getVertexpos();
+        float[] normals = mesh.getNormals();
+        int withTextures = 0;
+        for (int v = 0; v < positions.length / 3; v++) {
+            if (textures[v * 2] != 0.F || textures[v * 2 + 1] != 0.F)
+                withTextures++;
+            assertEquals(0.F, normals[v * 3], 0.F);
+            assertEquals(0.F, normals[v * 3 + 1], 0.F);
+            assertEquals(1.F, normals[v * 3 + 2], 0.F);
+        }
+        assertEquals(3, withTextures);
+    }
+
+    /**
+     * A file mixing corners with and without normals is imported, the normals being calculated for all the vertices.
+     */
+    @Test
+    public void missingNormals() {
+        for (ShadingMode mode : ShadingMode.values()) {
+            Mesh mesh = OBJImporter.buildMesh(parse(MIXED_NORMALS), mode, false);
+            assertEquals(9, mesh.getTriangles().length);
+            float[] normals = mesh.getNormals();
+            for (int v = 0; v < normals.length / 3; v++)
+                assertEquals(mode + " normal " + v, 1.F, normals[v * 3 + 2], 1e-6F);
+        }
+    }
+
+    /**
+     * The crease shading uses the crease angle of the importer : the right angles of the cube are hard edges with the default angle,
+     * and smoothed with an angle above 90 degrees.
+     */
+    @Test
+    public void creaseAngleIsUsed() {
+        Mesh hard = OBJImporter.buildMesh(parse(CUBE), ShadingMode.CREASE_SHADING, false);
+        assertEquals(24, hard.getVerticesCount());
+        OBJImporter.setCreaseAngle(100.F);
+        try {
+            Mesh smooth = OBJImporter.buildMesh(parse(CUBE), ShadingMode.CREASE_SHADING, false);
+            assertEquals(8, smooth.getVerticesCount());
+            float[] normals = smooth.getNormals(), positions = smooth.getVertexpos();
+            //each corner gets a normal pointing out of the cube between its 3 faces
+            for (int i = 0; i < normals.length; i++)
+                assertTrue("normal component " + i, positions[i] == 0.F ? normals[i] < 0.F : normals[i] > 0.F);
+        } finally {
+            OBJImporter.setCreaseAngle(OBJImporter.DEFAULT_CREASE_ANGLE);
+        }
+    }
+
+    /**
+     * Generate the .obj file of a wavy grid, with texture coordinates and normals.
+     * Each row of vertices is followed by the faces joining it to the previous row,
+     * the faces of the odd rows using relative indices so they are resolved in the chunk where they are parsed.
+     * @param size - number of vertices along a side of the grid
+     * @return the content of the file
+     */
+    static byte[] generateGrid(int size) {
+        StringBuilder obj = new StringBuilder(size * size * 160);
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                float x = (float) col / size, z = (float) row / size;
+                obj.append(String.format(Locale.ROOT, "v %.6f %.6f %.6f%n", x, 0.1 * Math.sin(x * 20) * Math.cos(z * 20), z));
+                obj.append(String.format(Locale.ROOT, "vt %.6f %.6f%n", x, z));
+                obj.append(String.format(Locale.ROOT, "vn %.6f %.6f %.6f%n", 0.1 * Math.sin(x * 20), 1., 0.1 * Math.cos(z * 20)));
+            }
+            if (row == 0)
+                continue;
+            for (int col = 0; col + 1 < size; col++) {
+                int a = (row - 1) * size + col + 1, b = a + 1, c = a + size, d = c + 1;
+                if (row % 2 == 1) {
+                    int count = (row + 1) * size + 1;
+                    a -= count;
+                    b -= count;
+                    c -= count;
+                    d -= count;
+                }
+                obj.append(String.format(Locale.ROOT, "f %d/%d/%d %d/%d/%d %d/%d/%d %d/%d/%d%n", a, a, a, c, c, c, d, d, d, b, b, b));
+            }
+        }
+        return obj.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * A file of several megabytes, split into chunks by the parallel import, gives the same mesh as the sequential import.
+     */
+    @Test
+    public void parallelImportMatchesSerial() {
+        byte[] data = generateGrid(200);
+        assertTrue("the file must be split into several chunks", data.length > 2 << 20);
+        for (ShadingMode mode : new ShadingMode[]{ShadingMode.FLAT_SHADING, ShadingMode.SMOOTH_SHADING}) {
+            long start = System.nanoTime();
+            Mesh serial = OBJImporter.importOBJ(new ByteArrayInputStream(data), mode);
+            long middle = System.nanoTime();
+            Mesh parallel = OBJImporter.importOBJParallel(new ByteArrayInputStream(data), mode);
+            long end = System.nanoTime();
+            System.out.printf(Locale.ROOT, "%s import of %.1f MB : serial %d ms, parallel %d ms%n",
+                    mode, data.length / 1048576.0, (middle - start) / 1000000, (end - middle) / 1000000);
+            assertEquals(2 * 199 * 199 * 3, serial.getTriangles().length);
+            assertArrayEquals(serial.getTriangles(), parallel.getTriangles());
+            assertArrayEquals(serial.getVertexpos(), parallel.getVertexpos(), 0.F);
+            assertArrayEquals(serial.getNormals(), parallel.getNormals(), 0.F);
+            assertArrayEquals(serial.getTexturesCoord(), parallel.getTexturesCoord(), 0.F);
+        }
+    }
+
+    /**
+     * A stream failing in the middle of the file makes the import fail, and nothing is stored in the cache.
+     */
+    @Test
+    public void readErrorIsNotCached() throws IOException {
+        final byte[] data = MIXED_NORMALS.getBytes(StandardCharsets.US_ASCII);
+        File directory = folder.newFolder("cache");
+        OBJImporter.setCache(new OBJCache(directory, 1 << 20));
+        try {
+            for (final boolean parallel : new boolean[]{false, true}) {
+                InputStream stream = new InputStream() {
+                    private int position;
+
+                    @Override
+                    public int read() throws IOException {
+                        if (position == data.length / 2)
+                            throw new IOException("read error");
+                        return data[position++];
+                    }
+                };
+                try {
+                    if (parallel)
+                        OBJImporter.importOBJParallel(stream, ShadingMode.SMOOTH_SHADING);
+                    else
+                        OBJImporter.importOBJ(stream, ShadingMode.SMOOTH_SHADING);
+                    fail("the truncated file must not be imported");
+                } catch (RuntimeException e) {
+                    assertTrue(e.getCause() instanceof IOException);
+                }
+                assertEquals(0, directory.list().length);
+            }
+            OBJImporter.importOBJ(new ByteArrayInputStream(data), ShadingMode.SMOOTH_SHADING);
+            assertEquals(1, directory.list().length);
+        } finally {
+            OBJImporter.setCache(null);
+        }
+    }
+
+    /**
+     * The levels of detail are stored in the cache with the imported mesh, and loaded back identical without being simplified again.
+     */
+    @Test
+    public void lodChainIsCached() throws IOException {
+        byte[] data = generateGrid(60);
+        float[] ratios = {0.5F, 0.2F};
+        File directory = folder.newFolder("lod");
+        OBJCache cache = new OBJCache(directory, 1 << 24);
+        OBJImporter.setCache(cache);
+        try {
+            Mesh[] built = OBJImporter.importLODChainParallel(new ByteArrayInputStream(data), ShadingMode.SMOOTH_SHADING, ratios);
+            assertEquals(0, cache.getHits());
+            assertEquals(3, cache.getMisses());
+            assertEquals(3, directory.list().length);
+            Mesh[] cached = OBJImporter.importLODChainParallel(new ByteArrayInputStream(data), ShadingMode.SMOOTH_SHADING, ratios);
+            assertEquals(3, cache.getHits());
+            assertEquals(3, cache.getMisses());
+            assertEquals(built.length, cached.length);
+            for (int i = 0; i < built.length; i++) {
+                assertArrayEquals(built[i].getTriangles(), cached[i].getTriangles());
+                assertArrayEquals(built[i].getVertexpos(), cached[i].getVertexpos(), 0.F);
+                assertArrayEquals(built[i].getNormals(), cached[i].getNormals(), 0.F);
+            }
+            //other ratios are other levels, but the same imported mesh
+            OBJImporter.importLODChainParallel(new ByteArrayInputStream(data), ShadingMode.SMOOTH_SHADING, 0.5F, 0.1F);
+            assertEquals(5, cache.getHits());
+            assertEquals(4, cache.getMisses());
+        } finally {
+            OBJImporter.setCache(null);
+        }
+    }
+}